@@ -0,0 +1,95 @@
+package net.nawaman.script.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.nawaman.script.Tools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The BASE64 encoding and decoding of the compiled executables by Tools compared with the codec it used before (see
+ *    LegacyBase64) for the given number of the bytes. The streaming ones are how the compiled text is written and read.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+
+	@Param({ "1024", "65536", "1048576" })
+	public int Size;
+
+	byte[] Bytes;
+	String Encoded;
+	String LegacyEncoded;
+	byte[] Buffer = new byte[8192];
+
+	@Setup
+	public void setup() {
+		this.Bytes = new byte[this.Size];
+		new Random(42).nextBytes(this.Bytes);
+
+		// Each codec decodes its own text (the legacy one differs when the last line is full)
+		this.Encoded       = Tools.base64Encode(this.Bytes);
+		this.LegacyEncoded = LegacyBase64.base64Encode(this.Bytes);
+		if(!Arrays.equals(this.Bytes, Tools.Base64Decode(this.Encoded)))
+			throw new IllegalStateException("The codec cannot decode its encoded text.");
+		if(!Arrays.equals(this.Bytes, LegacyBase64.Base64Decode(this.LegacyEncoded)))
+			throw new IllegalStateException("The legacy codec cannot decode its encoded text.");
+	}
+
+	@Benchmark
+	public String legacyEncode() {
+		return LegacyBase64.base64Encode(this.Bytes);
+	}
+
+	@Benchmark
+	public String encode() {
+		return Tools.base64Encode(this.Bytes);
+	}
+
+	@Benchmark
+	public StringBuilder streamEncode() throws IOException {
+		StringBuilder SB = new StringBuilder();
+		OutputStream  OS = Tools.NewBase64OutputStream(SB);
+		OS.write(this.Bytes);
+		OS.close();
+		return SB;
+	}
+
+	@Benchmark
+	public byte[] legacyDecode() {
+		return LegacyBase64.Base64Decode(this.LegacyEncoded);
+	}
+
+	@Benchmark
+	public byte[] decode() {
+		return Tools.Base64Decode(this.Encoded);
+	}
+
+	@Benchmark
+	public int streamDecode() throws IOException {
+		InputStream IS    = Tools.NewBase64InputStream(this.Encoded, 0, this.Encoded.length());
+		int         Count = 0;
+		int         Read;
+		while((Read = IS.read(this.Buffer)) != -1) Count += Read;
+		return Count;
+	}
+}
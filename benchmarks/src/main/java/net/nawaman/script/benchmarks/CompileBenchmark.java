@@ -0,0 +1,55 @@
+package net.nawaman.script.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.nawaman.script.CompiledCode;
+import net.nawaman.script.ScriptManager;
+import net.nawaman.script.java.JavaEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JavaEngine.compile(...) of a script code.
+ *
+ * The cold compilation compiles a new code every time (so javac is always invoked) while the warm compilation compiles
+ *    the same code again (so the class is taken from the compile cache and only a new instance is created).
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompileBenchmark {
+
+	static final String Code = "int Sum = 0; for(int i = 0; i < 10; i++) Sum += i; return Sum";
+
+	JavaEngine Engine;
+	long       Count;
+
+	@Setup
+	public void setup() {
+		this.Engine = (JavaEngine)ScriptManager.Instance.getDefaultEngineOf(JavaEngine.Name);
+		this.Engine.compile(Code + ";", null, null, null, null);
+	}
+
+	@Benchmark
+	public CompiledCode cold() {
+		// A different constant makes a different code so it is never in the compile cache
+		return this.Engine.compile(Code + " + " + (this.Count++) + ";", null, null, null, null);
+	}
+
+	@Benchmark
+	public CompiledCode warm() {
+		return this.Engine.compile(Code + ";", null, null, null, null);
+	}
+}
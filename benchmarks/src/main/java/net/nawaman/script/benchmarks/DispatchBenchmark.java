@@ -0,0 +1,47 @@
+package net.nawaman.script.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.nawaman.script.ScriptEngine;
+import net.nawaman.script.ScriptManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** ScriptManager.GetEngineFromCode(...) - finding the engine of a code from its engine header */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	@Param({ "Java", "JavaWithParam", "ClassName", "Comment" })
+	public String Header;
+
+	String Code;
+
+	@Setup
+	public void setup() {
+		String Body = "\nint Sum = 0;\nfor(int i = 0; i < 10; i++) Sum += i;\nreturn Sum;\n";
+		if     ("Java"         .equals(this.Header)) this.Code = "// @Java:"                                + Body;
+		else if("JavaWithParam".equals(this.Header)) this.Code = "// @Java(pool=2):"                        + Body;
+		else if("ClassName"    .equals(this.Header)) this.Code = "// @net.nawaman.script.java.JavaEngine:"  + Body;
+		else                                         this.Code = "/* The sum of 0 to 9 */ // @Java:"        + Body;
+	}
+
+	@Benchmark
+	public ScriptEngine getEngineFromCode() {
+		return ScriptManager.GetEngineFromCode(this.Code);
+	}
+}
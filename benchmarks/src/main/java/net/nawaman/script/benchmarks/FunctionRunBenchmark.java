@@ -0,0 +1,66 @@
+package net.nawaman.script.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.nawaman.script.Function;
+import net.nawaman.script.ScriptManager;
+import net.nawaman.script.Tools;
+import net.nawaman.script.java.JavaEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Function.run(...) of a Java function.
+ *
+ * The parameters passed to run(Object ...) are adjusted to the signature (see Signature.Simple.adjustParameters(...))
+ *    before the body is called. run2(...) calls the body directly (the parameters are not adjusted) and the var-args
+ *    function has its parameters packed into an array.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionRunBenchmark {
+
+	Function        Add;
+	Function.Direct AddDirect;
+	Function        Sum;
+	Integer         A = 5;
+	Integer         B = 10;
+
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		JavaEngine Engine = (JavaEngine)ScriptManager.Instance.getDefaultEngineOf(JavaEngine.Name);
+		this.Add = Engine.newFunction(Tools.ParseSignature("add", "(a:int, b:int):int"), new String[] { "a", "b" },
+		               "return a + b;", null, null, null, null);
+		this.AddDirect = (Function.Direct)this.Add;
+		this.Sum = Engine.newFunction(Tools.ParseSignature("sum", "(v:int ...):int"), new String[] { "v" },
+		               "int S = 0; for(int i : v) S += i; return S;", null, null, null, null);
+	}
+
+	@Benchmark
+	public Object run() {
+		return this.Add.run(this.A, this.B);
+	}
+
+	@Benchmark
+	public Object runDirect() {
+		return this.AddDirect.run2(this.A, this.B);
+	}
+
+	@Benchmark
+	public Object runVarArgs() {
+		return this.Sum.run(this.A, this.B, this.A);
+	}
+}
@@ -0,0 +1,64 @@
+package net.nawaman.script.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngineManager;
+
+import net.nawaman.script.Script;
+import net.nawaman.script.ScriptManager;
+import net.nawaman.script.jsr223.JSEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluation of a JavaScript code (through JSR223) with frozen variables.
+ *
+ * The compiled script is created once and run with a new scope each time while the text is evaluated (so it is
+ *    parsed) each time.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSR223Benchmark {
+
+	static final String Code = "var Sum = Base; for(var i = 0; i < 10; i++) Sum += i * Factor; Sum;";
+
+	JSEngine                 Engine;
+	net.nawaman.script.Scope Frozen;
+	Script                   Script;
+
+	@Setup
+	public void setup() {
+		if(new ScriptEngineManager().getEngineByName(JSEngine.ShortName) == null)
+			throw new IllegalStateException("The JavaScript engine is not available (nashorn-core is needed).");
+		
+		this.Engine = (JSEngine)ScriptManager.Instance.getDefaultEngineOf(JSEngine.Name);
+
+		this.Frozen = new net.nawaman.script.Scope.Simple();
+		this.Frozen.newVariable("Base",   Integer.class, 100);
+		this.Frozen.newVariable("Factor", Integer.class, 2);
+		this.Script = this.Engine.newScript(Code, this.Frozen, new String[] { "Base", "Factor" }, null, null);
+	}
+
+	@Benchmark
+	public Object runCompiled() {
+		return this.Script.run(this.Engine.newScope());
+	}
+
+	@Benchmark
+	public Object evalText() {
+		return this.Engine.eval(Code, this.Frozen, null);
+	}
+}
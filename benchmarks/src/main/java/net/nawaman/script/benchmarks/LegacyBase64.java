@@ -0,0 +1,136 @@
+package net.nawaman.script.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The BASE64 codec that Tools used before it was switched to java.util.Base64 - kept (unchanged) only to be compared
+ *    with the current one (see Base64Benchmark).
+ **/
+public class LegacyBase64 {
+	
+	LegacyBase64() {}
+	
+	// BASE 64 ENCODING -- Taken from --http://www.wikihow.com/Encode-a-String-to-Base64-With-Java
+	// Change from (String):String to (byte[]):String
+	// The decoding is all my code (reverse from the one taken, anyway)
+	
+	public static String base64code   = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	public static int    splitLinesAt = 19 - 1; // 76/4 - 1;
+	
+	/** Encode the given byte[] with BASE64 ENCODING String */
+	static public String base64Encode(byte[] Bytes) {
+		if(Bytes == null) return "";
+			
+		StringBuilder Encoded = new StringBuilder();
+		
+		// Determine how many padding bytes to add to the output
+		int PaddingCount = (3 - (Bytes.length % 3)) % 3;
+		
+		try {
+			ByteArrayOutputStream BAOS = new ByteArrayOutputStream();
+			
+			// Write the original data
+			BAOS.write(Bytes);
+			// Write the padding-zero
+			for(int i = PaddingCount; --i >= 0; ) BAOS.write(0);
+
+			// Move to the working array
+			Bytes = BAOS.toByteArray();
+			BAOS.close();
+		} catch (Exception E) {}
+		
+		int c = 0;
+		// Process 3 bytes at a time, churning out 4 output bytes
+		// worry about CRLF insertions later
+		for (int i = 0; i < Bytes.length; i += 3) {
+			// I0            I1         I2
+			// 0101 01 - 01  0101-0101  01-01 0101
+			// F    C    3   F    F     C  3  F   
+			// 0101 01 + 01  0101+0101  01+01 0101
+			// B0        B1       B2       B3
+
+			int I0 = Bytes[i    ];
+			int I1 = Bytes[i + 1];
+			int I2 = Bytes[i + 2];
+			
+			int B0 = ((I0 & 0xFC) >> 2)                     ;
+			int B1 = ((I0 & 0x03) << 4) | ((I1 & 0xF0) >> 4);
+			int B2 = ((I1 & 0x0F) << 2) | ((I2 & 0xC0) >> 6);
+			int B3 =                       (I2 & 0x3F)      ;
+			
+			Encoded.append(base64code.charAt(B0))
+			       .append(base64code.charAt(B1))
+			       .append(base64code.charAt(B2))
+			       .append(base64code.charAt(B3));
+			
+			if(c == splitLinesAt) {
+				Encoded.append("\n");
+				c = 0;
+			} else c++;
+		}
+
+		// replace encoded padding nulls with "="
+		String Result = Encoded.substring(0, Encoded.length() - PaddingCount) + "==".substring(0, PaddingCount); 
+		return Result;
+	}
+
+	/** Decode the given BASE64-ENCODING String to byte[] */
+	static public byte[] Base64Decode(String BASE64) {
+		if((BASE64 == null) || (BASE64.length() == 0)) return new byte[0];
+		BASE64 = BASE64.trim();
+		
+		// Remove padding
+		int PaddingCount = 0;
+		if(     BASE64.charAt(BASE64.length() - 2) == '=') PaddingCount = 2;
+		else if(BASE64.charAt(BASE64.length() - 1) == '=') PaddingCount = 1;
+		BASE64 = BASE64.substring(0, BASE64.length() - PaddingCount) + "\0\0".substring(2 - PaddingCount);
+		
+		byte[] Bs = null;
+		try {
+			ByteArrayOutputStream BAOS = new ByteArrayOutputStream();
+
+			int c = 0;
+			for(int i = 0; i < BASE64.length(); i += 4) {
+				// B0       B1      B2      B3
+				// 010101 + 01 0101 0101 01 01 0101
+				// 3 F      3  F    3 C  3  3  F   
+				// 010101 + 01 0101-0101 01-01 0101
+				// I0          I1        I2
+				
+				int B0 = base64code.indexOf(BASE64.charAt(i    ));
+				int B1 = base64code.indexOf(BASE64.charAt(i + 1));
+				int B2 = base64code.indexOf(BASE64.charAt(i + 2));
+				int B3 = base64code.indexOf(BASE64.charAt(i + 3));
+				
+				int I0 = ((B0 & 0x3F) << 2) | ((B1 & 0x30) >> 4);
+				int I1 = ((B1 & 0x0F) << 4) | ((B2 & 0x3C) >> 2);
+				int I2 = ((B2 & 0x03) << 6) | ((B3 & 0x3F)     );
+				
+				BAOS.write(I0);
+				BAOS.write(I1);
+				BAOS.write(I2);
+				
+				if(c == splitLinesAt) {
+					i += 1;
+					c = 0;
+				} else c++;
+			}
+			
+			Bs = BAOS.toByteArray();
+			BAOS.close();
+		
+		}
+		catch (RuntimeException E) { throw E; }
+		catch (Exception E)        { throw new RuntimeException(E); }
+		
+		if(Bs == null) Bs = new byte[0];
+		else if(PaddingCount != 0){
+			// Cut the padding
+			byte[] NBs = new byte[Bs.length - PaddingCount];
+			System.arraycopy(Bs, 0, NBs, 0, NBs.length);
+			Bs = NBs;
+		}
+			
+		return Bs;
+	}
+}
@@ -0,0 +1,52 @@
+package net.nawaman.script.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Scope.Simple getValue(...) and setValue(...) with the given number of the variables in the scope */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeBenchmark {
+
+	@Param({ "1", "16", "256" })
+	public int VariableCount;
+
+	net.nawaman.script.Scope Scope;
+	String                   Name;
+	Integer                  Value = 42;
+
+	@Setup
+	public void setup() {
+		this.Scope = new net.nawaman.script.Scope.Simple();
+		for(int i = 0; i < this.VariableCount; i++)
+			this.Scope.newVariable("Var" + i, Integer.class, i);
+
+		// Use a new string so the lookup cannot be just an identity check
+		this.Name = new String("Var" + (this.VariableCount / 2));
+	}
+
+	@Benchmark
+	public Object getValue() {
+		return this.Scope.getValue(this.Name);
+	}
+
+	@Benchmark
+	public Object setValue() {
+		return this.Scope.setValue(this.Name, this.Value);
+	}
+}
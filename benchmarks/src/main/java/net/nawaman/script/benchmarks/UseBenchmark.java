@@ -0,0 +1,91 @@
+package net.nawaman.script.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import net.nawaman.script.Executable;
+import net.nawaman.script.Tools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tools.Use(...) of a `.ss` file.
+ *
+ * The compiled file already has the up-to-date compiled code so the executable is only loaded. The stale file is
+ *    rewritten with only the code before each invocation so the code is compiled and the file is saved every time. The
+ *    code of the stale file is different for each invocation so it is never taken from the compile cache of the engine.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UseBenchmark {
+
+	static final String Code = "// @Java: { function (N:int):int }\nint Sum = 0;\nfor(int i = 0; i < N; i++) Sum += i;\nreturn Sum;\n";
+
+	/** Returns the code with the given start of the sum (so it is compiled to a different class) */
+	static String CodeOf(int pStart) {
+		return Code.replace("int Sum = 0;", "int Sum = " + pStart + ";");
+	}
+
+	File Directory;
+	File CompiledFile;
+	File StaleFile;
+	int  StaleCount;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		this.Directory    = Files.createTempDirectory("simplescript-bench").toFile();
+		this.CompiledFile = new File(this.Directory, "compiled.ss");
+		this.StaleFile    = new File(this.Directory, "stale.ss");
+
+		Write(this.CompiledFile, Code);
+		Tools.Use(this.CompiledFile);
+	}
+
+	@Setup(Level.Invocation)
+	public void makeStale() throws IOException {
+		Write(this.StaleFile, CodeOf(++this.StaleCount));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		File[] Files = this.Directory.listFiles();
+		if(Files != null) {
+			for(File F : Files) F.delete();
+		}
+		this.Directory.delete();
+	}
+
+	static void Write(File pFile, String pText) throws IOException {
+		FileOutputStream FOS = new FileOutputStream(pFile);
+		try     { FOS.write(pText.getBytes("UTF-8")); }
+		finally { FOS.close();                       }
+	}
+
+	@Benchmark
+	public Executable compiled() throws Exception {
+		return Tools.Use(this.CompiledFile);
+	}
+
+	@Benchmark
+	public Executable stale() throws Exception {
+		return Tools.Use(this.StaleFile);
+	}
+}
@@ -0,0 +1,291 @@
+package net.nawaman.script;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.nawaman.script.java.JavaCompileCache;
+import net.nawaman.script.java.JavaEngine;
+
+/**
+ * Compiles codes (into compiled codes, scripts, functions and macros) in the background.
+ *
+ * Each compilation is a task executed by a fixed number of daemon threads; the result is given as a CompletableFuture
+ *    that completes exceptionally if the engine throws. As with ScriptExecutor, the number of the compilations that are
+ *    submitted but not yet done is limited and a submission blocks until one is done when the limit is reached.
+ *
+ * For an engine with a compile cache (JavaEngine with a non-zero cache capacity), a request that is the same as one
+ *    that is still being compiled (same engine, kind, signature, parameter names, code, frozen scope, frozen variables
+ *    and option) is coalesced with it: it waits for the first one and then creates its own executable (so each request
+ *    still gets its own instance) using the class that was just compiled. A coalesced request is still counted as a
+ *    pending compilation and is run by the compile threads; it fails with the same exception if the first one fails.
+ *    The requests with a problem container are never coalesced as the problems are reported to the container of the
+ *    compilation.
+ *
+ * The shared instance (see Instance) uses the number of threads and the maximum pending compilations of the system
+ *    properties `simplescript.compile.threads` (the number of processors by default) and
+ *    `simplescript.compile.pending` (256 by default).
+ **/
+public final class AsyncCompiler {
+
+	/** The system property of the number of the compile threads of the shared instance */
+	static public final String THREADS_PROPERTY = "simplescript.compile.threads";
+	/** The system property of the maximum number of the pending compilations of the shared instance */
+	static public final String PENDING_PROPERTY = "simplescript.compile.pending";
+
+	/** The default maximum number of the pending compilations */
+	static public final int DEFAULT_MAX_PENDING = 256;
+
+	/** The shared instance used by the asynchronous methods of ScriptEngine and ScriptManager */
+	static public final AsyncCompiler Instance = new AsyncCompiler(
+	                                                 IntProperty(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+	                                                 IntProperty(PENDING_PROPERTY, DEFAULT_MAX_PENDING));
+
+	static private int IntProperty(String pName, int pDefault) {
+		try {
+			int Value = Integer.parseInt(System.getProperty(pName, String.valueOf(pDefault)).trim());
+			return (Value <= 0) ? pDefault : Value;
+		} catch (NumberFormatException E) {
+			return pDefault;
+		}
+	}
+
+	/** Constructs an asynchronous compiler with the number of the compile threads and the maximum pending compilations */
+	public AsyncCompiler(int pThreads, int pMaxPending) {
+		if(pThreads    <= 0) throw new IllegalArgumentException("Invalid compile thread count: " + pThreads);
+		if(pMaxPending <= 0) throw new IllegalArgumentException("Invalid maximum pending compilations: " + pMaxPending);
+
+		final AtomicInteger Count = new AtomicInteger();
+		this.Executor = new ThreadPoolExecutor(pThreads, pThreads, 60, TimeUnit.SECONDS,
+		                    new LinkedBlockingQueue<Runnable>(),
+		                    new ThreadFactory() {
+		                        public Thread newThread(Runnable pRunnable) {
+		                            Thread Compiler = new Thread(pRunnable, "AsyncCompiler-" + Count.incrementAndGet());
+		                            Compiler.setDaemon(true);
+		                            return Compiler;
+		                        }
+		                    });
+		this.Executor.allowCoreThreadTimeOut(true);
+		this.MaxPending = pMaxPending;
+		this.Permits    = new Semaphore(pMaxPending);
+	}
+
+	private final ThreadPoolExecutor                           Executor;
+	private final int                                          MaxPending;
+	private final Semaphore                                    Permits;
+	private final ConcurrentHashMap<Key, CompletableFuture<?>> InFlight       = new ConcurrentHashMap<Key, CompletableFuture<?>>();
+	private final AtomicLong                                   CoalescedCount = new AtomicLong();
+
+	/** Returns the maximum number of the pending compilations */
+	public int getMaxPending() {
+		return this.MaxPending;
+	}
+
+	/** Returns the number of the compilations that are submitted but not yet done */
+	public int getPendingCount() {
+		return this.MaxPending - this.Permits.availablePermits();
+	}
+
+	/** Returns the number of the requests that are coalesced with another compilation */
+	public long getCoalescedCount() {
+		return this.CoalescedCount.get();
+	}
+
+	// Requests --------------------------------------------------------------------------------------------------------
+
+	/** Compiles a code using the engine */
+	public CompletableFuture<CompiledCode> compile(final ScriptEngine pEngine, final String pCode, final Scope pFrozen,
+			final String[] pFrozenVNames, final CompileOption pOption, final ProblemContainer pResult) {
+		return this.submit(
+			!IsCoalescable(pEngine, pResult) ? null : new Key(pEngine, "CompiledCode", null, null, pCode, pFrozen, pFrozenVNames, pOption),
+			new Task<CompiledCode>() {
+				public CompiledCode run() {
+					return pEngine.compile(pCode, pFrozen, pFrozenVNames, pOption, pResult);
+				}
+			});
+	}
+
+	/** Creates a new script using the engine */
+	public CompletableFuture<Script> newScript(final ScriptEngine pEngine, final String pCode, final Scope pFrozen,
+			final String[] pFrozenVNames, final CompileOption pOption, final ProblemContainer pResult) {
+		return this.submit(
+			!IsCoalescable(pEngine, pResult) ? null : new Key(pEngine, "Script", null, null, pCode, pFrozen, pFrozenVNames, pOption),
+			new Task<Script>() {
+				public Script run() {
+					return pEngine.newScript(pCode, pFrozen, pFrozenVNames, pOption, pResult);
+				}
+			});
+	}
+
+	/** Creates a new macro using the engine */
+	public CompletableFuture<Macro> newMacro(final ScriptEngine pEngine, final Signature pSignature,
+			final String[] pParamNames, final String pCode, final Scope pFrozen, final String[] pFrozenVNames,
+			final CompileOption pOption, final ProblemContainer pResult) {
+		return this.submit(
+			!IsCoalescable(pEngine, pResult) ? null : new Key(pEngine, "Macro", pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption),
+			new Task<Macro>() {
+				public Macro run() {
+					return pEngine.newMacro(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+				}
+			});
+	}
+
+	/** Creates a new function using the engine */
+	public CompletableFuture<Function> newFunction(final ScriptEngine pEngine, final Signature pSignature,
+			final String[] pParamNames, final String pCode, final Scope pFrozen, final String[] pFrozenVNames,
+			final CompileOption pOption, final ProblemContainer pResult) {
+		return this.submit(
+			!IsCoalescable(pEngine, pResult) ? null : new Key(pEngine, "Function", pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption),
+			new Task<Function>() {
+				public Function run() {
+					return pEngine.newFunction(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+				}
+			});
+	}
+
+	/** Checks if the request can be coalesced - only for an engine that caches the compilations and no problem container */
+	static private boolean IsCoalescable(ScriptEngine pEngine, ProblemContainer pResult) {
+		if((pResult != null) || !(pEngine instanceof JavaEngine)) return false;
+		JavaCompileCache Cache = ((JavaEngine)pEngine).getCompileCache();
+		return (Cache != null) && (Cache.getCapacity() > 0);
+	}
+
+	// Tasks -----------------------------------------------------------------------------------------------------------
+
+	/** A compilation */
+	static private interface Task<T> {
+		public T run();
+	}
+
+	/**
+	 * The identity of a request - the engine, the frozen scope and the option are compared by identity as they are not
+	 *    required to implement equals(...).
+	 **/
+	static private final class Key {
+		Key(ScriptEngine pEngine, String pKind, Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
+				String[] pFrozenVNames, CompileOption pOption) {
+			this.Engine       = pEngine;
+			this.Kind         = pKind;
+			this.TheSignature = pSignature;
+			this.ParamNames   = pParamNames;
+			this.Code         = pCode;
+			this.Frozen       = pFrozen;
+			this.FrozenVNames = pFrozenVNames;
+			this.Option       = pOption;
+			this.Hash         = Objects.hash(System.identityHashCode(pEngine), pKind, pSignature,
+			                                 (pSignature == null) ? null : pSignature.getName(), Arrays.hashCode(pParamNames),
+			                                 pCode, System.identityHashCode(pFrozen), Arrays.hashCode(pFrozenVNames),
+			                                 System.identityHashCode(pOption));
+		}
+
+		private final ScriptEngine  Engine;
+		private final String        Kind;
+		private final Signature     TheSignature;
+		private final String[]      ParamNames;
+		private final String        Code;
+		private final Scope         Frozen;
+		private final String[]      FrozenVNames;
+		private final CompileOption Option;
+		private final int           Hash;
+
+		/**{@inheritDoc}*/ @Override
+		public int hashCode() {
+			return this.Hash;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public boolean equals(Object pOther) {
+			if(this == pOther)            return true;
+			if(!(pOther instanceof Key)) return false;
+
+			Key K = (Key)pOther;
+			return (this.Hash   == K.Hash)   && (this.Engine == K.Engine) && (this.Frozen == K.Frozen)
+			    && (this.Option == K.Option) && this.Kind.equals(K.Kind)  && Objects.equals(this.Code, K.Code)
+			    && Objects.equals(this.TheSignature, K.TheSignature)
+			    && ((this.TheSignature == null) || Objects.equals(this.TheSignature.getName(), K.TheSignature.getName()))
+			    && Arrays.equals(this.ParamNames, K.ParamNames) && Arrays.equals(this.FrozenVNames, K.FrozenVNames);
+		}
+	}
+
+	/** Submits the task (or coalesces it with the same one that is being compiled) - waits for a permit if there are
+	 *     too many pending compilations */
+	private <T> CompletableFuture<T> submit(final Key pKey, final Task<T> pTask) {
+		final CompletableFuture<T> Future = new CompletableFuture<T>();
+		final CompletableFuture<?> Leader = (pKey == null) ? null : this.InFlight.putIfAbsent(pKey, Future);
+
+		try {
+			this.Permits.acquire();
+		} catch (InterruptedException E) {
+			Thread.currentThread().interrupt();
+			if(Leader == null) this.done(pKey, Future);
+			Future.completeExceptionally(E);
+			return Future;
+		}
+
+		if(Leader == null) {
+			this.execute(pKey, Future, pTask);
+			return Future;
+		}
+
+		// Creates its own executable after the leader is done (the permit is kept until then)
+		this.CoalescedCount.incrementAndGet();
+		Leader.whenComplete(new java.util.function.BiConsumer<Object, Throwable>() {
+			public void accept(Object pResult, Throwable pThrown) {
+				if(pThrown == null) {
+					AsyncCompiler.this.execute(null, Future, pTask);
+					return;
+				}
+				AsyncCompiler.this.Permits.release();
+				Future.completeExceptionally(((pThrown instanceof CompletionException) && (pThrown.getCause() != null))
+				                                 ? pThrown.getCause()
+				                                 : pThrown);
+			}
+		});
+		return Future;
+	}
+
+	/** Runs the task by a compile thread - the permit must already be acquired and it is released when it is done */
+	private <T> void execute(final Key pKey, final CompletableFuture<T> pFuture, final Task<T> pTask) {
+		try {
+			this.Executor.execute(new Runnable() {
+				public void run() {
+					try {
+						T Result = pTask.run();
+						AsyncCompiler.this.done(pKey, pFuture);
+						pFuture.complete(Result);
+					} catch (Throwable T) {
+						AsyncCompiler.this.done(pKey, pFuture);
+						pFuture.completeExceptionally(T);
+					} finally {
+						AsyncCompiler.this.Permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException E) {
+			this.Permits.release();
+			this.done(pKey, pFuture);
+			pFuture.completeExceptionally(E);
+		}
+	}
+
+	/** Removes the compilation from the ones in flight (so a later request starts a new compilation) */
+	private void done(Key pKey, CompletableFuture<?> pFuture) {
+		if(pKey != null) this.InFlight.remove(pKey, pFuture);
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return String.format("AsyncCompiler(threads: %d, pending: %d/%d, coalesced: %d)",
+		           this.Executor.getMaximumPoolSize(), this.getPendingCount(), this.MaxPending, this.getCoalescedCount());
+	}
+}
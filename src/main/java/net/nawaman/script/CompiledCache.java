@@ -0,0 +1,202 @@
+package net.nawaman.script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+
+/**
+ * A cache of compiled executables stored in a directory, separated from the script files.
+ *
+ * Each executable is kept in a file named by the SHA-256 digest of its name and its code (`<digest>.bin`). The file
+ *    holds a small header (magic word, version, digest and engine name) followed by the serialized executable (which
+ *    includes the byte code of its classes). Since the file name is derived from the code, a script stored in a
+ *    read-only place can still be loaded without a compilation and the same cache directory can be shared by many
+ *    processes.
+ *
+ * The default cache directory is `~/.simplescript/cache` and can be changed using the system property
+ *    `simplescript.cache.dir`. The default cache can be disabled by setting the system property `simplescript.cache`
+ *    to `false`.
+ **/
+public class CompiledCache {
+
+	/** The system property for the directory of the default cache */
+	static public final String CACHE_DIR_PROPERTY     = "simplescript.cache.dir";
+	/** The system property to enabled/disabled the default cache ("false" to disabled) */
+	static public final String CACHE_ENABLED_PROPERTY = "simplescript.cache";
+
+	// NOTE: Change the version when the format of the cache file changes so the old ones will be ignored.
+	/** The magic word of a cache file */
+	static public final int   MAGIC_WORD = 0x53534343; // "SSCC"
+	/** The version of the cache file format */
+	static public final short VERSION    = 1;
+
+	/** The extension of a cache file */
+	static public final String CACHE_FILE_EXTENSION = ".bin";
+
+	static private CompiledCache Default   = null;
+	static private boolean       IsDefault = false;
+
+	/** Returns the default cache or null if it is disabled or the cache directory is not usable */
+	static synchronized public CompiledCache GetDefault() {
+		if(IsDefault) return Default;
+		IsDefault = true;
+
+		if("false".equalsIgnoreCase(System.getProperty(CACHE_ENABLED_PROPERTY))) return null;
+
+		String DirName = System.getProperty(CACHE_DIR_PROPERTY);
+		File   Dir     = (DirName != null)
+		                     ? new File(DirName)
+		                     : new File(new File(System.getProperty("user.home"), ".simplescript"), "cache");
+
+		if(!Dir.isDirectory() && !Dir.mkdirs() && !Dir.isDirectory()) return null;
+
+		Default = new CompiledCache(Dir);
+		return Default;
+	}
+
+	/** Constructs a compiled cache using the given directory */
+	public CompiledCache(File pDirectory) {
+		if(pDirectory == null) throw new NullPointerException();
+		this.Directory = pDirectory;
+	}
+
+	final File Directory;
+
+	/** Returns the directory of this cache */
+	public File getDirectory() {
+		return this.Directory;
+	}
+
+	/** Returns the cache file of the executable of the given name and code */
+	public File getCacheFile(String Name, String Code) {
+		return new File(this.Directory, GetDigestText(Name, Code) + CACHE_FILE_EXTENSION);
+	}
+
+	/** Returns the cached executable of the given name and code or null if it is not cached (or the cache is broken) */
+	public Executable load(String Name, String Code) {
+		if(Code == null) return null;
+
+		String Digest = GetDigestText(Name, Code);
+		File   File   = new File(this.Directory, Digest + CACHE_FILE_EXTENSION);
+		if(!File.isFile()) return null;
+
+		byte[] Bytes = null;
+		DataInputStream DIS = null;
+		try {
+			DIS = new DataInputStream(new FileInputStream(File));
+
+			if(DIS.readInt()   != MAGIC_WORD)    return null;
+			if(DIS.readShort() != VERSION)       return null;
+			if(!Digest.equals(DIS.readUTF()))    return null;
+			DIS.readUTF();	// The engine name (for information only)
+
+			int Length = DIS.readInt();
+			if(Length < 0) return null;
+
+			Bytes = new byte[Length];
+			DIS.readFully(Bytes);
+
+		} catch (IOException E) {
+			return null;
+		} finally {
+			if(DIS != null) try { DIS.close(); } catch (IOException E) {}
+		}
+
+		return Tools.DeserializeExecutable(Bytes, Tools.GetDigestText(Code));
+	}
+
+	/**
+	 * Saves the executable of the given name and code into the cache. Returns false if the executable cannot be
+	 *    cached (such as, its engine is not compilable or the directory is not writable).
+	 **/
+	public boolean save(String Name, String Code, Executable Exec) {
+		if((Code == null) || (Exec == null)) return false;
+
+		ScriptEngine SE = Exec.getEngine();
+		if((SE == null) || !SE.isCompilable()) return false;
+
+		String Digest = GetDigestText(Name, Code);
+		byte[] Bytes  = Tools.SerializeExecutable(Exec, Tools.GetDigestText(Code));
+		if((Bytes == null) || (Bytes.length == 0)) return false;
+
+		File Temp = null;
+		try {
+			ByteArrayOutputStream BAOS = new ByteArrayOutputStream(Bytes.length + 128);
+			DataOutputStream      DOS  = new DataOutputStream(BAOS);
+			DOS.writeInt(MAGIC_WORD);
+			DOS.writeShort(VERSION);
+			DOS.writeUTF(Digest);
+			DOS.writeUTF(SE.getName());
+			DOS.writeInt(Bytes.length);
+			DOS.write(Bytes);
+			DOS.close();
+
+			// Write to a temporary file and then move it so other processes will never see a partial file
+			Temp = File.createTempFile(Digest, ".tmp", this.Directory);
+			FileOutputStream FOS = new FileOutputStream(Temp);
+			try     { FOS.write(BAOS.toByteArray()); }
+			finally { FOS.close();                    }
+
+			File Target = new File(this.Directory, Digest + CACHE_FILE_EXTENSION);
+			try {
+				Files.move(Temp.toPath(), Target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				    StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException E) {
+				Files.move(Temp.toPath(), Target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Temp = null;
+			return true;
+
+		} catch (IOException E) {
+			return false;
+		} finally {
+			if(Temp != null) Temp.delete();
+		}
+	}
+
+	/**
+	 * Returns the cached executable of the given name and code or compiles and caches it if it is not in the cache.
+	 *
+	 * The cache is only used with the default compile option (pOption is null) as the option is not a part of the key.
+	 **/
+	public Executable compile(String Name, String Code, CompileOption pOption, ProblemContainer pResult) {
+		Executable Exec = (pOption == null) ? this.load(Name, Code) : null;
+		
+		Metrics M = Metrics.GetInstance();
+		if(M.isEnabled() && (pOption == null)) M.cacheLookedUp("CompiledCache", (Exec != null));
+		if(Exec != null) return Exec;
+
+		Exec = Tools.CompileExecutable(Name, Code, pOption, pResult);
+		if((Exec != null) && (pOption == null)) this.save(Name, Code, Exec);
+
+		return Exec;
+	}
+
+	/** Removes all the cache files in the cache directory */
+	public void clear() {
+		File[] CFiles = this.Directory.listFiles();
+		if(CFiles == null) return;
+
+		for(File CFile : CFiles) {
+			if(CFile.getName().endsWith(CACHE_FILE_EXTENSION)) CFile.delete();
+		}
+	}
+
+	/** Returns the SHA-256 digest (as a hex text) of the name and the code */
+	static public String GetDigestText(String Name, String Code) {
+		MessageDigest MD     = Tools.NewDigest();
+		byte[]        Buffer = new byte[4*1024];
+		if(Name != null) Tools.UpdateDigest(MD, Name, 0, Name.length(), Buffer);
+		MD.update(new byte[] { 0, 0 });	// '\0' as the separator
+		if(Code != null) Tools.UpdateDigest(MD, Code, 0, Code.length(), Buffer);
+		return Tools.ToHexText(MD.digest());
+	}
+}
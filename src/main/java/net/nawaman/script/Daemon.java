@@ -0,0 +1,690 @@
+package net.nawaman.script;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A long-running SimpleScript process that runs the commands of Main for its clients.
+ *
+ * Starting a JVM, loading the engines, discovering the usepaths and warming javac take seconds for each command. The
+ *    daemon (`--daemon`) keeps all of them (together with the compile caches) in memory and runs each command sent by a
+ *    client (`--connect ...`) as if Main was run with the same arguments. The standard input, output and error of the
+ *    command are forwarded from and to the client and the exit code of the command is the exit code of the client.
+ *
+ * The daemon listens at a Unix-domain socket (see GetDefaultSocketFile()) when the JVM supports it (Java 16 or later).
+ *    Otherwise, it listens at a loopback TCP port and the socket file is a regular file (readable only by the owner)
+ *    with the port and a secret token the clients must send.
+ *
+ * The file names given to `--run` and `--compile` are resolved against the working directory of the client.
+ **/
+public class Daemon implements Closeable {
+
+	/** The system property of the socket file */
+	static public final String SOCKET_PROPERTY = "simplescript.daemon.socket";
+
+	static final int  MAGIC        = 0x53534430;	// "SSD0"
+	static final byte FRAME_STDIN  = 'I';
+	static final byte FRAME_STDOUT = 'O';
+	static final byte FRAME_STDERR = 'E';
+	static final byte FRAME_EXIT   = 'X';
+
+	static final String TCP_PREFIX = "tcp:";
+
+	/** Returns the default socket file (from the system property or `~/.simplescript/daemon.sock`) */
+	static public File GetDefaultSocketFile() {
+		String Path = System.getProperty(SOCKET_PROPERTY);
+		if((Path != null) && (Path.length() != 0)) return new File(Path);
+		return new File(new File(System.getProperty("user.home"), ".simplescript"), "daemon.sock");
+	}
+
+	/** Constructs a daemon that will listen at the socket file */
+	public Daemon(File pSocketFile) {
+		if(pSocketFile == null) throw new NullPointerException("The socket file cannot be null.");
+		this.SocketFile = pSocketFile.getAbsoluteFile();
+	}
+
+	private final    File            SocketFile;
+	private volatile Listener        Listener = null;
+	private volatile boolean         IsClosed = false;
+	private final    ExecutorService Workers  = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger Count = new AtomicInteger();
+		public Thread newThread(Runnable pRunnable) {
+			Thread Worker = new Thread(pRunnable, "SimpleScript-Daemon-" + Count.incrementAndGet());
+			Worker.setDaemon(true);
+			return Worker;
+		}
+	});
+
+	/** Returns the socket file of this daemon */
+	public File getSocketFile() {
+		return this.SocketFile;
+	}
+
+	// Server ----------------------------------------------------------------------------------------------------------
+
+	/** Starts listening and runs the commands of the clients until this daemon is closed (blocks) */
+	public void serve() throws IOException {
+		this.start();
+
+		Listener L = this.Listener;
+		while(!this.IsClosed) {
+			final Connection C;
+			try {
+				C = L.accept();
+			} catch (IOException E) {
+				if(this.IsClosed) break;
+				throw E;
+			}
+			this.Workers.execute(new Runnable() {
+				public void run() {
+					Daemon.this.handle(C);
+				}
+			});
+		}
+	}
+
+	/** Prepares the socket file, the standard streams and the engines */
+	private synchronized void start() throws IOException {
+		if(this.Listener != null) throw new IllegalStateException("The daemon is already started.");
+
+		File Dir = this.SocketFile.getParentFile();
+		if((Dir != null) && !Dir.exists()) {
+			if(!Dir.mkdirs()) throw new IOException("Unable to create the directory: " + Dir);
+			SetOwnerOnly(Dir.toPath(), true);
+		}
+
+		// Another daemon may be using the socket file; otherwise it is left from a daemon that was killed
+		if(this.SocketFile.exists()) {
+			if(IsRunning(this.SocketFile)) throw new IOException("A daemon is already running at " + this.SocketFile);
+			Files.deleteIfExists(this.SocketFile.toPath());
+		}
+
+		this.Listener = Listener.open(this.SocketFile);
+		Runtime.getRuntime().addShutdownHook(new Thread("SimpleScript-Daemon-Cleanup") {
+			@Override public void run() {
+				Daemon.this.close();
+			}
+		});
+
+		ThreadStreams.install();
+		Warmup();
+	}
+
+	/** Loads the engines and compiles a code so javac is warm when the first command comes */
+	static private void Warmup() {
+		try {
+			ScriptEngine Engine = ScriptManager.GetEngineFromCode("// @Java:\nreturn null;");
+			if(Engine != null) Engine.eval("// @Java:\nreturn null;", Engine.newScope(), null);
+		} catch (Throwable T) {}
+	}
+
+	/** Runs the command of the connection */
+	private void handle(Connection C) {
+		try {
+			DataInputStream  DIS = new DataInputStream (new BufferedInputStream (C.In));
+			DataOutputStream DOS = new DataOutputStream(new BufferedOutputStream(C.Out));
+
+			if(DIS.readInt() != MAGIC) return;
+			if(!MessageDigest.isEqual(ReadText(DIS).getBytes(StandardCharsets.UTF_8),
+			                          this.Listener.Token.getBytes(StandardCharsets.UTF_8)))
+				return;
+
+			String   WorkDir = ReadText(DIS);
+			String[] Args    = new String[DIS.readInt()];
+			for(int i = 0; i < Args.length; i++) Args[i] = ReadText(DIS);
+
+			PrintStream Out = new PrintStream(new FrameOutputStream(DOS, FRAME_STDOUT), true);
+			PrintStream Err = new PrintStream(new FrameOutputStream(DOS, FRAME_STDERR), true);
+			int         Code;
+			ThreadStreams.set(new FrameInputStream(DIS), Out, Err);
+			try {
+				Code = Main.Execute(ResolveArgs(new File(WorkDir), Args));
+			} catch (Throwable T) {
+				T.printStackTrace(Err);
+				Code = 1;
+			} finally {
+				ThreadStreams.clear();
+				Out.flush();
+				Err.flush();
+			}
+
+			synchronized(DOS) {
+				DOS.writeByte(FRAME_EXIT);
+				DOS.writeInt(Code);
+				DOS.flush();
+			}
+
+			// Wait for the client to close so the unread input never resets the connection before the exit code is read
+			C.shutdownOutput();
+			while(DIS.read() != -1);
+
+		} catch (IOException E) {
+		} finally {
+			C.close();
+		}
+	}
+
+	/** Returns the arguments with the file name of `--run` and `--compile` resolved against the working directory */
+	static String[] ResolveArgs(File pWorkDir, String[] pArgs) {
+		String[] Args = pArgs.clone();
+		for(int i = 0; i < (Args.length - 1); i++) {
+			if(!"--run".equals(Args[i]) && !"--compile".equals(Args[i])) continue;
+
+			File File = ResolveFile(pWorkDir, Args[i + 1]);
+			if(File != null) Args[i + 1] = File.getAbsolutePath();
+			break;
+		}
+		return Args;
+	}
+
+	/** Returns the file of the name (with or without its `.ss*` extension) in the directory or null if it is not found */
+	static private File ResolveFile(File pWorkDir, String pName) {
+		File File = new File(pName);
+		if(!File.isAbsolute()) File = new File(pWorkDir, pName);
+		if(File.isFile()) return File;
+
+		File   Dir   = File.getParentFile();
+		File[] Files = (Dir == null) ? null : Dir.listFiles();
+		if(Files == null) return null;
+
+		Pattern SSFile = Pattern.compile(Pattern.quote(File.getName()) + "\\.ss[a-zA-Z_]*");
+		for(File F : Files) {
+			if(F.isFile() && SSFile.matcher(F.getName()).matches()) return F;
+		}
+		return null;
+	}
+
+	/** Stops listening and removes the socket file */
+	public void close() {
+		if(this.IsClosed) return;
+		this.IsClosed = true;
+
+		Listener L = this.Listener;
+		if(L != null) L.close();
+		this.Workers.shutdown();
+		this.SocketFile.delete();
+	}
+
+	// Client ----------------------------------------------------------------------------------------------------------
+
+	/** Checks if a daemon is running at the socket file */
+	static public boolean IsRunning(File pSocketFile) {
+		if((pSocketFile == null) || !pSocketFile.exists()) return false;
+		try {
+			Connection.open(pSocketFile).close();
+			return true;
+		} catch (IOException E) {
+			return false;
+		}
+	}
+
+	/**
+	 * Sends the command (the arguments of Main) to the daemon at the socket file and returns its exit code. The input is
+	 *    forwarded to the command (nothing is forwarded if pIn is null) and its output and error are written to pOut
+	 *    and pErr. An IOException is thrown if there is no daemon at the socket file.
+	 **/
+	static public int Connect(File pSocketFile, String[] pArgs, InputStream pIn, OutputStream pOut, OutputStream pErr)
+			throws IOException {
+		final Connection C = Connection.open(pSocketFile);
+		try {
+			final DataOutputStream DOS = new DataOutputStream(new BufferedOutputStream(C.Out));
+			DataInputStream        DIS = new DataInputStream (new BufferedInputStream (C.In));
+
+			DOS.writeInt(MAGIC);
+			WriteText(DOS, C.Token);
+			WriteText(DOS, new File(".").getAbsoluteFile().getParent());
+			DOS.writeInt(pArgs.length);
+			for(String Arg : pArgs) WriteText(DOS, Arg);
+			DOS.flush();
+
+			if(pIn != null) StartInputPump(pIn, DOS);
+
+			while(true) {
+				int Type = DIS.read();
+				if(Type == -1)         throw new EOFException("The daemon closed the connection.");
+				if(Type == FRAME_EXIT) return DIS.readInt();
+
+				byte[] Bytes = new byte[DIS.readInt()];
+				DIS.readFully(Bytes);
+
+				OutputStream OS = (Type == FRAME_STDERR) ? pErr : pOut;
+				OS.write(Bytes);
+				OS.flush();
+			}
+		} finally {
+			C.close();
+		}
+	}
+
+	/** Forwards the input to the daemon (in a daemon thread as it may block until the process exits) */
+	static private void StartInputPump(final InputStream pIn, final DataOutputStream pDOS) {
+		Thread Pump = new Thread("SimpleScript-Daemon-Input") {
+			@Override public void run() {
+				byte[] Buffer = new byte[8*1024];
+				try {
+					int Count;
+					while((Count = pIn.read(Buffer)) != -1) {
+						if(Count == 0) continue;
+						pDOS.writeByte(FRAME_STDIN);
+						pDOS.writeInt(Count);
+						pDOS.write(Buffer, 0, Count);
+						pDOS.flush();
+					}
+					pDOS.writeByte(FRAME_STDIN);
+					pDOS.writeInt(0);
+					pDOS.flush();
+				} catch (IOException E) {}
+			}
+		};
+		Pump.setDaemon(true);
+		Pump.start();
+	}
+
+	// Protocol --------------------------------------------------------------------------------------------------------
+
+	static void WriteText(DataOutputStream pDOS, String pText) throws IOException {
+		byte[] Bytes = pText.getBytes(StandardCharsets.UTF_8);
+		pDOS.writeInt(Bytes.length);
+		pDOS.write(Bytes);
+	}
+
+	static String ReadText(DataInputStream pDIS) throws IOException {
+		int Length = pDIS.readInt();
+		if(Length < 0) throw new IOException("Invalid text length: " + Length);
+
+		byte[] Bytes = new byte[Length];
+		pDIS.readFully(Bytes);
+		return new String(Bytes, StandardCharsets.UTF_8);
+	}
+
+	/** The output of a command sent to the client as frames */
+	static private final class FrameOutputStream extends OutputStream {
+		FrameOutputStream(DataOutputStream pDOS, byte pType) {
+			this.DOS  = pDOS;
+			this.Type = pType;
+		}
+
+		private final DataOutputStream DOS;
+		private final byte             Type;
+
+		/**{@inheritDoc}*/ @Override
+		public void write(int pByte) throws IOException {
+			this.write(new byte[] { (byte)pByte }, 0, 1);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void write(byte[] pBytes, int pOffset, int pLength) throws IOException {
+			if(pLength == 0) return;
+			synchronized(this.DOS) {
+				this.DOS.writeByte(this.Type);
+				this.DOS.writeInt(pLength);
+				this.DOS.write(pBytes, pOffset, pLength);
+			}
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void flush() throws IOException {
+			synchronized(this.DOS) {
+				this.DOS.flush();
+			}
+		}
+	}
+
+	/** The input of a command read from the client frames (only when the command reads it) */
+	static private final class FrameInputStream extends InputStream {
+		FrameInputStream(DataInputStream pDIS) {
+			this.DIS = pDIS;
+		}
+
+		private final DataInputStream DIS;
+		private       int             Remain = 0;
+		private       boolean         IsEnd  = false;
+
+		/** Reads the next frame header if the current frame is done - returns false at the end of the input */
+		private boolean ensureFrame() throws IOException {
+			while(!this.IsEnd && (this.Remain == 0)) {
+				int Type = this.DIS.read();
+				if((Type == -1) || (Type != FRAME_STDIN)) { this.IsEnd = true; break; }
+
+				this.Remain = this.DIS.readInt();
+				if(this.Remain <= 0) { this.Remain = 0; this.IsEnd = true; }
+			}
+			return !this.IsEnd || (this.Remain != 0);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public synchronized int read() throws IOException {
+			if(!this.ensureFrame()) return -1;
+			this.Remain--;
+			return this.DIS.read();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public synchronized int read(byte[] pBytes, int pOffset, int pLength) throws IOException {
+			if(pLength == 0)         return 0;
+			if(!this.ensureFrame())  return -1;
+
+			int Count = this.DIS.read(pBytes, pOffset, Math.min(pLength, this.Remain));
+			if(Count == -1) { this.IsEnd = true; this.Remain = 0; return -1; }
+			this.Remain -= Count;
+			return Count;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public synchronized int available() throws IOException {
+			return Math.min(this.Remain, this.DIS.available());
+		}
+	}
+
+	// Standard streams ------------------------------------------------------------------------------------------------
+
+	/** Returns the standard streams of the command run by the current thread (null if there is none) */
+	static Object[] GetCommandStreams() {
+		return ThreadStreams.get();
+	}
+
+	/**
+	 * Uses the standard streams of a command (see GetCommandStreams()) for the current thread (null to use the
+	 *    original streams) - for a thread that does a part of the command for the thread running it (see ExecutionLimit).
+	 **/
+	static void SetCommandStreams(Object[] pStreams) {
+		if(pStreams == null) ThreadStreams.clear();
+		else                 ThreadStreams.set(pStreams);
+	}
+
+	/**
+	 * The standard streams of the commands. System.in, System.out and System.err are replaced (once) with the streams
+	 *    that forward to the streams of the command run by the current thread or to the original streams for other
+	 *    threads.
+	 *
+	 * The streams are not inherited by the threads started by a command as many of those threads (e.g., the workers of
+	 *    a thread pool) outlive the command; such threads use the original streams unless they are given the streams of
+	 *    the command (see SetCommandStreams(...)).
+	 **/
+	static private final class ThreadStreams {
+
+		static private final ThreadLocal<Object[]> Current = new ThreadLocal<Object[]>();
+
+		static private boolean IsInstalled = false;
+
+		static synchronized void install() {
+			if(IsInstalled) return;
+			IsInstalled = true;
+
+			final InputStream OrgIn  = System.in;
+			final PrintStream OrgOut = System.out;
+			final PrintStream OrgErr = System.err;
+			System.setIn(new InputStream() {
+				private InputStream target() {
+					Object[] Streams = Current.get();
+					return (Streams == null) ? OrgIn : (InputStream)Streams[0];
+				}
+				@Override public int read()                         throws IOException { return this.target().read();       }
+				@Override public int read(byte[] pBs, int pO, int pL) throws IOException { return this.target().read(pBs, pO, pL); }
+				@Override public int available()                    throws IOException { return this.target().available(); }
+			});
+			System.setOut(new PrintStream(new Dispatcher(OrgOut, 1), true));
+			System.setErr(new PrintStream(new Dispatcher(OrgErr, 2), true));
+		}
+
+		static void set(InputStream pIn, PrintStream pOut, PrintStream pErr) {
+			Current.set(new Object[] { pIn, pOut, pErr });
+		}
+
+		static void set(Object[] pStreams) {
+			Current.set(pStreams);
+		}
+
+		static Object[] get() {
+			return Current.get();
+		}
+
+		static void clear() {
+			Current.remove();
+		}
+
+		/** The output stream that forwards to the stream of the current thread */
+		static private final class Dispatcher extends OutputStream {
+			Dispatcher(PrintStream pOriginal, int pIndex) {
+				this.Original = pOriginal;
+				this.Index    = pIndex;
+			}
+
+			private final PrintStream Original;
+			private final int         Index;
+
+			private OutputStream target() {
+				Object[] Streams = Current.get();
+				return (Streams == null) ? this.Original : (OutputStream)Streams[this.Index];
+			}
+
+			@Override public void write(int pByte)                       throws IOException { this.target().write(pByte);        }
+			@Override public void write(byte[] pBs, int pOffset, int pL) throws IOException { this.target().write(pBs, pOffset, pL); }
+			@Override public void flush()                                throws IOException { this.target().flush();             }
+		}
+	}
+
+	// Transport -------------------------------------------------------------------------------------------------------
+
+	/** Returns the protocol family of Unix-domain sockets or null if it is not supported (before Java 16) */
+	static private ProtocolFamily UnixFamily() {
+		try                 { return StandardProtocolFamily.valueOf("UNIX"); }
+		catch (Exception E) { return null;                                  }
+	}
+
+	/** Returns the Unix-domain socket address of the file */
+	static private SocketAddress UnixAddress(File pFile) throws IOException {
+		try {
+			return (SocketAddress)Class.forName("java.net.UnixDomainSocketAddress")
+			           .getMethod("of", Path.class)
+			           .invoke(null, pFile.toPath());
+		} catch (Exception E) {
+			throw new IOException("Unix-domain sockets are not supported.", E);
+		}
+	}
+
+	/**
+	 * Makes the file (or directory) accessible only by its owner - returns false if it fails on a file system that
+	 *    supports POSIX permissions (nothing is done for the ones that do not).
+	 **/
+	static private boolean SetOwnerOnly(Path pPath, boolean pIsDirectory) {
+		try {
+			Files.setPosixFilePermissions(pPath, PosixFilePermissions.fromString(pIsDirectory ? "rwx------" : "rw-------"));
+			return true;
+		} catch (UnsupportedOperationException E) {
+			return true;
+		} catch (Exception E) {
+			return false;
+		}
+	}
+
+	/** A connection between the daemon and a client */
+	static private final class Connection implements Closeable {
+		Connection(InputStream pIn, OutputStream pOut, Closeable pSocket, String pToken) {
+			this.In     = pIn;
+			this.Out    = pOut;
+			this.Socket = pSocket;
+			this.Token  = pToken;
+		}
+
+		final InputStream  In;
+		final OutputStream Out;
+		final Closeable    Socket;
+		final String       Token;
+
+		/** Connects to the daemon at the socket file */
+		static Connection open(File pSocketFile) throws IOException {
+			if(!pSocketFile.exists()) throw new IOException("No daemon is running at " + pSocketFile);
+
+			if(Files.isRegularFile(pSocketFile.toPath())) {
+				// Loopback TCP: "tcp:<port>:<token>"
+				String   Text  = new String(Files.readAllBytes(pSocketFile.toPath()), StandardCharsets.UTF_8).trim();
+				String[] Parts = Text.startsWith(TCP_PREFIX) ? Text.substring(TCP_PREFIX.length()).split(":", 2) : null;
+				if((Parts == null) || (Parts.length != 2))
+					throw new IOException("Invalid daemon socket file: " + pSocketFile);
+
+				Socket S = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(Parts[0]));
+				return new Connection(S.getInputStream(), S.getOutputStream(), S, Parts[1]);
+			}
+
+			ProtocolFamily Family = UnixFamily();
+			if(Family == null) throw new IOException("Unix-domain sockets are not supported.");
+			try {
+				SocketChannel SC = (SocketChannel)SocketChannel.class.getMethod("open", ProtocolFamily.class)
+				                                      .invoke(null, Family);
+				try {
+					SC.connect(UnixAddress(pSocketFile));
+				} catch (IOException E) {
+					SC.close();
+					throw E;
+				}
+				return Connection.of(SC);
+			} catch (IOException E) {
+				throw E;
+			} catch (Exception E) {
+				throw new IOException("Unable to connect to the daemon at " + pSocketFile, E);
+			}
+		}
+
+		/**
+		 * Creates a connection of the socket channel. The streams read and write the channel directly (unlike the ones
+		 *    from Channels that share a lock) so the input can be read while the output is being written.
+		 **/
+		static Connection of(final SocketChannel pChannel) {
+			InputStream In = new InputStream() {
+				@Override public int read() throws IOException {
+					byte[] Byte = new byte[1];
+					return (this.read(Byte, 0, 1) == -1) ? -1 : (Byte[0] & 0xFF);
+				}
+				@Override public int read(byte[] pBytes, int pOffset, int pLength) throws IOException {
+					if(pLength == 0) return 0;
+					return pChannel.read(ByteBuffer.wrap(pBytes, pOffset, pLength));
+				}
+			};
+			OutputStream Out = new OutputStream() {
+				@Override public void write(int pByte) throws IOException {
+					this.write(new byte[] { (byte)pByte }, 0, 1);
+				}
+				@Override public void write(byte[] pBytes, int pOffset, int pLength) throws IOException {
+					ByteBuffer Buffer = ByteBuffer.wrap(pBytes, pOffset, pLength);
+					while(Buffer.hasRemaining()) pChannel.write(Buffer);
+				}
+			};
+			return new Connection(In, Out, pChannel, "");
+		}
+
+		/** Stops sending to the other side */
+		void shutdownOutput() {
+			try {
+				if(this.Socket instanceof Socket)        ((Socket)       this.Socket).shutdownOutput();
+				if(this.Socket instanceof SocketChannel) ((SocketChannel)this.Socket).shutdownOutput();
+			} catch (IOException E) {}
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void close() {
+			try { this.Socket.close(); } catch (IOException E) {}
+		}
+	}
+
+	/** The listening socket of the daemon */
+	static private final class Listener implements Closeable {
+		Listener(ServerSocketChannel pChannel, ServerSocket pSocket, String pToken) {
+			this.Channel = pChannel;
+			this.Socket  = pSocket;
+			this.Token   = pToken;
+		}
+
+		final ServerSocketChannel Channel;
+		final ServerSocket        Socket;
+		final String              Token;
+
+		/** Listens at the socket file (a Unix-domain socket if it is supported or a loopback TCP port otherwise) */
+		static Listener open(File pSocketFile) throws IOException {
+			ProtocolFamily Family = UnixFamily();
+			if(Family != null) {
+				try {
+					ServerSocketChannel SSC = (ServerSocketChannel)ServerSocketChannel.class
+					                              .getMethod("open", ProtocolFamily.class)
+					                              .invoke(null, Family);
+					SSC.bind(UnixAddress(pSocketFile));
+					
+					// There is no token so only the owner may connect
+					if(!SetOwnerOnly(pSocketFile.toPath(), false)) {
+						SSC.close();
+						Files.deleteIfExists(pSocketFile.toPath());
+						throw new IOException("Unable to restrict the permissions of the socket file: " + pSocketFile);
+					}
+					return new Listener(SSC, null, "");
+				} catch (IOException E) {
+					throw E;
+				} catch (Exception E) {
+					// Fall back to TCP
+				}
+			}
+
+			byte[] Bytes = new byte[16];
+			new SecureRandom().nextBytes(Bytes);
+			String Token = Tools.ToHexText(Bytes);
+
+			ServerSocket SS = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			try {
+				Path Path = pSocketFile.toPath();
+				Files.write(Path, new byte[0]);
+				SetOwnerOnly(Path, false);
+				Files.write(Path, (TCP_PREFIX + SS.getLocalPort() + ":" + Token).getBytes(StandardCharsets.UTF_8));
+			} catch (IOException E) {
+				SS.close();
+				throw E;
+			}
+			return new Listener(null, SS, Token);
+		}
+
+		/** Waits for a new connection */
+		Connection accept() throws IOException {
+			if(this.Channel != null) {
+				SocketChannel SC = this.Channel.accept();
+				return Connection.of(SC);
+			}
+			Socket S = this.Socket.accept();
+			return new Connection(S.getInputStream(), S.getOutputStream(), S, this.Token);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void close() {
+			try {
+				if(this.Channel != null) this.Channel.close();
+				if(this.Socket  != null) this.Socket .close();
+			} catch (IOException E) {}
+		}
+	}
+}
@@ -57,10 +57,16 @@ public class ExecutableHolder extends UsableHolder<Executable> {
 			// Load the Code
 			String Text = Utils.loadTextFromStream(new ByteArrayInputStream(this.Storage.load()));
 			
-			boolean isWritable = this.Storage.isWritable();
+			boolean       isWritable = this.Storage.isWritable();
+			CompiledCache Cache      = isWritable ? null : CompiledCache.GetDefault();
+			
+			// Re-compiled (using the cache if the compile result cannot be written back)
+			ExtractResult EResult = Tools.ExtractExecutableFromCompiledText(this.Storage.name(), Text, null, null, !isWritable, (Cache == null), false);
+			if((Cache != null) && (EResult.IsUpdated || EResult.IsAltered)) {
+				this.Exec = Cache.compile(this.Storage.name(), EResult.Code, null, null);
+				return this.Exec;
+			}
 			
-			// Re-compiled			
-			ExtractResult EResult = Tools.ExtractExecutableFromCompiledText(this.Storage.name(), Text, null, null, !isWritable, true, false);
 			if(EResult.IsUpdated || EResult.IsAltered) {
 				if(isWritable) {
 					// Save the compile result back
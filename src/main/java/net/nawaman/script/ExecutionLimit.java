@@ -0,0 +1,283 @@
+package net.nawaman.script;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The time budget of an execution.
+ *
+ * An execution with a limit is run by a worker thread while the calling thread waits for it. When the wall-clock time
+ *    or the CPU time of the worker is over the budget, the execution is cancelled: the worker is interrupted and an
+ *    ExceededException is thrown to the caller. The cancellation is cooperative - the code being run stops when it
+ *    checks for it (an interruptible call or checkpoint()) - so a code that never checks keeps its worker thread busy
+ *    until it returns.
+ *
+ * A Java code can be compiled with a checkpoint at the beginning of each loop body (see
+ *    JavaCompileOption.setCheckpointInjected(...)) so its loops can be cancelled.
+ **/
+public class ExecutionLimit {
+
+	/** No limit */
+	static public final long NO_LIMIT = 0;
+
+	/** The interval the CPU time of the worker is checked (in milliseconds) */
+	static public final long CPU_CHECK_INTERVAL = 10;
+
+	/** Constructs an execution limit - the wall time and the CPU time are in milliseconds (0 for no limit) */
+	public ExecutionLimit(long pWallTime, long pCPUTime) {
+		if(pWallTime < 0) throw new IllegalArgumentException("Invalid wall time limit: " + pWallTime);
+		if(pCPUTime  < 0) throw new IllegalArgumentException("Invalid CPU time limit: "  + pCPUTime);
+		this.WallTime = pWallTime;
+		this.CPUTime  = pCPUTime;
+	}
+
+	private final long WallTime;
+	private final long CPUTime;
+
+	/** Returns the wall-clock time limit in milliseconds (0 for no limit) */
+	public long getWallTime() {
+		return this.WallTime;
+	}
+
+	/** Returns the CPU time limit in milliseconds (0 for no limit) */
+	public long getCPUTime() {
+		return this.CPUTime;
+	}
+
+	/** Checks if this limit actually limits anything */
+	public boolean isLimited() {
+		return (this.WallTime != NO_LIMIT) || (this.CPUTime != NO_LIMIT);
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return String.format("ExecutionLimit(wall: %dms, cpu: %dms)", this.WallTime, this.CPUTime);
+	}
+
+	// Running ---------------------------------------------------------------------------------------------------------
+
+	/** Runs the script with the scope within this limit */
+	public Object run(final Script pScript, final Scope pScope) {
+		return this.run(new Callable<Object>() {
+			public Object call() { return pScript.run(pScope); }
+		});
+	}
+
+	/** Runs the function with the parameters within this limit */
+	public Object run(final Function pFunction, final Object ... pParams) {
+		return this.run(new Callable<Object>() {
+			public Object call() { return pFunction.run(pParams); }
+		});
+	}
+
+	/** Runs the macro with the scope and the parameters within this limit */
+	public Object run(final Macro pMacro, final Scope pScope, final Object ... pParams) {
+		return this.run(new Callable<Object>() {
+			public Object call() { return pMacro.run(pScope, pParams); }
+		});
+	}
+
+	/** Runs the task within this limit */
+	public <T> T run(final Callable<T> pTask) {
+		if(!this.isLimited()) return Call(pTask);
+
+		final Token         Token   = new Token();
+		final Object[]      Streams = Daemon.GetCommandStreams();	// The worker writes to the streams of the caller
+		final FutureTask<T> Task    = new FutureTask<T>(new Callable<T>() {
+			public T call() throws Exception {
+				// The worker may be reused so its CPU time is counted from when the execution starts
+				if(ThreadMX.isThreadCpuTimeSupported()) Token.CPUStart = ThreadMX.getCurrentThreadCpuTime();
+				Token.Worker = Thread.currentThread();
+				Current.set(Token);
+				Daemon.SetCommandStreams(Streams);
+				try     { return pTask.call(); }
+				finally {
+					Daemon.SetCommandStreams(null);
+					Current.remove();
+					Token.done();
+				}
+			}
+		});
+		Workers.execute(Task);
+
+		long    WallEnd = (this.WallTime == NO_LIMIT)
+		                      ? Long.MAX_VALUE
+		                      : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.WallTime);
+		long    CPUTime = TimeUnit.MILLISECONDS.toNanos(this.CPUTime);
+		boolean IsCPU   = (this.CPUTime != NO_LIMIT) && ThreadMX.isThreadCpuTimeSupported();
+		while(true) {
+			long Now  = System.nanoTime();
+			long Wait = WallEnd - Now;
+			if(IsCPU) Wait = Math.min(Wait, TimeUnit.MILLISECONDS.toNanos(CPU_CHECK_INTERVAL));
+			try {
+				return Task.get(Math.max(Wait, 0), TimeUnit.NANOSECONDS);
+
+			} catch (TimeoutException E) {
+				if(System.nanoTime() >= WallEnd) throw Token.cancel(Task, Kind.WallTime, this.WallTime);
+
+				Thread Worker = Token.Worker;
+				if(IsCPU && (Worker != null)) {
+					long Used = ThreadMX.getThreadCpuTime(Worker.getId());
+					if((Used != -1) && ((Used - Token.CPUStart) >= CPUTime))
+						throw Token.cancel(Task, Kind.CPUTime, this.CPUTime);
+				}
+
+			} catch (InterruptedException E) {
+				// The caller is interrupted so the execution is cancelled
+				Token.cancel(Task, null, 0);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for the execution.", E);
+
+			} catch (ExecutionException E) {
+				Throwable Cause = E.getCause();
+				if(Cause instanceof RuntimeException) throw (RuntimeException)Cause;
+				if(Cause instanceof Error)            throw (Error)Cause;
+				throw new RuntimeException(Cause);
+			}
+		}
+	}
+
+	/** Calls the task in the current thread */
+	static private <T> T Call(Callable<T> pTask) {
+		try                         { return pTask.call();            }
+		catch (RuntimeException E)  { throw E;                        }
+		catch (Exception E)         { throw new RuntimeException(E);  }
+	}
+
+	// Cancellation ----------------------------------------------------------------------------------------------------
+
+	/**
+	 * Checks if the execution in the current thread has been cancelled and throws an ExceededException if it was. This
+	 *    method is cheap when there is no cancelled execution that is still running (only a volatile read).
+	 **/
+	static public void checkpoint() {
+		if(PendingCancels.get() == 0) return;
+
+		Token Token = Current.get();
+		if((Token != null) && Token.IsCancelled) throw Token.newException();
+	}
+
+	/** Returns the number of the executions that are cancelled since the JVM started */
+	static public long getCancelCount() {
+		return CancelCount.get();
+	}
+
+	/** Returns the number of the executions that are over their wall-clock time since the JVM started */
+	static public long getWallTimeOverrunCount() {
+		return WallTimeOverrunCount.get();
+	}
+
+	/** Returns the number of the executions that are over their CPU time since the JVM started */
+	static public long getCPUTimeOverrunCount() {
+		return CPUTimeOverrunCount.get();
+	}
+
+	/** Returns the number of the cancelled executions whose code is still running (has not reached a checkpoint) */
+	static public int getPendingCancelCount() {
+		return PendingCancels.get();
+	}
+
+	/** The kind of the limit */
+	static public enum Kind { WallTime, CPUTime }
+
+	/** An exception thrown when an execution is over its limit */
+	static public class ExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = -3312094820537742915L;
+
+		ExceededException(Kind pKind, long pLimit) {
+			super((pKind == null)
+			          ? "The execution is cancelled."
+			          : "The execution is over its " + ((pKind == Kind.WallTime) ? "wall-clock" : "CPU") +
+			            " time limit (" + pLimit + "ms).");
+			this.LimitKind = pKind;
+			this.Limit     = pLimit;
+		}
+
+		private final Kind LimitKind;
+		private final long Limit;
+
+		/** Returns the kind of the limit (null if the execution is cancelled because the caller was interrupted) */
+		public Kind getKind() {
+			return this.LimitKind;
+		}
+
+		/** Returns the limit in milliseconds */
+		public long getLimit() {
+			return this.Limit;
+		}
+	}
+
+	static private final ThreadMXBean          ThreadMX             = ManagementFactory.getThreadMXBean();
+	static private final ThreadLocal<Token>    Current              = new ThreadLocal<Token>();
+	static private final AtomicInteger         PendingCancels       = new AtomicInteger();
+	static private final AtomicLong            CancelCount          = new AtomicLong();
+	static private final AtomicLong            WallTimeOverrunCount = new AtomicLong();
+	static private final AtomicLong            CPUTimeOverrunCount  = new AtomicLong();
+	static private final ExecutorService       Workers              = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger Count = new AtomicInteger();
+		public Thread newThread(Runnable pRunnable) {
+			Thread Worker = new Thread(pRunnable, "ExecutionLimit-Worker-" + Count.incrementAndGet());
+			Worker.setDaemon(true);
+			return Worker;
+		}
+	});
+
+	/** The state of an execution */
+	static private final class Token {
+
+		volatile Thread  Worker      = null;
+		volatile long    CPUStart    = 0;
+		volatile boolean IsCancelled = false;
+		         Kind    LimitKind   = null;
+		         long    Limit       = 0;
+		         boolean IsPending   = false;
+
+		/** Cancels the execution and returns the exception to be thrown to the caller */
+		synchronized ExceededException cancel(FutureTask<?> pTask, Kind pKind, long pLimit) {
+			// The execution that has not started will never start
+			pTask.cancel(false);
+
+			if(!this.IsCancelled) {
+				this.LimitKind   = pKind;
+				this.Limit       = pLimit;
+				this.IsCancelled = true;
+				CancelCount.incrementAndGet();
+				if(pKind == Kind.WallTime) WallTimeOverrunCount.incrementAndGet();
+				if(pKind == Kind.CPUTime)  CPUTimeOverrunCount .incrementAndGet();
+
+				Metrics M = Metrics.GetInstance();
+				if(M.isEnabled()) M.cancelled(pKind);
+
+				if(this.Worker != null) {
+					this.IsPending = true;
+					PendingCancels.incrementAndGet();
+					this.Worker.interrupt();
+				}
+			}
+			return new ExceededException(pKind, pLimit);
+		}
+
+		/** Marks the execution as done */
+		synchronized void done() {
+			if(this.IsPending) PendingCancels.decrementAndGet();
+			this.IsPending = false;
+			this.Worker    = null;
+		}
+
+		/** Creates an exception for the cancelled execution (thrown in the worker) */
+		synchronized ExceededException newException() {
+			return new ExceededException(this.LimitKind, this.Limit);
+		}
+	}
+}
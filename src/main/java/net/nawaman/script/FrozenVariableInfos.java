@@ -106,9 +106,9 @@ public class FrozenVariableInfos implements Serializable, Cloneable {
 		
 		/**{@inheritDoc}*/ @Override
 		public FrozenVariableInfos clone() {
-			FrozenVariableInfos FVInfos = new FrozenVariableInfos.Simple(null, null);
-			this.FVNames = this.FVNames.clone();
-			this.FVTypes = this.FVTypes.clone();
+			FrozenVariableInfos.Simple FVInfos = new FrozenVariableInfos.Simple(null, null);
+			FVInfos.FVNames = (this.FVNames == null)?null:this.FVNames.clone();
+			FVInfos.FVTypes = (this.FVTypes == null)?null:this.FVTypes.clone();
 			return FVInfos;
 		}
 	}
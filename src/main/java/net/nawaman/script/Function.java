@@ -14,8 +14,34 @@ public interface Function extends Executable {
 	/** Execute the function */
 	public Object run(Object ... pParams);
 	
+	/**
+	 * A function that can be executed with a known number of parameters without the parameters being adjusted and
+	 *    validated.
+	 *
+	 * The caller is responsible for the parameters to be of the right types (a wrong one will cause a
+	 *    ClassCastException instead of an incompatible parameter exception). When the function cannot be run directly
+	 *    with the given number of parameters (see getDirectArity()), it is run by run(Object ...).
+	 **/
+	static public interface Direct extends Function {
+		
+		/** Returns the number of parameters the function can be run directly with or -1 if it cannot be run directly */
+		public int getDirectArity();
+		
+		/** Execute the function that has no parameter */
+		public Object run0();
+		
+		/** Execute the function that has one parameter */
+		public Object run1(Object pParam0);
+		
+		/** Execute the function that has two parameters */
+		public Object run2(Object pParam0, Object pParam1);
+		
+		/** Execute the function that has three parameters */
+		public Object run3(Object pParam0, Object pParam1, Object pParam2);
+	}
+	
 	/** Simple implementation of Function */
-	static abstract public class Simple implements Function, Serializable {
+	static abstract public class Simple implements Function.Direct, Serializable {
 		
 		private static final long serialVersionUID = 580000574214561598L;
 
@@ -56,6 +82,14 @@ public interface Function extends Executable {
 			return this.Body;
 		}
 		
+		/**
+		 * Returns the body as the given type or null if the body is not of the type. For example, the body of a function
+		 *    of `(int, int):int` may be an `IntBinaryOperator` so it can be run without the parameters being boxed.
+		 **/
+		final public <T> T getTypedBody(Class<T> pType) {
+			return pType.isInstance(this.Body) ? pType.cast(this.Body) : null;
+		}
+		
 		/** Returns the name of the parameter */
 		public String getParameterName(int I) {
 			if((I < 0) || (I >= this.ParamNames.length)) return null;
@@ -91,8 +125,78 @@ public interface Function extends Executable {
 		public Object run(Object ... pParams) {
 			Body     TheBody = this.getFunctionBody();
 			Object[] Params  = Signature.Simple.adjustParameters(this.getSignature(), pParams);
-			Object   Result  = TheBody.run(this, Params);
-			return Signature.Simple.ensureReturnCompatible(this.getSignature(), Result);
+			long     Start   = Metrics.StartTime();
+			boolean  IsOK    = false;
+			try {
+				Object Result = TheBody.run(this, Params);
+				IsOK = true;
+				return Signature.Simple.ensureReturnCompatible(this.getSignature(), Result);
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
+		}
+		
+		// Direct ------------------------------------------------------------------------------------------------------
+		
+		/**{@inheritDoc}*/ @Override
+		public int getDirectArity() {
+			return (this.Body instanceof DirectBody) ? ((DirectBody)this.Body).getDirectArity() : -1;
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public Object run0() {
+			if(this.getDirectArity() != 0) return this.run();
+			long    Start = Metrics.StartTime();
+			boolean IsOK  = false;
+			try {
+				Object Result = ((DirectBody)this.Body).run0(this);
+				IsOK = true;
+				return Result;
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public Object run1(Object pParam0) {
+			if(this.getDirectArity() != 1) return this.run(pParam0);
+			long    Start = Metrics.StartTime();
+			boolean IsOK  = false;
+			try {
+				Object Result = ((DirectBody)this.Body).run1(this, pParam0);
+				IsOK = true;
+				return Result;
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public Object run2(Object pParam0, Object pParam1) {
+			if(this.getDirectArity() != 2) return this.run(pParam0, pParam1);
+			long    Start = Metrics.StartTime();
+			boolean IsOK  = false;
+			try {
+				Object Result = ((DirectBody)this.Body).run2(this, pParam0, pParam1);
+				IsOK = true;
+				return Result;
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public Object run3(Object pParam0, Object pParam1, Object pParam2) {
+			if(this.getDirectArity() != 3) return this.run(pParam0, pParam1, pParam2);
+			long    Start = Metrics.StartTime();
+			boolean IsOK  = false;
+			try {
+				Object Result = ((DirectBody)this.Body).run3(this, pParam0, pParam1, pParam2);
+				IsOK = true;
+				return Result;
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
 		}
 		
 		// Utilities methods -------------------------------------------------------------------------------------------
@@ -116,5 +220,27 @@ public interface Function extends Executable {
 			public Object run(Function.Simple pFunction, Object[] pParams);
 
 		}
+		
+		/**
+		 * The body of the simple function that can be executed directly with its parameters (the parameters are not
+		 *    adjusted nor validated and the return value is not checked).
+		 **/
+		static public interface DirectBody extends Body {
+			
+			/** Returns the number of parameters the body can be run directly with or -1 if it cannot be run directly */
+			public int getDirectArity();
+			
+			/** Execute the function body that has no parameter */
+			public Object run0(Function.Simple pFunction);
+			
+			/** Execute the function body that has one parameter */
+			public Object run1(Function.Simple pFunction, Object pParam0);
+			
+			/** Execute the function body that has two parameters */
+			public Object run2(Function.Simple pFunction, Object pParam0, Object pParam1);
+			
+			/** Execute the function body that has three parameters */
+			public Object run3(Function.Simple pFunction, Object pParam0, Object pParam1, Object pParam2);
+		}
 	}
 }
@@ -38,9 +38,15 @@ public interface Macro extends Function {
 			
 			Body     TheBody = this.getMacroBody();
 			Object[] Params  = Signature.Simple.adjustParameters(this.getSignature(), pParams);
-			Object   Result  = TheBody.run(this, pScope, Params);
-			
-			return Signature.Simple.ensureReturnCompatible(this.getSignature(), Result);
+			long     Start   = Metrics.StartTime();
+			boolean  IsOK    = false;
+			try {
+				Object Result = TheBody.run(this, pScope, Params);
+				IsOK = true;
+				return Signature.Simple.ensureReturnCompatible(this.getSignature(), Result);
+			} finally {
+				Metrics.Executed(this, Start, IsOK);
+			}
 		}
 		
 		// Utilities methods -------------------------------------------------------------------------------------------
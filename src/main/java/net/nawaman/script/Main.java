@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -36,7 +37,101 @@ public class Main {
 		if(Prefix != null)                   System.out.println(Prefix);
 		                                     System.out.println(USAGE);
 		if(Suffix != null)                   System.out.println(Suffix);
-		if(ShutdownCode != NO_SHUTDOWN_CODE) System.exit(ShutdownCode);
+		if(ShutdownCode != NO_SHUTDOWN_CODE) Exit(ShutdownCode);
+	}
+	
+	// In-process execution (see Daemon) -------------------------------------------------------------------------------
+	
+	/** Thrown instead of exiting the JVM when the command is run by Execute(...) */
+	static final class ExitException extends RuntimeException {
+		private static final long serialVersionUID = 5620357215939512427L;
+		ExitException(int pCode) {
+			super("Exit: " + pCode);
+			this.Code = pCode;
+		}
+		final int Code;
+	}
+	
+	static private final ThreadLocal<Boolean> IsInProcess = new ThreadLocal<Boolean>();
+	
+	/** Exits the JVM with the code (or ends the command if it is run by Execute(...)) */
+	static void Exit(int Code) {
+		if(Boolean.TRUE.equals(IsInProcess.get())) throw new ExitException(Code);
+		System.exit(Code);
+	}
+	
+	/** Runs the command (the arguments of main) in this JVM and returns its exit code */
+	static int Execute(String ... $Args) throws ClassNotFoundException, FileNotFoundException, IOException {
+		List<String> Options = GetOptions(Arrays.asList($Args));
+		if(Options.contains("--daemon") || Options.contains("--connect")) {
+			System.err.println("The daemon cannot run `--daemon` or `--connect`.");
+			return -1;
+		}
+		
+		IsInProcess.set(Boolean.TRUE);
+		try                     { main($Args); return 0; }
+		catch (ExitException E) { return E.Code;         }
+		finally                 { IsInProcess.remove();  }
+	}
+	
+	/** Returns the socket file given with `--socket` or the default one */
+	static private File GetSocketFile(List<String> Options) {
+		int Index = Options.indexOf("--socket");
+		if((Index == -1) || ((Index + 1) >= Options.size())) return Daemon.GetDefaultSocketFile();
+		return new File(Options.get(Index + 1));
+	}
+	
+	/**
+	 * Returns the options of Main - the arguments before the action (`--run`, `--compile` or `--command`) as the ones
+	 *    after it are for the executable.
+	 **/
+	static private List<String> GetOptions(List<String> Args) {
+		int End = Args.size();
+		for(String Action : new String[] { "--run", "--compile", "--command" }) {
+			int Index = Args.indexOf(Action);
+			if((Index != -1) && (Index < End)) End = Index;
+		}
+		return Args.subList(0, End);
+	}
+	
+	/** Starts a daemon (see Daemon) and runs the commands of its clients until the JVM is stopped */
+	static void StartDaemon(File SocketFile) throws IOException {
+		Daemon TheDaemon = new Daemon(SocketFile);
+		System.err.println("SimpleScript daemon is listening at " + TheDaemon.getSocketFile());
+		TheDaemon.serve();
+	}
+	
+	/**
+	 * Sends the command to the daemon and exits with the exit code of the command. The command is run in this JVM if
+	 *    there is no daemon running.
+	 **/
+	static void ConnectDaemon(File SocketFile, String[] $Args) throws ClassNotFoundException, IOException {
+		if(!Daemon.IsRunning(SocketFile)) {
+			main($Args);
+			return;
+		}
+		Exit(Daemon.Connect(SocketFile, $Args, System.in, System.out, System.err));
+	}
+	
+	static private Metrics.Simple EnabledMetrics = null;
+	
+	/**
+	 * Records the metrics (see Metrics) and prints them to the standard error when the program exits - it is only done
+	 *    once (the commands of a daemon share the metrics).
+	 **/
+	static synchronized void EnableMetrics() {
+		if(EnabledMetrics != null) return;
+		
+		final Metrics.Simple TheMetrics = new Metrics.Simple();
+		TheMetrics.registerMBean();
+		Metrics.SetInstance(TheMetrics);
+		EnabledMetrics = TheMetrics;
+		
+		Runtime.getRuntime().addShutdownHook(new Thread("SimpleScript-Metrics") {
+			@Override public void run() {
+				System.err.print(TheMetrics.dump());
+			}
+		});
 	}
 	
 	static public void main(String ... $Args) throws ClassNotFoundException, FileNotFoundException, IOException {
@@ -60,6 +155,31 @@ public class Main {
 		if(Args.contains("--help") || Args.contains("-h"))
 			ShowUsage(null, null, 0);
 		
+		List<String> Options = GetOptions(Args);
+		
+		// Daemon
+		if(Options.contains("--daemon")) {
+			StartDaemon(GetSocketFile(Options));
+			return;
+		}
+		if(Options.contains("--connect")) {
+			// Forward all the arguments except the client options
+			List<String> CArgs = new ArrayList<String>(Options);
+			int SIndex = CArgs.indexOf("--socket");
+			if((SIndex != -1) && ((SIndex + 1) < CArgs.size())) {
+				CArgs.remove(SIndex + 1);
+				CArgs.remove(SIndex);
+			}
+			CArgs.remove("--connect");
+			CArgs.addAll(Args.subList(Options.size(), Args.size()));
+			ConnectDaemon(GetSocketFile(Options), CArgs.toArray(new String[CArgs.size()]));
+			return;
+		}
+		
+		// Metrics
+		if(Options.contains("--metrics"))
+			EnableMetrics();
+		
 		ScriptEngine Engine = null;
 		
 		int Index;
@@ -119,8 +239,10 @@ public class Main {
 			if(Index >= Args.size())
 				ShowUsage("Missing the executable name.\n", -1);
 			
+			// The name may be the path of the file (such as, when it is resolved by the daemon)
 			String     ExecName = Args.get(Index);
-			Executable Exec     = ScriptManager.UseWithException(ExecName);
+			File       ExecFile = new File(ExecName);
+			Executable Exec     = ExecFile.isFile() ? Tools.Use(ExecFile) : ScriptManager.UseWithException(ExecName);
 			if(Exec == null)
 				System.err.println("The executable is not found (\""+ExecName+"\").");
 			
@@ -0,0 +1,240 @@
+package net.nawaman.script;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Loads the compiled executable of a compiled file without reading the whole file into a text.
+ *
+ * The file is memory-mapped and the footer (the hashes and the counts lines) is parsed from the end. The code part is
+ *    only decoded to be hashed and the executable is deserialized directly from the BASE64 block. The text of the code
+ *    is only created when the file needs to be recompiled. The mapping is released before the result is returned so
+ *    the caller can rewrite the file. When the mapping cannot be released (see Unmap(...)) or the file is in an
+ *    unexpected form, such as, it has '\r' or it uses the old hash format, null is returned and the caller loads the
+ *    file in a regular way.
+ **/
+final class MappedCompiledFile {
+
+	private MappedCompiledFile() {}
+
+	/** The unsafe and its invokeCleaner(ByteBuffer) to release a mapping (null if they are not available) */
+	static private final Object Unsafe;
+	static private final Method Cleaner;
+
+	static {
+		Object TheUnsafe = null;
+		Method TheClean  = null;
+		try {
+			Class<?> UClass = Class.forName("sun.misc.Unsafe");
+			Field    UField = UClass.getDeclaredField("theUnsafe");
+			UField.setAccessible(true);
+			TheUnsafe = UField.get(null);
+			TheClean  = UClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Exception E) {
+			TheUnsafe = null;
+			TheClean  = null;
+		}
+		Unsafe  = TheUnsafe;
+		Cleaner = TheClean;
+	}
+
+	/** Releases the mapping right away (rather than when the buffer is garbage collected) */
+	static private void Unmap(MappedByteBuffer pBuffer) {
+		try {
+			Cleaner.invoke(Unsafe, pBuffer);
+		} catch (Exception E) {
+			// The mapping will be released when the buffer is collected
+		}
+	}
+
+	/** The loaded file - either the up-to-date executable or the code to be recompiled */
+	static final class Loaded {
+		Loaded(Executable pExecutable, String pCode) {
+			this.Executable = pExecutable;
+			this.Code       = pCode;
+		}
+
+		/** The executable (null if the file has to be recompiled) */
+		final Executable Executable;
+		/** The code to be recompiled (null if the executable is up-to-date) */
+		final String     Code;
+	}
+
+	/** Loads the compiled executable (or the code to be recompiled) of the file or returns null if the file has to be
+	 *     loaded as a text */
+	static Loaded load(File pFile) {
+		if((pFile == null) || !pFile.isFile() || (Cleaner == null)) return null;
+
+		// The byte offset is used as the character offset in the footer so only ASCII compatible charsets are allowed
+		//    (the same charset as used by Utils.loadTextFromStream(...)).
+		Charset CS = Charset.defaultCharset();
+		if(!StandardCharsets.UTF_8.equals(CS) && !StandardCharsets.US_ASCII.equals(CS)
+		&& !StandardCharsets.ISO_8859_1.equals(CS))
+			return null;
+
+		long Size = pFile.length();
+		if((Size == 0) || (Size > Integer.MAX_VALUE)) return null;
+
+		MappedByteBuffer Buffer;
+		try (FileChannel FC = FileChannel.open(pFile.toPath(), StandardOpenOption.READ)) {
+			Buffer = FC.map(FileChannel.MapMode.READ_ONLY, 0, FC.size());
+		} catch (IOException E) {
+			return null;
+		}
+
+		// Nothing read from the buffer may be kept after this as the mapping is released
+		try     { return load(Buffer, CS); }
+		finally { Unmap(Buffer);           }
+	}
+
+	/** Loads the compiled executable (or the code to be recompiled) from the mapped file */
+	static private Loaded load(MappedByteBuffer pBuffer, Charset pCharset) {
+		// The last new line is not a part of the text (see Utils.loadTextFromStream(...))
+		int Length = pBuffer.limit();
+		if(pBuffer.get(Length - 1) == '\n') Length--;
+
+		BytesText Text   = new BytesText(pBuffer, Length);
+		int       LIndex = Tools.LastIndexOf(Text, "\n##:COUNTS:");
+
+		// Never been compiled
+		if(LIndex == -1) {
+			String Code = DecodeText(pBuffer, pCharset);
+			return (Code == null) ? null : new Loaded(null, Code);
+		}
+
+		Tools.Footer Footer;
+		try {
+			Footer = new Tools.Footer(Text, LIndex);
+		} catch (IllegalArgumentException E) {
+			return null;
+		}
+		if(!Footer.IsV2) return null;
+
+		Boolean IsUpToDate = isCodeUpToDate(pBuffer, Footer, pCharset);
+		if(IsUpToDate == null) return null;
+
+		// Decode the BASE64 directly from the mapped file (without "##:COMPILED::BASE64 {\n" and "\n}")
+		Executable Exec = (IsUpToDate && Footer.isCompiledCodeIntact(Text))
+		                ? Tools.DeserializeExecutable(
+		                      Tools.NewBase64InputStream(Text, Footer.CCodeBegin + 22, Footer.CCodeEnd - 2),
+		                      null)
+		                : null;
+		if(Exec != null) return new Loaded(Exec, null);
+
+		// The file has to be recompiled so the code is decoded (only once)
+		String FText = DecodeText(pBuffer, pCharset);
+		if(FText == null) return null;
+		try {
+			return new Loaded(null, Tools.GetCodeOfCompiledText(FText));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException E) {
+			return null;
+		}
+	}
+
+	/** Decodes the text of the whole file the same way as Utils.loadTextFromStream(...) or returns null if it has '\r' */
+	static private String DecodeText(ByteBuffer pBuffer, Charset pCharset) {
+		CharsetDecoder Decoder = pCharset.newDecoder()
+		                             .onMalformedInput(CodingErrorAction.REPLACE)
+		                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer CB;
+		try {
+			CB = Decoder.decode(pBuffer.duplicate().position(0));
+		} catch (CharacterCodingException E) {
+			return null;
+		}
+
+		int Length = CB.limit();
+		for(int i = 0; i < Length; i++) {
+			if(CB.get(i) == '\r') return null;
+		}
+		// The last new line is not a part of the text
+		if((Length != 0) && (CB.get(Length - 1) == '\n')) Length--;
+		return CB.subSequence(0, Length).toString();
+	}
+
+	/** Decodes the code part of the file and checks its digest with the one in the footer (null if it has '\r') */
+	static private Boolean isCodeUpToDate(ByteBuffer pBuffer, Tools.Footer pFooter, Charset pCharset) {
+		CharsetDecoder Decoder = pCharset.newDecoder()
+		                             .onMalformedInput(CodingErrorAction.REPLACE)
+		                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		// The code must end before the compiled code section
+		ByteBuffer    In     = (ByteBuffer)pBuffer.duplicate().position(0).limit(pFooter.CCodeBegin);
+		CharBuffer    Out    = CharBuffer.allocate(4*1024);
+		MessageDigest MD     = Tools.NewDigest();
+		byte[]        Bytes  = new byte[8*1024];
+		int           Remain = pFooter.Length_Code;
+
+		while(Remain > 0) {
+			CoderResult CR = Decoder.decode(In, Out, true);
+			Out.flip();
+
+			int Count = Math.min(Out.remaining(), Remain);
+			for(int i = 0; i < Count; i++) {
+				// The line ends are normalized when the file is read as a text so the digest will not match
+				if(Out.get(i) == '\r') return null;
+			}
+			Tools.UpdateDigest(MD, Out, 0, Count, Bytes);
+			Remain -= Count;
+
+			Out.clear();
+			if(CR.isUnderflow() && !In.hasRemaining()) break;
+		}
+		if(Remain != 0) return false;
+
+		return pFooter.Hash_Code.equals(Tools.ToHexText(MD.digest()));
+	}
+
+	/** A text view of the bytes of the file (a byte is a character) */
+	static final class BytesText implements CharSequence {
+
+		private final ByteBuffer Buffer;
+		private final int        Length;
+
+		BytesText(ByteBuffer pBuffer, int pLength) {
+			this.Buffer = pBuffer;
+			this.Length = pLength;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public int length() {
+			return this.Length;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public char charAt(int pIndex) {
+			if((pIndex < 0) || (pIndex >= this.Length)) throw new StringIndexOutOfBoundsException(pIndex);
+			return (char)(this.Buffer.get(pIndex) & 0xFF);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public CharSequence subSequence(int pStart, int pEnd) {
+			if((pStart < 0) || (pEnd > this.Length) || (pStart > pEnd))
+				throw new StringIndexOutOfBoundsException("Start: "+pStart+", End: "+pEnd+", Length: "+this.Length);
+
+			char[] Chars = new char[pEnd - pStart];
+			for(int i = 0; i < Chars.length; i++)
+				Chars[i] = (char)(this.Buffer.get(pStart + i) & 0xFF);
+			return new String(Chars);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String toString() {
+			return this.subSequence(0, this.Length).toString();
+		}
+	}
+}
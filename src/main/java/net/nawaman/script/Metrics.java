@@ -0,0 +1,402 @@
+package net.nawaman.script;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of SimpleScript (compilations, caches, loading and executions).
+ *
+ * The metrics is recorded to the current instance (see GetInstance()). The current instance is the first one found
+ *    by the ServiceLoader (a provider of `net.nawaman.script.Metrics` in `META-INF/services`) or the default
+ *    implementation (Metrics.Simple) if the system property `simplescript.metrics` is `true` or none (nothing is
+ *    recorded) otherwise. It can be changed using SetInstance(...).
+ *
+ * The default implementation keeps the counters and the latency histograms of each executable and can be queried
+ *    using JMX (see Simple.registerMBean()) or dumped as a text (see Simple.dump()).
+ **/
+abstract public class Metrics {
+
+	/** The system property to enable the default metrics */
+	static public final String METRICS_ENABLED_PROPERTY = "simplescript.metrics";
+
+	static private volatile Metrics Instance = NewDefaultInstance();
+
+	/** Returns the current metrics */
+	static public Metrics GetInstance() {
+		return Instance;
+	}
+
+	/** Changes the current metrics (null for no metrics) */
+	static public void SetInstance(Metrics pMetrics) {
+		Instance = (pMetrics == null) ? None.Instance : pMetrics;
+	}
+
+	/** Checks if the metrics is recorded */
+	static public boolean IsEnabled() {
+		return Instance.isEnabled();
+	}
+
+	/** Creates the default metrics */
+	static private Metrics NewDefaultInstance() {
+		try {
+			Iterator<Metrics> Providers = ServiceLoader.load(Metrics.class).iterator();
+			if(Providers.hasNext()) return Providers.next();
+		} catch (Throwable T) {}
+
+		return "true".equalsIgnoreCase(System.getProperty(METRICS_ENABLED_PROPERTY))
+		           ? new Simple()
+		           : None.Instance;
+	}
+
+	// Recording helpers -----------------------------------------------------------------------------------------------
+
+	/** Returns the start time of an execution to be recorded or 0 if the metrics is not recorded */
+	static public long StartTime() {
+		return Instance.isEnabled() ? (System.nanoTime() | 1) : 0;
+	}
+
+	/** Records the execution that started at the start time (see StartTime()) */
+	static public void Executed(Executable pExec, long pStartTime, boolean pIsSuccess) {
+		if(pStartTime == 0) return;
+		Metrics M = Instance;
+		M.executed(M.getNameOf(pExec), System.nanoTime() - pStartTime, pIsSuccess);
+	}
+
+	// SPI -------------------------------------------------------------------------------------------------------------
+
+	/** Checks if this metrics records anything (the time is not measured if it does not) */
+	abstract public boolean isEnabled();
+
+	/** Records a compilation of an executable of the name by the engine */
+	abstract public void compiled(String pName, String pEngineName, long pNanos, boolean pIsSuccess);
+
+	/** Records a lookup of the cache */
+	abstract public void cacheLookedUp(String pCacheName, boolean pIsHit);
+
+	/** Records a load of an executable of the name - it is recompiled or it is deserialized from its compiled form */
+	abstract public void loaded(String pName, Executable pExec, boolean pIsRecompiled);
+
+	/** Records an execution of an executable of the name */
+	abstract public void executed(String pName, long pNanos, boolean pIsSuccess);
+
+	/** Records a cancellation of an execution (the kind is null if it is not cancelled by its time limit) */
+	abstract public void cancelled(ExecutionLimit.Kind pKind);
+
+	/**
+	 * Returns the name of the executable used in the metrics. The name is the one it is loaded with (see loaded(...)),
+	 *    the name of the signature of a function or macro or the engine name for a script.
+	 **/
+	public String getNameOf(Executable pExec) {
+		if(pExec == null)              return "<null>";
+		if(pExec instanceof Function)  return String.valueOf(((Function)pExec).getSignature().getName());
+		if(pExec instanceof Macro)     return String.valueOf(((Macro)   pExec).getSignature().getName());
+		
+		ScriptEngine Engine = pExec.getEngine();
+		return ((Engine != null) ? Engine.getShortName() : pExec.getEngineName()) + ":script";
+	}
+
+	// None ------------------------------------------------------------------------------------------------------------
+
+	/** The metrics that records nothing */
+	static public final class None extends Metrics {
+
+		static public final None Instance = new None();
+
+		private None() {}
+
+		/**{@inheritDoc}*/ @Override public boolean isEnabled() { return false; }
+
+		/**{@inheritDoc}*/ @Override public void compiled(String pName, String pEngineName, long pNanos, boolean pIsSuccess) {}
+		/**{@inheritDoc}*/ @Override public void cacheLookedUp(String pCacheName, boolean pIsHit)                          {}
+		/**{@inheritDoc}*/ @Override public void loaded(String pName, Executable pExec, boolean pIsRecompiled)              {}
+		/**{@inheritDoc}*/ @Override public void executed(String pName, long pNanos, boolean pIsSuccess)                   {}
+		/**{@inheritDoc}*/ @Override public void cancelled(ExecutionLimit.Kind pKind)                                      {}
+	}
+
+	// Histogram -------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A lock-free histogram of non-negative values with a log-linear buckets (similar to HdrHistogram).
+	 *
+	 * Each power of two is divided into 32 buckets so the value reported is within about 3% of the actual value.
+	 **/
+	static public final class Histogram {
+
+		static private final int SUB_BITS    = 5;
+		static private final int SUB_COUNT   = 1 << SUB_BITS;
+		static private final int BUCKET_SIZE = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+		private final AtomicLongArray Counts = new AtomicLongArray(BUCKET_SIZE);
+		private final AtomicLong      Total  = new AtomicLong();
+		private final AtomicLong      Sum    = new AtomicLong();
+		private final AtomicLong      Max    = new AtomicLong();
+
+		/** Returns the index of the bucket of the value */
+		static int IndexOf(long pValue) {
+			if(pValue < SUB_COUNT) return (int)Math.max(pValue, 0);
+			int Exp = 63 - Long.numberOfLeadingZeros(pValue);
+			return ((Exp - SUB_BITS) << SUB_BITS) + (int)(pValue >>> (Exp - SUB_BITS));
+		}
+
+		/** Returns the lowest value of the bucket */
+		static long LowestOf(int pIndex) {
+			if(pIndex < (SUB_COUNT << 1)) return pIndex;
+			int Exp = (pIndex >>> SUB_BITS) + SUB_BITS - 1;
+			return ((long)((pIndex & (SUB_COUNT - 1)) + SUB_COUNT)) << (Exp - SUB_BITS);
+		}
+
+		/** Records a value */
+		public void record(long pValue) {
+			if(pValue < 0) pValue = 0;
+			this.Counts.incrementAndGet(IndexOf(pValue));
+			this.Total.incrementAndGet();
+			this.Sum.addAndGet(pValue);
+
+			long Max;
+			while(((Max = this.Max.get()) < pValue) && !this.Max.compareAndSet(Max, pValue));
+		}
+
+		/** Returns the number of the recorded values */
+		public long getCount() {
+			return this.Total.get();
+		}
+
+		/** Returns the largest recorded value */
+		public long getMax() {
+			return this.Max.get();
+		}
+
+		/** Returns the mean of the recorded values */
+		public double getMean() {
+			long Count = this.Total.get();
+			return (Count == 0) ? 0 : ((double)this.Sum.get() / Count);
+		}
+
+		/** Returns the value at the percentile (0 - 100) */
+		public long getValueAt(double pPercentile) {
+			long Count = this.Total.get();
+			if(Count == 0) return 0;
+
+			long Rank = (long)Math.ceil((Math.min(Math.max(pPercentile, 0), 100) / 100.0) * Count);
+			if(Rank < 1) Rank = 1;
+
+			long Seen = 0;
+			for(int i = 0; i < BUCKET_SIZE; i++) {
+				Seen += this.Counts.get(i);
+				if(Seen >= Rank) return Math.min(LowestOf(i), this.Max.get());
+			}
+			return this.Max.get();
+		}
+	}
+
+	// Simple ----------------------------------------------------------------------------------------------------------
+
+	/** The operations and attributes of the default metrics that are available through JMX */
+	static public interface MetricsMXBean {
+
+		/** Returns the number of the compilations */
+		public long getCompileCount();
+		/** Returns the number of the compilations that fail */
+		public long getCompileFailureCount();
+		/** Returns the 99th percentile of the compile time in microseconds */
+		public long getCompileP99Micros();
+		/** Returns the number of the cache hits */
+		public long getCacheHitCount();
+		/** Returns the number of the cache misses */
+		public long getCacheMissCount();
+		/** Returns the number of the executables loaded from their compiled forms */
+		public long getLoadCount();
+		/** Returns the number of the executables recompiled when they are loaded */
+		public long getRecompileCount();
+		/** Returns the number of the cancelled executions */
+		public long getCancelCount();
+		/** Returns the names of the executables that are executed */
+		public String[] getExecutableNames();
+
+		/** Returns the number of the executions of the executable */
+		public long getCallCount(String pName);
+		/** Returns the latency (in microseconds) of the executable at the percentile */
+		public long getLatencyMicros(String pName, double pPercentile);
+		/** Returns the metrics as a text */
+		public String dump();
+		/** Clears all the metrics */
+		public void reset();
+	}
+
+	/** The default metrics implementation */
+	static public class Simple extends Metrics implements MetricsMXBean {
+
+		/** The object name of the metrics in JMX */
+		static public final String MBEAN_NAME = "net.nawaman.script:type=Metrics";
+
+		/** The statistic of the executions of an executable */
+		static public final class Stat {
+			final AtomicLong Failures = new AtomicLong();
+			final Histogram  Latency  = new Histogram();
+
+			/** Returns the number of the executions */
+			public long getCount() { return this.Latency.getCount(); }
+			/** Returns the number of the executions that throw */
+			public long getFailureCount() { return this.Failures.get(); }
+			/** Returns the histogram of the latency (in nanoseconds) */
+			public Histogram getLatency() { return this.Latency; }
+		}
+
+		private volatile Histogram                     Compiles         = new Histogram();
+		private final    AtomicLong                    CompileFailures  = new AtomicLong();
+		private final    AtomicLong                    CacheHits        = new AtomicLong();
+		private final    AtomicLong                    CacheMisses      = new AtomicLong();
+		private final    AtomicLong                    Loads            = new AtomicLong();
+		private final    AtomicLong                    Recompiles       = new AtomicLong();
+		private final    AtomicLong                    Cancels          = new AtomicLong();
+		private final    ConcurrentHashMap<String, Stat> Stats          = new ConcurrentHashMap<String, Stat>();
+		private final    Map<Executable, String>       Names            =
+		                     Collections.synchronizedMap(new WeakHashMap<Executable, String>());
+
+		/**{@inheritDoc}*/ @Override
+		public boolean isEnabled() {
+			return true;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void compiled(String pName, String pEngineName, long pNanos, boolean pIsSuccess) {
+			this.Compiles.record(pNanos);
+			if(!pIsSuccess) this.CompileFailures.incrementAndGet();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void cacheLookedUp(String pCacheName, boolean pIsHit) {
+			(pIsHit ? this.CacheHits : this.CacheMisses).incrementAndGet();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void loaded(String pName, Executable pExec, boolean pIsRecompiled) {
+			(pIsRecompiled ? this.Recompiles : this.Loads).incrementAndGet();
+			if((pName != null) && (pExec instanceof Script)) this.Names.put(pExec, pName);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void executed(String pName, long pNanos, boolean pIsSuccess) {
+			Stat Stat = this.Stats.get(pName);
+			if(Stat == null) {
+				Stat NewStat = new Stat();
+				Stat = this.Stats.putIfAbsent(pName, NewStat);
+				if(Stat == null) Stat = NewStat;
+			}
+			Stat.Latency.record(pNanos);
+			if(!pIsSuccess) Stat.Failures.incrementAndGet();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void cancelled(ExecutionLimit.Kind pKind) {
+			this.Cancels.incrementAndGet();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String getNameOf(Executable pExec) {
+			if(pExec instanceof Script) {
+				String Name = this.Names.get(pExec);
+				if(Name != null) return Name;
+			}
+			return super.getNameOf(pExec);
+		}
+
+		/** Returns the statistic of the executions of the executable of the name or null if it is never executed */
+		public Stat getStat(String pName) {
+			return this.Stats.get(pName);
+		}
+
+		// MXBean ------------------------------------------------------------------------------------------------------
+
+		/**{@inheritDoc}*/ @Override public long getCompileCount()        { return this.Compiles.getCount();     }
+		/**{@inheritDoc}*/ @Override public long getCompileFailureCount() { return this.CompileFailures.get();   }
+		/**{@inheritDoc}*/ @Override public long getCacheHitCount()       { return this.CacheHits.get();         }
+		/**{@inheritDoc}*/ @Override public long getCacheMissCount()      { return this.CacheMisses.get();       }
+		/**{@inheritDoc}*/ @Override public long getLoadCount()           { return this.Loads.get();             }
+		/**{@inheritDoc}*/ @Override public long getRecompileCount()      { return this.Recompiles.get();        }
+		/**{@inheritDoc}*/ @Override public long getCancelCount()         { return this.Cancels.get();           }
+
+		/**{@inheritDoc}*/ @Override
+		public long getCompileP99Micros() {
+			return TimeUnit.NANOSECONDS.toMicros(this.Compiles.getValueAt(99));
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String[] getExecutableNames() {
+			return new TreeMap<String, Stat>(this.Stats).keySet().toArray(new String[0]);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public long getCallCount(String pName) {
+			Stat Stat = this.Stats.get(pName);
+			return (Stat == null) ? 0 : Stat.getCount();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public long getLatencyMicros(String pName, double pPercentile) {
+			Stat Stat = this.Stats.get(pName);
+			return (Stat == null) ? 0 : TimeUnit.NANOSECONDS.toMicros(Stat.Latency.getValueAt(pPercentile));
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public void reset() {
+			this.Compiles = new Histogram();
+			this.CompileFailures.set(0);
+			this.CacheHits      .set(0);
+			this.CacheMisses    .set(0);
+			this.Loads          .set(0);
+			this.Recompiles     .set(0);
+			this.Cancels        .set(0);
+			this.Stats.clear();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String dump() {
+			StringBuilder SB = new StringBuilder();
+			SB.append(String.format("Compile   : count=%d, failures=%d, mean=%dus, p99=%dus, max=%dus%n",
+					this.Compiles.getCount(), this.CompileFailures.get(),
+					TimeUnit.NANOSECONDS.toMicros((long)this.Compiles.getMean()),
+					TimeUnit.NANOSECONDS.toMicros(this.Compiles.getValueAt(99)),
+					TimeUnit.NANOSECONDS.toMicros(this.Compiles.getMax())));
+			SB.append(String.format("Cache     : hits=%d, misses=%d%n", this.CacheHits.get(), this.CacheMisses.get()));
+			SB.append(String.format("Load      : loaded=%d, recompiled=%d%n", this.Loads.get(), this.Recompiles.get()));
+			SB.append(String.format("Cancel    : count=%d%n", this.Cancels.get()));
+
+			for(Map.Entry<String, Stat> Entry : new TreeMap<String, Stat>(this.Stats).entrySet()) {
+				Histogram H = Entry.getValue().Latency;
+				SB.append(String.format("Executable: %s - calls=%d, failures=%d, p50=%dus, p90=%dus, p99=%dus, max=%dus%n",
+						Entry.getKey(), H.getCount(), Entry.getValue().Failures.get(),
+						TimeUnit.NANOSECONDS.toMicros(H.getValueAt(50)),
+						TimeUnit.NANOSECONDS.toMicros(H.getValueAt(90)),
+						TimeUnit.NANOSECONDS.toMicros(H.getValueAt(99)),
+						TimeUnit.NANOSECONDS.toMicros(H.getMax())));
+			}
+			return SB.toString();
+		}
+
+		/** Registers this metrics to the platform MBean server (see MBEAN_NAME) - returns false if it cannot */
+		public boolean registerMBean() {
+			try {
+				MBeanServer Server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName  Name   = new ObjectName(MBEAN_NAME);
+				if(Server.isRegistered(Name)) Server.unregisterMBean(Name);
+				Server.registerMBean(this, Name);
+				return true;
+			} catch (Exception E) {
+				return false;
+			}
+		}
+	}
+}
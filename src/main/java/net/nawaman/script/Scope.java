@@ -5,9 +5,11 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /** The scope for the script execution */
@@ -366,4 +368,297 @@ public interface Scope {
 	    }
 	}
 
+
+    /**
+     * A scope that keeps its variables in arrays.
+     *
+     * The variable names are kept in a layout (the index of each name) that is shared by the scopes that have the same
+     *    variables declared in the same order. A Slot remembers the index of its variable in the last layout it sees so
+     *    accessing a variable through a slot is an array access when the scope has the same layout. The index of a
+     *    variable never changes - a removed variable leaves its slot empty and the same variable declared again takes the
+     *    same slot back.
+     **/
+	static public class Slotted implements Scope {
+		
+		public Slotted() {}
+		
+		public Slotted(String VName, Class<?> Type, Object VValue, boolean pIsConstant) {
+			this();
+			if(!pIsConstant) this.newVariable(VName, Type, VValue);
+			else             this.newConstant(VName, Type, VValue);
+		}
+		
+		// Types[i] is null when the variable is not in the scope
+		Layout     TheLayout   = Layout.Root;
+		Class<?>[] Types       = null;
+		Object[]   Values      = null;
+		boolean[]  IsConstants = null;
+		int        Count       = 0;
+		
+		/** Returns the index of the variable or -1 if the variable does not exist */
+		public int getSlotOf(String pName) {
+			int Index = this.TheLayout.indexOf(pName);
+			return ((Index != -1) && (this.Types[Index] != null)) ? Index : -1;
+		}
+		
+		/** Returns the value of the variable at the slot */
+		public Object getValueAt(int pSlot) {
+			return this.Values[pSlot];
+		}
+		
+		/** Change the variable value at the slot and return if success */
+		public Object setValueAt(int pSlot, Object pValue) {
+			Class<?> C = this.Types[pSlot];
+			if(C == null)
+				throw new RuntimeException("Variable `"+this.TheLayout.Names[pSlot]+"` does not exist.");
+			if(this.IsConstants[pSlot])
+				throw new RuntimeException("Variable `"+this.TheLayout.Names[pSlot]+"` is a constant.");
+			if((pValue != null) && !C.isInstance(pValue))
+				throw new RuntimeException(
+						"Invalid assign value '"+pValue+"' for the variable `"+this.TheLayout.Names[pSlot]+"`:"+C+".");
+			
+			this.Values[pSlot] = pValue;
+			return true;
+		}
+		
+		/** Returns a variable and constant names */
+		public Set<String> getVariableNames() {
+			if(this.Count == 0) return Empty.getEmptyNames();
+			
+			Set<String> Names = new LinkedHashSet<String>();
+			for(int i = 0; i < this.TheLayout.Names.length; i++) {
+				if(this.Types[i] != null) Names.add(this.TheLayout.Names[i]);
+			}
+			return Names;
+		}
+		
+		// Services as Scope -------------------------------------------------------------------------------------------
+		
+		/** Returns the variable count */
+		public int getVarCount() {
+			return this.Count;
+		}
+		
+		/** Returns the variable value */
+		public Object getValue(String pName) {
+			int Index = this.TheLayout.indexOf(pName);
+			return (Index == -1) ? null : this.Values[Index];
+		}
+		
+		/** Change the variable value and return if success */
+		public Object setValue(String pName, Object pValue) {
+			int Index = this.TheLayout.indexOf(pName);
+			if((Index == -1) || (this.Types[Index] == null))
+				throw new RuntimeException("Variable `"+pName+"` does not exist.");
+			return this.setValueAt(Index, pValue);
+		}
+		
+		/** Create a new variable and return if success */
+		public boolean newVariable(String pName, Class<?> pType, Object pValue) {
+			return this.newVariable(pName, pType, pValue, false);
+		}
+		
+		/** Create a new constant and return if success */
+		public boolean newConstant(String pName, Class<?> pType, Object pValue) {
+			return this.newVariable(pName, pType, pValue, true);
+		}
+		
+		private boolean newVariable(String pName, Class<?> pType, Object pValue, boolean pIsConstant) {
+			if((pType != null) && (pValue != null) && !pType.isInstance(pValue)) {
+				if(pType.isPrimitive()) throw new RuntimeException("Primitive type cannot be used in scope.");
+				return false;
+			}
+			
+			if(pType == null) pType = Object.class;
+			
+			int Index = this.TheLayout.indexOf(pName);
+			if(Index == -1) {
+				this.TheLayout = this.TheLayout.with(pName);
+				Index          = this.TheLayout.Names.length - 1;
+				
+				if(this.Types == null) {
+					this.Types       = new Class<?>[4];
+					this.Values      = new Object  [4];
+					this.IsConstants = new boolean [4];
+				} else if(this.Types.length <= Index) {
+					int Length = this.Types.length*2;
+					this.Types       = Arrays.copyOf(this.Types,       Length);
+					this.Values      = Arrays.copyOf(this.Values,      Length);
+					this.IsConstants = Arrays.copyOf(this.IsConstants, Length);
+				}
+			} else if(this.Types[Index] != null) return false;
+			
+			this.Types[Index]       = pType;
+			this.Values[Index]      = pValue;
+			this.IsConstants[Index] = pIsConstant;
+			this.Count++;
+			return true;
+		}
+		
+		/** Removes a variable or a constant and return if success */
+		public boolean removeVariable(String pName) {
+			int Index = this.getSlotOf(pName);
+			if(Index == -1) return false;
+			
+			this.Types[Index]       = null;
+			this.Values[Index]      = null;
+			this.IsConstants[Index] = false;
+			this.Count--;
+			return true;
+		}
+		
+		/** Returns the variable value */
+		public Class<?> getTypeOf(String pName) {
+			int Index = this.TheLayout.indexOf(pName);
+			return (Index == -1) ? null : this.Types[Index];
+		}
+		
+		/** Checks if the variable of the given name is writable */
+		public boolean isExist(String pName) {
+			return this.getSlotOf(pName) != -1;
+		}
+		
+		/** Checks if the variable of the given name is writable */
+		public boolean isWritable(String pName) {
+			int Index = this.getSlotOf(pName);
+			return (Index != -1) && !this.IsConstants[Index];
+		}
+		
+		/** Checks if this scope support constant declaration */
+		public boolean isConstantSupport() { return true; }
+		
+		Writer Out = Simple.DOut;
+		Writer Err = Simple.DErr;
+		Reader In  = Simple.DIn;
+
+	    /** Returns the <code>Writer</code> for scripts to use when displaying output. */
+	    public Writer getWriter() {
+	    	return this.Out;
+	    }
+	    
+	    /** Returns the <code>Writer</code> used to display error output. */
+	    public Writer getErrorWriter() {
+	    	return this.Err;
+	    }
+	    
+	    /** Sets the <code>Writer</code> for scripts to use when displaying output. */
+	    public void setWriter(Writer pWriter) {
+	    	this.Out = (pWriter != null)?pWriter:Simple.DOut;
+	    }
+	    
+	    /** Sets the <code>Writer</code> used to display error output. */
+	    public void setErrorWriter(Writer pWriter) {
+	    	this.Err = (pWriter != null)?pWriter:Simple.DErr;
+	    }
+	    
+	    /** Returns a <code>Reader</code> to be used by the script to read input. */
+	    public Reader getReader() {
+	    	return this.In;
+	    }
+	    
+	    /** Sets the <code>Reader</code> for scripts to read input */
+	    public void setReader(Reader pReader) {
+	    	this.In = (pReader != null)?pReader:Simple.DIn;
+	    }
+		
+		// Layout ------------------------------------------------------------------------------------------------------
+		
+		/** The names of the variables of slotted scopes and their indexes */
+		static final class Layout {
+			
+			/** The layout without any variable */
+			static final Layout Root = new Layout(new String[0]);
+			
+			/** The maximum number of the next layouts to be shared */
+			static final int MAX_NEXTS = 32;
+			
+			final   String[]                 Names;
+			final   HashMap<String, Integer> Indexes;
+			private HashMap<String, Layout>  Nexts = null;
+			
+			Layout(String[] pNames) {
+				this.Names   = pNames;
+				this.Indexes = new HashMap<String, Integer>();
+				for(int i = 0; i < pNames.length; i++) this.Indexes.put(pNames[i], i);
+			}
+			
+			/** Returns the index of the name or -1 if the name is not in this layout */
+			int indexOf(String pName) {
+				Integer Index = this.Indexes.get(pName);
+				return (Index == null) ? -1 : Index.intValue();
+			}
+			
+			/** Returns the layout with the name added at the end */
+			synchronized Layout with(String pName) {
+				Layout Next = (this.Nexts == null) ? null : this.Nexts.get(pName);
+				if(Next != null) return Next;
+				
+				String[] Names = Arrays.copyOf(this.Names, this.Names.length + 1);
+				Names[this.Names.length] = pName;
+				Next = new Layout(Names);
+				
+				if(this.Nexts == null)            this.Nexts = new HashMap<String, Layout>();
+				if(this.Nexts.size() < MAX_NEXTS) this.Nexts.put(pName, Next);
+				return Next;
+			}
+		}
+	}
+	
+	/**
+	 * A reference to a variable by name that remembers the slot of the variable in the last slotted scope layout it
+	 *    accesses. A slot is created once for each variable name in a code (e.g., as a static field of the generated
+	 *    class) and it can be used with any scope.
+	 **/
+	static public final class Slot {
+		
+		public Slot(String pName) {
+			if(pName == null) throw new NullPointerException();
+			this.Name = pName;
+		}
+		
+		private final String Name;
+		
+		// The layout and the index are kept together so they are always consistent with each other
+		private volatile Object[] Resolved = null;
+		
+		/** Returns the name of the variable */
+		public String getName() {
+			return this.Name;
+		}
+		
+		/** Returns the index of the variable in the slotted scope (-1 if the layout does not have the variable) */
+		int indexIn(Slotted pScope) {
+			Object[] Resolved = this.Resolved;
+			if((Resolved == null) || (Resolved[0] != pScope.TheLayout)) {
+				Resolved = new Object[] { pScope.TheLayout, pScope.TheLayout.indexOf(this.Name) };
+				this.Resolved = Resolved;
+			}
+			return (Integer)Resolved[1];
+		}
+		
+		/** Returns the variable value */
+		public Object getValue(Scope pScope) {
+			if(!(pScope instanceof Slotted)) return pScope.getValue(this.Name);
+			
+			Slotted SScope = (Slotted)pScope;
+			int     Index  = this.indexIn(SScope);
+			return (Index == -1) ? null : SScope.Values[Index];
+		}
+		
+		/** Change the variable value and return if success */
+		public Object setValue(Scope pScope, Object pValue) {
+			if(!(pScope instanceof Slotted)) return pScope.setValue(this.Name, pValue);
+			
+			Slotted SScope = (Slotted)pScope;
+			int     Index  = this.indexIn(SScope);
+			if(Index == -1) throw new RuntimeException("Variable `"+this.Name+"` does not exist.");
+			return SScope.setValueAt(Index, pValue);
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public String toString() {
+			return "Slot(" + this.Name + ")";
+		}
+	}
+
 }
@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
 
 import net.nawaman.usepath.UsableFilter;
 
@@ -91,6 +92,32 @@ public interface ScriptEngine {
 	public Function newFunction(Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
 			String[] pFrozenVNames, CompileOption pOption, ProblemContainer pResult);
 
+	/** Compile a code in the background (see AsyncCompiler) */
+	default public CompletableFuture<CompiledCode> compileAsync(String pCode, Scope pFrozen, String[] pFrozenVNames,
+			CompileOption pOption, ProblemContainer pResult) {
+		return AsyncCompiler.Instance.compile(this, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
+	/** Create a new Script object from the code in the background (see AsyncCompiler) */
+	default public CompletableFuture<Script> newScriptAsync(String pCode, Scope pFrozen, String[] pFrozenVNames,
+			CompileOption pOption, ProblemContainer pResult) {
+		return AsyncCompiler.Instance.newScript(this, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
+	/** Creates a new macro in the background (see AsyncCompiler) */
+	default public CompletableFuture<Macro> newMacroAsync(Signature pSignature, String[] pParamNames, String pCode,
+			Scope pFrozen, String[] pFrozenVNames, CompileOption pOption, ProblemContainer pResult) {
+		return AsyncCompiler.Instance.newMacro(this, pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption,
+		                                       pResult);
+	}
+	
+	/** Creates a new function in the background (see AsyncCompiler) */
+	default public CompletableFuture<Function> newFunctionAsync(Signature pSignature, String[] pParamNames, String pCode,
+			Scope pFrozen, String[] pFrozenVNames, CompileOption pOption, ProblemContainer pResult) {
+		return AsyncCompiler.Instance.newFunction(this, pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption,
+		                                          pResult);
+	}
+
 	/** Create an Executable using the ExecutableInfo and the Code */
 	public Executable compileExecutable(ExecutableInfo pExecInfo, String pCode, CompileOption pOption,
 			ProblemContainer pResult);
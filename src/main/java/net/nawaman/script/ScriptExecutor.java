@@ -0,0 +1,256 @@
+package net.nawaman.script;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs executables (scripts, functions and macros) concurrently.
+ *
+ * Each run is a task executed by an executor service; the result is given as a CompletableFuture. By default, the
+ *    tasks are run on virtual threads when the JVM supports them (Java 21 or later) or on a fixed pool of daemon
+ *    threads (one thread for each processor) otherwise so an executor that is not closed never keeps the JVM alive.
+ *
+ * Scripts and macros are run with a new scope created by their engine for each task (so the tasks never share a
+ *    scope) unless one is given. The arguments of a script are put in the scope as the main arguments (see
+ *    ScriptManager.$MainArgs) like when the script is run by Main.
+ *
+ * The number of the tasks that are submitted but not yet done is limited. When the limit is reached, the submission
+ *    blocks until a task is done so a producer cannot submit faster than the tasks are run.
+ **/
+public class ScriptExecutor implements AutoCloseable {
+
+	/** The default maximum number of the pending tasks */
+	static public final int DEFAULT_MAX_PENDING = 1024;
+
+	/** Constructs a script executor using virtual threads (or a fixed thread pool if they are not supported) */
+	public ScriptExecutor() {
+		this(NewDefaultExecutorService(), DEFAULT_MAX_PENDING, true);
+	}
+
+	/** Constructs a script executor using virtual threads with the maximum number of the pending tasks */
+	public ScriptExecutor(int pMaxPending) {
+		this(NewDefaultExecutorService(), pMaxPending, true);
+	}
+
+	/**
+	 * Constructs a script executor using the given executor service. The executor service is shut down when this
+	 *    executor is closed only if pIsOwned is true.
+	 **/
+	public ScriptExecutor(ExecutorService pExecutor, int pMaxPending, boolean pIsOwned) {
+		if(pExecutor   == null) throw new NullPointerException("The executor service cannot be null.");
+		if(pMaxPending <= 0)    throw new IllegalArgumentException("Invalid maximum pending tasks: " + pMaxPending);
+
+		this.Executor   = pExecutor;
+		this.MaxPending = pMaxPending;
+		this.Permits    = new Semaphore(pMaxPending);
+		this.IsOwned    = pIsOwned;
+	}
+
+	private final ExecutorService Executor;
+	private final int             MaxPending;
+	private final Semaphore       Permits;
+	private final boolean         IsOwned;
+
+	/** Returns the maximum number of the pending tasks */
+	public int getMaxPending() {
+		return this.MaxPending;
+	}
+
+	/** Returns the number of the tasks that are submitted but not yet done */
+	public int getPendingCount() {
+		return this.MaxPending - this.Permits.availablePermits();
+	}
+
+	// Executor service ------------------------------------------------------------------------------------------------
+
+	/** Checks if virtual threads are supported by the JVM */
+	static public boolean isVirtualThreadSupported() {
+		return (VirtualThreadExecutorFactory() != null);
+	}
+
+	/** Returns the method to create a virtual thread executor (Java 21 or later) or null if there is none */
+	static private java.lang.reflect.Method VirtualThreadExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException E) {
+			return null;
+		}
+	}
+
+	/** Creates the default executor service */
+	static private ExecutorService NewDefaultExecutorService() {
+		java.lang.reflect.Method Factory = VirtualThreadExecutorFactory();
+		if(Factory != null) {
+			try {
+				return (ExecutorService)Factory.invoke(null);
+			} catch (Exception E) {}
+		}
+		final AtomicInteger Count = new AtomicInteger();
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			public Thread newThread(Runnable pRunnable) {
+				Thread Runner = new Thread(pRunnable, "ScriptExecutor-" + Count.incrementAndGet());
+				Runner.setDaemon(true);
+				return Runner;
+			}
+		});
+	}
+
+	// Submission ------------------------------------------------------------------------------------------------------
+
+	/** Runs the script with a new scope */
+	public CompletableFuture<Object> submit(Script pScript) {
+		return this.submit(pScript, (Scope)null);
+	}
+
+	/** Runs the script with the given scope (or a new scope if pScope is null) */
+	public CompletableFuture<Object> submit(final Script pScript, final Scope pScope) {
+		if(pScript == null) throw new NullPointerException("The script cannot be null.");
+		return this.submitTask(new Task() {
+			public Object run() {
+				return pScript.run((pScope != null) ? pScope : ScriptExecutor.newScope(pScript, null));
+			}
+		});
+	}
+
+	/** Runs the function with the parameters */
+	public CompletableFuture<Object> submit(final Function pFunction, final Object ... pParams) {
+		if(pFunction == null) throw new NullPointerException("The function cannot be null.");
+		return this.submitTask(new Task() {
+			public Object run() {
+				return pFunction.run(pParams);
+			}
+		});
+	}
+
+	/** Runs the macro with the given scope (or a new scope if pScope is null) and the parameters */
+	public CompletableFuture<Object> submit(final Macro pMacro, final Scope pScope, final Object ... pParams) {
+		if(pMacro == null) throw new NullPointerException("The macro cannot be null.");
+		return this.submitTask(new Task() {
+			public Object run() {
+				return pMacro.run((pScope != null) ? pScope : ScriptExecutor.newScope(pMacro, null), pParams);
+			}
+		});
+	}
+
+	/**
+	 * Runs the executable with the arguments. A function is run with the arguments as its parameters, a macro is run
+	 *    with a new scope and the arguments as its parameters and a script is run with a new scope that has the
+	 *    arguments as its main arguments.
+	 **/
+	public CompletableFuture<Object> submitExecutable(final Executable pExec, final Object[] pArgs) {
+		if(pExec == null) throw new NullPointerException("The executable cannot be null.");
+
+		final Object[] Args = (pArgs == null) ? new Object[0] : pArgs;
+		return this.submitTask(new Task() {
+			public Object run() {
+				if(pExec instanceof Macro)    return ((Macro)pExec).run(ScriptExecutor.newScope(pExec, null), Args);
+				if(pExec instanceof Function) return ((Function)pExec).run(Args);
+				if(pExec instanceof Script)   return ((Script)pExec).run(ScriptExecutor.newScope(pExec, Args));
+				throw new IllegalArgumentException("Unsupported executable: " + pExec);
+			}
+		});
+	}
+
+	/** Runs the executable once for each argument tuple - the futures are in the same order as the tuples */
+	public List<CompletableFuture<Object>> submitAll(Executable pExec, Collection<Object[]> pArgs) {
+		if(pExec == null) throw new NullPointerException("The executable cannot be null.");
+
+		List<CompletableFuture<Object>> Futures = new ArrayList<CompletableFuture<Object>>(pArgs.size());
+		for(Object[] Args : pArgs) Futures.add(this.submitExecutable(pExec, Args));
+		return Futures;
+	}
+
+	/**
+	 * Uses the executable of the name (see ScriptManager.Use(...)) and runs it once for each argument tuple. An
+	 *    exception is thrown if there is no executable of the name.
+	 **/
+	public List<CompletableFuture<Object>> fanOut(String pName, Collection<Object[]> pArgs) {
+		Executable Exec = ScriptManager.Use(pName);
+		if(Exec == null) throw new IllegalArgumentException("The executable is not found (\""+pName+"\").");
+		return this.submitAll(Exec, pArgs);
+	}
+
+	/** Returns a future that is completed with all the results (in order) when all the futures are done */
+	static public CompletableFuture<List<Object>> allOf(final List<CompletableFuture<Object>> pFutures) {
+		return CompletableFuture
+		           .allOf(pFutures.toArray(new CompletableFuture<?>[pFutures.size()]))
+		           .thenApply(new java.util.function.Function<Void, List<Object>>() {
+		               public List<Object> apply(Void pVoid) {
+		                   List<Object> Results = new ArrayList<Object>(pFutures.size());
+		                   for(CompletableFuture<Object> Future : pFutures) Results.add(Future.join());
+		                   return Results;
+		               }
+		           });
+	}
+
+	/** Creates a new scope for running the executable (with the main arguments if pArgs is not null) */
+	static Scope newScope(Executable pExec, Object[] pArgs) {
+		ScriptEngine Engine = pExec.getEngine();
+		Scope        NewScope = (Engine != null) ? Engine.newScope() : new Scope.Simple();
+		if(pArgs != null) {
+			if(NewScope.isConstantSupport()) NewScope.newConstant(ScriptManager.$MainArgs, Object[].class, pArgs);
+			else                             NewScope.newVariable(ScriptManager.$MainArgs, Object[].class, pArgs);
+		}
+		return NewScope;
+	}
+
+	/** A task of a run */
+	static private interface Task {
+		public Object run();
+	}
+
+	/** Submits the task - waits for a permit if there are too many pending tasks */
+	private CompletableFuture<Object> submitTask(final Task pTask) {
+		try {
+			this.Permits.acquire();
+		} catch (InterruptedException E) {
+			Thread.currentThread().interrupt();
+			CompletableFuture<Object> Future = new CompletableFuture<Object>();
+			Future.completeExceptionally(E);
+			return Future;
+		}
+
+		final CompletableFuture<Object> Future = new CompletableFuture<Object>();
+		try {
+			this.Executor.execute(new Runnable() {
+				public void run() {
+					try {
+						Future.complete(pTask.run());
+					} catch (Throwable T) {
+						Future.completeExceptionally(T);
+					} finally {
+						ScriptExecutor.this.Permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException E) {
+			this.Permits.release();
+			Future.completeExceptionally(E);
+		}
+		return Future;
+	}
+
+	// Life cycle ------------------------------------------------------------------------------------------------------
+
+	/** Stops accepting new tasks and waits for the submitted ones to be done (if the executor service is owned) */
+	public void close() {
+		if(!this.IsOwned) return;
+
+		this.Executor.shutdown();
+		try {
+			while(!this.Executor.awaitTermination(1, TimeUnit.MINUTES));
+		} catch (InterruptedException E) {
+			this.Executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
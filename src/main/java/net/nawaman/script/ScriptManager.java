@@ -5,8 +5,8 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import net.nawaman.script.java.JavaEngine;
@@ -18,9 +18,26 @@ final public class ScriptManager {
 	/** The name of the Args for main function that executing the code */
 	static public final String $MainArgs = "$MainArgs";
 
-	HashMap<String, String>                        EngineNameAlias = new HashMap<String, String>();
-	HashMap<String, ScriptEngine>                  DefaultEngines  = new HashMap<String, ScriptEngine>();
-	HashMap<String, Class<? extends ScriptEngine>> EngineClasses   = new HashMap<String, Class<? extends ScriptEngine>>();
+	// The maps are read without locking; an engine is only added while holding the lock of its class name (see
+	//    getEngineLock(...)) so an engine class is only loaded once even when many threads ask for it at the same time.
+	// The alias is added last so that a thread that can see the alias can also see the engine.
+	ConcurrentHashMap<String, String>                        EngineNameAlias = new ConcurrentHashMap<String, String>();
+	ConcurrentHashMap<String, ScriptEngine>                  DefaultEngines  = new ConcurrentHashMap<String, ScriptEngine>();
+	ConcurrentHashMap<String, Class<? extends ScriptEngine>> EngineClasses   =
+	                                                     new ConcurrentHashMap<String, Class<? extends ScriptEngine>>();
+	
+	static private final int ENGINE_LOCK_COUNT = 16;
+	
+	private final Object[] EngineLocks = new Object[ENGINE_LOCK_COUNT];
+	{
+		for(int i = 0; i < EngineLocks.length; i++) EngineLocks[i] = new Object();
+	}
+	
+	/** Returns the lock for modifying the engine of the given engine class name */
+	private Object getEngineLock(String pEngineClassName) {
+		int Hash = (pEngineClassName == null) ? 0 : pEngineClassName.hashCode();
+		return this.EngineLocks[(Hash ^ (Hash >>> 16)) & (ENGINE_LOCK_COUNT - 1)];
+	}
 
 	// Singleton
 	static public final ScriptManager Instance = new ScriptManager();
@@ -50,40 +67,53 @@ final public class ScriptManager {
 	/* Load an engine from the class name - The client is an object that its class can see the engine */
 	public boolean loadEngine(Class<? extends ScriptEngine> pEngineClass) {
 		if(pEngineClass == null) return false;
-		if(this.DefaultEngines.containsKey(pEngineClass.getCanonicalName())) return false;
-		try {
-			if(!ScriptEngine.class.isAssignableFrom(pEngineClass)) return false;
-			
-			// Create and remember default engine
-			ScriptEngine SE = this.newEngine(pEngineClass, null);
-			if(SE == null) return false;
-			if(SE != null) ScriptManager.Usepaths.registerUsableFilter(SE.getUsableFilters());
-			
-			this.EngineNameAlias.put(SE.getShortName(), pEngineClass.getCanonicalName());
-			this.DefaultEngines .put(pEngineClass.getCanonicalName(), SE);
-			this.EngineClasses  .put( pEngineClass.getCanonicalName(), pEngineClass);
-			return true;
-		} catch(Exception E) {
-			throw new RuntimeException("Error loading engine of '"+pEngineClass+"': " + E, E);
+		
+		String ClassName = pEngineClass.getCanonicalName();
+		if(this.DefaultEngines.containsKey(ClassName)) return false;
+		
+		synchronized(this.getEngineLock(ClassName)) {
+			// Another thread may have loaded it while waiting for the lock
+			if(this.DefaultEngines.containsKey(ClassName)) return false;
+			try {
+				if(!ScriptEngine.class.isAssignableFrom(pEngineClass)) return false;
+				
+				// Create and remember default engine
+				ScriptEngine SE = this.newEngine(pEngineClass, null);
+				if(SE == null) return false;
+				if(SE != null) ScriptManager.Usepaths.registerUsableFilter(SE.getUsableFilters());
+				
+				this.EngineClasses  .put(ClassName, pEngineClass);
+				this.DefaultEngines .put(ClassName, SE);
+				this.EngineNameAlias.put(SE.getShortName(), ClassName);
+				this.clearEngineHeaderCache();
+				return true;
+			} catch(Exception E) {
+				throw new RuntimeException("Error loading engine of '"+pEngineClass+"': " + E, E);
+			}
 		}
 	}
 	
 	/** Register a new engine into the script manager */
 	public void registerEngine(ScriptEngine pEngine) {
-		this.EngineNameAlias.put(pEngine.getShortName(), pEngine.getClass().getCanonicalName());
+		String ClassName = pEngine.getClass().getCanonicalName();
 		
-		// If there is no default engine for the engine class name 
-		if(this.DefaultEngines.get(pEngine.getClass().getCanonicalName()) == null) {
-			this.DefaultEngines.put(pEngine.getShortName(),                pEngine);
-			this.DefaultEngines.put(pEngine.getClass().getCanonicalName(), pEngine);
-			this.EngineClasses.put(pEngine.getClass().getCanonicalName(), pEngine.getClass());
-			
-		} else {
-			ScriptEngine SE = this.DefaultEngines.get(pEngine.getClass().getCanonicalName());
-			if((SE.getOption() != null) && (pEngine.getOption() == null)) {
-				// If the default engine has non-null option and the this new one has null option, use this one as a default
-				this.DefaultEngines.put(pEngine.getClass().getCanonicalName(), pEngine);
+		synchronized(this.getEngineLock(ClassName)) {
+			// If there is no default engine for the engine class name 
+			if(this.DefaultEngines.get(ClassName) == null) {
+				this.EngineClasses.put(ClassName, pEngine.getClass());
+				this.DefaultEngines.put(pEngine.getShortName(), pEngine);
+				this.DefaultEngines.put(ClassName,              pEngine);
+				
+			} else {
+				ScriptEngine SE = this.DefaultEngines.get(ClassName);
+				if((SE.getOption() != null) && (pEngine.getOption() == null)) {
+					// If the default engine has non-null option and the this new one has null option, use this one as a
+					//    default
+					this.DefaultEngines.put(ClassName, pEngine);
+				}
 			}
+			this.EngineNameAlias.put(pEngine.getShortName(), ClassName);
+			this.clearEngineHeaderCache();
 		}
 	}
 	
@@ -93,8 +123,9 @@ final public class ScriptManager {
 	 **/
 	static public String getEngineClassNameByName(String pName) {
 		// Get class name from alias
-		if(Instance.EngineNameAlias.containsKey(pName)) return Instance.EngineNameAlias.get(pName);
-		if(Instance.DefaultEngines.containsKey(pName))  return pName;
+		String ClassName = Instance.EngineNameAlias.get(pName);
+		if(ClassName != null)                          return ClassName;
+		if(Instance.DefaultEngines.containsKey(pName)) return pName;
 		
 		// Pre-load Java
 		if(JavaEngine.ShortName.equals(pName) || JavaEngine.Name.equals(pName)) {
@@ -120,8 +151,10 @@ final public class ScriptManager {
 		pEngineClassName = getEngineClassNameByName(pEngineClassName);
 		
 		// See if it already loaded or load it
-		if((pOption == null) && this.DefaultEngines.containsKey(pEngineClassName))
-			return this.DefaultEngines.get(pEngineClassName);
+		if(pOption == null) {
+			ScriptEngine SE = this.DefaultEngines.get(pEngineClassName);
+			if(SE != null) return SE;
+		}
 		
 		try {
 			Class<? extends ScriptEngine> ECls = this.EngineClasses.get(pEngineClassName);
@@ -195,7 +228,7 @@ final public class ScriptManager {
 	/** Returns the default engine from the engine class name */
 	public ScriptEngine getDefaultEngineOf(String pEngineClassName) {
 		pEngineClassName = getEngineClassNameByName(pEngineClassName);
-		return this.DefaultEngines.get(pEngineClassName);
+		return (pEngineClassName == null) ? null : this.DefaultEngines.get(pEngineClassName);
 	}
 	
 	static final Class<?>[] EmptyClassArray  = new Class<?>[0];
@@ -305,6 +338,16 @@ final public class ScriptManager {
 		return SE.newScript(pCode, pFrozen, pFrozenVNames, pOption, pResult);
 	}
 	
+	/** Creates a new macro */
+	public Macro newMacro(Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen, String[] pFrozenVNames,
+			CompileOption pOption, ProblemContainer pResult) {
+		if(pCode == null) return null;
+		ScriptEngine SE = GetEngineFromCode(pCode);
+		if(SE == null)
+			throw new RuntimeException("Unknown Script Engine: Unable to extract script name from the code: " + pCode);
+		return SE.newMacro(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
 	/** Creates a new function */
 	public Function newFunction(Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen, String[] pFrozenVNames,
 			CompileOption pOption, ProblemContainer pResult) {
@@ -315,6 +358,47 @@ final public class ScriptManager {
 		return SE.newFunction(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
 	}
 	
+	/** Compile a code in the background (see AsyncCompiler) - the engine is the one specified in the code */
+	public CompletableFuture<CompiledCode> compileAsync(String pCode, Scope pFrozen, String[] pFrozenVNames,
+			CompileOption pOption, ProblemContainer pResult) {
+		if(pCode == null) return CompletableFuture.completedFuture(null);
+		ScriptEngine SE = GetEngineFromCode(pCode);
+		if(SE == null)
+			throw new RuntimeException(
+					"Unknown Script Engine: Unable to extract script name from the code: " + pCode);
+		return SE.compileAsync(pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
+	/** Create a new Script object from the code in the background (see AsyncCompiler) */
+	public CompletableFuture<Script> newScriptAsync(String pCode, Scope pFrozen, String[] pFrozenVNames,
+			CompileOption pOption, ProblemContainer pResult) {
+		if(pCode == null) return CompletableFuture.completedFuture(null);
+		ScriptEngine SE = GetEngineFromCode(pCode);
+		if(SE == null)
+			throw new RuntimeException("Unknown Script Engine: Unable to extract script name from the code: " + pCode);
+		return SE.newScriptAsync(pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
+	/** Creates a new macro in the background (see AsyncCompiler) */
+	public CompletableFuture<Macro> newMacroAsync(Signature pSignature, String[] pParamNames, String pCode,
+			Scope pFrozen, String[] pFrozenVNames, CompileOption pOption, ProblemContainer pResult) {
+		if(pCode == null) return CompletableFuture.completedFuture(null);
+		ScriptEngine SE = GetEngineFromCode(pCode);
+		if(SE == null)
+			throw new RuntimeException("Unknown Script Engine: Unable to extract script name from the code: " + pCode);
+		return SE.newMacroAsync(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
+	/** Creates a new function in the background (see AsyncCompiler) */
+	public CompletableFuture<Function> newFunctionAsync(Signature pSignature, String[] pParamNames, String pCode,
+			Scope pFrozen, String[] pFrozenVNames, CompileOption pOption, ProblemContainer pResult) {
+		if(pCode == null) return CompletableFuture.completedFuture(null);
+		ScriptEngine SE = GetEngineFromCode(pCode);
+		if(SE == null)
+			throw new RuntimeException("Unknown Script Engine: Unable to extract script name from the code: " + pCode);
+		return SE.newFunctionAsync(pSignature, pParamNames, pCode, pFrozen, pFrozenVNames, pOption, pResult);
+	}
+	
 	// Extract Engine name from Code -----------------------------------------------------------------------------------
 	
 	static public final String  EngineNameExtractorRegExpr = "[^@\n]*@([a-zA-Z][a-zA-Z0-9]*(\\.[a-zA-Z][a-zA-Z0-9]*)*)(\\([^\\)\\n]+\\)|\\(\\))?:";
@@ -353,19 +437,64 @@ final public class ScriptManager {
 	 * This allows the engine mark to be comment out.
 	 **/
 	static public String[] getEngineNameAndParamFromCode(String pCode) {
-		Matcher M = EngineNameExtractor.matcher(pCode);
+		int Index = GetEndOfIgnored(pCode);
 		
-		if(!M.find(GetEndOfIgnored(pCode))) return null;
+		// The same as `EngineNameExtractor.matcher(pCode).find(Index)` but without the regular expression.
+		while((Index = pCode.indexOf('@', Index)) != -1) {
+			String[] EngineNameAndParam = ScanEngineNameAndParam(pCode, ++Index);
+			if(EngineNameAndParam != null) return EngineNameAndParam;
+		}
+		return null;
+	}
+	
+	/** Checks if the character can start a part of an engine name */
+	static private boolean IsEngineNameStart(char C) {
+		return ((C >= 'a') && (C <= 'z')) || ((C >= 'A') && (C <= 'Z'));
+	}
+	
+	/** Checks if the character can be a part of an engine name */
+	static private boolean IsEngineNamePart(char C) {
+		return IsEngineNameStart(C) || ((C >= '0') && (C <= '9'));
+	}
+	
+	/**
+	 * Scans the engine name and the parameter right after an '@' (at the index) - returns null if the text at the
+	 *    index is not an engine name followed by an optional parameter and a colon.
+	 **/
+	static private String[] ScanEngineNameAndParam(String pCode, int pIndex) {
+		int Length = pCode.length();
+		int Index  = pIndex;
 		
-		String EName = M.group(1);
-		if(EName == null) return null;
+		// Name: [a-zA-Z][a-zA-Z0-9]*(\.[a-zA-Z][a-zA-Z0-9]*)*
+		while(true) {
+			if((Index >= Length) || !IsEngineNameStart(pCode.charAt(Index))) return null;
+			Index++;
+			while((Index < Length) && IsEngineNamePart(pCode.charAt(Index))) Index++;
+			
+			if((Index >= Length) || (pCode.charAt(Index) != '.')) break;
+			Index++;
+		}
+		String EName = pCode.substring(pIndex, Index);
+		if(Index >= Length) return null;
 		
-		String EParam = M.group(M.groupCount());
-		if(EParam != null) {
-			EParam = EParam.trim();
-			EParam = (EParam.length() >= 2)?EParam.substring(1, EParam.length() - 1).trim():null;
+		// Parameter: (\([^\)\n]+\)|\(\))?
+		String EParam = null;
+		if(pCode.charAt(Index) == '(') {
+			int PBegin = Index + 1;
+			int PEnd   = PBegin;
+			while((PEnd < Length) && (pCode.charAt(PEnd) != ')')) {
+				if(pCode.charAt(PEnd) == '\n') return null;
+				PEnd++;
+			}
+			if(PEnd >= Length) return null;
+			
+			EParam = pCode.substring(PBegin, PEnd).trim();
+			Index  = PEnd + 1;
 		}
 		
+		// Colon
+		if((Index >= Length) || (pCode.charAt(Index) != ':')) return null;
+		
 		return new String[] { EName, EParam };
 	}
 	
@@ -385,20 +514,52 @@ final public class ScriptManager {
 	 * 
 	 * This allows the engine mark to be comment out.
 	 **/
-	@SuppressWarnings("finally")
 	static public ScriptEngine GetEngineFromCode(String pCode) {
 		
 		String[] EngineNameAndParam = getEngineNameAndParamFromCode(pCode);
-		ScriptEngine SE     = null;
-		String       EName  = null;
-		String       EParam = null;
+		if((EngineNameAndParam == null) || (EngineNameAndParam.length != 2)) return null;
+		
+		String EName  = EngineNameAndParam[0];
+		String EParam = EngineNameAndParam[1];
+		String Key    = (EParam == null) ? EName : EName + "(" + EParam + ")";
+		
+		Object Engine = Instance.EngineHeaderCache.get(Key);
+		if(Engine == null) {
+			Engine = ResolveEngine(EName, EParam);
+			if(Instance.EngineHeaderCache.size() < ENGINE_HEADER_CACHE_LIMIT)
+				Instance.EngineHeaderCache.putIfAbsent(Key, Engine);
+		}
+		
+		if(Engine instanceof ScriptEngine) return (ScriptEngine)Engine;
+		if(Engine instanceof String)       throw new RuntimeException("Unknown ScriptEngine: " + Engine + ".");
+		return null;
+	}
+	
+	/** The maximum number of the engine headers to be cached */
+	static private final int    ENGINE_HEADER_CACHE_LIMIT = 1024;
+	/** The result of the engine header that has no engine */
+	static private final Object NoEngine                  = new Object();
+	
+	/**
+	 * The engine of each engine header (name and parameter) - the value is the engine, the name of the unknown engine
+	 *    (as a String) or NoEngine.
+	 **/
+	private final ConcurrentHashMap<String, Object> EngineHeaderCache = new ConcurrentHashMap<String, Object>();
+	
+	/** Clears the engine of each engine header so the engine of the code will be resolved again */
+	public void clearEngineHeaderCache() {
+		this.EngineHeaderCache.clear();
+	}
+	
+	/**
+	 * Resolves the engine of the engine name and the parameter - returns the engine, the name of the unknown engine (as
+	 *    a String) or NoEngine.
+	 **/
+	@SuppressWarnings("finally")
+	static private Object ResolveEngine(String EName, String EParam) {
+		ScriptEngine SE = null;
 		
 		try {
-			if((EngineNameAndParam == null) || (EngineNameAndParam.length != 2)) return null;
-			
-			EName  = EngineNameAndParam[0];
-			EParam = EngineNameAndParam[1];
-			
 			SE = ScriptManager.Instance.DefaultEngines.get(EName);
 			if(SE == null) {
 				EName = getEngineClassNameByName(EName);
@@ -412,8 +573,8 @@ final public class ScriptManager {
 			
 		} finally{
 			if(SE == null) {
-				if(EName == null) return null;
-				else throw new RuntimeException("Unknown ScriptEngine: " + EName + ".");
+				if(EName == null) return NoEngine;
+				else return EName;
 			}
 			return SE;
 			
@@ -436,10 +597,12 @@ final public class ScriptManager {
 	/** Searches and Returns the executable. */
 	static public Executable UseWithException(String Name) throws FileNotFoundException, IOException,
 								ClassNotFoundException {
+		// The holders apply the usable filters and factories so they decide which executable a name resolves to
 		UsableHolder<Executable> UH = Usepaths.getUsableHolder(Name);
 		if(UH != null) return UH.get();
 		
-		return null;
+		// The index is kept up-to-date with the files so it finds the ones the holders do not know yet
+		return Usepaths.getIndex().use(Name);
 	}
 	
 }
@@ -62,15 +62,15 @@ public interface Signature extends Serializable {
 		public Simple(String pName, Class<?> pReturnType, boolean pIsVarArgs, Class<?> ... pParamTypes) {
 			this.Name = pName;
 			
-			if(pReturnType == null) pReturnType = Void.class;
+			if((pReturnType == null) || (pReturnType == void.class)) pReturnType = Void.class;
 			if(pParamTypes == null) pParamTypes = EmptyClassArray;
 			if(pIsVarArgs && (pParamTypes.length == 0))
 				throw new IllegalArgumentException("A function without any parameter cannot be VarArgs.");
 			
 			for(int i = pParamTypes.length; --i >= 0; ) {
 				if(pParamTypes[i] == null) pParamTypes[i] = Void.class;
-				else if(pParamTypes[i].isPrimitive()) {
-					throw new IllegalArgumentException("Primitive parameter type is not allowed ("+pParamTypes[i].getName()+").");
+				else if(pParamTypes[i] == void.class) {
+					throw new IllegalArgumentException("Void parameter type is not allowed.");
 				}
 			}
 			
@@ -197,6 +197,26 @@ public interface Signature extends Serializable {
 			return true;
 		}
 		
+		/** Returns the wrapper type of the primitive type or the type itself if it is not a primitive type */
+		static public Class<?> getWrapperType(Class<?> pType) {
+			if((pType == null) || !pType.isPrimitive()) return pType;
+			if(pType == int    .class) return Integer  .class;
+			if(pType == long   .class) return Long     .class;
+			if(pType == double .class) return Double   .class;
+			if(pType == boolean.class) return Boolean  .class;
+			if(pType == char   .class) return Character.class;
+			if(pType == byte   .class) return Byte     .class;
+			if(pType == float  .class) return Float    .class;
+			if(pType == short  .class) return Short    .class;
+			return Void.class;
+		}
+		
+		/** Checks if the value can be passed as a parameter of the type (null cannot be passed as a primitive) */
+		static boolean isParameterCompatible(Class<?> pType, Object pValue) {
+			if(pValue == null) return !pType.isPrimitive();
+			return getWrapperType(pType).isInstance(pValue);
+		}
+		
 		/** Adjust the parameters (apply VarArgs) */
 		static public Object[] adjustParameters(Signature pSignature, Object[] pParams) {
 			if(pParams == null) pParams = EmptyObjectArray;
@@ -218,7 +238,7 @@ public interface Signature extends Serializable {
 					Object LastParam = pParams[PCount - 1];
 					if(LastParam != null) {
 						// The last parameter is the same type
-						if(VAType.isInstance(LastParam)) {
+						if(getWrapperType(VAType).isInstance(LastParam)) {
 							// Make it an array
 							Object O = Array.newInstance(VAType, 1);
 							Array.set(O, 0, pParams[PCount - 1]);
@@ -234,7 +254,7 @@ public interface Signature extends Serializable {
 							Object NewLastParam = Array.newInstance(VAType, LPCount);
 							for(int i = 0; i < LPCount; i++ ) {
 								Object LP = Array.get(LastParam, i);
-								if((LP != null) && !VAType.isInstance(LP))
+								if(!isParameterCompatible(VAType, LP))
 									throw newIncompatibleParameterException(pSignature, pParams);
 								
 								Array.set(NewLastParam, i, LP);
@@ -249,7 +269,7 @@ public interface Signature extends Serializable {
 					Object NewLastParam = Array.newInstance(VAType, PCount - FirstIndex);
 					
 					for(int i = FirstIndex; i < PCount; i++ ) {
-						if((pParams[i] != null) && !VAType.isInstance(pParams[i]))
+						if(!isParameterCompatible(VAType, pParams[i]))
 							throw newIncompatibleParameterException(pSignature, pParams);
 						
 						Array.set(NewLastParam, i - FirstIndex, pParams[i]);
@@ -267,12 +287,11 @@ public interface Signature extends Serializable {
 			
 			// Checks each parameter
 			for(int i = pSignature.getParamCount(); --i >= 0; ) {
-				if(pParams[i] == null) continue;
 				Class<?> C = pSignature.getParamType(i);
 				// For the last parameter of VarArgs, the last parameter is already checked
 				if(pSignature.isVarArgs() && (i == (pSignature.getParamCount() - 1))) continue;
 				
-				if((pParams[i] != null) && !C.isInstance(pParams[i]))
+				if(!isParameterCompatible(C, pParams[i]))
 					throw newIncompatibleParameterException(pSignature, pParams);
 			}
 			
@@ -281,7 +300,7 @@ public interface Signature extends Serializable {
 		
 		/** Checks if the return is compatible with the signature */
 		static public Object ensureReturnCompatible(Signature pSignature, Object pReturn) {
-			Class<?> ReturnType = pSignature.getReturnType();
+			Class<?> ReturnType = getWrapperType(pSignature.getReturnType());
 			if((pReturn != null) && !ReturnType.isInstance(pReturn)) {
 				if(Number.class.isAssignableFrom(ReturnType) && Number.class.isInstance(pReturn)) {
 					if(ReturnType == Integer.class) return ((Number)pReturn).intValue();
@@ -11,12 +11,19 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.nawaman.javacompiler.JavaCompilerObjectInputStream;
 import net.nawaman.javacompiler.JavaCompilerObjectOutputStream;
+import net.nawaman.script.java.JavaEngine;
 
 /**
  * This class provide utilities methods for compiled, save and loaded compiled code. It ensures that the required
@@ -36,128 +43,91 @@ public class Tools {
 	
 	// UTILITIES -------------------------------------------------------------------------------------------------------
 	
-	// BASE 64 ENCODING -- Taken from --http://www.wikihow.com/Encode-a-String-to-Base64-With-Java
-	// Change from (String):String to (byte[]):String
-	// The decoding is all my code (reverse from the one taken, anyway)
+	// BASE 64 ENCODING -- The encoded text is split into lines of (splitLinesAt + 1) groups of 4 characters (76 by
+	//    default) separated by '\n'. The compiled executable is encoded by java.util.Base64 as it is serialized so the
+	//    encoded text is not built from a separate copy of the encoded bytes (the serialized executable is still kept as
+	//    a byte[] - see SerializeExecutable(...) - and the long comment is made from a copy of the encoded text).
 	
+	/** @deprecated The standard BASE64 alphabet is always used (see java.util.Base64); changing this has no effect. */
+	@Deprecated
 	public static String base64code   = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	/** The number of the groups of 4 characters in an encoded line minus 1 (the decoding does not depend on it) */
 	public static int    splitLinesAt = 19 - 1; // 76/4 - 1;
 	
+	static private final byte[]         NewLine       = new byte[] { '\n' };
+	static private final Base64.Decoder Base64Decoder = Base64.getMimeDecoder();
+	
+	/** Returns the encoder that splits the lines at splitLinesAt */
+	static private Base64.Encoder Base64Encoder() {
+		return Base64.getMimeEncoder((splitLinesAt + 1)*4, NewLine);
+	}
+	
 	/** Encode the given byte[] with BASE64 ENCODING String */
 	static public String base64Encode(byte[] Bytes) {
 		if(Bytes == null) return "";
-			
-		StringBuilder Encoded = new StringBuilder();
-		
-		// Determine how many padding bytes to add to the output
-		int PaddingCount = (3 - (Bytes.length % 3)) % 3;
-		
-		try {
-			ByteArrayOutputStream BAOS = new ByteArrayOutputStream();
-			
-			// Write the original data
-			BAOS.write(Bytes);
-			// Write the padding-zero
-			for(int i = PaddingCount; --i >= 0; ) BAOS.write(0);
-
-			// Move to the working array
-			Bytes = BAOS.toByteArray();
-			BAOS.close();
-		} catch (Exception E) {}
-		
-		int c = 0;
-		// Process 3 bytes at a time, churning out 4 output bytes
-		// worry about CRLF insertions later
-		for (int i = 0; i < Bytes.length; i += 3) {
-			// I0            I1         I2
-			// 0101 01 - 01  0101-0101  01-01 0101
-			// F    C    3   F    F     C  3  F   
-			// 0101 01 + 01  0101+0101  01+01 0101
-			// B0        B1       B2       B3
-
-			int I0 = Bytes[i    ];
-			int I1 = Bytes[i + 1];
-			int I2 = Bytes[i + 2];
-			
-			int B0 = ((I0 & 0xFC) >> 2)                     ;
-			int B1 = ((I0 & 0x03) << 4) | ((I1 & 0xF0) >> 4);
-			int B2 = ((I1 & 0x0F) << 2) | ((I2 & 0xC0) >> 6);
-			int B3 =                       (I2 & 0x3F)      ;
-			
-			Encoded.append(base64code.charAt(B0))
-			       .append(base64code.charAt(B1))
-			       .append(base64code.charAt(B2))
-			       .append(base64code.charAt(B3));
-			
-			if(c == splitLinesAt) {
-				Encoded.append("\n");
-				c = 0;
-			} else c++;
-		}
-
-		// replace encoded padding nulls with "="
-		String Result = Encoded.substring(0, Encoded.length() - PaddingCount) + "==".substring(0, PaddingCount); 
-		return Result;
+		return Base64Encoder().encodeToString(Bytes);
 	}
 
 	/** Decode the given BASE64-ENCODING String to byte[] */
 	static public byte[] Base64Decode(String BASE64) {
 		if((BASE64 == null) || (BASE64.length() == 0)) return new byte[0];
-		BASE64 = BASE64.trim();
+		return Base64Decoder.decode(BASE64.trim());
+	}
+	
+	/** Returns an output stream that appends the BASE64 encoding of the bytes written to it to the StringBuilder */
+	static public OutputStream NewBase64OutputStream(final StringBuilder SB) {
+		return Base64Encoder().wrap(new OutputStream() {
+			@Override public void write(int B) {
+				SB.append((char)(B & 0xFF));
+			}
+			@Override public void write(byte[] Bs, int Offset, int Length) {
+				// A line at a time - much faster than appending each character
+				SB.append(new String(Bs, Offset, Length, StandardCharsets.ISO_8859_1));
+			}
+		});
+	}
+	
+	/** Returns an input stream that decodes the BASE64 encoded portion of the text */
+	static public InputStream NewBase64InputStream(CharSequence Text, int Start, int End) {
+		return Base64Decoder.wrap(new TextInputStream(Text, Start, End));
+	}
+	
+	/** An input stream that reads the characters of a portion of a text as bytes (only for ASCII text) */
+	static final class TextInputStream extends InputStream {
 		
-		// Remove padding
-		int PaddingCount = 0;
-		if(     BASE64.charAt(BASE64.length() - 2) == '=') PaddingCount = 2;
-		else if(BASE64.charAt(BASE64.length() - 1) == '=') PaddingCount = 1;
-		BASE64 = BASE64.substring(0, BASE64.length() - PaddingCount) + "\0\0".substring(2 - PaddingCount);
+		private final CharSequence Text;
+		private final int          End;
+		private       int          Index;
 		
-		byte[] Bs = null;
-		try {
-			ByteArrayOutputStream BAOS = new ByteArrayOutputStream();
-
-			int c = 0;
-			for(int i = 0; i < BASE64.length(); i += 4) {
-				// B0       B1      B2      B3
-				// 010101 + 01 0101 0101 01 01 0101
-				// 3 F      3  F    3 C  3  3  F   
-				// 010101 + 01 0101-0101 01-01 0101
-				// I0          I1        I2
-				
-				int B0 = base64code.indexOf(BASE64.charAt(i    ));
-				int B1 = base64code.indexOf(BASE64.charAt(i + 1));
-				int B2 = base64code.indexOf(BASE64.charAt(i + 2));
-				int B3 = base64code.indexOf(BASE64.charAt(i + 3));
-				
-				int I0 = ((B0 & 0x3F) << 2) | ((B1 & 0x30) >> 4);
-				int I1 = ((B1 & 0x0F) << 4) | ((B2 & 0x3C) >> 2);
-				int I2 = ((B2 & 0x03) << 6) | ((B3 & 0x3F)     );
-				
-				BAOS.write(I0);
-				BAOS.write(I1);
-				BAOS.write(I2);
-				
-				if(c == splitLinesAt) {
-					i += 1;
-					c = 0;
-				} else c++;
-			}
+		TextInputStream(CharSequence pText, int pStart, int pEnd) {
+			if((pStart < 0) || (pEnd > pText.length()) || (pStart > pEnd))
+				throw new IndexOutOfBoundsException("Start: "+pStart+", End: "+pEnd+", Length: "+pText.length());
 			
-			Bs = BAOS.toByteArray();
-			BAOS.close();
-		
+			this.Text  = pText;
+			this.Index = pStart;
+			this.End   = pEnd;
 		}
-		catch (RuntimeException E) { throw E; }
-		catch (Exception E)        { throw new RuntimeException(E); }
-		
-		if(Bs == null) Bs = new byte[0];
-		else if(PaddingCount != 0){
-			// Cut the padding
-			byte[] NBs = new byte[Bs.length - PaddingCount];
-			System.arraycopy(Bs, 0, NBs, 0, NBs.length);
-			Bs = NBs;
+		
+		/**{@inheritDoc}*/ @Override
+		public int read() {
+			return (this.Index < this.End) ? (this.Text.charAt(this.Index++) & 0xFF) : -1;
 		}
+		
+		/**{@inheritDoc}*/ @Override
+		public int read(byte[] Bs, int Offset, int Length) {
+			if(Length == 0) return 0;
+			if(this.Index >= this.End) return -1;
 			
-		return Bs;
+			int Count = Math.min(Length, this.End - this.Index);
+			for(int i = 0; i < Count; i++)
+				Bs[Offset + i] = (byte)this.Text.charAt(this.Index++);
+			return Count;
+		}
+		
+		/**{@inheritDoc}*/ @Override
+		public int available() {
+			return this.End - this.Index;
+		}
 	}
 	
 	/** Returns a HashValue of a Text */
@@ -172,6 +142,62 @@ public class Tools {
 		return String.format("%8X", H);
 	}
 	
+	/** The length of the text of a digest (SHA-256 in hex) */
+	static public final int DIGEST_TEXT_LENGTH = 64;
+	
+	static private final int    DIGEST_BUFFER_SIZE = 8*1024;
+	static private final char[] HEX_DIGITS         = "0123456789abcdef".toCharArray();
+	
+	/** Returns the SHA-256 digest of a text as a hex text */
+	static public String GetDigestText(CharSequence Text) {
+		if(Text == null) return null;
+		return GetDigestText(Text, 0, Text.length());
+	}
+	
+	/** Returns the SHA-256 digest of a portion of a text as a hex text */
+	static public String GetDigestText(CharSequence Text, int Start, int End) {
+		if(Text == null) return null;
+		
+		MessageDigest MD = NewDigest();
+		UpdateDigest(MD, Text, Start, End, new byte[DIGEST_BUFFER_SIZE]);
+		return ToHexText(MD.digest());
+	}
+	
+	/** Creates a new SHA-256 message digest */
+	static MessageDigest NewDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException E) {
+			throw new RuntimeException("SHA-256 is not supported by this JVM.", E);
+		}
+	}
+	
+	/** Adds the characters of a portion of the text into the digest (the buffer is used to pass the bytes in chunks) */
+	static void UpdateDigest(MessageDigest MD, CharSequence Text, int Start, int End, byte[] Buffer) {
+		int Index = 0;
+		int Limit = Buffer.length - 1;
+		for(int i = Start; i < End; i++) {
+			char C = Text.charAt(i);
+			Buffer[Index++] = (byte)(C >>> 8);
+			Buffer[Index++] = (byte) C;
+			if(Index >= Limit) {
+				MD.update(Buffer, 0, Index);
+				Index = 0;
+			}
+		}
+		if(Index != 0) MD.update(Buffer, 0, Index);
+	}
+	
+	/** Returns the hex text of the bytes */
+	static String ToHexText(byte[] Bytes) {
+		char[] Chars = new char[Bytes.length*2];
+		for(int i = 0; i < Bytes.length; i++) {
+			Chars[i*2]     = HEX_DIGITS[(Bytes[i] >>> 4) & 0x0F];
+			Chars[i*2 + 1] = HEX_DIGITS[ Bytes[i]        & 0x0F];
+		}
+		return new String(Chars);
+	}
+	
 	// EXECUTABLE INFO -------------------------------------------------------------------------------------------------
 	
 	/** Regular expression to extract the signature */
@@ -341,6 +367,58 @@ public class Tools {
 		if(SE == null)
 			throw new IllegalArgumentException("The stream does not contain a code.");
 		
+		ExecutableInfo ExecInfo = GetExecutableInfoOfCode(SE, Name, Text);
+		return SE.compileExecutable(ExecInfo, Text, pOption, pResult);
+	}
+	
+	/**
+	 * Compile peices of code into executables. The codes of the same engine are compiled together if the engine
+	 *    supports so (e.g., JavaEngine compiles all of them in one javac invocation). The returned array has the
+	 *    executables in the same order as the texts (null for the one with compile errors).
+	 **/
+	static public Executable[] CompileExecutables(String[] Names, String[] Texts, CompileOption pOption,
+			ProblemContainer[] pResults) {
+		if(Texts == null) return new Executable[0];
+		
+		Executable[] Execs = new Executable[Texts.length];
+		
+		int[]                           JIndexes  = new int[Texts.length];
+		JavaEngine                      JEngine   = null;
+		List<JavaEngine.CompileRequest> JRequests = new ArrayList<JavaEngine.CompileRequest>();
+		for(int i = 0; i < Texts.length; i++) {
+			String           Name   = ((Names    == null) || (i >= Names   .length)) ? null : Names[i];
+			ProblemContainer Result = ((pResults == null) || (i >= pResults.length)) ? null : pResults[i];
+			String           Text   = Texts[i];
+			
+			ScriptEngine SE = ScriptManager.GetEngineFromCode(Text);
+			
+			// The engine is not found
+			if(SE == null)
+				throw new IllegalArgumentException("The text #"+i+" ("+Name+") does not contain a code.");
+			
+			ExecutableInfo ExecInfo = GetExecutableInfoOfCode(SE, Name, Text);
+			
+			if((SE instanceof JavaEngine) && ((JEngine == null) || (JEngine == SE))) {
+				JEngine = (JavaEngine)SE;
+				JIndexes[JRequests.size()] = i;
+				JRequests.add(new JavaEngine.CompileRequest(ExecInfo, Text, pOption, Result));
+				continue;
+			}
+			
+			Execs[i] = SE.compileExecutable(ExecInfo, Text, pOption, Result);
+		}
+		
+		if(JEngine != null) {
+			Executable[] JExecs = JEngine.compileAll(JRequests);
+			for(int i = 0; i < JExecs.length; i++)
+				Execs[JIndexes[i]] = JExecs[i];
+		}
+		
+		return Execs;
+	}
+	
+	/** Returns the executable info of the code (or the default one of the engine if the code does not have one) */
+	static ExecutableInfo GetExecutableInfoOfCode(ScriptEngine SE, String Name, String Text) {
 		ExecutableInfo ExecInfo = null;
 		try { ExecInfo = ParseExecutableInfoFromCode(Name, Text); }
 		catch (ClassNotFoundException E) {
@@ -368,7 +446,7 @@ public class Tools {
 				ExecInfo = ExecutableInfo.getMainExecutableInfo(Name);
 		}
 		
-		return SE.compileExecutable(ExecInfo, Text, pOption, pResult);
+		return ExecInfo;
 	}
 	
 	// COMPILE and COMBINE ---------------------------------------------------------------------------------------------
@@ -403,15 +481,56 @@ public class Tools {
 		if((Exec.getEngine() != null) && !Exec.getEngine().isCompilable())
 			return SB.toString();
 	
-		String Hash = GetHashText(Text);
+		String Hash = GetDigestText(Text);
+		
+		// Compile Code Hash and Length
+		StringBuilder Compiled = new StringBuilder();
+		Compiled.append("##:COMPILED::BASE64 {\n");
+		
+		// Serialize the executable directly into the text
+		OutputStream B64OS = NewBase64OutputStream(Compiled);
+		try     { SerializeExecutable(Exec, Hash, B64OS); }
+		catch   (IOException E) {}
+		finally { try { B64OS.close(); } catch (IOException E) {} }
 		
-		ByteArrayOutputStream BAOS  = null;
+		Compiled.append("\n}");
+		
+		int    CompiledLength = Compiled.length();
+		String CompiledHash   = GetDigestText(Compiled);
+		Compiled.append("\n");
+		
+		// HASH 1 is the hash of the Compiled Text used just in case we really needed to be sure that no altered is done
+		// HASH 2 is the hash of the Original Code used to check if the code has been edited (so recompiled is needed).
+		Compiled.append(String.format(HASHES_V2_PREFIX + "%s-%s;\n", Hash,          CompiledHash));
+		Compiled.append(String.format("##:COUNTS:0x%8X-0x%8X;",        Text.length(), CompiledLength + 1));	// 1 for '\n' <Tools:415>
+		
+		// Merge
+		SB.append("\n").append(Exec.getEngine().getLongComments(Compiled.toString(), LONG_COMMENT_LINE_WIDTH));
+		
+		return SB.toString();
+	}
+	
+	// SERIALIZE EXECUTABLE --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Serializes the executable together with the name and the parameter of its engine. The hash is kept with the
+	 *    executable so it can be checked when it is deserialized.
+	 **/
+	static byte[] SerializeExecutable(Executable Exec, String Hash) {
+		ByteArrayOutputStream BAOS = new ByteArrayOutputStream();
+		try {
+			SerializeExecutable(Exec, Hash, BAOS);
+		} catch (IOException E) {}
+		return BAOS.toByteArray();
+	}
+	
+	/** Serializes the executable into the output stream (see SerializeExecutable(Executable, String)) */
+	static void SerializeExecutable(Executable Exec, String Hash, OutputStream OS) throws IOException {
 		ObjectOutputStream    OOS   = null;
 		ByteArrayOutputStream EBAOS = null;
 		ObjectOutputStream    EOOS  = null;
 		try {
-			BAOS = new ByteArrayOutputStream();
-			OOS  = new ObjectOutputStream(BAOS);
+			OOS = new ObjectOutputStream(OS);
 			
 			ScriptEngine SE     = Exec.getEngine();
 			String       EName  = SE.getName();
@@ -435,36 +554,200 @@ public class Tools {
 			
 			byte[] Bs = EBAOS.toByteArray();
 			OOS.writeObject(Bs);
+			OOS.flush();
 
 			EBAOS.close();
 			EBAOS = null;
 			
-		} catch (IOException E) {
 		} finally {
 			try { if(EBAOS != null) EBAOS.close(); } catch (IOException E) {};
 			try { if(EOOS  != null) EOOS .close(); } catch (IOException E) {};
-			try { if(OOS   != null) OOS  .close(); } catch (IOException E) {};
-			try { if(BAOS  != null) BAOS .close(); } catch (IOException E) {};
 		}
-
-		// Compile Code Hash and Length
-		StringBuilder Compiled = new StringBuilder();
-		Compiled.append("##:COMPILED::BASE64 {\n");
-		Compiled.append(base64Encode(BAOS.toByteArray()));
-		Compiled.append("\n}");
+	}
+	
+	/**
+	 * Deserializes the executable from the bytes created by SerializeExecutable(...). Returns null if the bytes are
+	 *    mal-formed or the hash kept with the executable is not the given one (the hash is not checked if it is null).
+	 **/
+	static Executable DeserializeExecutable(byte[] Bytes, String Hash) {
+		return DeserializeExecutable(new ByteArrayInputStream(Bytes), Hash);
+	}
+	
+	/** Deserializes the executable from the input stream (see DeserializeExecutable(byte[], String)) */
+	static Executable DeserializeExecutable(InputStream IS, String Hash) {
+		ObjectInputStream    OIS   = null;
+		ByteArrayInputStream EBAIS = null;
+		ObjectInputStream    EOIS  = null;
 		
-		String CompiledStr = Compiled.toString();
-		Compiled.append("\n");
+		try {
+			OIS = new ObjectInputStream(IS);
+			
+			String EngineName  = OIS.readUTF();
+			String EngineParam = OIS.readUTF();
+			
+			byte[] Bs = (byte[])OIS.readObject();
+			EBAIS = new ByteArrayInputStream(Bs);
+			
+			ScriptEngine SE = ScriptManager.GetEngineFromCode(String.format("// @%s(%s):", EngineName, EngineParam));
+			EOIS = SE.newExecutableObjectInputStream(EBAIS);
+			if(EOIS == null) EOIS = JavaCompilerObjectInputStream.NewJavaCompilerObjectInputStream(EBAIS);
+			
+			// Extract the object
+			Executable Exec     = (Executable)EOIS.readObject();
+			String     TextHash = (String)    EOIS.readObject();
+
+			// Check the hash using the hash value inside the compiled code
+			return ((Hash == null) || Hash.equals(TextHash)) ? Exec : null;
+		} catch (Exception E) {
+			return null;
+		} finally {
+			// Close the stream
+			if(EBAIS != null) try { EBAIS.close(); } catch (Exception E) { }
+			if(EOIS  != null) try { EOIS .close(); } catch (Exception E) { }
+			if(OIS   != null) try { OIS  .close(); } catch (Exception E) { }
+			if(IS    != null) try { IS   .close(); } catch (Exception E) { }
+		}
+	}
+	
+	// COMPILED TEXT FOOTER --------------------------------------------------------------------------------------------
+	
+	/** The prefix of the hashes line that uses SHA-256 digests */
+	static public final String HASHES_V2_PREFIX = "##:HASHES:v2:";
+	
+	/**
+	 * The footer of a compiled text. It is made of the hashes line and the counts line.
+	 * 
+	 * The hashes line is either "##:HASHES:0xXXXXXXXX-0xXXXXXXXX;" (from GetHashText(...) of the old files) or
+	 *    "##:HASHES:v2:<digest>-<digest>;" (from GetDigestText(...)). The first hash is of the code and the second is
+	 *    of the compiled code section.
+	 **/
+	static final class Footer {
+		
+		final int     HIndex;		// The index of the '\n' before the hashes line
+		final int     Length_Code;
+		final int     Length_CStr;
+		final int     CCodeBegin;
+		final int     CCodeEnd;
+		final boolean IsV2;
+		final String  Hash_Code;
+		final String  Hash_CStr;
+		
+		/** Parses the footer - LIndex is the index of the '\n' before the counts line */
+		Footer(CharSequence Text, int LIndex) {
+			int I;
+			if(((I = IndexOf(Text, '\n', LIndex))        == -1) ||
+			   ((I = IndexOf(Text, '\n', I + 1)) == -1) ||
+			   ((I = IndexOf(Text, '\n', I + 1)) != -1)) {
+				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+			}
+			
+			try {
+				// Gets both lengths
+				String L1 = Text.subSequence(LIndex + 13, LIndex + 21).toString();
+				String L2 = Text.subSequence(LIndex + 24, LIndex + 32).toString();
+				try {
+					this.Length_Code = Integer.parseInt(L1.trim(), 16);
+					this.Length_CStr = Integer.parseInt(L2.trim(), 16);
+				} catch (NumberFormatException NFE) {
+					throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+				}
+				
+				if((this.Length_Code >= Text.length()) || (this.Length_Code < 0))
+					throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
 		
-		// HASH 1 is the hash of the Compiled Text used just in case we really needed to be sure that no altered is done
-		// HASH 2 is the hash of the Original Code used to check if the code has been edited (so recompiled is needed).
-		Compiled.append(String.format("##:HASHES:0x%s-0x%s;\n", Hash,          GetHashText(CompiledStr)));
-		Compiled.append(String.format("##:COUNTS:0x%8X-0x%8X;", Text.length(), CompiledStr.length() + 1));	// 1 for '\n' <Tools:415>
+				if((this.Length_CStr >= Text.length()) || (this.Length_CStr < 0))
+					throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+				
+				this.HIndex = LastIndexOf(Text, '\n', LIndex - 1);
+				if(this.HIndex == -1)
+					throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+				
+				this.CCodeBegin = this.HIndex - this.Length_CStr + 1;	// One for an extract '\n'
+				this.CCodeEnd   = this.HIndex;
+				// 24 is the length of the "##:COMPILED::BASE64 {\n" and "\n}"
+				if((this.CCodeBegin < 0) || ((this.CCodeEnd - this.CCodeBegin) < 24))
+					throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+				
+				// Get the hashes
+				this.IsV2 = StartsWith(Text, HASHES_V2_PREFIX, this.HIndex + 1);
+				if(this.IsV2) {
+					int HBegin = this.HIndex + 1 + HASHES_V2_PREFIX.length();
+					this.Hash_Code = Text.subSequence(HBegin, HBegin + DIGEST_TEXT_LENGTH).toString();
+					HBegin += DIGEST_TEXT_LENGTH + 1;	// One for '-'
+					this.Hash_CStr = Text.subSequence(HBegin, HBegin + DIGEST_TEXT_LENGTH).toString();
+				} else {
+					this.Hash_Code = Text.subSequence(this.HIndex + 13, this.HIndex + 21).toString();
+					this.Hash_CStr = Text.subSequence(this.HIndex + 24, this.HIndex + 32).toString();
+				}
+			} catch (IndexOutOfBoundsException E) {
+				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
+			}
+		}
 		
-		// Merge
-		SB.append("\n").append(Exec.getEngine().getLongComments(Compiled.toString(), LONG_COMMENT_LINE_WIDTH));
+		/** Checks if the code of the text is the one that was compiled */
+		boolean isCodeUpToDate(CharSequence Text) {
+			return this.IsV2
+			           ? this.Hash_Code.equals(GetDigestText(Text, 0, this.Length_Code))
+			           : this.Hash_Code.equals(GetHashText(Text.subSequence(0, this.Length_Code).toString()));
+		}
 		
-		return SB.toString();
+		/** Checks if the compiled code section of the text is not altered */
+		boolean isCompiledCodeIntact(CharSequence Text) {
+			return this.IsV2
+			           ? this.Hash_CStr.equals(GetDigestText(Text, this.CCodeBegin, this.CCodeEnd))
+			           : this.Hash_CStr.equals(GetHashText(Text.subSequence(this.CCodeBegin,this.CCodeEnd).toString()));
+		}
+	}
+	
+	/** Returns the index of the character in the text from the given index (-1 if not found) */
+	static int IndexOf(CharSequence Text, char C, int From) {
+		if(Text instanceof String) return ((String)Text).indexOf(C, From);
+		for(int i = Math.max(0, From); i < Text.length(); i++)
+			if(Text.charAt(i) == C) return i;
+		return -1;
+	}
+	
+	/** Returns the last index of the character in the text from the given index backward (-1 if not found) */
+	static int LastIndexOf(CharSequence Text, char C, int From) {
+		if(Text instanceof String) return ((String)Text).lastIndexOf(C, From);
+		for(int i = Math.min(From, Text.length() - 1); i >= 0; i--)
+			if(Text.charAt(i) == C) return i;
+		return -1;
+	}
+	
+	/** Returns the last index of the string in the text (-1 if not found) */
+	static int LastIndexOf(CharSequence Text, String Str) {
+		if(Text instanceof String) return ((String)Text).lastIndexOf(Str);
+		for(int i = Text.length() - Str.length(); i >= 0; i--)
+			if(StartsWith(Text, Str, i)) return i;
+		return -1;
+	}
+	
+	/** Checks if the text has the prefix at the offset */
+	static boolean StartsWith(CharSequence Text, String Prefix, int Offset) {
+		if(Text instanceof String) return ((String)Text).startsWith(Prefix, Offset);
+		if((Offset < 0) || ((Offset + Prefix.length()) > Text.length())) return false;
+		for(int i = 0; i < Prefix.length(); i++)
+			if(Text.charAt(Offset + i) != Prefix.charAt(i)) return false;
+		return true;
+	}
+	
+	/**
+	 * Checks if the text has a compiled executable that is up-to-date with its code and is not altered. The executable
+	 *    is not deserialized by this check.
+	 **/
+	static public boolean IsCompiledTextUpToDate(String Text) {
+		if(Text == null) return false;
+		
+		int LIndex = Text.lastIndexOf("\n##:COUNTS:");
+		if(LIndex == -1) return false;
+		
+		try {
+			Footer Footer = new Footer(Text, LIndex);
+			return Footer.isCodeUpToDate(Text) && Footer.isCompiledCodeIntact(Text);
+		} catch (IllegalArgumentException E) {
+			return false;
+		}
 	}
 	
 	// EXTRACT EXECUTABLE - Read and get the executable (recompiled if specited or forced) -----------------------------
@@ -511,105 +794,42 @@ public class Tools {
 			IsUpdated = true;
 			IsAltered = true;
 		} else {
-		
-			int I;
-			if(((I = Text.indexOf('\n', LIndex))        == -1) ||
-			   ((I = Text.indexOf('\n', I + 1)) == -1) ||
-			   ((I = Text.indexOf('\n', I + 1)) != -1)) {
-				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
-			}
-			
-			// Gets both lengths
-			String L1 = Text.substring(LIndex + 13, LIndex + 21);
-			String L2 = Text.substring(LIndex + 24, LIndex + 32);
-			int Length_Code;
-			int Length_CStr;
-			try {
-				Length_Code = Integer.parseInt(L1.trim(), 16);
-				Length_CStr = Integer.parseInt(L2.trim(), 16);
-			} catch (NumberFormatException NFE) {
-				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
-			}
-			
-			if(Length_Code >= Text.length())
-				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
-	
-			if(Length_CStr >= Text.length())
-				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
-			
-			int HIndex = Text.lastIndexOf('\n', LIndex - 1);
-			if(HIndex == -1)
-				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
-			
-			// Get the Compiled code section
-			String CCode;
+			Footer Footer = new Footer(Text, LIndex);
 			
 			try {		
-				Code  = Text.substring(0, Length_Code);
-				CCode = Text.substring(HIndex - Length_CStr + 1, HIndex);	// One for an extract '\n'
+				Code = Text.substring(0, Footer.Length_Code);
 			} catch (StringIndexOutOfBoundsException e) {
 				throw new IllegalArgumentException(MAL_FORMED_COMPILED_CODE_EXCEPTION_MESSAGE);
 			}
 			
-			// Get the hashes and check them
-			String HASH_Code = Text.substring(HIndex + 13, HIndex + 21);
-			String Hash_CStr = Text.substring(HIndex + 24, HIndex + 32);
-			IsUpdated = !HASH_Code.equals(GetHashText(Code));
-			IsAltered = !Hash_CStr.equals(GetHashText(CCode));
+			// Check the hashes
+			IsUpdated = !Footer.isCodeUpToDate(Text);
+			IsAltered = !Footer.isCompiledCodeIntact(Text);
 
 			// If the hashes are alright, we load the executable
 			if(!IsUpdated && !IsAltered) {
-				String CCode_BASE64 = CCode.substring(22, CCode.length() - 2);
-				
-				ByteArrayInputStream BAIS  = null;
-				ObjectInputStream    OIS   = null;
-				ByteArrayInputStream EBAIS = null;
-				ObjectInputStream    EOIS  = null;
+				// Decode the BASE64 directly from the text (without "##:COMPILED::BASE64 {\n" and "\n}")
+				InputStream CCode_BASE64 = NewBase64InputStream(Text, Footer.CCodeBegin + 22, Footer.CCodeEnd - 2);
 				
-				try {
-					BAIS = new ByteArrayInputStream(Base64Decode(CCode_BASE64));
-					OIS  = new ObjectInputStream(BAIS);
-					
-					String EngineName  = OIS.readUTF();
-					String EngineParam = OIS.readUTF();
-					
-					byte[] Bs = (byte[])OIS.readObject();
-					EBAIS = new ByteArrayInputStream(Bs);
-					
-					ScriptEngine SE = ScriptManager.GetEngineFromCode(String.format("// @%s(%s):", EngineName, EngineParam));
-					EOIS = SE.newExecutableObjectInputStream(EBAIS);
-					if(EOIS == null) EOIS = JavaCompilerObjectInputStream.NewJavaCompilerObjectInputStream(EBAIS);
-					
-					// Extract the object
-					Exec            = (Executable)EOIS.readObject();
-					String TextHash = (String)    EOIS.readObject();
-
-					// Check the hash using the hash value inside the compiled code
-					IsAltered = !TextHash.equals(HASH_Code);	
-				} catch (Exception E) {
-					IsAltered = true;
-				} finally {
-					// Close the stream
-					if(EBAIS != null) try { EBAIS.close(); } catch (Exception E) { }
-					if(EOIS  != null) try { EOIS .close(); } catch (Exception E) { }
-					if(OIS   != null) try { OIS  .close(); } catch (Exception E) { }
-					if(BAIS  != null) try { BAIS .close(); } catch (Exception E) { }
-				}
+				// The digest is trusted so the hash value inside the compiled code need not to be checked; for the old
+				//    format, check the hash using the hash value inside the compiled code.
+				Exec      = DeserializeExecutable(CCode_BASE64, Footer.IsV2 ? null : Footer.Hash_Code);
+				IsAltered = (Exec == null);
 			}
 			
 			// Get the code to be re-compiled
-			if(IsUpdated || IsAltered || IsForceReCompiled) {
-				// Use the hold Text as the Leng information is out of date (so the code got from it may be wrong)
-				int EOCIndex = Text.lastIndexOf('\n', HIndex - Length_CStr + 1 - LONG_COMMENT_LINE_WIDTH + 2); 
-				Code = Text.substring(0, EOCIndex);	                      // ^ is for '\n' after CCode
-				                                              // This is one is for the last index '\n' ---^
-			}
+			if(IsUpdated || IsAltered || IsForceReCompiled)
+				Code = GetCodeOfCompiledText(Text, Footer);
 		}
 		
 		// RE-Compiled
-		if(((IsUpdated || IsAltered) && IsToRecompiledIfNeeded) || IsForceReCompiled)
+		boolean IsReCompiled = ((IsUpdated || IsAltered) && IsToRecompiledIfNeeded) || IsForceReCompiled;
+		if(IsReCompiled)
 			Exec = CompileExecutable(Name, Code, pOption, pResult);
 		
+		Metrics M = Metrics.GetInstance();
+		if(M.isEnabled() && (Exec != null)) M.loaded(Name, Exec, IsReCompiled);
+		
 		// Force recompiled so it will be up-to-date
 		if(IsForceReCompiled) {
 			IsUpdated = false;
@@ -621,6 +841,21 @@ public class Tools {
 		return new ExtractResult(Exec, IsToReturnCode ? Code : null, IsUpdated, IsAltered);
 	}
 	
+	/** Returns the code of the compiled text (the text without the compiled executable) to be recompiled */
+	static String GetCodeOfCompiledText(String Text) {
+		int LIndex = Text.lastIndexOf("\n##:COUNTS:");
+		if(LIndex == -1) return Text;
+		return GetCodeOfCompiledText(Text, new Footer(Text, LIndex));
+	}
+	
+	/** Returns the code of the compiled text of the footer */
+	static private String GetCodeOfCompiledText(String Text, Footer Footer) {
+		// Use the hold Text as the Leng information is out of date (so the code got from it may be wrong)
+		int EOCIndex = Text.lastIndexOf('\n', Footer.HIndex - Footer.Length_CStr + 1 - LONG_COMMENT_LINE_WIDTH + 2); 
+		return Text.substring(0, EOCIndex);	                                                                  // ^ is for '\n' after CCode
+		                         // This is one is for the last index '\n' ---^
+	}
+	
 	// COMPILE AND SAVE - Compile the text and save to the file -------------------------------------------------------- 
 
 	/** Reads a SimpleScript file and compile it. */
@@ -702,6 +937,19 @@ public class Tools {
 		
 		if((File == null) || !File.exists())
 			throw new FileNotFoundException((File == null)?null:File.getAbsolutePath());
+		
+		// Load the executable directly from the file if it is up-to-date (so the text is only read when it is needed)
+		if(!IsForceRecompile) {
+			MappedCompiledFile.Loaded Loaded = MappedCompiledFile.load(File);
+			if(Loaded != null) {
+				if(Loaded.Executable == null)
+					return Recompile(File, Loaded.Code);
+				
+				Metrics M = Metrics.GetInstance();
+				if(M.isEnabled()) M.loaded(File.getName(), Loaded.Executable, false);
+				return Loaded.Executable;
+			}
+		}
 	
 		String        Text    = Utils.loadTextFromStream(new FileInputStream(File));
 		ExtractResult EResult = ExtractExecutableFromCompiledText(File.getName(), Text, null, null, false, false,
@@ -709,10 +957,23 @@ public class Tools {
 		if(EResult == null) return null;
 		
 		if(EResult.IsUpdated || EResult.IsAltered)
-			return CompileAndSave(EResult.Code, File, null, null);
+			return Recompile(File, EResult.Code);
 		
 		return EResult.Executable;
 	}
+	
+	/** Recompiles the code of the file and saves it into the file (or into the cache if the file cannot be written) */
+	static private Executable Recompile(File File, String Code) throws IOException, ClassNotFoundException {
+		// The file cannot be written so use the cache instead
+		CompiledCache Cache = File.canWrite() ? null : CompiledCache.GetDefault();
+		Executable    Exec  = (Cache != null)
+		                          ? Cache.compile(File.getName(), Code, null, null)
+		                          : CompileAndSave(Code, File, null, null);
+		
+		Metrics M = Metrics.GetInstance();
+		if(M.isEnabled() && (Exec != null)) M.loaded(File.getName(), Exec, true);
+		return Exec;
+	}
 
 	/** Run the file */
 	static public Object Run(String FileName, Object ... Params) {
@@ -0,0 +1,366 @@
+package net.nawaman.script;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index of the executable files (the `.ss*` files) in the usepath folders by their names.
+ *
+ * The index is built (in parallel - one task for each folder) when it is first used. The folders are listed through
+ *    the usepath snapshot so the ones that are not changed since the last run are not listed again. When two folders
+ *    have a file of the same name, the one in the folder registered first is used. The executable of each file is
+ *    loaded when it is first used and kept.
+ *
+ * The folders are watched (see WATCH_PROPERTY) so the index is kept up-to-date. When a file that has been loaded is
+ *    changed, it is recompiled in the background and the new executable replaces the old one (the executables that
+ *    are already in use are not affected). Until then, the old executable is returned so looking up a name never
+ *    waits for a compilation.
+ **/
+public class UsepathIndex implements Closeable {
+
+	/** The system property to disable the watching of the usepath folders (`false` to disable) */
+	static public final String WATCH_PROPERTY = "simplescript.usepaths.watch";
+
+	/** The delay (in milliseconds) before a changed file is reloaded so the events of the same change are coalesced */
+	static public final long RELOAD_DELAY = 100;
+
+	/** The pattern of an executable file name (group 1 is the name of the executable) */
+	static final Pattern SSFileName = Pattern.compile("^(.+)\\.ss[a-zA-Z_]*$");
+
+	UsepathIndex(UsepathSnapshot pSnapshot) {
+		this(!"false".equalsIgnoreCase(System.getProperty(WATCH_PROPERTY)), pSnapshot);
+	}
+	UsepathIndex(boolean pIsWatching, UsepathSnapshot pSnapshot) {
+		this.IsWatching = pIsWatching;
+		this.Snapshot   = (pSnapshot != null) ? pSnapshot : new UsepathSnapshot(null);
+	}
+
+	private final    boolean                           IsWatching;
+	private final    UsepathSnapshot                   Snapshot;
+	private final    CopyOnWriteArrayList<File>        Folders   = new CopyOnWriteArrayList<File>();
+	private final    ConcurrentHashMap<String, Entry>  Entries   = new ConcurrentHashMap<String, Entry>();
+	private final    ConcurrentHashMap<WatchKey, File> WatchKeys = new ConcurrentHashMap<WatchKey, File>();
+	private final    Set<String>                       Pending   = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final    AtomicLong                        Reloads   = new AtomicLong();
+	private final    AtomicLong                        Failures  = new AtomicLong();
+	private volatile Throwable                         LastError = null;
+	private volatile boolean                           IsBuilt   = false;
+	private volatile WatchService                      Watcher   = null;
+	private volatile ScheduledExecutorService          Reloader  = null;
+
+	/** An indexed file and its executable */
+	static final class Entry {
+		Entry(File pFile, int pPriority) {
+			this.File     = pFile;
+			this.Priority = pPriority;
+		}
+
+		final    File       File;
+		final    int        Priority;	// The index of the folder (the lower, the higher priority)
+		volatile Executable Exec  = null;
+		volatile long       Stamp = 0;	// The last modified time of the file when it was loaded
+	}
+
+	// Folders ---------------------------------------------------------------------------------------------------------
+
+	/** Adds the folder to the index (the folders added first have higher priority) */
+	void addFolder(File pFolder) {
+		File Folder = pFolder.getAbsoluteFile();
+		try { Folder = Folder.getCanonicalFile(); } catch (IOException E) {}
+		if(!this.Folders.addIfAbsent(Folder)) return;
+
+		synchronized(this) {
+			if(!this.IsBuilt) return;
+			this.merge(this.Folders.indexOf(Folder), this.scan(Folder));
+			this.watch(Folder);
+		}
+	}
+
+	/** Returns the files in the folder that are executable files (the folder is not listed again if unchanged) */
+	private List<File> scan(File pFolder) {
+		List<File>              Files   = new ArrayList<File>();
+		UsepathSnapshot.Listing Listing = this.Snapshot.list(pFolder);
+		if(Listing == null) return Files;
+
+		for(String Name : Listing.Files) Files.add(new File(pFolder, Name));
+		return Files;
+	}
+
+	/** Returns the name of the executable of the file or null if the file is not an executable file */
+	static String NameOf(String pFileName) {
+		Matcher M = SSFileName.matcher(pFileName);
+		return M.matches() ? M.group(1) : null;
+	}
+
+	/** Adds the files of the folder of the priority to the index */
+	private void merge(int pPriority, List<File> pFiles) {
+		for(File F : pFiles) {
+			String Name  = NameOf(F.getName());
+			Entry  Entry = this.Entries.get(Name);
+			if((Entry == null) || (pPriority < Entry.Priority)) this.Entries.put(Name, new Entry(F, pPriority));
+		}
+	}
+
+	/** Builds the index if it is not yet built */
+	private void ensureBuilt() {
+		if(this.IsBuilt) return;
+		synchronized(this) {
+			if(this.IsBuilt) return;
+
+			final List<File>       Folders = new ArrayList<File>(this.Folders);
+			final List<List<File>> Files   = new ArrayList<List<File>>(Folders.size());
+			for(int i = 0; i < Folders.size(); i++) Files.add(null);
+
+			Folders.parallelStream().forEach(new java.util.function.Consumer<File>() {
+				public void accept(File pFolder) {
+					List<File> FFiles = UsepathIndex.this.scan(pFolder);
+					synchronized(Files) { Files.set(Folders.indexOf(pFolder), FFiles); }
+				}
+			});
+			for(int i = 0; i < Folders.size(); i++) this.merge(i, Files.get(i));
+
+			for(File Folder : Folders) this.watch(Folder);
+			this.IsBuilt = true;
+		}
+		this.Snapshot.save();
+	}
+
+	// Lookup ----------------------------------------------------------------------------------------------------------
+
+	/** Returns the file of the executable of the name or null if there is none */
+	public File getFile(String pName) {
+		this.ensureBuilt();
+		Entry Entry = (pName == null) ? null : this.Entries.get(pName);
+		return (Entry == null) ? null : Entry.File;
+	}
+
+	/** Returns the executable of the name (loaded if it is not yet loaded) or null if there is no such file */
+	public Executable use(String pName) throws IOException, ClassNotFoundException {
+		this.ensureBuilt();
+		Entry Entry = (pName == null) ? null : this.Entries.get(pName);
+		if(Entry == null) return null;
+
+		Executable Exec = Entry.Exec;
+		if(Exec != null) return Exec;
+
+		synchronized(Entry) {
+			if(Entry.Exec == null) Load(Entry);
+			return Entry.Exec;
+		}
+	}
+
+	/** Loads (compiles if needed) the executable of the entry */
+	static private void Load(Entry pEntry) throws IOException, ClassNotFoundException {
+		Executable Exec = Tools.Use(pEntry.File);
+		// The stamp is taken after as the file may just be saved with the compiled code
+		pEntry.Stamp = pEntry.File.lastModified();
+		pEntry.Exec  = Exec;
+	}
+
+	/** Returns the number of the indexed executables */
+	public int size() {
+		this.ensureBuilt();
+		return this.Entries.size();
+	}
+
+	/** Returns the number of the executables that are reloaded because their files were changed */
+	public long getReloadCount() {
+		return this.Reloads.get();
+	}
+
+	/** Returns the number of the reloads that fail (the old executables are kept) */
+	public long getReloadFailureCount() {
+		return this.Failures.get();
+	}
+
+	/** Returns the exception of the last reload that failed (null if none has failed) */
+	public Throwable getLastReloadFailure() {
+		return this.LastError;
+	}
+
+	// Watching --------------------------------------------------------------------------------------------------------
+
+	/** Watches the folder for the changes of its files */
+	private void watch(File pFolder) {
+		if(!this.IsWatching) return;
+		try {
+			WatchService Watcher = this.getWatcher();
+			WatchKey     Key     = pFolder.toPath().register(Watcher,
+			                           StandardWatchEventKinds.ENTRY_CREATE,
+			                           StandardWatchEventKinds.ENTRY_MODIFY,
+			                           StandardWatchEventKinds.ENTRY_DELETE);
+			this.WatchKeys.put(Key, pFolder);
+		} catch (IOException E) {
+			// The folder is still indexed but the changes will not be noticed
+		}
+	}
+
+	/** Returns the watch service (starts it and the reloader if they are not yet started) */
+	private synchronized WatchService getWatcher() throws IOException {
+		if(this.Watcher != null) return this.Watcher;
+
+		ThreadFactory Factory = new ThreadFactory() {
+			public Thread newThread(Runnable pRunnable) {
+				Thread T = new Thread(pRunnable, "SimpleScript-Usepaths-Reloader");
+				T.setDaemon(true);
+				return T;
+			}
+		};
+		this.Reloader = Executors.newSingleThreadScheduledExecutor(Factory);
+		this.Watcher  = FileSystems.getDefault().newWatchService();
+
+		Thread WatchThread = new Thread("SimpleScript-Usepaths-Watcher") {
+			@Override public void run() {
+				UsepathIndex.this.processEvents();
+			}
+		};
+		WatchThread.setDaemon(true);
+		WatchThread.start();
+		return this.Watcher;
+	}
+
+	/** Processes the events of the watched folders until the watch service is closed */
+	private void processEvents() {
+		WatchService Watcher = this.Watcher;
+		while(true) {
+			WatchKey Key;
+			try                                   { Key = Watcher.take(); }
+			catch (InterruptedException        E) { return;               }
+			catch (ClosedWatchServiceException E) { return;               }
+
+			File Folder = this.WatchKeys.get(Key);
+			if(Folder != null) {
+				for(WatchEvent<?> Event : Key.pollEvents()) {
+					if(Event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						// Some events are lost so check all the files in the folder
+						for(File F : this.scan(Folder)) this.schedule(Folder, F.getName());
+						continue;
+					}
+					String FileName = ((Path)Event.context()).toString();
+					if(NameOf(FileName) != null) this.schedule(Folder, FileName);
+				}
+			}
+			if(!Key.reset()) this.WatchKeys.remove(Key);
+		}
+	}
+
+	/** Schedules the file to be refreshed (the events of the same file before it is refreshed are coalesced) */
+	private void schedule(final File pFolder, final String pFileName) {
+		final String PKey = pFolder.getPath() + File.separator + pFileName;
+		if(!this.Pending.add(PKey)) return;
+
+		this.Reloader.schedule(new Runnable() {
+			public void run() {
+				UsepathIndex.this.Pending.remove(PKey);
+				UsepathIndex.this.refresh(pFolder, pFileName);
+			}
+		}, RELOAD_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/** Updates the index for the file (in the reloader thread) */
+	void refresh(File pFolder, String pFileName) {
+		File   File     = new File(pFolder, pFileName);
+		String Name     = NameOf(pFileName);
+		int    Priority = this.Folders.indexOf(pFolder);
+		if((Name == null) || (Priority == -1)) return;
+
+		Entry Entry = this.Entries.get(Name);
+
+		// Removed - use the file of the same name in another folder if there is one
+		if(!File.isFile()) {
+			if((Entry == null) || !Entry.File.equals(File)) return;
+
+			Entry Other = this.findOther(Name, pFolder);
+			if(Other != null) this.replace(Name, Entry, Other);
+			else              this.Entries.remove(Name, Entry);
+			return;
+		}
+
+		// New or shadows the one in a folder with lower priority
+		if((Entry == null) || (Priority < Entry.Priority)) {
+			Entry New = new Entry(File, Priority);
+			if(Entry == null) this.Entries.put(Name, New);
+			else              this.replace(Name, Entry, New);
+			return;
+		}
+
+		// Changed (the change made by loading it - saving the compiled code - is ignored)
+		if(!Entry.File.equals(File) || (File.lastModified() == Entry.Stamp) || (Entry.Exec == null)) return;
+		this.reload(Entry);
+	}
+
+	/** Replaces the entry of the name (the new one is loaded now if the old one was in use) */
+	private void replace(String pName, Entry pOld, Entry pNew) {
+		if(pOld.Exec != null) {
+			if(!this.reload(pNew)) return;
+		}
+		this.Entries.replace(pName, pOld, pNew);
+	}
+
+	/** Loads the executable of the entry again - returns false if it fails (the old executable is kept) */
+	private boolean reload(Entry pEntry) {
+		try {
+			synchronized(pEntry) { Load(pEntry); }
+			this.Reloads.incrementAndGet();
+			return true;
+		} catch (Throwable T) {
+			this.LastError = T;
+			this.Failures.incrementAndGet();
+			return false;
+		}
+	}
+
+	/** Finds the file of the name in the other folders */
+	private Entry findOther(String pName, File pExcludedFolder) {
+		for(int i = 0; i < this.Folders.size(); i++) {
+			File Folder = this.Folders.get(i);
+			if(Folder.equals(pExcludedFolder)) continue;
+
+			for(File F : this.scan(Folder)) {
+				if(pName.equals(NameOf(F.getName()))) return new Entry(F, i);
+			}
+		}
+		return null;
+	}
+
+	/** Stops watching the folders */
+	public synchronized void close() {
+		WatchService Watcher = this.Watcher;
+		if(Watcher != null) {
+			try { Watcher.close(); } catch (IOException E) {}
+			this.Watcher = null;
+		}
+		if(this.Reloader != null) {
+			this.Reloader.shutdownNow();
+			this.Reloader = null;
+		}
+		this.WatchKeys.clear();
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return String.format("UsepathIndex(folders: %d, executables: %d, reloads: %d)",
+				this.Folders.size(), this.Entries.size(), this.Reloads.get());
+	}
+}
@@ -0,0 +1,201 @@
+package net.nawaman.script;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The listings of the usepath folders - only the entries that matter to the usepaths are kept: the auto-used
+ *    sub-folders (see Usepaths.AUTO_USED_FOLDERS) and the executable files.
+ *
+ * A listing is reused as long as the last modified time of its folder is not changed (adding, removing or renaming an
+ *    entry changes it). When the snapshot has a file, the listings are loaded from it and saved back to it so a later
+ *    start-up does not have to list the folders that are not changed.
+ **/
+final class UsepathSnapshot {
+
+	/** The first int of a snapshot file */
+	static final int MAGIC = 0x53535550;
+
+	/** The version of the snapshot file format */
+	static final int VERSION = 1;
+
+	/**
+	 * The time (in milliseconds) a folder must be left unchanged before its listing is kept. A folder changed within
+	 *    the resolution of the last modified time may be changed again without its time being changed.
+	 **/
+	static final long SETTLE_TIME = 2000;
+
+	/** Constructs a snapshot that is loaded from and saved to the file (or only kept in memory if pFile is null) */
+	UsepathSnapshot(File pFile) {
+		this.File = pFile;
+		if(pFile != null) this.load();
+	}
+
+	private final    File                               File;
+	private final    ConcurrentHashMap<String, Listing> Saved   = new ConcurrentHashMap<String, Listing>();	// Loaded
+	private final    ConcurrentHashMap<String, Listing> Current = new ConcurrentHashMap<String, Listing>();	// Used
+	private volatile boolean                            IsDirty = false;
+
+	/** The relevant entries of a folder */
+	static final class Listing {
+		Listing(long pStamp, String[] pFolders, String[] pFiles) {
+			this.Stamp   = pStamp;
+			this.Folders = pFolders;
+			this.Files   = pFiles;
+		}
+
+		final long     Stamp;	// The last modified time of the folder when it was listed
+		final String[] Folders;	// The names of the auto-used sub-folders
+		final String[] Files;	// The names of the executable files
+	}
+
+	/** Returns the file of this snapshot or null if it is only kept in memory */
+	File getFile() {
+		return this.File;
+	}
+
+	// Listing ---------------------------------------------------------------------------------------------------------
+
+	/** Returns the listing of the folder (null if the folder cannot be listed) - safe to be called concurrently */
+	Listing list(File pFolder) {
+		Path   FPath = pFolder.toPath();
+		String Key   = pFolder.getAbsolutePath();
+		long   Stamp;
+		try                    { Stamp = Files.getLastModifiedTime(FPath).toMillis(); }
+		catch (IOException E)  { return null;                                         }
+
+		Listing Old = this.Current.get(Key);
+		if(Old == null) Old = this.Saved.get(Key);
+		if((Old != null) && (Old.Stamp == Stamp)) {
+			this.Current.putIfAbsent(Key, Old);
+			return Old;
+		}
+
+		long    Now     = System.currentTimeMillis();
+		Listing Listing = ListNow(FPath, Stamp);
+		if(Listing == null) return null;
+
+		if((Now - Stamp) >= SETTLE_TIME) {
+			this.Current.put(Key, Listing);
+			this.IsDirty = true;
+		} else this.Current.remove(Key);
+		return Listing;
+	}
+
+	/** Lists the folder */
+	static private Listing ListNow(Path pFolder, long pStamp) {
+		List<String> Folders = new ArrayList<String>();
+		List<String> SSFiles = new ArrayList<String>();
+		try (DirectoryStream<Path> Entries = Files.newDirectoryStream(pFolder)) {
+			for(Path Entry : Entries) {
+				String Name = Entry.getFileName().toString();
+				if(Usepaths.AUTO_USED_FOLDERS.contains(Name)) {
+					if(Files.isDirectory(Entry)) Folders.add(Name);
+				} else if(UsepathIndex.NameOf(Name) != null) {
+					if(Files.isRegularFile(Entry)) SSFiles.add(Name);
+				}
+			}
+		} catch (IOException E) {
+			return null;
+		}
+		return new Listing(pStamp, Folders.toArray(new String[Folders.size()]),
+		                           SSFiles.toArray(new String[SSFiles.size()]));
+	}
+
+	// Persistence -----------------------------------------------------------------------------------------------------
+
+	/** Loads the listings from the file (a missing or unreadable file is taken as an empty snapshot) */
+	private void load() {
+		if(!this.File.isFile()) return;
+		try (DataInputStream In = new DataInputStream(new BufferedInputStream(new FileInputStream(this.File)))) {
+			if((In.readInt() != MAGIC) || (In.readInt() != VERSION)) return;
+
+			int Count = In.readInt();
+			for(int i = 0; i < Count; i++) {
+				String   Key     = In.readUTF();
+				long     Stamp   = In.readLong();
+				String[] Folders = ReadNames(In);
+				String[] SSFiles = ReadNames(In);
+				this.Saved.put(Key, new Listing(Stamp, Folders, SSFiles));
+			}
+		} catch (IOException E) {
+			this.Saved.clear();
+		}
+	}
+
+	static private String[] ReadNames(DataInputStream pIn) throws IOException {
+		String[] Names = new String[pIn.readInt()];
+		for(int i = 0; i < Names.length; i++) Names[i] = pIn.readUTF();
+		return Names;
+	}
+
+	static private void WriteNames(DataOutputStream pOut, String[] pNames) throws IOException {
+		pOut.writeInt(pNames.length);
+		for(String Name : pNames) pOut.writeUTF(Name);
+	}
+
+	/**
+	 * Saves the listings that are used since this snapshot was loaded (if any of them is changed). The file is
+	 *    replaced at once so a concurrent start-up never reads a partly written snapshot.
+	 **/
+	synchronized void save() {
+		if((this.File == null) || (!this.IsDirty && (this.Current.size() == this.Saved.size()))) return;
+
+		File Temp = null;
+		try {
+			File Parent = this.File.getAbsoluteFile().getParentFile();
+			if(Parent != null) Parent.mkdirs();
+			Temp = java.io.File.createTempFile(this.File.getName(), ".tmp", Parent);
+
+			try (DataOutputStream Out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(Temp)))) {
+				List<Map.Entry<String, Listing>> Listings;
+				Listings = new ArrayList<Map.Entry<String, Listing>>(this.Current.entrySet());
+				Out.writeInt(MAGIC);
+				Out.writeInt(VERSION);
+				Out.writeInt(Listings.size());
+				for(Map.Entry<String, Listing> Entry : Listings) {
+					Listing Listing = Entry.getValue();
+					Out.writeUTF(Entry.getKey());
+					Out.writeLong(Listing.Stamp);
+					WriteNames(Out, Listing.Folders);
+					WriteNames(Out, Listing.Files);
+				}
+			}
+			try {
+				Files.move(Temp.toPath(), this.File.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				                                              StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException E) {
+				Files.move(Temp.toPath(), this.File.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Temp = null;
+
+			this.Saved.clear();
+			this.Saved.putAll(this.Current);
+			this.IsDirty = false;
+
+		} catch (IOException E) {
+			// The snapshot is only an optimization so the start-up is not affected
+		} finally {
+			if(Temp != null) Temp.delete();
+		}
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return String.format("UsepathSnapshot(file: %s, folders: %d)", this.File, this.Current.size());
+	}
+}
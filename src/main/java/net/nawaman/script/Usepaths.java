@@ -1,14 +1,20 @@
 package net.nawaman.script;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.nawaman.usepath.FileExtFilter;
 import net.nawaman.usepath.FileExtUsableFilter;
 import net.nawaman.usepath.UsableFilter;
+import net.nawaman.usepath.UsableHolder;
 import net.nawaman.usepath.UsePathFileInFolder;
 
 public class Usepaths extends net.nawaman.usepath.AppendableUsepaths {
@@ -54,34 +60,132 @@ public class Usepaths extends net.nawaman.usepath.AppendableUsepaths {
 	
 	// Discovering -----------------------------------------------------------------------------------------------------
 	
-	/** Registre a usepath from string */
-	void registerUsepath(String UPath, boolean ToDig) {
-		if((UPath == null) || (UPath.length() == 0)) return;
+	/** The system property of the file to keep the listings of the usepath folders between runs (none by default) */
+	static public final String SNAPSHOT_PROPERTY = "simplescript.usepaths.snapshot";
+	
+	// Not initialized with the declaration as usepaths may be registered by the super constructor
+	private          List<String> Undiscovered;
+	private volatile boolean      IsDiscovered;
+	
+	private final UsepathSnapshot Snapshot = new UsepathSnapshot(SnapshotFile());
+	
+	/** Returns the snapshot file (see SNAPSHOT_PROPERTY) or null if there is none */
+	static private File SnapshotFile() {
+		String SPath = System.getProperty(SNAPSHOT_PROPERTY);
+		return ((SPath == null) || (SPath.length() == 0)) ? null : new File(SPath);
+	}
+	
+	/** Registers every entry of the class path - they are discovered when the usepaths are first used */
+	@Override
+	public void registerAllClassPath() {
+		String ClassPath = System.getProperty("java.class.path");
+		if((ClassPath == null) || (ClassPath.length() == 0)) return;
+		
+		for(String UPath : ClassPath.split(Pattern.quote(File.pathSeparator)))
+			this.registerUsepath(UPath);
+	}
+	
+	/**
+	 * Discovers the folders of the registered usepaths if it is not yet done. The usepaths are looked up in parallel
+	 *    but registered in the order they were registered (so the earlier ones still have higher priority).
+	 **/
+	public void discover() {
+		if(this.IsDiscovered) return;
+		synchronized(this) {
+			if(this.IsDiscovered) return;
+			
+			List<String> UPaths = (this.Undiscovered == null) ? new ArrayList<String>() : this.Undiscovered;
+			List<List<File>> Folders = UPaths.parallelStream().map(
+				new java.util.function.Function<String, List<File>>() {
+					public List<File> apply(String UPath) {
+						return Usepaths.this.discoverFolders(UPath, true);
+					}
+				}).collect(Collectors.toList());
+			
+			for(List<File> UFolders : Folders) {
+				for(File Folder : UFolders) this.registerFolder(Folder);
+			}
+			this.Undiscovered = null;
+			this.IsDiscovered = true;
+		}
+		this.Snapshot.save();
+	}
+	
+	/** Returns the folder of the usepath and (if ToDig) its auto-used sub-folders - safe to be called concurrently */
+	private List<File> discoverFolders(String UPath, boolean ToDig) {
+		List<File> Folders = new ArrayList<File>();
+		if((UPath == null) || (UPath.length() == 0)) return Folders;
 		
 		File Folder = new File(UPath);
-		if(!Folder.exists() || !Folder.isDirectory() || !Folder.canRead()) return;
+		Path FPath  = Folder.toPath();
+		if(!Files.isDirectory(FPath) || !Files.isReadable(FPath)) return Folders;
+		Folders.add(Folder);
 		
+		if(!ToDig) return Folders;
+		
+		// Dig to the Auto use folder
+		UsepathSnapshot.Listing Listing = this.Snapshot.list(Folder);
+		if(Listing == null) return Folders;
+		for(String Name : Listing.Folders) {
+			Folders.addAll(this.discoverFolders(UPath + File.separator + Name, false));
+		}
+		return Folders;
+	}
+	
+	/** Registers the usepath folder */
+	private void registerFolder(File Folder) {
 		UsePathFileInFolder UPFIF = null;
 		try { UPFIF = new UsePathFileInFolder(Folder); }
 		catch (Exception e) { return; }
 		
 		this.registerUsepath(UPFIF.name(), UPFIF);
-		
-		if(!ToDig) return;
-		
-		// Dig to the Auto use folder
-		String[] Fs = Folder.list();
-		for(int i = 0; i < Fs.length; i++) {
-			if(!AUTO_USED_FOLDERS.contains(Fs[i])) continue;
-			this.registerUsepath(UPath + File.separator + Fs[i], false);
-		}
+		this.index().addFolder(Folder);
 	}
 	
-	/**{@inheritDoc}*/ @Override
+	/** Registre a usepath from string */
+	void registerUsepath(String UPath, boolean ToDig) {
+		for(File Folder : this.discoverFolders(UPath, ToDig)) this.registerFolder(Folder);
+	}
+	
+	/** Registers a usepath - it is discovered when the usepaths are first used if they are not yet discovered */
+	@Override
 	public void registerUsepath(String UPath) {
+		synchronized(this) {
+			if(!this.IsDiscovered) {
+				if(this.Undiscovered == null) this.Undiscovered = new ArrayList<String>();
+				this.Undiscovered.add(UPath);
+				return;
+			}
+		}
 		this.registerUsepath(UPath, true);
 	}
 
+	// Lookup ----------------------------------------------------------------------------------------------------------
+
+	/** Returns the usable holder of the name (the usepaths are discovered first) */
+	@Override
+	public <T> UsableHolder<T> getUsableHolder(String Name) {
+		// The lock is only held by this thread while discovering (a folder may be looked up while it is registered)
+		if(!Thread.holdsLock(this)) this.discover();
+		return super.getUsableHolder(Name);
+	}
+
+	// Index ---------------------------------------------------------------------------------------------------------------
+	
+	private UsepathIndex Index;
+	
+	/** Returns the index of the executable files in the usepath folders (the usepaths are discovered first) */
+	public UsepathIndex getIndex() {
+		this.discover();
+		return this.index();
+	}
+	
+	/** Returns the index without discovering the usepaths */
+	private synchronized UsepathIndex index() {
+		if(this.Index == null) this.Index = new UsepathIndex(this.Snapshot);
+		return this.Index;
+	}
+	
 	// Filter ----------------------------------------------------------------------------------------------------------
 	
 	Vector<UsableFilter> UsableFilters = new Vector<UsableFilter>();
@@ -54,10 +54,6 @@ public class Utils {
 			}
 		}
 		
-		// Just in case
-		if(C.isPrimitive())
-			throw new java.lang.IllegalArgumentException("Primitive parameter type is not allowed ("+ClassName+")");
-		
 		return C;
 	}
 
@@ -0,0 +1,120 @@
+package net.nawaman.script.java;
+
+import java.lang.ref.Cleaner;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.nawaman.javacompiler.JavaCompiler;
+
+/**
+ * A class loader of the generated classes of the executables (see JavaEngineOption.PARAM_UNLOAD).
+ *
+ * The shared JavaCompiler keeps every class it loads for as long as it lives. A class defined by this loader is only
+ *    kept as long as the loader is reachable - which is as long as any of its classes (or their instances) is - so the
+ *    classes of the executables that are no longer used can be unloaded. A loader holds the classes of one generation
+ *    of compilations (one compilation if the generation size is 1) and classes that are not generated are loaded by
+ *    the class loader of the engine or the JavaCompiler (for the jar files and the class paths added to it).
+ *
+ * An executable is saved with the byte code of its classes taken from the JavaCompiler so the classes of this loader
+ *    are exported to the JavaCompiler when the executable is serialized (see Export(...)); those exported copies are
+ *    not unloaded. An executable that is loaded from its saved form has its classes defined by the JavaCompiler too.
+ *    So only the executables that are compiled and never saved can be unloaded - the ones used from the files (see
+ *    Tools.Use(...) and CompiledCache, which always save the compiled executables) are never unloaded.
+ **/
+public final class ExecutableClassLoader extends ClassLoader {
+
+	static private final Cleaner    Collected    = Cleaner.create();
+	static private final AtomicLong CreatedCount = new AtomicLong();
+	static private final AtomicLong LiveCount    = new AtomicLong();
+
+	// Static so it does not refer to the loader (that would keep the loader from being collected)
+	static private final Runnable   Uncount      = new Runnable() {
+		public void run() { LiveCount.decrementAndGet(); }
+	};
+
+	/** Returns the number of the loaders that are created since the JVM started */
+	static public long getCreatedCount() {
+		return CreatedCount.get();
+	}
+
+	/** Returns the number of the loaders that are not yet collected */
+	static public long getLiveCount() {
+		return LiveCount.get();
+	}
+
+	ExecutableClassLoader(JavaCompiler pJCompiler) {
+		super(JavaEngine.class.getClassLoader());
+		this.JCompiler = pJCompiler;
+
+		CreatedCount.incrementAndGet();
+		LiveCount   .incrementAndGet();
+		Collected.register(this, Uncount);
+	}
+
+	private final JavaCompiler        JCompiler;
+	private final Map<String, byte[]> ByteCodes    = new LinkedHashMap<String, byte[]>();
+	private final Set<String>         Exported     = new HashSet<String>();
+	private       int                 Compilations = 0;
+
+	/** Adds the byte code of the classes of a compilation */
+	synchronized void addClasses(Map<String, byte[]> pClasses) {
+		this.ByteCodes.putAll(pClasses);
+		this.Compilations++;
+	}
+
+	/** Returns the number of the compilations whose classes are in this loader */
+	synchronized int getCompilationCount() {
+		return this.Compilations;
+	}
+
+	/** Returns the number of the classes in this loader */
+	public synchronized int getClassCount() {
+		return this.ByteCodes.size();
+	}
+
+	/**{@inheritDoc}*/ @Override
+	protected Class<?> findClass(String pName) throws ClassNotFoundException {
+		byte[] ByteCode;
+		synchronized(this) { ByteCode = this.ByteCodes.get(pName); }
+		if(ByteCode != null) return this.defineClass(pName, ByteCode, 0, ByteCode.length);
+
+		// The classes of the jar files and the class paths added to the JavaCompiler
+		Class<?> Cls = null;
+		try { Cls = this.JCompiler.getClassByName(pName); } catch (Exception E) {}
+		if(Cls != null) return Cls;
+
+		throw new ClassNotFoundException(pName);
+	}
+
+	// Export ----------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Adds the classes of the loader of the class to the JavaCompiler (if the class is defined by an executable class
+	 *    loader) so the executable of the class can be serialized. Returns false if some class cannot be added.
+	 **/
+	static boolean Export(Class<?> pClass) {
+		if((pClass == null) || !(pClass.getClassLoader() instanceof ExecutableClassLoader)) return true;
+		return ((ExecutableClassLoader)pClass.getClassLoader()).export();
+	}
+
+	private synchronized boolean export() {
+		// Add the nested classes first as the top level class may use them when it is initialized
+		for(int Turn = 0; Turn < 2; Turn++) {
+			for(Map.Entry<String, byte[]> Entry : this.ByteCodes.entrySet()) {
+				String Name = Entry.getKey();
+				if(((Name.indexOf('$') == -1) != (Turn == 1)) || this.Exported.contains(Name)) continue;
+				if(!this.JCompiler.addClassByteCode(Name, "", Entry.getValue())) return false;
+				this.Exported.add(Name);
+			}
+		}
+		return true;
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return "ExecutableClassLoader(classes: " + this.getClassCount() + ")";
+	}
+}
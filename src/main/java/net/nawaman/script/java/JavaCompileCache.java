@@ -0,0 +1,261 @@
+package net.nawaman.script.java;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.nawaman.script.Metrics;
+import net.nawaman.script.Problem;
+import net.nawaman.script.ProblemContainer;
+import net.nawaman.script.Scope;
+import net.nawaman.script.Signature;
+
+/**
+ * A bounded cache of the classes compiled by a JavaEngine.
+ *
+ * The cache is keyed by the content that has an effect on the generated class (the normalized code, the kind of the
+ *   executable, the signature, the parameter names, the frozen variable names and types and the compile option). When
+ *   the same code is compiled again, the already loaded class is returned so only a new instance is to be constructed.
+ * The least recently used class is evicted when the cache is full.
+ *
+ * A class that has (or that has a member class that has) a static field that is not final is not cached as the field
+ *   would be shared by the executables that are compiled separately from the same code. The warnings of a compilation
+ *   are kept with its class and reported again to the problem container given to a lookup that finds the class; if
+ *   the class is compiled without a problem container (so its warnings are not known), a lookup with a container does
+ *   not find it so the code is compiled again and its warnings are reported.
+ **/
+public class JavaCompileCache {
+
+	/** The default number of the classes to be kept */
+	static public final int DEFAULT_CAPACITY = 256;
+
+	/** Constructs a compile cache with a default capacity */
+	public JavaCompileCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs a compile cache with the given capacity */
+	public JavaCompileCache(int pCapacity) {
+		this.setCapacity(pCapacity);
+	}
+
+	private int  Capacity  = DEFAULT_CAPACITY;
+	private long HitCount  = 0;
+	private long MissCount = 0;
+
+	/** A cached class and the warnings of its compilation (null if they are not known) */
+	static private final class Entry {
+		Entry(Class<?> pClass, Problem[] pWarnings) {
+			this.TheClass = pClass;
+			this.Warnings = pWarnings;
+		}
+		final Class<?>  TheClass;
+		final Problem[] Warnings;
+	}
+
+	private final LinkedHashMap<Key, Entry> Classes = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = -2365871907823160534L;
+		@Override protected boolean removeEldestEntry(Map.Entry<Key, Entry> pEldest) {
+			return this.size() > JavaCompileCache.this.Capacity;
+		}
+	};
+
+	/** Returns the maximum number of the classes to be kept */
+	public synchronized int getCapacity() {
+		return this.Capacity;
+	}
+
+	/** Changes the maximum number of the classes to be kept (0 or less means the cache is disabled) */
+	public synchronized void setCapacity(int pCapacity) {
+		this.Capacity = (pCapacity < 0) ? 0 : pCapacity;
+		if(this.Classes.size() <= this.Capacity) return;
+
+		// Evict the least recently used ones
+		int ToRemove = this.Classes.size() - this.Capacity;
+		Iterator<Key> Keys = this.Classes.keySet().iterator();
+		while((ToRemove-- > 0) && Keys.hasNext()) {
+			Keys.next();
+			Keys.remove();
+		}
+	}
+
+	/** Returns the number of the classes currently in the cache */
+	public synchronized int size() {
+		return this.Classes.size();
+	}
+
+	/** Returns the number of the lookups that found a class */
+	public synchronized long getHitCount() {
+		return this.HitCount;
+	}
+
+	/** Returns the number of the lookups that did not find a class */
+	public synchronized long getMissCount() {
+		return this.MissCount;
+	}
+
+	/** Removes all the classes from the cache (the counters are kept) */
+	public synchronized void clear() {
+		this.Classes.clear();
+	}
+
+	/** Returns the class compiled for the key or null if there is none */
+	public Class<?> get(Key pKey) {
+		return this.get(pKey, null);
+	}
+
+	/**
+	 * Returns the class compiled for the key or null if there is none (or if its warnings are not known and there is a
+	 *    problem container) - the warnings of the compilation of the class are reported to the problem container.
+	 **/
+	public synchronized Class<?> get(Key pKey, ProblemContainer pResult) {
+		if((pKey == null) || (this.Capacity == 0)) return null;
+
+		Entry E = this.Classes.get(pKey);
+		if((E != null) && (pResult != null) && (E.Warnings == null)) E = null;
+		if(E != null) this.HitCount++;
+		else          this.MissCount++;
+		
+		Metrics M = Metrics.GetInstance();
+		if(M.isEnabled()) M.cacheLookedUp("JavaCompileCache", (E != null));
+		if(E == null) return null;
+
+		if(pResult != null) {
+			for(Problem Warning : E.Warnings) pResult.reportProblem(Warning);
+		}
+		return E.TheClass;
+	}
+
+	/** Remembers the class compiled for the key (its warnings are not known) */
+	public void put(Key pKey, Class<?> pClass) {
+		this.put(pKey, pClass, null);
+	}
+
+	/**
+	 * Remembers the class compiled for the key and the warnings of its compilation (null if they are not known) - the
+	 *    class is not remembered if it has a static field that is not final.
+	 **/
+	public synchronized void put(Key pKey, Class<?> pClass, Problem[] pWarnings) {
+		if((pKey == null) || (pClass == null) || (this.Capacity == 0)) return;
+		if(hasMutableStatics(pClass)) return;
+		this.Classes.put(pKey, new Entry(pClass, pWarnings));
+	}
+
+	/** Returns the problems reported to the problem container since it had the given number of problems */
+	static Problem[] getProblemsSince(ProblemContainer pResult, int pCount) {
+		if(pResult == null) return null;
+
+		Problem[] Problems = new Problem[Math.max(0, pResult.getProblemCount() - pCount)];
+		for(int i = 0; i < Problems.length; i++) Problems[i] = pResult.getProblem(pCount + i);
+		return Problems;
+	}
+
+	/** Checks if the class or any of its member classes has a static field that is not final */
+	static boolean hasMutableStatics(Class<?> pClass) {
+		try {
+			for(Field F : pClass.getDeclaredFields()) {
+				int Modifiers = F.getModifiers();
+				if(Modifier.isStatic(Modifiers) && !Modifier.isFinal(Modifiers)) return true;
+			}
+			for(Class<?> Member : pClass.getDeclaredClasses()) {
+				if(hasMutableStatics(Member)) return true;
+			}
+			return false;
+		} catch(LinkageError E) {
+			// Cannot be checked so it is not to be shared
+			return true;
+		} catch(SecurityException E) {
+			return true;
+		}
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return String.format("JavaCompileCache(size: %d/%d, hit: %d, miss: %d)",
+				this.size(), this.getCapacity(), this.getHitCount(), this.getMissCount());
+	}
+
+	// Key -------------------------------------------------------------------------------------------------------------
+
+	/** Returns the code with the line ends normalized and the trailing white spaces removed */
+	static String normalizeCode(String pCode) {
+		if(pCode == null) return "";
+
+		int End = pCode.length();
+		while((End > 0) && Character.isWhitespace(pCode.charAt(End - 1))) End--;
+
+		if(pCode.indexOf('\r') == -1) return (End == pCode.length()) ? pCode : pCode.substring(0, End);
+
+		StringBuilder SB = new StringBuilder(End);
+		for(int i = 0; i < End; i++) {
+			char c = pCode.charAt(i);
+			if(c == '\r') {
+				if(((i + 1) < End) && (pCode.charAt(i + 1) == '\n')) continue;
+				c = '\n';
+			}
+			SB.append(c);
+		}
+		return SB.toString();
+	}
+
+	/** Creates a key of the compilation */
+	static Key newKey(String pEngineImports, JavaEngine.EKind pEKind, Signature pSignature, String[] pParamNames,
+			String pCode, Scope pFrozen, String[] pFVNames, JavaCompileOption pOption) {
+
+		// Frozen variables that are actually in the scope (see JavaEngine.getFrozenStrings(...))
+		String[] FVs = Signature.EmptyStringArray;
+		if((pFrozen != null) && (pFVNames != null)) {
+			FVs = new String[pFVNames.length];
+			for(int i = 0; i < pFVNames.length; i++) {
+				String VName = pFVNames[i];
+				if(!pFrozen.isExist(VName)) continue;
+				Class<?> VType = pFrozen.getTypeOf(VName); if(VType == null) VType = Object.class;
+				FVs[i] = VName + ":" + VType.getName();
+			}
+		}
+
+		Class<?> SuperClass = (pOption == null) ? null : pOption.getSuperClass();
+		return new Key(new Object[] {
+				pEKind,
+				(pSignature == null) ? null : Signature.Simple.toString(pSignature),
+				(pSignature == null) ? null : pSignature.getReturnType(),
+				(pParamNames == null) ? null : Arrays.asList(pParamNames),
+				Arrays.asList(FVs),
+				(pOption    == null) ? null : pOption.getClassNamePrefix(),
+				SuperClass,
+				(pOption    == null) ? null : pOption.getDefaultImportStr(),
+				(pOption    == null) ? null : pOption.getExecutionMode(),
+				(pOption    == null) ? null : pOption.isCheckpointInjected(),
+				pEngineImports,
+				normalizeCode(pCode)
+			});
+	}
+
+	/** The key of a compilation */
+	static public final class Key {
+
+		private final Object[] Parts;
+		private final int      Hash;
+
+		Key(Object[] pParts) {
+			this.Parts = pParts;
+			this.Hash  = Arrays.hashCode(pParts);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public int hashCode() {
+			return this.Hash;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public boolean equals(Object O) {
+			if(O == this)           return true;
+			if(!(O instanceof Key)) return false;
+			Key K = (Key)O;
+			return (this.Hash == K.Hash) && Arrays.equals(this.Parts, K.Parts);
+		}
+	}
+}
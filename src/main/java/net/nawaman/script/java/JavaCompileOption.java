@@ -52,6 +52,49 @@ public class JavaCompileOption implements CompileOption {
 		return this.IsToSeveCode;
 	}
 	
+	// Execution mode --------------------------------------------------------------------------------------------------
+	
+	/**
+	 * How the instance of the class compiled from a code (see JavaCompiledCode) is used when the code is run.
+	 * 
+	 * 	- Shared   : All the executions use the same instance (the local fields are shared by all the threads).
+	 * 	- PerThread: Each thread uses its own instance (created the first time the thread runs the code).
+	 * 	- Pooled   : Each execution borrows an instance from a pool and gives it back when it is done so an instance is
+	 * 	               only used by one execution at a time (the local fields keep their values between executions).
+	 * 
+	 * Static fields are shared by all the instances so a code with a static field that is not final cannot be compiled
+	 *    in the mode other than Shared.
+	 **/
+	static public enum ExecutionMode { Shared, PerThread, Pooled }
+	
+	ExecutionMode ExecMode = ExecutionMode.Shared;
+	
+	/** Set the execution mode of the compiled code */
+	public void setExecutionMode(ExecutionMode pExecMode) {
+		this.ExecMode = (pExecMode == null) ? ExecutionMode.Shared : pExecMode;
+	}
+	/** Get the execution mode of the compiled code */
+	public ExecutionMode getExecutionMode() {
+		return this.ExecMode;
+	}
+	
+	// Checkpoint ------------------------------------------------------------------------------------------------------
+	
+	boolean IsCheckpointInjected = false;
+	
+	/**
+	 * Set if a checkpoint (see ExecutionLimit.checkpoint()) should be added at the beginning of the body of each loop
+	 *    in the code so the loop can be cancelled when the execution is over its limit. Only a loop whose body is a
+	 *    block (in curly brackets) has a checkpoint.
+	 **/
+	public void setCheckpointInjected(boolean pIsCheckpointInjected) {
+		this.IsCheckpointInjected = pIsCheckpointInjected;
+	}
+	/** Checks if a checkpoint should be added at the beginning of the body of each loop in the code */
+	public boolean isCheckpointInjected() {
+		return this.IsCheckpointInjected;
+	}
+	
 	// Imports ---------------------------------------------------------------------------------------------------------
 	
 	Vector<String> DefaultImports    = null;
@@ -1,9 +1,13 @@
 package net.nawaman.script.java;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import net.nawaman.script.CompiledCode;
 import net.nawaman.script.Scope;
+import net.nawaman.script.java.JavaCompileOption.ExecutionMode;
 
 /** The compiled code of a java code */
 public class JavaCompiledCode implements CompiledCode, Serializable {
@@ -11,16 +15,104 @@ public class JavaCompiledCode implements CompiledCode, Serializable {
 	private static final long serialVersionUID = -3921168108496594483L;
 
 	protected JavaCompiledCode(JavaCode pJavaCode) {
+		this(pJavaCode, ExecutionMode.Shared);
+	}
+	protected JavaCompiledCode(JavaCode pJavaCode, ExecutionMode pExecMode) {
 		this.JavaCode = pJavaCode;
+		this.ExecMode = pExecMode;
 	}
 
-	JavaCode JavaCode = null;
-	
+	JavaCode      JavaCode = null;
+	ExecutionMode ExecMode = null;
+
+	// The instances for the execution mode other than Shared (created from JavaCode when needed)
+	transient private volatile Scope                           InstanceScope = null;
+	transient private volatile ThreadLocal<JavaCode>           Locals        = null;
+	transient private volatile ConcurrentLinkedQueue<JavaCode> Pool          = null;
+
 	/** Returns the JavaCode object use in the execution */
 	public JavaCode getJavaCode() {
 		return this.JavaCode;
 	}
-	
+
+	/** Returns the execution mode of this code */
+	public ExecutionMode getExecutionMode() {
+		return (this.ExecMode == null) ? ExecutionMode.Shared : this.ExecMode;
+	}
+
+	/** Runs the code using the instance of the JavaCode according to the execution mode */
+	public Object run(Object $This, Scope $Scope) {
+		switch(this.getExecutionMode()) {
+			case PerThread: {
+				ThreadLocal<JavaCode> Locals = this.Locals;
+				if(Locals == null) {
+					synchronized(this) {
+						if((Locals = this.Locals) == null) {
+							Locals = new ThreadLocal<JavaCode>() {
+								@Override protected JavaCode initialValue() {
+									return JavaCompiledCode.this.newJavaCode();
+								}
+							};
+							this.Locals = Locals;
+						}
+					}
+				}
+				return Locals.get().run($This, $Scope);
+			}
+			case Pooled: {
+				ConcurrentLinkedQueue<JavaCode> Pool = this.Pool;
+				if(Pool == null) {
+					synchronized(this) {
+						if((Pool = this.Pool) == null) {
+							Pool = new ConcurrentLinkedQueue<JavaCode>();
+							// The first instance is the one created with the code
+							Pool.offer(this.JavaCode);
+							this.Pool = Pool;
+						}
+					}
+				}
+				JavaCode JC = Pool.poll();
+				if(JC == null) JC = this.newJavaCode();
+				try     { return JC.run($This, $Scope); }
+				finally { Pool.offer(JC);               }
+			}
+			default:
+				return this.JavaCode.run($This, $Scope);
+		}
+	}
+
+	/** Creates a new instance of the JavaCode with the same frozen variables */
+	JavaCode newJavaCode() {
+		try {
+			return JavaConstructors.NewJavaCode(this.JavaCode.getClass(), this.getInstanceScope());
+		} catch(ReflectiveOperationException E) {
+			throw new RuntimeException("An error creating an instance of java compiled code.", E);
+		}
+	}
+
+	/**
+	 * Returns the scope to create a new instance of the JavaCode. The frozen variables are the final fields of the
+	 *    JavaCode so their values are taken from the instance created with the code.
+	 **/
+	private Scope getInstanceScope() {
+		Scope IScope = this.InstanceScope;
+		if(IScope != null) return IScope;
+
+		IScope = new Scope.Simple();
+		for(Field F : this.JavaCode.getClass().getDeclaredFields()) {
+			int M = F.getModifiers();
+			if(Modifier.isStatic(M) || !Modifier.isFinal(M)) continue;
+			try {
+				F.setAccessible(true);
+				IScope.newVariable(F.getName(), Object.class, F.get(this.JavaCode));
+			} catch(Exception E) {
+				throw new RuntimeException("An error reading the frozen variable `"+F.getName()+"`.", E);
+			}
+		}
+		this.InstanceScope = IScope;
+		return IScope;
+	}
+
 	/** The interface that every the code is compiled to be */
 	static public interface JavaCode {
 		
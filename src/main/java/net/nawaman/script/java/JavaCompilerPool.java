@@ -0,0 +1,386 @@
+package net.nawaman.script.java;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import net.nawaman.javacompiler.JavaCompiler;
+
+/**
+ * A pool of warm compiler contexts.
+ *
+ * Each context keeps its own file manager (with the class path already opened and indexed) so compiling a code does
+ *    not need to build the compilation environment again. The compiled byte code is captured in memory and then added
+ *    to the JavaCompiler of the engine (so the classes are loaded and serialized the same way as the ones compiled by
+ *    the JavaCompiler itself). As each compilation borrows its own context, many codes can be compiled at the same
+ *    time.
+ *
+ * The file manager of a context finds the classes on the class path and the classes this pool has added to the
+ *    JavaCompiler (so a code can use the executables compiled before it) but not the other classes the JavaCompiler
+ *    has in memory (e.g., the ones it compiled itself or loaded from a saved executable). A compilation that fails as
+ *    some symbol is not found (see isUnresolved(...)) can be compiled again by the JavaCompiler which knows them all.
+ **/
+public class JavaCompilerPool {
+
+	/** Constructs a compiler pool for the JavaCompiler */
+	public JavaCompilerPool(JavaCompiler pJCompiler, int pSize, boolean pIsWarmUp) {
+		if(pSize <= 0) throw new IllegalArgumentException("Invalid compiler pool size: " + pSize);
+
+		this.JCompiler = pJCompiler;
+		this.Compiler  = ToolProvider.getSystemJavaCompiler();
+		this.Size      = pSize;
+
+		if(this.Compiler == null)
+			throw new RuntimeException("The system java compiler is not available (a JDK is required).");
+
+		if(pIsWarmUp) {
+			Thread WarmUp = new Thread(new Runnable() {
+				public void run() {
+					JavaCompilerPool.this.warmUp();
+				}
+			}, "JavaCompilerPool-WarmUp");
+			WarmUp.setDaemon(true);
+			WarmUp.start();
+		}
+	}
+
+	final JavaCompiler             JCompiler;
+	final javax.tools.JavaCompiler Compiler;
+	final int                      Size;
+
+	private final LinkedBlockingQueue<Context> Idles = new LinkedBlockingQueue<Context>();
+	private       int                          Count = 0;
+
+	// The byte code of the classes this pool has added to the JavaCompiler (visible to the later compilations)
+	private final ConcurrentHashMap<String, byte[]> Added = new ConcurrentHashMap<String, byte[]>();
+
+	/** Returns the maximum number of the compiler contexts */
+	public int getSize() {
+		return this.Size;
+	}
+
+	/** Returns the number of the compiler contexts that are created */
+	public synchronized int getContextCount() {
+		return this.Count;
+	}
+
+	/** Creates all the compiler contexts and compiles a trivial class with each of them */
+	public void warmUp() {
+		List<Context> Contexts = new ArrayList<Context>();
+		try {
+			for(int i = 0; i < this.Size; i++) {
+				Context Context = this.borrow();
+				Contexts.add(Context);
+				Context.compile(WarmUpSources(i), null, new LinkedHashMap<String, byte[]>());
+			}
+		} catch (InterruptedException E) {
+			Thread.currentThread().interrupt();
+		} finally {
+			for(Context Context : Contexts) this.giveBack(Context);
+		}
+	}
+
+	/** Returns the sources used to warm up the compiler context */
+	static private Map<String, String> WarmUpSources(int pIndex) {
+		String ClassName = "$WarmUp_" + pIndex;
+		Map<String, String> Sources = new LinkedHashMap<String, String>();
+		Sources.put(
+			ClassName + ".java",
+			"import net.nawaman.script.*;\n" +
+			"public class " + ClassName + " { Object run(Scope $Scope) { return $Scope.getValue(\"\"); } }");
+		return Sources;
+	}
+
+	/**
+	 * Compiles the sources (file name to code) and adds the compiled classes to the JavaCompiler. Returns the error
+	 *    message or null if the compilation is success.
+	 **/
+	public String compile(Map<String, String> pSources, DiagnosticCollector<JavaFileObject> pDiagnostics) {
+		return this.compile(pSources, pDiagnostics, null);
+	}
+
+	/**
+	 * Compiles the sources (file name to code) and adds the compiled classes to the loader (or to the JavaCompiler if
+	 *    the loader is null). Returns the error message or null if the compilation is success.
+	 **/
+	public String compile(Map<String, String> pSources, DiagnosticCollector<JavaFileObject> pDiagnostics,
+			ExecutableClassLoader pLoader) {
+		Map<String, byte[]> Classes = new LinkedHashMap<String, byte[]>();
+
+		Context Context;
+		try {
+			Context = this.borrow();
+		} catch (InterruptedException E) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for a compiler.", E);
+		}
+
+		String Err;
+		try     { Err = Context.compile(pSources, pDiagnostics, Classes); }
+		finally { this.giveBack(Context);                                   }
+		if(Err != null) return Err;
+
+		// The loader defines the classes when they are loaded
+		if(pLoader != null) {
+			pLoader.addClasses(Classes);
+			return null;
+		}
+
+		// The same lock as the compilations done by the JavaCompiler itself (see JavaEngine)
+		synchronized(this.JCompiler) {
+			// Add the nested classes first as the top level class may use them when it is initialized
+			for(int Turn = 0; Turn < 2; Turn++) {
+				for(Map.Entry<String, byte[]> Entry : Classes.entrySet()) {
+					String Name = Entry.getKey();
+					if((Name.indexOf('$') == -1) != (Turn == 1)) continue;
+					if(!this.JCompiler.addClassByteCode(Name, "", Entry.getValue()))
+						return "Unable to load the compiled class: " + Name;
+				}
+			}
+		}
+		this.Added.putAll(Classes);
+		return null;
+	}
+
+	/** Checks if the compilation failed because some symbol (e.g., a class not visible to the pool) is not found */
+	static boolean isUnresolved(DiagnosticCollector<JavaFileObject> pDiagnostics) {
+		boolean IsUnresolved = false;
+		for(Diagnostic<? extends JavaFileObject> D : pDiagnostics.getDiagnostics()) {
+			if(D.getKind() != Diagnostic.Kind.ERROR) continue;
+
+			String Code = D.getCode();
+			if((Code == null) || !(Code.startsWith("compiler.err.cant.resolve") || Code.equals("compiler.err.doesnt.exist")))
+				return false;
+			IsUnresolved = true;
+		}
+		return IsUnresolved;
+	}
+
+	private Context borrow() throws InterruptedException {
+		Context Context = this.Idles.poll();
+		if(Context != null) return Context;
+
+		synchronized(this) {
+			if(this.Count < this.Size) {
+				this.Count++;
+				return new Context();
+			}
+		}
+		return this.Idles.take();
+	}
+
+	private void giveBack(Context pContext) {
+		this.Idles.offer(pContext);
+	}
+
+	/** Returns the class path the code should be compiled with */
+	String getClassPath() {
+		StringBuilder SB = new StringBuilder(System.getProperty("java.class.path", ""));
+		URL[] URLs = this.JCompiler.getClasspaths();
+		if(URLs != null) {
+			for(URL URL : URLs) {
+				if((URL == null) || !"file".equals(URL.getProtocol())) continue;
+				try {
+					if(SB.length() != 0) SB.append(File.pathSeparatorChar);
+					SB.append(new File(URL.toURI()).getPath());
+				} catch (Exception E) {}
+			}
+		}
+		return SB.toString();
+	}
+
+	// Context ---------------------------------------------------------------------------------------------------------
+
+	/** A compiler context - the file manager is kept so the class path is only opened once */
+	final class Context {
+
+		private final StandardJavaFileManager SFManager;
+		private final MemoryFileManager       FManager;
+		private       String                  ClassPath = null;
+
+		Context() {
+			this.SFManager = JavaCompilerPool.this.Compiler.getStandardFileManager(null, null, null);
+			this.FManager  = new MemoryFileManager(this.SFManager, JavaCompilerPool.this.Added);
+		}
+
+		/** Compiles the sources and puts the compiled classes into the map */
+		String compile(Map<String, String> pSources, DiagnosticCollector<JavaFileObject> pDiagnostics,
+				Map<String, byte[]> pClasses) {
+
+			// Reset the class path only when it is changed (so the opened archives are reused)
+			String ClassPath = JavaCompilerPool.this.getClassPath();
+			if(!ClassPath.equals(this.ClassPath)) {
+				List<File> Files = new ArrayList<File>();
+				for(String Path : ClassPath.split(File.pathSeparator)) {
+					if(Path.length() != 0) Files.add(new File(Path));
+				}
+				try {
+					this.SFManager.setLocation(StandardLocation.CLASS_PATH, Files);
+				} catch (IOException E) {
+					return "Invalid class path: " + E.getMessage();
+				}
+				this.ClassPath = ClassPath;
+			}
+
+			List<JavaFileObject> Units = new ArrayList<JavaFileObject>();
+			for(Map.Entry<String, String> Entry : pSources.entrySet())
+				Units.add(new SourceFile(Entry.getKey(), Entry.getValue()));
+
+			DiagnosticCollector<JavaFileObject> Ds = (pDiagnostics != null)
+			                                             ? pDiagnostics
+			                                             : new DiagnosticCollector<JavaFileObject>();
+
+			this.FManager.Classes = pClasses;
+			try {
+				boolean IsSuccess = JavaCompilerPool.this.Compiler
+				                        .getTask(null, this.FManager, Ds, null, null, Units)
+				                        .call();
+				if(IsSuccess) return null;
+
+			} catch (RuntimeException E) {
+				return "Compile error: " + E;
+			} finally {
+				this.FManager.Classes = null;
+			}
+
+			// Prepare the error message
+			StringBuilder SB = new StringBuilder();
+			for(Diagnostic<? extends JavaFileObject> D : Ds.getDiagnostics()) {
+				if(D.getKind() != Diagnostic.Kind.ERROR) continue;
+				if(SB.length() != 0) SB.append("\n");
+				SB.append(D.toString());
+			}
+			return (SB.length() == 0) ? "Compile error!" : SB.toString();
+		}
+	}
+
+	/** A source file from a text */
+	static final class SourceFile extends SimpleJavaFileObject {
+
+		private final String Code;
+
+		SourceFile(String pFileName, String pCode) {
+			super(URI.create("string:///" + pFileName), Kind.SOURCE);
+			this.Code = pCode;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public CharSequence getCharContent(boolean pIgnoreEncodingErrors) {
+			return this.Code;
+		}
+	}
+
+	/** A class file that keeps the byte code in memory */
+	static final class ClassFile extends SimpleJavaFileObject {
+
+		private final String              Name;
+		private final Map<String, byte[]> Classes;
+
+		ClassFile(String pName, Map<String, byte[]> pClasses) {
+			super(URI.create("bytes:///" + pName.replace('.', '/') + ".class"), Kind.CLASS);
+			this.Name    = pName;
+			this.Classes = pClasses;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public OutputStream openOutputStream() {
+			return new ByteArrayOutputStream() {
+				@Override public void close() throws IOException {
+					super.close();
+					synchronized(ClassFile.this.Classes) {
+						ClassFile.this.Classes.put(ClassFile.this.Name, this.toByteArray());
+					}
+				}
+			};
+		}
+	}
+
+	/** A class file from the byte code in memory (a class added to the JavaCompiler by the pool) */
+	static final class AddedClassFile extends SimpleJavaFileObject {
+
+		private final String Name;
+		private final byte[] ByteCode;
+
+		AddedClassFile(String pName, byte[] pByteCode) {
+			super(URI.create("bytes:///" + pName.replace('.', '/') + ".class"), Kind.CLASS);
+			this.Name     = pName;
+			this.ByteCode = pByteCode;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public InputStream openInputStream() {
+			return new ByteArrayInputStream(this.ByteCode);
+		}
+	}
+
+	/** A file manager that keeps the class outputs in memory and finds the classes added by the pool */
+	static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		Map<String, byte[]> Classes = null;
+
+		private final Map<String, byte[]> Added;
+
+		MemoryFileManager(StandardJavaFileManager pFileManager, Map<String, byte[]> pAdded) {
+			super(pFileManager);
+			this.Added = pAdded;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public Iterable<JavaFileObject> list(Location pLocation, String pPackageName, Set<JavaFileObject.Kind> pKinds,
+				boolean pIsRecurse) throws IOException {
+			Iterable<JavaFileObject> Files = super.list(pLocation, pPackageName, pKinds, pIsRecurse);
+			if((pLocation != StandardLocation.CLASS_PATH) || !pKinds.contains(JavaFileObject.Kind.CLASS)
+			|| this.Added.isEmpty())
+				return Files;
+
+			// The generated classes are in the unnamed package
+			List<JavaFileObject> All = new ArrayList<JavaFileObject>();
+			for(JavaFileObject File : Files) All.add(File);
+			for(Map.Entry<String, byte[]> Entry : this.Added.entrySet()) {
+				String Name    = Entry.getKey();
+				int    Index   = Name.lastIndexOf('.');
+				String Package = (Index == -1) ? "" : Name.substring(0, Index);
+				if(Package.equals(pPackageName) || (pIsRecurse && Package.startsWith(pPackageName)))
+					All.add(new AddedClassFile(Name, Entry.getValue()));
+			}
+			return All;
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String inferBinaryName(Location pLocation, JavaFileObject pFile) {
+			if(pFile instanceof AddedClassFile) return ((AddedClassFile)pFile).Name;
+			return super.inferBinaryName(pLocation, pFile);
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public JavaFileObject getJavaFileForOutput(Location pLocation, String pClassName, JavaFileObject.Kind pKind,
+				FileObject pSibling) throws IOException {
+			if((pKind == JavaFileObject.Kind.CLASS) && (this.Classes != null))
+				return new ClassFile(pClassName, this.Classes);
+
+			return super.getJavaFileForOutput(pLocation, pClassName, pKind, pSibling);
+		}
+	}
+}
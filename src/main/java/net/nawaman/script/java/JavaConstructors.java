@@ -0,0 +1,70 @@
+package net.nawaman.script.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+
+import net.nawaman.script.Scope;
+import net.nawaman.script.Signature;
+import net.nawaman.script.java.JavaCompiledCode.JavaCode;
+
+/**
+ * Constructors of the compiled classes.
+ *
+ * The constructor of each compiled class is looked up only once and kept (as a method handle) with the class so
+ *    creating a new instance (such as, when an executable is re-created with a new frozen scope) does not need to look
+ *    for the constructor and check its accessibility again. The handles are kept in ClassValues so they are gone
+ *    together with the class when its class loader is unloaded.
+ **/
+final class JavaConstructors {
+
+	private JavaConstructors() {}
+
+	/** The type of the constructor of a compiled code */
+	static private final MethodType CodeType = MethodType.methodType(Object.class, Scope.class);
+	/** The type of the constructor of a function or macro body */
+	static private final MethodType BodyType = MethodType.methodType(Object.class, Signature.class, String.class, Scope.class);
+
+	static private final ClassValue<MethodHandle> CodeConstructors = new ClassValue<MethodHandle>() {
+		@Override protected MethodHandle computeValue(Class<?> pClass) {
+			return FindConstructor(pClass, CodeType);
+		}
+	};
+	static private final ClassValue<MethodHandle> BodyConstructors = new ClassValue<MethodHandle>() {
+		@Override protected MethodHandle computeValue(Class<?> pClass) {
+			return FindConstructor(pClass, BodyType);
+		}
+	};
+
+	/** Returns the constructor (as the given type) of the class or null if the class has no such public constructor */
+	static private MethodHandle FindConstructor(Class<?> pClass, MethodType pType) {
+		try {
+			return MethodHandles.publicLookup()
+			           .findConstructor(pClass, pType.changeReturnType(void.class))
+			           .asType(pType);
+		} catch (NoSuchMethodException  E) {
+		} catch (IllegalAccessException E) {
+		}
+		return null;
+	}
+
+	/** Creates a new instance of the compiled code class */
+	static JavaCode NewJavaCode(Class<?> pClass, Scope pFrozen) throws ReflectiveOperationException {
+		MethodHandle MH = CodeConstructors.get(pClass);
+		if(MH == null) throw new NoSuchMethodException(pClass.getName() + ".<init>(Scope)");
+
+		try                 { return (JavaCode)(Object)MH.invokeExact(pFrozen); }
+		catch (Throwable T) { throw new InvocationTargetException(T);          }
+	}
+
+	/** Creates a new instance of the function or macro body class */
+	static Object NewBody(Class<?> pClass, Signature pSignature, String pCode, Scope pFrozen)
+			throws ReflectiveOperationException {
+		MethodHandle MH = BodyConstructors.get(pClass);
+		if(MH == null) throw new NoSuchMethodException(pClass.getName() + ".<init>(Signature, String, Scope)");
+
+		try                 { return (Object)MH.invokeExact(pSignature, pCode, pFrozen); }
+		catch (Throwable T) { throw new InvocationTargetException(T);                   }
+	}
+}
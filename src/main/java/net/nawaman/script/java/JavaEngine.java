@@ -6,10 +6,28 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +38,7 @@ import javax.tools.JavaFileObject;
 import net.nawaman.javacompiler.*;
 import net.nawaman.script.*;
 import net.nawaman.script.java.JavaCompiledCode.JavaCode;
+import net.nawaman.script.java.JavaCompileOption.ExecutionMode;
 import net.nawaman.script.java.JavaRoughParser.Statement;
 import net.nawaman.usepath.FileExtFilter;
 import net.nawaman.usepath.FileExtUsableFilter;
@@ -55,7 +74,14 @@ import net.nawaman.usepath.UsableFilter;
  *   direct-accessed. For Macro and Function, the paramters are direct access. For Script, the executional paramters 
  *   (Args of Main) will be accessible via scope if the script is run by Main.java.   
  * The scope parameters are only accessible via $Scope variable using $Scope.getValue(`Var Name`) and
- *   $Scope.setValue(`Var Name`, Value).
+ *   $Scope.setValue(`Var Name`, Value). When the name is a string literal, the access is compiled to use a slot of the
+ *   variable (see Scope.Slot) so the variable is not searched by its name every time.
+ *   
+ * EXECUTION MODE:
+ * A compiled code uses one instance of its class for all executions by default so its local fields are shared by all
+ *   the threads running it. To run it from many threads, compile it with JavaCompileOption.setExecutionMode(...) as
+ *   PerThread or Pooled so each execution has an instance of its own. A static field that is not final is not allowed
+ *   in those modes.
  *   
  * EXAMPLE CODE:
  * <code>
@@ -102,24 +128,65 @@ public class JavaEngine implements ScriptEngine {
 	
 	static private JavaEngine Instance = null;
 	
-	/** Get the only instance of JSEngine */
-	static public JavaEngine newInstance(ScriptEngineOption pOption) {
-		if(Instance == null) Instance = new JavaEngine();
-		return Instance;
+	static private final HashMap<String, JavaEngine> PooledInstances = new HashMap<String, JavaEngine>();
+	
+	/**
+	 * Get the only instance of JSEngine - or the instance with a compiler pool, an execution limit or loop checkpoints
+	 *    if the option specifies it (one instance for each option).
+	 **/
+	static synchronized public JavaEngine newInstance(ScriptEngineOption pOption) {
+		JavaEngineOption JOption = (pOption instanceof JavaEngineOption)
+		                               ? (JavaEngineOption)pOption
+		                               : ((pOption == null) ? null : new JavaEngineOption(pOption.toString()));
+		
+		if((JOption == null)
+		|| ((JOption.getPoolSize() == 0) && !JOption.getExecutionLimit().isLimited() && !JOption.isCheckpointInjected()
+		    && !JOption.isClassUnloading() && (JOption.getHot() == JavaEngineOption.getDefaultHot()))) {
+			if(Instance == null) Instance = new JavaEngine();
+			return Instance;
+		}
+		
+		JavaEngine JEngine = PooledInstances.get(JOption.getParameter());
+		if(JEngine == null) {
+			JEngine = new JavaEngine(JavaCompiler.Instance, JOption);
+			PooledInstances.put(JOption.getParameter(), JEngine);
+		}
+		return JEngine;
 	}
 
 	/** Constructs a new JavaEngine */
 	JavaEngine() {
-		this.JCompiler = JavaCompiler.Instance;
+		this(JavaCompiler.Instance, null);
 	}
 
 	/**
 	 * Constructs a new JavaEngine with a special JavaCompiler - use with care as all serializable might be a problem.
 	 **/
 	public JavaEngine(JavaCompiler pJavaCompiler) {
-		this.JCompiler = (pJavaCompiler == null) ? JavaCompiler.Instance : pJavaCompiler;
+		this(pJavaCompiler, null);
+	}
+
+	/**
+	 * Constructs a new JavaEngine with a special JavaCompiler and an option - use with care as all serializable might
+	 *    be a problem.
+	 **/
+	public JavaEngine(JavaCompiler pJavaCompiler, JavaEngineOption pOption) {
+		this.JCompiler    = (pJavaCompiler == null) ? JavaCompiler.Instance : pJavaCompiler;
+		this.Option       = pOption;
+		// The classes to be unloaded are defined from the byte code captured by the pool
+		this.IsUnloading  = (pOption != null) && pOption.isClassUnloading();
+		this.Hot          = (pOption == null) ? JavaEngineOption.getDefaultHot() : pOption.getHot();
+		this.CompilerPool = ((pOption == null) || ((pOption.getPoolSize() == 0) && !this.IsUnloading))
+		                        ? null
+		                        : new JavaCompilerPool(this.JCompiler, Math.max(1, pOption.getPoolSize()),
+		                                               pOption.isWarmUp());
 	}
 	
+	final JavaEngineOption Option;
+	final JavaCompilerPool CompilerPool;
+	final boolean          IsUnloading;
+	final int              Hot;
+	
 	/** The name of this class for easy access by the client */
 	static public final String Name      = JavaEngine.class.getCanonicalName();
 	/** The name of this class for easy access by the client */
@@ -138,15 +205,24 @@ public class JavaEngine implements ScriptEngine {
 	
 	/**{@inheritDoc}*/ @Override
 	public ScriptEngineOption getOption() {
-		return null;
+		return this.Option;
 	}
 	/**{@inheritDoc}*/ @Override
 	public String getParameterString() {
-		return null;
+		return (this.Option == null) ? null : this.Option.getParameter();
 	}
 	/**{@inheritDoc}*/ @Override
 	public ScriptEngineOption getOption(String pParam) {
-		return null;
+		if((pParam == null) || (pParam.trim().length() == 0)) return null;
+		
+		// The parameter of a code header (e.g., `// @Java(6.0):`) is not required to be an option so the default
+		//    option is used if it is not a valid one
+		try {
+			JavaEngineOption JOption = new JavaEngineOption(pParam);
+			return JOption.isSpecified() ? JOption : null;
+		} catch (IllegalArgumentException E) {
+			return null;
+		}
 	}
 
 	/**{@inheritDoc}*/ @Override
@@ -179,10 +255,109 @@ public class JavaEngine implements ScriptEngine {
 		return this.JCompiler;
 	}
 	
+	private final AtomicLong CompilePassCount = new AtomicLong();
+	
+	/** Returns the number of the times the compiler is run by this engine (once for a code or a batch of codes) */
+	public long getCompilePassCount() {
+		return this.CompilePassCount.get();
+	}
+	
+	/** Returns the pool of compiler contexts of this engine or null if the codes are compiled by the JavaCompiler */
+	public JavaCompilerPool getCompilerPool() {
+		return this.CompilerPool;
+	}
+	
+	/**
+	 * Compiles the sources - returns the error or null if there is no error. The sources are compiled by a context
+	 *    from the compiler pool if there is one; otherwise, by the JavaCompiler (one compilation at a time).
+	 **/
+	String compileSources(Collection<ExecutableSource> pSources, DiagnosticCollector<JavaFileObject> pDiagnostics) {
+		this.CompilePassCount.incrementAndGet();
+		
+		Metrics M = Metrics.GetInstance();
+		if(!M.isEnabled()) return this.compileSourcesNow(pSources, pDiagnostics);
+		
+		String Name = (pSources.size() == 1)
+		                  ? pSources.iterator().next().getMetricsName()
+		                  : ("<batch of " + pSources.size() + ">");
+		long    Start = System.nanoTime();
+		boolean IsOK  = false;
+		try {
+			String Err = this.compileSourcesNow(pSources, pDiagnostics);
+			IsOK = (Err == null);
+			return Err;
+		} finally {
+			M.compiled(Name, this.getShortName(), System.nanoTime() - Start, IsOK);
+		}
+	}
+	
+	/** Compiles the sources (see compileSources(...)) */
+	private String compileSourcesNow(Collection<ExecutableSource> pSources,
+			DiagnosticCollector<JavaFileObject> pDiagnostics) {
+		for(ExecutableSource Source : pSources) {
+			if(DebugMode) DebugPrintStream.println(Source.getFileName()+":\n" + Source.ClassCode);
+		}
+		
+		if(this.CompilerPool != null) {
+			Map<String, String> Codes = new LinkedHashMap<String, String>();
+			for(ExecutableSource Source : pSources)
+				Codes.put(Source.getFileName(), Source.ClassCode);
+			
+			ExecutableClassLoader Loader = this.IsUnloading ? this.getGenerationLoader() : null;
+			for(ExecutableSource Source : pSources)
+				Source.Loader = Loader;
+			
+			DiagnosticCollector<JavaFileObject> Ds = new DiagnosticCollector<JavaFileObject>();
+			String Error = this.CompilerPool.compile(Codes, Ds, Loader);
+			
+			// The pool does not see the classes the JavaCompiler has from elsewhere so the sources are compiled again
+			//    by the JavaCompiler if they may use one (not for the unloadable classes as those are not added to it)
+			if((Error == null) || (Loader != null) || !JavaCompilerPool.isUnresolved(Ds)) {
+				if(pDiagnostics != null) {
+					for(Diagnostic<? extends JavaFileObject> D : Ds.getDiagnostics())
+						pDiagnostics.report(D);
+				}
+				return Error;
+			}
+		}
+		
+		synchronized(this.JCompiler) {
+			for(ExecutableSource Source : pSources)
+				this.JCompiler.addCode(Source.getFileName(), "", Source.ClassCode);
+			
+			return this.JCompiler.compile(pDiagnostics);
+		}
+	}
+	
+	private ExecutableClassLoader GenerationLoader = null;
+	
+	/** Returns the class loader for the classes of a new compilation (a new one when the generation is full) */
+	private synchronized ExecutableClassLoader getGenerationLoader() {
+		ExecutableClassLoader Loader = this.GenerationLoader;
+		if((Loader == null) || (Loader.getCompilationCount() >= this.Option.getGeneration())) {
+			Loader = new ExecutableClassLoader(this.JCompiler);
+			// A generation of one is never reused so it is not kept
+			this.GenerationLoader = (this.Option.getGeneration() == 1) ? null : Loader;
+		}
+		return Loader;
+	}
+	
+	/** Checks if the generated classes are defined in their own class loaders so they can be unloaded */
+	public boolean isClassUnloading() {
+		return this.IsUnloading;
+	}
+	
+	final JavaCompileCache CompileCache = new JavaCompileCache();
+	
+	/** Returns the cache of the compiled classes of this engine */
+	public JavaCompileCache getCompileCache() {
+		return this.CompileCache;
+	}
+	
 	int Index = Math.abs((new Random()).nextInt());
 	
 	/** The index for a no-name class to be created */
-	protected int nextIndex() {
+	protected synchronized int nextIndex() {
 		return this.Index++;
 	}
 	
@@ -285,12 +460,13 @@ public class JavaEngine implements ScriptEngine {
     
 	/**{@inheritDoc}*/ @Override
 	public Scope newScope() {
-		return new net.nawaman.script.Scope.Simple();
+		return new net.nawaman.script.Scope.Slotted();
 	}
 	
 	/**{@inheritDoc}*/ @Override
 	public Scope getCompatibleScope(Scope pOrg) {
-		if(pOrg instanceof Scope.Simple) return pOrg;
+		if(pOrg instanceof Scope.Slotted) return pOrg;
+		if(pOrg instanceof Scope.Simple)  return pOrg;
 		Scope Target = this.newScope();
 		Scope.Simple.duplicate(pOrg, Target);
 		return Target;
@@ -318,8 +494,17 @@ public class JavaEngine implements ScriptEngine {
 	public Object eval(CompiledCode pCode, Scope pScope, ProblemContainer pResult) {
 		if(!(pCode instanceof JavaCompiledCode))
 			throw new RuntimeException("Java engine can only execute a Java compiled code.");
-		pScope = (pScope == null)?Scope.Empty.Instance:pScope;
-		return ((JavaCompiledCode)pCode).JavaCode.run(pScope.getValue($This), pScope);
+		final JavaCompiledCode JCC    = (JavaCompiledCode)pCode;
+		final Scope            EScope = (pScope == null)?Scope.Empty.Instance:pScope;
+		
+		ExecutionLimit Limit = (this.Option == null) ? null : this.Option.getExecutionLimit();
+		if((Limit == null) || !Limit.isLimited()) return JCC.run(EScope.getValue($This), EScope);
+		
+		return Limit.run(new Callable<Object>() {
+			public Object call() {
+				return JCC.run(EScope.getValue($This), EScope);
+			}
+		});
 	}
 	
 	/**{@inheritDoc}*/ @Override
@@ -544,7 +729,7 @@ public class JavaEngine implements ScriptEngine {
 				pClassName,
 				FStrs[0],										// Constructor body (about the frozen variables)
 				FStrs[1],										// Declaration of frozen variables as fields
-				pSignature.getReturnType().getCanonicalName(),	// Return type
+				Signature.Simple.getWrapperType(pSignature.getReturnType()).getCanonicalName(),	// Return type
 				Return1, 
 				Return2
 			);
@@ -553,7 +738,7 @@ public class JavaEngine implements ScriptEngine {
 	/** Returns the prefix of the template of a java code to create a macro */
 	static public String getMacroMiddle(Signature Signature, String Annotations) {
 		Class<?> C = Signature.getReturnType();
-		String CName  = Signature.getReturnType().getCanonicalName();
+		String CName  = net.nawaman.script.Signature.Simple.getWrapperType(C).getCanonicalName();
 		String Return = "return ";
 		if(C == Void.class) {
 			CName   = "void";
@@ -576,7 +761,7 @@ public class JavaEngine implements ScriptEngine {
 	static void ensureFunctionTmeplate() {
 		if(FunctionPrefixTemplate != null) return;
 		FunctionPrefixTemplate = String.format(
-				"public class %s %s implements %s,%s {"+					// ClassName
+				"public class %s %s implements %s,%s%s {"+					// ClassName
 				"	public %s(%s pSignature, String pCode, %s $FScope) {" +	// ClassName for Constructor
 				"		this.$Signature = pSignature;" +
 				"		this.$Code      = pCode;" +
@@ -606,8 +791,9 @@ public class JavaEngine implements ScriptEngine {
 				// Params --------------------------------------------------------------
 				"%s",											// ClassName
 				"%s",											// "extends " + SuperClassName
-				Function.Simple.Body.class.getCanonicalName(),	// For Implements
+				Function.Simple.DirectBody.class.getCanonicalName(),	// For Implements
 				Serializable.class.getCanonicalName(),			// For Implements
+				"%s",											// For Implements (the primitive typed interface)
 				
 				"%s",											// ClassName for Construction Name
 				Signature.class.getCanonicalName(),				// For Constructor parameter
@@ -629,27 +815,32 @@ public class JavaEngine implements ScriptEngine {
 				Signature.class.getCanonicalName());			// For Field type
 
 		FunctionMiddleTemplate = String.format(
+				"%s" +
 				"	private %s $Self(final Object ... $Params) {" +
-				"		%sthis.run(null, $Params);" +
+				"		%sthis.run(0, null%s);" +
 				"	}" +
 				""+
 				"	public %s run(final %s $Function, final Object ... $Params) {"+
-				"		%sthis.run(0, (%s)$Function, $Params);%s"+
+				"		%sthis.run(0, (%s)$Function%s);%s"+
 				"	}"+
-				"	public%s %s run(final int ___JavaEngineDummy___, final %s $Function, final Object ... $Params) {",
+				"	public%s %s run(final int ___JavaEngineDummy___, final %s $Function, final Object[] $Params%s) {",
 				// Params --------------------------------------------------------------
+				"%s",											// The direct run methods
 				"%s",											// The function return type
 				"%s",											// Return Statement 1
+				"%s",											// The parameters taken from $Params
 
 				"%s",											// The function return type
 				Function.Simple.class.getCanonicalName(),		// For run() parameter
 				"%s",											// Return Statement 2
 				Function.Simple.class.getCanonicalName(),		// For Cast
+				"%s",											// The parameters taken from $Params
 				"%s",											// Return Statement 3
 
 				"%s",											// Annotations
 				"%s",											// The function return type
-				Function.Simple.class.getCanonicalName()		// For run() parameter
+				Function.Simple.class.getCanonicalName(),		// For run() parameter
+				"%s"											// The parameters
 			);
 		
 		FunctionSuffixTemplate =
@@ -659,18 +850,145 @@ public class JavaEngine implements ScriptEngine {
 	
 	/** Returns the prefix of the template of a java code to create a function */
 	static public String getFunctionPrefix(String pClassName, Class<?> pSuperClass, Scope pFrozenScope, String[] pFVNames) {
+		return getFunctionPrefix(pClassName, pSuperClass, null, pFrozenScope, pFVNames);
+	}
+	
+	/**
+	 * Returns the prefix of the template of a java code to create a function that also implements the primitive typed
+	 *    interface (see getFunctionTypedInterface(...)).
+	 **/
+	static public String getFunctionPrefix(String pClassName, Class<?> pSuperClass, Class<?> pTypedInterface,
+			Scope pFrozenScope, String[] pFVNames) {
 		String[] FStrs = JavaEngine.getFrozenStrings(pFrozenScope, pFVNames);
 		return String.format(FunctionPrefixTemplate,
 				pClassName,
 				((pSuperClass == null)?"":"extends " + pSuperClass.getCanonicalName()),
+				((pTypedInterface == null)?"":"," + pTypedInterface.getCanonicalName()),
 				pClassName,
 				FStrs[0],	// Constructor body (about the frozen variables)
 				FStrs[1]	// Declaration of frozen variables as fields
 			);
 	}
 	
-	/** Returns the middle part of the template of a java code to create a function */
-	static public String getFunctionMiddleMiddle(Signature Signature, String Annotations) {
+	/** The maximum number of the parameters of a function that can be run directly (see Function.Direct) */
+	static final int MAX_DIRECT_ARITY = 3;
+	
+	/** The primitive typed interfaces of the functions - [ParamCount][int, long, double] */
+	static final Class<?>[][] FunctionTypedInterfaces = {
+		{ IntSupplier      .class, LongSupplier      .class, DoubleSupplier      .class },
+		{ IntUnaryOperator .class, LongUnaryOperator .class, DoubleUnaryOperator .class },
+		{ IntBinaryOperator.class, LongBinaryOperator.class, DoubleBinaryOperator.class }
+	};
+	
+	/**
+	 * Returns the interface from java.util.function (such as, IntBinaryOperator) the body of a function of the
+	 *    signature can implement or null if there is none. Only the signature with up to two parameters that all the
+	 *    parameter types and the return type are the same int, long or double has one.
+	 **/
+	static public Class<?> getFunctionTypedInterface(Signature pSignature) {
+		if(pSignature.isVarArgs() || (pSignature.getParamCount() >= FunctionTypedInterfaces.length)) return null;
+		
+		Class<?> Type = pSignature.getReturnType();
+		for(int i = pSignature.getParamCount(); --i >= 0; ) {
+			if(pSignature.getParamType(i) != Type) return null;
+		}
+		
+		int Index = (Type == int.class) ? 0 : (Type == long.class) ? 1 : (Type == double.class) ? 2 : -1;
+		return (Index == -1) ? null : FunctionTypedInterfaces[pSignature.getParamCount()][Index];
+	}
+	
+	/** Returns the name of the type of the parameter of the signature as it is declared in the code */
+	static String getFunctionParamTypeName(Signature pSignature, int I) {
+		String PTypeName = pSignature.getParamType(I).getCanonicalName();
+		if(pSignature.isVarArgs() && (I == (pSignature.getParamCount() - 1))) {
+			// Get the array type 
+			PTypeName += "[]";
+		}
+		return PTypeName;
+	}
+	
+	/** Returns the arguments to call the run method of the function body (after the dummy and the function) */
+	static String getFunctionRunArgs(Signature pSignature, String pParamsArray, String[] pParams, boolean pIsCast) {
+		StringBuilder SB = new StringBuilder();
+		SB.append(", ").append(pParamsArray);
+		for(int i = 0; i < pParams.length; i++) {
+			SB.append(", ");
+			if(pIsCast) SB.append("(").append(getFunctionParamTypeName(pSignature, i)).append(")");
+			SB.append(pParams[i]);
+		}
+		return SB.toString();
+	}
+	
+	/** Returns the expression of $Params from the parameters (null if the code does not use $Params) */
+	static String getFunctionParamsArray(String[] pParams, boolean pIsParamsUsed) {
+		if(!pIsParamsUsed) return "null";
+		
+		StringBuilder SB = new StringBuilder();
+		SB.append("new Object[] { ");
+		for(int i = 0; i < pParams.length; i++) SB.append((i == 0) ? "" : ", ").append(pParams[i]);
+		SB.append(" }");
+		return SB.toString();
+	}
+	
+	/**
+	 * Returns the run methods of Function.Simple.DirectBody and the method of the primitive typed interface (if any).
+	 *    The direct run method with the number of parameters of the signature runs the body with the parameters as
+	 *    they are and the others run the function normally. A code that uses $Params cannot be run directly (its
+	 *    parameters must be in an array anyway) so all of its direct run methods run the function normally.
+	 **/
+	static String getFunctionDirectRuns(Signature pSignature, Class<?> pTypedInterface, boolean pIsParamsUsed) {
+		int Arity = pSignature.getParamCount();
+		if(pIsParamsUsed || pSignature.isVarArgs() || (Arity > MAX_DIRECT_ARITY)) Arity = -1;
+		
+		boolean       IsVoid = (pSignature.getReturnType() == Void.class);
+		StringBuilder SB     = new StringBuilder();
+		SB.append("	public int getDirectArity() {		return ").append(Arity).append(";	}");
+		for(int N = 0; N <= MAX_DIRECT_ARITY; N++) {
+			String[]      Ps     = new String[N];
+			StringBuilder Params = new StringBuilder();
+			for(int i = 0; i < N; i++) {
+				Ps[i] = "$P" + i;
+				Params.append(", final Object ").append(Ps[i]);
+			}
+			SB.append("	public Object run").append(N).append("(final ")
+			  .append(Function.Simple.class.getCanonicalName()).append(" $Function").append(Params).append(") {");
+			
+			if(N != Arity) SB.append("		return $Function.run(").append(getFunctionParamsArray(Ps, true)).append(");");
+			else {
+				String Args = getFunctionRunArgs(pSignature, "null", Ps, true);
+				SB.append(IsVoid ? "		" : "		return ");
+				SB.append("this.run(0, $Function").append(Args).append(");");
+				if(IsVoid) SB.append("		return null;");
+			}
+			SB.append("	}");
+		}
+		
+		// The method of the typed interface (e.g., `int applyAsInt(int, int)`)
+		if(pTypedInterface != null) {
+			String        TName  = pSignature.getReturnType().getName();
+			String        MName  = ((pSignature.getParamCount() == 0) ? "getAs" : "applyAs") +
+			                       Character.toUpperCase(TName.charAt(0)) + TName.substring(1);
+			String[]      Ps     = new String[pSignature.getParamCount()];
+			StringBuilder Params = new StringBuilder();
+			for(int i = 0; i < Ps.length; i++) {
+				Ps[i] = "$P" + i;
+				Params.append((i == 0) ? "" : ", ").append("final ").append(TName).append(" ").append(Ps[i]);
+			}
+			SB.append("	public ").append(TName).append(" ").append(MName).append("(").append(Params).append(") {");
+			String Args = getFunctionRunArgs(pSignature, getFunctionParamsArray(Ps, pIsParamsUsed), Ps, false);
+			SB.append("		return this.run(0, null").append(Args).append(");");
+			SB.append("	}");
+		}
+		return SB.toString();
+	}
+	
+	/**
+	 * Returns the middle part of the template of a java code to create a function. The parameters of the function are
+	 *    the parameters of the run method that holds the code so the function can also be run with its parameters
+	 *    directly (without $Params when the code does not use it).
+	 **/
+	static public String getFunctionMiddleMiddle(Signature Signature, String[] ParamNames, String Annotations,
+			Class<?> TypedInterface, boolean IsParamsUsed) {
 		Class<?> C = Signature.getReturnType();
 		String CName  = Signature.getReturnType().getCanonicalName();
 		String Return1 = "return ";
@@ -682,14 +1000,27 @@ public class JavaEngine implements ScriptEngine {
 			Return2 = "";
 			Return3 = "		return null;";
 		}
+		
+		String[]      FromParams = new String[ParamNames.length];
+		StringBuilder Params     = new StringBuilder();
+		for(int i = 0; i < ParamNames.length; i++) {
+			FromParams[i] = "$Params[" + i + "]";
+			Params.append(", final ").append(getFunctionParamTypeName(Signature, i)).append(" ").append(ParamNames[i]);
+		}
+		
+		String RunArgs = getFunctionRunArgs(Signature, "$Params", FromParams, true);
 		return String.format(FunctionMiddleTemplate,
+				getFunctionDirectRuns(Signature, TypedInterface, IsParamsUsed),	// The direct run methods
 				CName,		// The return type
 				Return1,	// Return Statement
-				Signature.getReturnType().getCanonicalName(), // The function return type
+				RunArgs,	// The parameters from $Params ($Self calls the run method of the code directly)
+				net.nawaman.script.Signature.Simple.getWrapperType(C).getCanonicalName(), // The return type as an object
 				Return2,	// Return Statement
+				RunArgs,	// The parameters from $Params
 				Return3,	// Return (replace) Statement
 				Annotations,// The Annotations
-				CName		// The return type
+				CName,		// The return type
+				Params		// The parameters
 			);
 	}
 
@@ -825,6 +1156,51 @@ public class JavaEngine implements ScriptEngine {
 		return new int[] { ImportEnd, ElementEnd, AnnotationEnd, HasLastReturn };
 	}
 	
+	/** Returns the local element statements of the code that declare a static field that is not final */
+	static public Statement[] getNonFinalStaticFields(String pScriptCode) {
+		int[] IEEnds = JavaEngine.getImportEndAndElementEndAndAnnotationEnd(pScriptCode);
+		
+		Vector<Statement> Collector = new Vector<Statement>();
+		JavaRoughParser.lengthOfStatements(Collector, pScriptCode, 0);
+		Statement.cleanAllIgnoreable(Collector);
+		
+		Vector<Statement> Fields = new Vector<Statement>();
+		for(Statement Stm : Collector) {
+			if((Stm == null) || (Stm.getOffset() < IEEnds[0]) || (Stm.getOffset() >= IEEnds[1])) continue;
+			
+			// Skip the modifiers (and the annotations)
+			String  Text     = Stm.getText();
+			boolean IsStatic = false;
+			boolean IsFinal  = false;
+			while(true) {
+				Matcher Ma = ModifierPattern.matcher(Text);
+				if(!Ma.lookingAt()) break;
+				if(Ma.group(1) != null) {
+					IsStatic |= "static".equals(Ma.group(1));
+					IsFinal  |= "final" .equals(Ma.group(1));
+				}
+				Text = Text.substring(Ma.end());
+			}
+			if(!IsStatic || IsFinal) continue;
+			
+			// Static initializer or class
+			if(Text.startsWith("{") || ClassDeclarationPattern.matcher(Text).lookingAt()) continue;
+			
+			// A method has its parameters before any assignment
+			int PIndex = Text.indexOf('(');
+			int AIndex = Text.indexOf('=');
+			if((PIndex != -1) && ((AIndex == -1) || (PIndex < AIndex))) continue;
+			
+			Fields.add(Stm);
+		}
+		return Fields.toArray(Statement.EmptyStatementArray);
+	}
+	
+	static final private Pattern ModifierPattern         = Pattern.compile(
+			"(?:\\b(public|protected|private|static|final|transient|volatile|synchronized|native|strictfp)\\b" +
+			"|@[a-zA-Z$_][a-zA-Z0-9$_.]*(?:[ \t\n\r]*\\([^)]*\\))?)[ \t\n\r]*");
+	static final private Pattern ClassDeclarationPattern = Pattern.compile("(class|interface|enum)\\b");
+	
 	/** Creates the strings of the frozen variable */
 	static protected String[] getFrozenStrings(Scope pFrozenScope, String[] pFVNames) {
 		if((pFrozenScope == null) || (pFVNames == null)) return new String[] { "", "" };
@@ -849,6 +1225,19 @@ public class JavaEngine implements ScriptEngine {
 	}
 			
 	
+	/** Returns the positions of the new lines in the code */
+	static protected Vector<Integer> getNewLinePositions(String pCode) {
+		Vector<Integer> NLs = new Vector<Integer>();
+		for(int i = 0; i < pCode.length(); i++) {
+			if(pCode.charAt(i) == '\r') {
+				if((pCode.length() > i) && (pCode.charAt(i + 1) == '\n')) i++;
+			} else if(pCode.charAt(i) == '\n') {
+			} else continue;
+			NLs.add(i);
+		}
+		return NLs;
+	}
+	
 	/** Returns the line number of the position */
 	static protected int getLineNumberOf(String pCode, Vector<Integer> pNLs, int pPos) {
 		if((pPos < 0) || (pPos > pCode.length())) return -1;
@@ -895,264 +1284,852 @@ public class JavaEngine implements ScriptEngine {
 
 	static enum EKind { CompiledCode, Macro, Function };
 	
-	static final String LastReturnNull = "\nreturn null;";
+	/**
+	 * The body of a code that does not end with a return is put in `if(true) { ... }` before `return null` is added so
+	 *    the return is always reachable (an if statement can complete normally even if its statement cannot) and the
+	 *    code is compiled in one pass - even when the body already returns in all paths (e.g., ends with an if-else
+	 *    that both return).
+	 **/
+	static final String LastReturnNullGuard = "if(true) {";
+	/** The end of the body of a code that does not end with a return (see LastReturnNullGuard) */
+	static final String LastReturnNull      = "\n}\nreturn null;";
+	
+	/** The pattern of a scope access with a literal name - `$Scope.getValue("Name")` or `$Scope.setValue("Name",` */
+	static final Pattern ScopeAccessPattern = Pattern.compile(
+			"(?<![a-zA-Z0-9_$.])\\$Scope\\s*\\.\\s*(getValue|setValue)\\s*\\(\\s*\"([^\"\\\\\\n]*)\"\\s*(\\)|,)");
+	
+	/** The prefix of the name of the field that holds a slot of a scope variable */
+	static final String ScopeSlotPrefix = "$ScopeSlot_";
+	
+	/** The checkpoint added at the beginning of a loop body */
+	static final String LoopCheckpoint = ExecutionLimit.class.getCanonicalName() + ".checkpoint();";
+	
+	/**
+	 * Returns the positions right after the open curly brackets of the loop bodies (`for(...) {`, `while(...) {` and
+	 *    `do {`) in the code. The comments, the strings and the characters are skipped.
+	 **/
+	static List<Integer> getLoopBodyBegins(String pCode) {
+		List<Integer> Begins = new ArrayList<Integer>();
+		int Length = pCode.length();
+		for(int i = 0; i < Length; i++) {
+			char Char = pCode.charAt(i);
+			
+			// Skip the comments, the strings and the characters
+			if((Char == '/') && ((i + 1) < Length) && (pCode.charAt(i + 1) == '/')) {
+				while((i < Length) && (pCode.charAt(i) != '\n')) i++;
+				continue;
+			}
+			if((Char == '/') && ((i + 1) < Length) && (pCode.charAt(i + 1) == '*')) {
+				int End = pCode.indexOf("*/", i + 2);
+				i = (End == -1) ? Length : End + 1;
+				continue;
+			}
+			if((Char == '"') || (Char == '\'')) {
+				for(i++; (i < Length) && (pCode.charAt(i) != Char) && (pCode.charAt(i) != '\n'); i++) {
+					if(pCode.charAt(i) == '\\') i++;
+				}
+				continue;
+			}
+			
+			// Find a loop keyword
+			if(!Character.isJavaIdentifierStart(Char)) continue;
+			int WordEnd = i + 1;
+			while((WordEnd < Length) && Character.isJavaIdentifierPart(pCode.charAt(WordEnd))) WordEnd++;
+			
+			String Word = pCode.substring(i, WordEnd);
+			boolean IsPrevDot = (i > 0) && (pCode.charAt(i - 1) == '.');
+			i = WordEnd - 1;
+			if(IsPrevDot) continue;
+			
+			int Pos = WordEnd;
+			if("for".equals(Word) || "while".equals(Word)) {
+				while((Pos < Length) && Character.isWhitespace(pCode.charAt(Pos))) Pos++;
+				if((Pos >= Length) || (pCode.charAt(Pos) != '(')) continue;
+				
+				// The matching close parenthesis
+				int Depth = 0;
+				for(; Pos < Length; Pos++) {
+					char C = pCode.charAt(Pos);
+					if     (C == '(') Depth++;
+					else if(C == ')') { if(--Depth == 0) break; }
+					else if((C == '"') || (C == '\'')) {
+						for(Pos++; (Pos < Length) && (pCode.charAt(Pos) != C); Pos++) {
+							if(pCode.charAt(Pos) == '\\') Pos++;
+						}
+					}
+				}
+				Pos++;
+				
+			} else if(!"do".equals(Word)) continue;
+			
+			while((Pos < Length) && Character.isWhitespace(pCode.charAt(Pos))) Pos++;
+			if((Pos < Length) && (pCode.charAt(Pos) == '{')) Begins.add(Pos + 1);
+		}
+		return Begins;
+	}
 
-	/**{@inheritDoc}*/ @SuppressWarnings({ "unchecked", "rawtypes" })
+	/** Creates a new executable of the given kind (the class is taken from the compile cache if it is there) */
 	Object newExecutable(EKind pEKind, Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
 			String[] pFVNames, CompileOption pOption, ProblemContainer pResult) {
 	
 		if(pOption == null) pOption = JavaCompileOption.DefaultOption;
-
-		int[] IEEnds = JavaEngine.getImportEndAndElementEndAndAnnotationEnd(pCode);
-		
-		String  Imports     = pCode.substring(0,         IEEnds[0]);
-		String  OtherEs     = pCode.substring(IEEnds[0], IEEnds[1]);
-		String  Annotations = pCode.substring(IEEnds[1], IEEnds[2]);
-		String  Body        = pCode.substring(IEEnds[2]);
-		boolean HasReturn   = (IEEnds[3] == -1);
-		
-		// Prepare Parameters
-		String Params = "";
-		if(pEKind != EKind.CompiledCode) {
-			StringBuilder SB = new StringBuilder();
-			for(int i = 0; i < pParamNames.length; i++) {
-				String PTypeName = pSignature.getParamType(i).getCanonicalName();
-				if(pSignature.isVarArgs() && (i == (pParamNames.length - 1))) {
-					// Get the array type 
-					PTypeName += "[]";
-				}
-				String PName = pParamNames[i];
-				if((PName == null) || (PName.length() == 0) || !ParameterNameRegEx.matcher(PName = PName.trim()).find())
-					throw new IllegalArgumentException("Invalid paramter name '"+PName+"'");
-				
-				SB.append("		final ");
-				SB.append(PTypeName);
-				SB.append(" ");
-				SB.append(PName);
-				SB.append(" = (");
-				SB.append(PTypeName);
-				SB.append(")$Params[");
-				SB.append(i);
-				SB.append("];");
+		
+		JavaCompileCache.Key Key = JavaCompileCache.newKey(this.getDefaultImportStr(), pEKind, pSignature, pParamNames,
+		                               pCode, pFrozen, pFVNames, (JavaCompileOption)pOption);
+		
+		Class<?> Cls = this.CompileCache.get(Key, pResult);
+		if(Cls == null) {
+			if(pEKind == EKind.CompiledCode) {
+				JavaInterpretedCode ICode = this.getInterpretedCode(Key, pCode, pFVNames, (JavaCompileOption)pOption);
+				if(ICode != null) return new JavaCompiledCode(ICode, ExecutionMode.Shared);
 			}
-			Params = SB.toString();
+			
+			int ProblemCount = (pResult == null) ? 0 : pResult.getProblemCount();
+			Cls = this.compileExecutableClass(pEKind, pSignature, pParamNames, pCode, pFrozen, pFVNames, pOption, pResult);
+			if(Cls == null) return null;
+			
+			this.CompileCache.put(Key, Cls, JavaCompileCache.getProblemsSince(pResult, ProblemCount));
 		}
 		
-		// Get the ExecName
-		String ClassName = null;
-		if(pEKind == EKind.CompiledCode) {
-			ClassName = ((JavaCompileOption)pOption).getClassNamePrefix() + "_" + this.nextIndex();
-			
-		} else {
-			ClassName = pSignature.getName(); if(ClassName == null) ClassName = "";
-			StringBuilder SB = new StringBuilder();
-			for(int i = 0; i < ClassName.length(); i++) {
-				char Char = ClassName.charAt(i);
-				if(Character.isJavaIdentifierPart(Char)) SB.append(Char);
-			}
-			if(SB.length() == 0) SB.append(((JavaCompileOption)pOption).getClassNamePrefix());
-			else                 SB.append("_");
-			ClassName = SB.toString() + this.nextIndex();
+		return this.newExecutableInstance(pEKind, Cls, pSignature, pParamNames, pCode, pFrozen, pFVNames, pOption);
+	}
+	
+	// Tier 0 ----------------------------------------------------------------------------------------------------------
+	
+	/**
+	 * The interpreted codes by their keys (the same as the compile cache) so the runs of the executables created from
+	 *    the same code (such as, by eval(...) of the same text) are counted together and they are promoted together.
+	 **/
+	private final LinkedHashMap<JavaCompileCache.Key, JavaInterpretedCode> InterpretedCodes
+	                  = new LinkedHashMap<JavaCompileCache.Key, JavaInterpretedCode>(16, 0.75f, true) {
+		private static final long serialVersionUID = 4032950785146214911L;
+		/**{@inheritDoc}*/ @Override
+		protected boolean removeEldestEntry(Map.Entry<JavaCompileCache.Key, JavaInterpretedCode> pEldest) {
+			return this.size() > JavaCompileCache.DEFAULT_CAPACITY;
 		}
+	};
+	
+	/** Returns the interpreted code of the key (see newInterpretedCode(...)) or null if the code must be compiled */
+	private JavaInterpretedCode getInterpretedCode(JavaCompileCache.Key pKey, String pCode, String[] pFVNames,
+			JavaCompileOption pOption) {
+		synchronized(this.InterpretedCodes) {
+			JavaInterpretedCode ICode = this.InterpretedCodes.get(pKey);
+			if(ICode != null) return ICode;
+		}
+		
+		JavaInterpretedCode ICode = this.newInterpretedCode(pCode, pFVNames, pOption);
+		if(ICode == null) return null;
 		
-		// Prepare the annotation
-		if(Annotations.length() != 0) {
-			// Split by ";"
-			String[] Anns = Annotations.split("[ \n\t]*;[ \n\t]*");
-			// Join
-			StringBuilder AnnsSB = new StringBuilder();
-			for(int i = 0; i < Anns.length; i++)
-				AnnsSB.append(" ").append(Anns[i]);
-			// Replace the Annotation value
-			Annotations = AnnsSB.toString();
+		synchronized(this.InterpretedCodes) {
+			JavaInterpretedCode Existing = this.InterpretedCodes.get(pKey);
+			if(Existing != null) return Existing;
+			this.InterpretedCodes.put(pKey, ICode);
+			return ICode;
 		}
+	}
+	
+	/**
+	 * Returns the interpreted code of the script code (see JavaInterpreter) or null if the code must be compiled - it is
+	 *    not simple enough, it has frozen variables, the option has a super class or an execution mode other than
+	 *    Shared, or the hot count of the engine is 0.
+	 **/
+	private JavaInterpretedCode newInterpretedCode(String pCode, String[] pFVNames, JavaCompileOption pOption) {
+		if((this.Hot <= 0) || ((pFVNames != null) && (pFVNames.length != 0))) return null;
+		if((pOption.getSuperClass() != null) || (pOption.getExecutionMode() != ExecutionMode.Shared)) return null;
+		
+		// The simple names of the classes in java.lang can only be trusted if nothing else is imported
+		boolean IsJavaLangOnly = (this.getImportsName().length == 0) && (pOption.getImportsName().length == 0);
+		JavaInterpreter.Program Program = JavaInterpreter.Parse(pCode, IsJavaLangOnly);
+		if(Program == null) return null;
 		
-		String Prefix    = null;
-		String Middle    = null;
-		String Suffix    = null;
+		return new JavaInterpretedCode(this, pCode, pOption, Program, IsJavaLangOnly, this.Hot);
+	}
+	
+	/** Compiles the code of an interpreted code (the compile cache is used) - throws an exception if it fails */
+	JavaCode compileInterpretedCode(String pCode, JavaCompileOption pOption) throws ReflectiveOperationException {
+		if(pOption == null) pOption = JavaCompileOption.DefaultOption;
 		
+		JavaCompileCache.Key Key = JavaCompileCache.newKey(this.getDefaultImportStr(), EKind.CompiledCode, null, null,
+		                               pCode, null, null, pOption);
+		Class<?> Cls = this.CompileCache.get(Key);
+		if(Cls == null) {
+			Cls = this.compileExecutableClass(EKind.CompiledCode, null, null, pCode, null, null, pOption, null);
+			this.CompileCache.put(Key, Cls);
+		}
+		return JavaConstructors.NewJavaCode(Cls, null);
+	}
+	
+	/** Creates a new instance of the executable from the compiled class (see JavaConstructors) */
+	Object newExecutableInstance(EKind pEKind, Class<?> pClass, Signature pSignature, String[] pParamNames, String pCode,
+			Scope pFrozen, String[] pFVNames, CompileOption pOption) {
+		
+		boolean IsSaveCode = ((JavaCompileOption)pOption).isToSaveCode(); 
 		if(pEKind == EKind.CompiledCode) {
-			JavaEngine.ensureScriptTmeplate();
-			Prefix = JavaEngine.getScriptPrefix(ClassName, pFrozen, pFVNames);
-			Middle = JavaEngine.getScriptMiddle(ClassName, OtherEs, Annotations);
-			Suffix = ScriptSuffixTemplate;
+			try {
+				return new JavaCompiledCode(
+							JavaConstructors.NewJavaCode(pClass, pFrozen),
+							((JavaCompileOption)pOption).getExecutionMode());
+			} catch(Exception E) { throw new RuntimeException("An error creating java compiled code.", E); }
 			
 		} else if(pEKind == EKind.Macro) {
-			JavaEngine.ensureMacroTmeplate();
-			Prefix = JavaEngine.getMacroPrefix(ClassName, ((JavaCompileOption)pOption).getSuperClass(), pSignature, pFrozen, pFVNames);
-			Middle = JavaEngine.getMacroMiddle(pSignature, Annotations);
-			Suffix = MacroSuffixTemplate;
+			try {
+				return new JavaMacro(
+							pParamNames,
+							(Macro.Simple.Body)JavaConstructors.NewBody(pClass, pSignature, IsSaveCode?pCode:null, pFrozen),
+							FrozenVariableInfos.newFVInfos(pFVNames, pFrozen));
+			} catch(Exception E) { throw new RuntimeException("An error creating java macro.", E); }
 			
 		} else if(pEKind == EKind.Function) {
-			JavaEngine.ensureFunctionTmeplate();
-			Prefix = JavaEngine.getFunctionPrefix(ClassName, ((JavaCompileOption)pOption).getSuperClass(), pFrozen, pFVNames);
-			Middle = JavaEngine.getFunctionMiddleMiddle(pSignature, Annotations);
-			Suffix = FunctionSuffixTemplate;
+			try {
+				return new JavaFunction(
+							pParamNames,
+							(Function.Simple.Body)JavaConstructors.NewBody(pClass, pSignature, IsSaveCode?pCode:null, pFrozen),
+							FrozenVariableInfos.newFVInfos(pFVNames, pFrozen));
+			} catch(Exception E) { throw new RuntimeException("An error creating java function.", E); }
+			
 		}
+		return null;
+	}
+
+	/** Compiles the code into a class of the given kind of executable - returns null if there is a compile error */
+	Class<?> compileExecutableClass(EKind pEKind, Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
+			String[] pFVNames, CompileOption pOption, ProblemContainer pResult) {
+		
+		ExecutableSource Source = new ExecutableSource(pEKind, pSignature, pParamNames, pCode, pFrozen, pFVNames, pOption);
+		if(!Source.checkExecutionMode(pResult)) return null;
+		
+		Source.prepareClassCode();
 		
-		// Add default import from this engine
-		Imports += this.getDefaultImportStr();
-		// Add default import from the option
-		if(pOption instanceof JavaCompileOption) Imports += ((JavaCompileOption)pOption).getDefaultImportStr();
+		DiagnosticCollector<JavaFileObject> Ds = (pResult != null)?new DiagnosticCollector<JavaFileObject>():null;
+		
+		String Err = this.compileSources(Collections.singletonList(Source), Ds);
+		if(Err != null) {
+			// No detail of the error is captured, so just throw an exception
+			if((Ds == null) || (pResult == null))
+				throw new RuntimeException("An error creating java "+pEKind.toString().toLowerCase()+": Compile Error!\n" + Err);
+			
+			Source.reportProblems(Ds.getDiagnostics(), pResult);
+			if(pResult.hasError()) return null;
+		}
 
-		// Add a return null at the end of the body because it does not have any return
-		if(HasReturn) Body += LastReturnNull;
-		// Prepare a flag to help in case there is a need to remove the last return null. (like it ends with 'if' and
-		//    'else' that both have return).
-		boolean IsRemoveLastReturnNull = false;
-		
-		TryReturnNull: while(true) {
-			// Remove the LastReturnNull (because it becomes the unreachable )
-			if(IsRemoveLastReturnNull && HasReturn && Body.endsWith(LastReturnNull))
-				Body = Body.substring(0, Body.length() - LastReturnNull.length());
+		return Source.getCompiledClass();
+	}
+	
+	/** The generated java class code of an executable that is being compiled */
+	final class ExecutableSource {
+		
+		final EKind            ExecKind;
+		final Signature        TheSignature;
+		final String[]         ParamNames;
+		final String           Code;
+		final Scope            Frozen;
+		final String[]         FVNames;
+		final CompileOption    Option;
+		final String           ClassName;
+		final ProblemContainer Result;
+		
+		// The loader of the compiled classes (null for the JavaCompiler)
+		ExecutableClassLoader Loader = null;
+		
+		private final int[]   IEEnds;
+		private final String  Imports;
+		private final String  OtherEs;
+		private final String  Params;
+		private final String  Prefix;
+		private final String  Middle;
+		private final String  Suffix;
+		private final boolean HasReturn;
+		private       String  Body;
+		
+		// The positions of the scope accesses in the body after and before they are replaced with the slots
+		//    - { NewBegin, NewEnd, OrgBegin, OrgEnd }
+		private final int[][] Slots;
+		
+		// The generated code and the position of the part of the original code in it
+		String ClassCode    = null;
+		int    ImportBegin  = 0;
+		int    ImportEnd    = 0;
+		int    ElementBegin = 0;
+		int    ElementEnd   = 0;
+		int    BodyBegin    = 0;
+		int    BodyEnd      = 0;
+		
+		ExecutableSource(EKind pEKind, Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
+				String[] pFVNames, CompileOption pOption) {
+			this(pEKind, pSignature, pParamNames, pCode, pFrozen, pFVNames, pOption, null);
+		}
+		ExecutableSource(EKind pEKind, Signature pSignature, String[] pParamNames, String pCode, Scope pFrozen,
+				String[] pFVNames, CompileOption pOption, ProblemContainer pResult) {
+			this.ExecKind     = pEKind;
+			this.TheSignature = pSignature;
+			this.ParamNames   = pParamNames;
+			this.Code         = pCode;
+			this.Frozen       = pFrozen;
+			this.FVNames      = pFVNames;
+			this.Option       = pOption;
+			this.Result       = pResult;
+			
+			this.IEEnds = JavaEngine.getImportEndAndElementEndAndAnnotationEnd(pCode);
+			
+			String  Imports     = pCode.substring(0,         IEEnds[0]);
+			String  OtherEs     = pCode.substring(IEEnds[0], IEEnds[1]);
+			String  Annotations = pCode.substring(IEEnds[1], IEEnds[2]);
+			String  Body        = pCode.substring(IEEnds[2]);
+			boolean HasReturn   = (IEEnds[3] == -1);
+			
+			// A primitive value must be returned by the code itself (null cannot be returned)
+			if((pSignature != null) && pSignature.getReturnType().isPrimitive()) HasReturn = false;
+			
+			// Prepare Parameters
+			String   Params = "";
+			String[] PNames = (pParamNames == null) ? Signature.EmptyStringArray : new String[pParamNames.length];
+			if(pEKind != EKind.CompiledCode) {
+				StringBuilder SB = new StringBuilder();
+				for(int i = 0; i < pParamNames.length; i++) {
+					String PTypeName = pSignature.getParamType(i).getCanonicalName();
+					if(pSignature.isVarArgs() && (i == (pParamNames.length - 1))) {
+						// Get the array type 
+						PTypeName += "[]";
+					}
+					String PName = pParamNames[i];
+					if((PName == null) || (PName.length() == 0) || !ParameterNameRegEx.matcher(PName = PName.trim()).find())
+						throw new IllegalArgumentException("Invalid paramter name '"+PName+"'");
+					
+					SB.append("		final ");
+					SB.append(PTypeName);
+					SB.append(" ");
+					SB.append(PName);
+					SB.append(" = (");
+					SB.append(PTypeName);
+					SB.append(")$Params[");
+					SB.append(i);
+					SB.append("];");
+					PNames[i] = PName;
+				}
+				// The parameters of a function are the parameters of the run method (see getFunctionMiddleMiddle(...))
+				if(pEKind == EKind.Macro) Params = SB.toString();
+			}
+			
+			// Get the ExecName
+			String ClassName = null;
+			if(pEKind == EKind.CompiledCode) {
+				ClassName = ((JavaCompileOption)pOption).getClassNamePrefix() + "_" + JavaEngine.this.nextIndex();
+				
+			} else {
+				ClassName = pSignature.getName(); if(ClassName == null) ClassName = "";
+				StringBuilder SB = new StringBuilder();
+				for(int i = 0; i < ClassName.length(); i++) {
+					char Char = ClassName.charAt(i);
+					if(Character.isJavaIdentifierPart(Char)) SB.append(Char);
+				}
+				if(SB.length() == 0) SB.append(((JavaCompileOption)pOption).getClassNamePrefix());
+				else                 SB.append("_");
+				ClassName = SB.toString() + JavaEngine.this.nextIndex();
+			}
+			
+			// Prepare the annotation
+			if(Annotations.length() != 0) {
+				// Split by ";"
+				String[] Anns = Annotations.split("[ \n\t]*;[ \n\t]*");
+				// Join
+				StringBuilder AnnsSB = new StringBuilder();
+				for(int i = 0; i < Anns.length; i++)
+					AnnsSB.append(" ").append(Anns[i]);
+				// Replace the Annotation value
+				Annotations = AnnsSB.toString();
+			}
+			
+			String Prefix    = null;
+			String Middle    = null;
+			String Suffix    = null;
+			
+			if(pEKind == EKind.CompiledCode) {
+				JavaEngine.ensureScriptTmeplate();
+				Prefix = JavaEngine.getScriptPrefix(ClassName, pFrozen, pFVNames);
+				Middle = JavaEngine.getScriptMiddle(ClassName, OtherEs, Annotations);
+				Suffix = ScriptSuffixTemplate;
+				
+			} else if(pEKind == EKind.Macro) {
+				JavaEngine.ensureMacroTmeplate();
+				Prefix = JavaEngine.getMacroPrefix(ClassName, ((JavaCompileOption)pOption).getSuperClass(), pSignature, pFrozen, pFVNames);
+				Middle = JavaEngine.getMacroMiddle(pSignature, Annotations);
+				Suffix = MacroSuffixTemplate;
+				
+			} else if(pEKind == EKind.Function) {
+				// The body is used directly through the typed interface so $Function is not available
+				Class<?> Typed = pCode.contains("$Function") ? null : JavaEngine.getFunctionTypedInterface(pSignature);
+				
+				JavaEngine.ensureFunctionTmeplate();
+				Prefix = JavaEngine.getFunctionPrefix(ClassName, ((JavaCompileOption)pOption).getSuperClass(), Typed,
+				             pFrozen, pFVNames);
+				Middle = JavaEngine.getFunctionMiddleMiddle(pSignature, PNames, Annotations, Typed,
+				             pCode.contains("$Params"));
+				Suffix = FunctionSuffixTemplate;
+			}
+			
+			// Replace the scope accesses with literal names by the slots - { OrgBegin, OrgEnd, Index of Replacement }
+			List<int[]>             Edits        = new ArrayList<int[]>();
+			List<String>            Replacements = new ArrayList<String>();
+			HashMap<String, String> SlotFields   = new HashMap<String, String>();
+			Matcher                 SMatcher     = ScopeAccessPattern.matcher(Body);
+			while(SMatcher.find()) {
+				boolean IsGet = "getValue".equals(SMatcher.group(1));
+				if(IsGet != ")".equals(SMatcher.group(3))) continue;
+				
+				String VName = SMatcher.group(2);
+				String Field = SlotFields.get(VName);
+				if(Field == null) {
+					Field = ScopeSlotPrefix + SlotFields.size();
+					SlotFields.put(VName, Field);
+					Prefix += String.format(
+						"	static private final %1$s %2$s = new %1$s(\"%3$s\");",
+						Scope.Slot.class.getCanonicalName(), Field, VName);
+				}
+				Edits.add(new int[] { SMatcher.start(), SMatcher.end(), Replacements.size() });
+				Replacements.add(Field + (IsGet ? ".getValue($Scope)" : ".setValue($Scope,"));
+			}
 			
+			// Add the checkpoints at the beginning of the loop bodies (the same way as the slots so the positions of
+			//    the problems can be mapped back)
+			if(((JavaCompileOption)pOption).isCheckpointInjected()
+			|| ((JavaEngine.this.Option != null) && JavaEngine.this.Option.isCheckpointInjected())) {
+				for(int Pos : JavaEngine.getLoopBodyBegins(Body)) {
+					Edits.add(new int[] { Pos, Pos, Replacements.size() });
+					Replacements.add(LoopCheckpoint);
+				}
+				Collections.sort(Edits, new Comparator<int[]>() {
+					public int compare(int[] E1, int[] E2) {
+						return (E1[0] != E2[0]) ? (E1[0] - E2[0]) : (E1[1] - E2[1]);
+					}
+				});
+			}
+			
+			List<int[]>   Slots = new ArrayList<int[]>();
+			StringBuilder SBody = new StringBuilder();
+			int           Last  = 0;
+			for(int[] Edit : Edits) {
+				SBody.append(Body, Last, Edit[0]);
+				int NewBegin = SBody.length();
+				SBody.append(Replacements.get(Edit[2]));
+				Slots.add(new int[] { NewBegin, SBody.length(), Edit[0], Edit[1] });
+				Last = Edit[1];
+			}
+			if(!Slots.isEmpty()) Body = SBody.append(Body, Last, Body.length()).toString();
+			this.Slots = Slots.toArray(new int[Slots.size()][]);
+			
+			// Add default import from this engine
+			Imports += JavaEngine.this.getDefaultImportStr();
+			// Add default import from the option
+			if(pOption instanceof JavaCompileOption) Imports += ((JavaCompileOption)pOption).getDefaultImportStr();
+	
+			// Add a return null at the end of the body because it does not have any return (see LastReturnNullGuard)
+			if(HasReturn) {
+				Params += LastReturnNullGuard;
+				Body   += LastReturnNull;
+			}
+			
+			this.Imports   = Imports;
+			this.OtherEs   = OtherEs;
+			this.Params    = Params;
+			this.Prefix    = Prefix;
+			this.Middle    = Middle;
+			this.Suffix    = Suffix;
+			this.HasReturn = HasReturn;
+			this.Body      = Body;
+			this.ClassName = ClassName;
+		}
+		
+		/**
+		 * Returns the position in the class code as if the scope accesses were not replaced by the slots (so it can be
+		 *    mapped back to the position in the original code).
+		 **/
+		int getUnslottedPosition(int pPos) {
+			if(pPos < this.BodyBegin) return pPos;
+			
+			int RelPos = pPos - this.BodyBegin;
+			int Shift  = 0;
+			for(int[] Slot : this.Slots) {
+				if(RelPos < Slot[0]) break;
+				if(RelPos < Slot[1]) return this.BodyBegin + Slot[2];
+				Shift = Slot[3] - Slot[1];
+			}
+			return pPos + Shift;
+		}
+		
+		/** Returns the name of the file of the class code */
+		String getFileName() {
+			return this.ClassName + ".java";
+		}
+		
+		/** Returns the name of the executable used in the metrics (see Metrics) */
+		String getMetricsName() {
+			if(this.TheSignature != null) return this.TheSignature.getName();
+			return (this.ExecKind == EKind.CompiledCode) ? (JavaEngine.this.getShortName() + ":script") : this.ClassName;
+		}
+		
+		/** Checks if the file object is the file of this source */
+		boolean isSourceOf(JavaFileObject pFile) {
+			if(pFile == null) return false;
+			String FName = pFile.getName();
+			if(FName == null) return false;
+			
+			String FileName = this.getFileName();
+			if(!FName.endsWith(FileName)) return false;
+			if(FName.length() == FileName.length()) return true;
+			
+			char Char = FName.charAt(FName.length() - FileName.length() - 1);
+			return (Char == '/') || (Char == '\\');
+		}
+		
+		/** Generates the class code (and the position of the original code in it) */
+		void prepareClassCode() {
 			// I---IE---EB---B
 			//          ^--IEEnds[1]
 			//     ^-------IEEnds[0]
 			// I---I[Prefix]E---E[Middle][Params]B---B[Suffix]
-			int ImportBegin  = 0;
-			int ImportEnd    = IEEnds[0];
-			int ElementBegin = ImportEnd    + Prefix.length();
-			int ElementEnd   = ElementBegin + (IEEnds[1] - IEEnds[0]);
-			int BodyBegin    = ElementEnd   + Middle.length() + Params.length();
-			int BodyEnd      = 0;
+			this.ImportBegin  = 0;
+			this.ImportEnd    = this.IEEnds[0];
+			this.ElementBegin = this.ImportEnd    + this.Prefix.length();
+			this.ElementEnd   = this.ElementBegin + (this.IEEnds[1] - this.IEEnds[0]);
+			this.BodyBegin    = this.ElementEnd   + this.Middle.length() + this.Params.length();
 			
-			String TempClassCode = (new StringBuffer())
-					.append(Imports)
-					.append(Prefix)
-					.append(OtherEs)
-					.append(Middle)
-					.append(Params)
-					.append(Body)
-					.append(Suffix)
+			this.ClassCode = (new StringBuffer())
+					.append(this.Imports)
+					.append(this.Prefix)
+					.append(this.OtherEs)
+					.append(this.Middle)
+					.append(this.Params)
+					.append(this.Body)
+					.append(this.Suffix)
 					.toString()
 					.replaceAll("->\\$Result", "");
 	
-			BodyEnd = TempClassCode.length() - Suffix.length();
+			this.BodyEnd = this.ClassCode.length() - this.Suffix.length();
+		}
+		
+		/**
+		 * Checks if the code can be run in the execution mode of the compile option (a code with a static field that is
+		 *    not final can only be run in the Shared mode). Returns false if it cannot; the problems are reported to the
+		 *    problem container or an exception is thrown if there is none.
+		 **/
+		boolean checkExecutionMode(ProblemContainer pResult) {
+			if(this.ExecKind != EKind.CompiledCode) return true;
 			
-			this.JCompiler.addCode(ClassName+".java", "", TempClassCode);
-
-			if(DebugMode) DebugPrintStream.println(ClassName+".java:\n" + TempClassCode);
+			JavaCompileOption.ExecutionMode Mode = ((JavaCompileOption)this.Option).getExecutionMode();
+			if(Mode == JavaCompileOption.ExecutionMode.Shared) return true;
 			
-			DiagnosticCollector<JavaFileObject> Ds = (pResult != null)?new DiagnosticCollector<JavaFileObject>():null;
+			Statement[] Fields = JavaEngine.getNonFinalStaticFields(this.Code);
+			if(Fields.length == 0) return true;
 			
-			String Err = this.JCompiler.compile(Ds);
-			if(Err != null) {
-				// No detail of the error is captured, so just throw an exception
-				if((Ds == null) || (pResult == null)) {
-					if(!IsRemoveLastReturnNull && Err.contains("unreachable statement\nreturn null;	}}\n^")) {
-						IsRemoveLastReturnNull = true;
-						continue TryReturnNull;
+			String Message = "A static field that is not final is not allowed in the " + Mode + " execution mode.";
+			if(pResult == null)
+				throw new RuntimeException("An error creating java compiled code: " + Message + "\n" + Fields[0].getText());
+			
+			Vector<Integer> NLs = getNewLinePositions(this.Code);
+			for(Statement Field : Fields) {
+				int StartPos = Field.getOffset();
+				int EndPos   = StartPos + Field.getText().length() - 1;
+				pResult.reportProblem(
+						new Problem.Detail(
+							Problem.Kind.Error,
+							null,
+							this.Code,
+							Message,
+							StartPos, EndPos,
+							getLineNumberOf(this.Code, NLs, StartPos) + 1, getColOf(this.Code, NLs, StartPos)
+						)
+					);
+			}
+			return false;
+		}
+		
+		/** Reports the problems of this source to the problem container */
+		@SuppressWarnings("rawtypes")
+		void reportProblems(Iterable<? extends Diagnostic> pDiagnostics, ProblemContainer pResult) {
+			String          pCode = this.Code;
+			Vector<Integer> NLs   = getNewLinePositions(pCode);
+			
+			for (Diagnostic Diagnostic : pDiagnostics) {
+				// Get the message kind
+				String Kind = Diagnostic.getKind().toString();
+				Kind = Kind.charAt(0) + Kind.substring(1).toLowerCase();
+				
+				// Extract the message (only the important data)
+				String   Message = Diagnostic.getMessage(null);
+				String[] MLines = Message.split("\n");
+				
+				Matcher Ma = ErrorNameExtractorPattern.matcher(MLines[0]);
+				if(Ma.find()) Message = MLines[0].substring(Ma.end()).trim();
+				if(MLines.length > 1) {
+					for(int i = 1; i < MLines.length; i++) {
+						if(MLines[i].startsWith("location:")) continue;
+						Message += " (" + MLines[i] + ")";
 					}
-					
-					throw new RuntimeException("An error creating java "+pEKind.toString().toLowerCase()+": Compile Error!\n" + Err);
 				}
 				
-				// Prepare lines
-				Vector<Integer> NLs = new Vector<Integer>();
-				for(int i = 0; i < pCode.length(); i++) {
-					if(pCode.charAt(i) == '\r') {
-						if((pCode.length() > i) && (pCode.charAt(i + 1) == '\n')) i++;
-					} else if(pCode.charAt(i) == '\n') {
-					} else continue;
-					NLs.add(i);
+				// Get the start position - and ensure if it is a good value
+				int BodyEnd  = this.getUnslottedPosition(this.BodyEnd);
+				int StartPos = JavaEngine.ensureGoodPostion(
+						this.getUnslottedPosition((int)Diagnostic.getStartPosition()), Diagnostic,
+						this.ImportBegin, this.ImportEnd, this.ElementBegin, this.ElementEnd, this.BodyBegin, BodyEnd);
+				int EndPos = JavaEngine.ensureGoodPostion(
+						this.getUnslottedPosition((int)Diagnostic.getEndPosition()), Diagnostic,
+						this.ImportBegin, this.ImportEnd, this.ElementBegin, this.ElementEnd, this.BodyBegin, BodyEnd);
+				
+				if((StartPos == -1) || (EndPos == -1)) {
+					throw new RuntimeException(
+							"Internal Error: An error happend in an unexpected place.\n" +
+							"Please report the error.\n" +
+							"Temporary Code: ---------------------------------------------------\n"+
+							this.ClassCode + "\n" +
+							"-------------------------------------------------------------------");
 				}
 				
-				for (Diagnostic Diagnostic : Ds.getDiagnostics()) {
-					// Get the message kind
-					String Kind = Diagnostic.getKind().toString();
-					Kind = Kind.charAt(0) + Kind.substring(1).toLowerCase();
-					
-					// Extract the message (only the important data)
-					String   Message = Diagnostic.getMessage(null);
-					String[] MLines = Message.split("\n");
-					
-					Matcher Ma = ErrorNameExtractorPattern.matcher(MLines[0]);
-					if(Ma.find()) Message = MLines[0].substring(Ma.end()).trim();
-					if(MLines.length > 1) {
-						for(int i = 1; i < MLines.length; i++) {
-							if(MLines[i].startsWith("location:")) continue;
-							Message += " (" + MLines[i] + ")";
-						}
-					}
-					
-					// Get the start position - and ensure if it is a good value
-					int StartPos = JavaEngine.ensureGoodPostion(
-							(int)Diagnostic.getStartPosition(), Diagnostic,
-							ImportBegin, ImportEnd, ElementBegin, ElementEnd, BodyBegin, BodyEnd);
-					int EndPos = JavaEngine.ensureGoodPostion(
-							(int)Diagnostic.getEndPosition(), Diagnostic,
-							ImportBegin, ImportEnd, ElementBegin, ElementEnd, BodyBegin, BodyEnd);
-					
-					if((StartPos == -1) || (EndPos == -1)) {
-						throw new RuntimeException(
-								"Internal Error: An error happend in an unexpected place.\n" +
-								"Please report the error.\n" +
-								"Temporary Code: ---------------------------------------------------\n"+
-								TempClassCode + "\n" +
-								"-------------------------------------------------------------------");
+				// Get the line and column number
+				int StartLineNumber = getLineNumberOf(pCode, NLs, StartPos);
+				int StartColumn     = getColOf(       pCode, NLs, StartPos);
+				
+				pResult.reportProblem(
+						new Problem.Detail(
+							Problem.Kind.getKind(Kind),
+							null,
+							pCode,
+							Message,
+							StartPos, EndPos,
+				    		StartLineNumber + 1, StartColumn
+				    	)
+					);
+			}
+		}
+		
+		/** Returns the compiled class of this source */
+		Class<?> getCompiledClass() {
+			try {
+				if(this.Loader != null) return this.Loader.loadClass(this.ClassName);
+				return JavaEngine.this.JCompiler.getClassByName(this.ClassName);
+			} catch(Exception E) {
+				throw new RuntimeException("An error creating java "+this.ExecKind.toString().toLowerCase()+".", E);
+			}
+		}
+	}
+	
+	// Batch compilation -----------------------------------------------------------------------------------------------
+	
+	/** A request to compile an executable together with others (see compileAll(...)) */
+	static public final class CompileRequest {
+		
+		final ExecutableInfo   ExecInfo;
+		final String           Code;
+		final CompileOption    Option;
+		final ProblemContainer Result;
+		
+		/** Constructs a compile request - the problem container is needed for the compile problems to be reported */
+		public CompileRequest(ExecutableInfo pExecInfo, String pCode, CompileOption pOption, ProblemContainer pResult) {
+			this.ExecInfo = pExecInfo;
+			this.Code     = pCode;
+			this.Option   = pOption;
+			this.Result   = pResult;
+		}
+		
+		/** Returns the executable info of the requested executable */
+		public ExecutableInfo getExecutableInfo() {
+			return this.ExecInfo;
+		}
+		/** Returns the code of the requested executable */
+		public String getCode() {
+			return this.Code;
+		}
+		/** Returns the compile option of the requested executable */
+		public CompileOption getCompileOption() {
+			return this.Option;
+		}
+		/** Returns the problem container of the requested executable */
+		public ProblemContainer getProblemContainer() {
+			return this.Result;
+		}
+	}
+	
+	/** The exception of compileAll(...) for the compile error of a request that has no problem container */
+	static public class CompileAllException extends RuntimeException {
+		
+		private static final long serialVersionUID = -6405163212841951180L;
+		
+		CompileAllException(int pIndex, Executable[] pExecutables, RuntimeException pCause) {
+			super(pCause.getMessage(), pCause);
+			this.Index       = pIndex;
+			this.Executables = pExecutables;
+		}
+		
+		private final           int          Index;
+		private final transient Executable[] Executables;
+		
+		/** Returns the index of the (first) request that fails */
+		public int getFailedIndex() {
+			return this.Index;
+		}
+		
+		/** Returns the executables of the requests in the same order (null for the ones that fail) */
+		public Executable[] getExecutables() {
+			return this.Executables;
+		}
+	}
+	
+	/**
+	 * Compiles all the requested executables in one compilation. The returned array has the executables in the same
+	 *    order as the requests (null for the one with compile errors).
+	 * 
+	 * The problems are reported to the problem container of each request. If a request has no problem container, its
+	 *    compile error is thrown as a CompileAllException (with the message of the exception thrown when it is compiled
+	 *    alone) after all the others are compiled; the exception has their executables and the index of the request.
+	 **/
+	public Executable[] compileAll(Collection<CompileRequest> pRequests) {
+		if((pRequests == null) || (pRequests.size() == 0)) return new Executable[0];
+		
+		CompileRequest[]       Requests      = pRequests.toArray(new CompileRequest[pRequests.size()]);
+		Executable[]           Execs         = new Executable[Requests.length];
+		Class<?>[]             Classes       = new Class<?>[Requests.length];
+		ExecutableSource[]     Sources       = new ExecutableSource[Requests.length];
+		JavaCompileCache.Key[] Keys          = new JavaCompileCache.Key[Requests.length];
+		int[]                  ProblemCounts = new int[Requests.length];	// To know the warnings of each compilation
+		RuntimeException       Failure       = null;
+		int                    FailedIndex   = -1;
+		
+		// Prepare the sources (those that are already in the cache needs not to be compiled)
+		List<ExecutableSource> ToCompile = new ArrayList<ExecutableSource>();
+		for(int i = 0; i < Requests.length; i++) {
+			CompileRequest Request = Requests[i];
+			if(Request == null) continue;
+			
+			ExecutableSource Source = this.newExecutableSource(Request);
+			
+			Keys[i] = JavaCompileCache.newKey(this.getDefaultImportStr(), Source.ExecKind, Source.TheSignature,
+			              Source.ParamNames, Source.Code, null, null, (JavaCompileOption)Source.Option);
+			
+			Classes[i] = this.CompileCache.get(Keys[i], Source.Result);
+			if(Classes[i] != null) {
+				Execs[i] = this.newBatchExecutable(Source, Classes[i]);
+				continue;
+			}
+			ProblemCounts[i] = (Source.Result == null) ? 0 : Source.Result.getProblemCount();
+			try {
+				if(!Source.checkExecutionMode(Source.Result)) continue;
+			} catch (RuntimeException E) {
+				// Only thrown when there is no problem container
+				if(Failure == null) { Failure = E; FailedIndex = i; }
+				continue;
+			}
+			
+			Source.prepareClassCode();
+			
+			Sources[i] = Source;
+			ToCompile.add(Source);
+		}
+		if(ToCompile.isEmpty()) {
+			if(Failure != null) throw new CompileAllException(FailedIndex, Execs, Failure);
+			return Execs;
+		}
+		
+		// Compile all of them at once
+		DiagnosticCollector<JavaFileObject> Ds = new DiagnosticCollector<JavaFileObject>();
+		String Err = this.compileSources(ToCompile, Ds);
+		
+		for(int i = 0; i < Sources.length; i++) {
+			ExecutableSource Source = Sources[i];
+			if(Source == null) continue;
+			
+			if(Err != null) {
+				// Get the diagnostics of this source
+				boolean HasError = false;
+				Vector<Diagnostic<? extends JavaFileObject>> SDs = new Vector<Diagnostic<? extends JavaFileObject>>();
+				for(Diagnostic<? extends JavaFileObject> D : Ds.getDiagnostics()) {
+					if(!Source.isSourceOf(D.getSource())) continue;
+					if(D.getKind() == Diagnostic.Kind.ERROR) HasError = true;
+					SDs.add(D);
+				}
+				
+				// No error in this source but the class is not created because of the errors of others; so compile it
+				//    alone.
+				if(!HasError) {
+					try {
+						Classes[i] = this.compileExecutableClass(Source.ExecKind, Source.TheSignature,
+						                 Source.ParamNames, Source.Code, null, null, Source.Option, Source.Result);
+					} catch (RuntimeException E) {
+						if(Failure == null) { Failure = E; FailedIndex = i; }
+						continue;
 					}
 					
-					// If the problem is the unreachable code at the end, set the flag to remove the LastReturnNull
-					//    and try to compile again.
-					if(!IsRemoveLastReturnNull
-							&& "unreachable statement".equals(Message)
-							&& ((EndPos - StartPos + 1) == LastReturnNull.length())
-							&& ((int)Diagnostic.getEndPosition() == BodyEnd)) {
-						IsRemoveLastReturnNull = true;
-						continue TryReturnNull;
+				} else {
+					ProblemContainer SResult = (Source.Result != null) ? Source.Result : this.newCompileProblemContainer();
+					Source.reportProblems(SDs, SResult);
+					if((Source.Result == null) && (Failure == null)) {
+						Failure = new RuntimeException(
+								"An error creating java "+Source.ExecKind.toString().toLowerCase()+": Compile Error!\n" +
+								SResult);
+						FailedIndex = i;
 					}
-					
-					// Get the line and column number
-					int StartLineNumber = getLineNumberOf(pCode, NLs, StartPos);
-					int StartColumn     = getColOf(       pCode, NLs, StartPos);
-					
-					pResult.reportProblem(
-							new Problem.Detail(
-								Problem.Kind.getKind(Kind),
-								null,
-								pCode,
-								Message,
-								StartPos, EndPos,
-					    		StartLineNumber + 1, StartColumn
-					    	)
-						);
+					continue;
 				}
 				
-				if(pResult.hasError()) return null;
-			}
+			} else Classes[i] = Source.getCompiledClass();
+			
+			if(Classes[i] == null) continue;
+			
+			this.CompileCache.put(Keys[i], Classes[i], JavaCompileCache.getProblemsSince(Source.Result, ProblemCounts[i]));
+			Execs[i] = this.newBatchExecutable(Source, Classes[i]);
+		}
+		if(Failure != null) throw new CompileAllException(FailedIndex, Execs, Failure);
+		return Execs;
+	}
 	
-			boolean IsSaveCode = ((JavaCompileOption)pOption).isToSaveCode(); 
-			if(pEKind == EKind.CompiledCode) {
-				try {
-					Class<JavaCode>       Cls  = (Class<JavaCode>)this.JCompiler.getClassByName(ClassName);
-					Constructor<JavaCode> Cnst = Cls.getConstructor(Scope.class);
-					return new JavaCompiledCode(Cnst.newInstance(pFrozen));
-				} catch(Exception E) { throw new RuntimeException("An error creating java compiled code.", E); }
-				
-			} else if(pEKind == EKind.Macro) {
-				try {
-					Class<Macro.Simple.Body>       Cls = (Class<Macro.Simple.Body>)this.JCompiler.getClassByName(ClassName);
-					Constructor<Macro.Simple.Body> C   = Cls.getConstructor(new Class<?>[] { Signature.class, String.class, Scope.class });
-					return new JavaMacro(
-								pParamNames,
-								C.newInstance(pSignature, IsSaveCode?pCode:null, pFrozen),
-								FrozenVariableInfos.newFVInfos(pFVNames, pFrozen));
-				} catch(Exception E) { throw new RuntimeException("An error creating java macro.", E); }
-				
-			} else if(pEKind == EKind.Function) {
-				try {
-					Class<Function.Simple.Body>       Cls = (Class<Function.Simple.Body>)this.JCompiler.getClassByName(ClassName);
-					Constructor<Function.Simple.Body> C   = Cls.getConstructor(new Class<?>[] { Signature.class, String.class, Scope.class });
-					return new JavaFunction(
-								pParamNames,
-								C.newInstance(pSignature, IsSaveCode?pCode:null, pFrozen),
-								FrozenVariableInfos.newFVInfos(pFVNames, pFrozen));
-				} catch(Exception E) { throw new RuntimeException("An error creating java function.", E); }
-				
+	/** Creates the source of the executable of the request */
+	private ExecutableSource newExecutableSource(CompileRequest pRequest) {
+		CompileOption Option = pRequest.Option;
+		if(Option == null) Option = JavaCompileOption.DefaultOption;
+		
+		// See if there is a need to replace
+		ExecutableInfo ExecInfo = this.getReplaceExecutableInfo(pRequest.ExecInfo);
+		
+		// Default one in case of null
+		if(ExecInfo == null) ExecInfo = ExecutableInfo.DefaultExecutableInfo;
+		
+		// Script
+		if("script".equals(ExecInfo.Kind))
+			return new ExecutableSource(EKind.CompiledCode, null, null, pRequest.Code, null, null, Option, pRequest.Result);
+		
+		// Main
+		if("main".equals(ExecInfo.Kind) && (ExecInfo.Signature == null)) {
+			ExecInfo = ExecutableInfo.MainExecutableInfo;
+		}
+		
+		boolean IsMacro = false;
+		if((IsMacro = "macro" .equals(ExecInfo.Kind)) || "function" .equals(ExecInfo.Kind)) {
+			Signature Signature = ExecInfo.Signature;
+			if(Signature == null) Signature = net.nawaman.script.Signature.Simple.FreeSignature;
+			
+			String[] PNames = null;
+			try { PNames = ExecInfo.getParameterNames(); }
+			catch (NullPointerException E) {
+				PNames = (Signature.getParamCount() == 0)
+				             ? net.nawaman.script.Signature.EmptyStringArray
+				             : new String[Signature.getParamCount()];
+				for(int i = 0; i < PNames.length; i++)
+					PNames[i] = "Param" + i;
 			}
-			return null;
+			
+			return new ExecutableSource(IsMacro ? EKind.Macro : EKind.Function, Signature, PNames, pRequest.Code, null,
+			               null, Option, pRequest.Result);
 		}
+		
+		throw new ExecutableKindNotSupport(ExecInfo.toString());
+	}
+	
+	/** Creates a new executable of the compiled class of the batch source */
+	private Executable newBatchExecutable(ExecutableSource pSource, Class<?> pClass) {
+		Object Exec = this.newExecutableInstance(pSource.ExecKind, pClass, pSource.TheSignature, pSource.ParamNames,
+		                  pSource.Code, null, null, pSource.Option);
+		if(pSource.ExecKind != EKind.CompiledCode) return (Executable)Exec;
+		
+		return new JavaScript(this, pSource.Code, FrozenVariableInfos.newFVInfos(null, null), (JavaCompiledCode)Exec);
 	}
 	
 	static public void main(String ... Args) {
@@ -0,0 +1,211 @@
+package net.nawaman.script.java;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.nawaman.script.ExecutionLimit;
+import net.nawaman.script.ScriptEngineOption;
+
+/**
+ * The option of a JavaEngine.
+ *
+ * The parameter is a comma separated list of `name=value` (e.g., `// @Java(pool=4, warmup=true):`). The entries that
+ *    are not one of the following parameters (like the version in `// @Java(6.0):`) are ignored.
+ * 	- pool   : The number of the compiler contexts that can compile at the same time (0 for no pool - the codes are
+ * 	             compiled one by one by the JavaCompiler of the engine).
+ * 	- warmup : If the compiler contexts should be created and warmed up in the background when the engine is created.
+ * 	- timeout: The wall-clock time limit (in milliseconds) of an evaluation of a code (0 for no limit).
+ * 	- cputime: The CPU time limit (in milliseconds) of an evaluation of a code (0 for no limit).
+ * 	- checkpoint: If a checkpoint should be added to each loop of every code so the loop can be cancelled when the
+ * 	             evaluation is over its limit (see JavaCompileOption.setCheckpointInjected(...)).
+ * 	- unload : If the generated classes should be defined in their own class loaders (see ExecutableClassLoader) so
+ * 	             they can be unloaded when their executables are no longer used. The codes are compiled by a compiler
+ * 	             pool (of one context if the pool size is not given). The classes in the compile cache of the engine
+ * 	             are still kept until they are evicted and the classes of a serialized executable (including the ones
+ * 	             saved by Tools.Use(...)) are kept by the JavaCompiler.
+ * 	- generation: The number of the compilations whose classes share a class loader (1 by default - a loader for each
+ * 	             executable); a larger generation uses less memory for the loaders but a loader is only collected when
+ * 	             all of its executables are no longer used. Giving a generation implies `unload`.
+ * 	- hot    : The number of the runs of a simple script (see JavaInterpreter) that is interpreted before it is compiled
+ * 	             in the background (0 to always compile the scripts). The default is taken from the system property
+ * 	             `simplescript.java.hot` (1000 if it is not set).
+ **/
+public class JavaEngineOption extends ScriptEngineOption.Simple {
+
+	private static final long serialVersionUID = 2930148764095223187L;
+
+	/** The parameter name of the size of the compiler pool */
+	static public final String PARAM_POOL   = "pool";
+	/** The parameter name of the flag to warm up the compiler pool */
+	static public final String PARAM_WARMUP = "warmup";
+	/** The parameter name of the wall-clock time limit */
+	static public final String PARAM_TIMEOUT = "timeout";
+	/** The parameter name of the CPU time limit */
+	static public final String PARAM_CPUTIME = "cputime";
+	/** The parameter name of the flag to add checkpoints to the loops */
+	static public final String PARAM_CHECKPOINT = "checkpoint";
+	/** The parameter name of the flag to define the generated classes in their own class loaders */
+	static public final String PARAM_UNLOAD = "unload";
+	/** The parameter name of the number of the compilations whose classes share a class loader */
+	static public final String PARAM_GENERATION = "generation";
+	/** The parameter name of the number of the runs of a script that is interpreted before it is compiled */
+	static public final String PARAM_HOT = "hot";
+
+	/** The system property of the default number of the runs of a script that is interpreted before it is compiled */
+	static public final String HOT_PROPERTY = "simplescript.java.hot";
+
+	/** The default number of the runs of a script that is interpreted before it is compiled */
+	static public final int DEFAULT_HOT = 1000;
+
+	/** Returns the default number of the runs of a script that is interpreted (see HOT_PROPERTY) */
+	static public int getDefaultHot() {
+		try {
+			int Hot = Integer.parseInt(System.getProperty(HOT_PROPERTY, String.valueOf(DEFAULT_HOT)).trim());
+			return Math.max(0, Hot);
+		} catch (NumberFormatException E) {
+			return DEFAULT_HOT;
+		}
+	}
+
+	/** The names of the parameters */
+	static private final Set<String> Params = new HashSet<String>(Arrays.asList(
+		PARAM_POOL, PARAM_WARMUP, PARAM_TIMEOUT, PARAM_CPUTIME, PARAM_CHECKPOINT, PARAM_UNLOAD, PARAM_GENERATION,
+		PARAM_HOT));
+
+	/** Creates a Java engine option from the parameter string */
+	public JavaEngineOption(String pParameter) {
+		super((pParameter == null) ? "" : pParameter.trim());
+
+		int     PoolSize     = 0;
+		boolean IsWarmUp     = false;
+		long    WallTime     = ExecutionLimit.NO_LIMIT;
+		long    CPUTime      = ExecutionLimit.NO_LIMIT;
+		boolean IsCheckpoint = false;
+		boolean IsUnload     = false;
+		int     Generation   = 1;
+		int     Hot          = getDefaultHot();
+		boolean IsSpecified  = false;
+		for(String Entry : this.Parameter.split(",")) {
+			Entry = Entry.trim();
+			if(Entry.length() == 0) continue;
+
+			int    Index = Entry.indexOf('=');
+			String Name  = ((Index == -1) ? Entry : Entry.substring(0, Index)).trim();
+			String Value = ((Index == -1) ? ""    : Entry.substring(Index + 1)).trim();
+
+			if(!Params.contains(Name)) continue;
+			IsSpecified = true;
+
+			if(PARAM_POOL.equals(Name)) {
+				try { PoolSize = Integer.parseInt(Value); }
+				catch (NumberFormatException E) {
+					throw new IllegalArgumentException("Invalid Java engine pool size: " + Value);
+				}
+				if(PoolSize < 0)
+					throw new IllegalArgumentException("Invalid Java engine pool size: " + Value);
+
+			} else if(PARAM_WARMUP.equals(Name)) {
+				IsWarmUp = (Value.length() == 0) || Boolean.parseBoolean(Value);
+				
+			} else if(PARAM_TIMEOUT.equals(Name) || PARAM_CPUTIME.equals(Name)) {
+				long Limit;
+				try { Limit = Long.parseLong(Value); }
+				catch (NumberFormatException E) {
+					throw new IllegalArgumentException("Invalid Java engine time limit: " + Value);
+				}
+				if(Limit < 0)
+					throw new IllegalArgumentException("Invalid Java engine time limit: " + Value);
+				
+				if(PARAM_TIMEOUT.equals(Name)) WallTime = Limit;
+				else                           CPUTime  = Limit;
+				
+			} else if(PARAM_CHECKPOINT.equals(Name)) {
+				IsCheckpoint = (Value.length() == 0) || Boolean.parseBoolean(Value);
+
+			} else if(PARAM_UNLOAD.equals(Name)) {
+				IsUnload = (Value.length() == 0) || Boolean.parseBoolean(Value);
+
+			} else if(PARAM_GENERATION.equals(Name)) {
+				try { Generation = Integer.parseInt(Value); }
+				catch (NumberFormatException E) {
+					throw new IllegalArgumentException("Invalid Java engine class loader generation: " + Value);
+				}
+				if(Generation < 1)
+					throw new IllegalArgumentException("Invalid Java engine class loader generation: " + Value);
+				IsUnload = true;
+
+			} else if(PARAM_HOT.equals(Name)) {
+				try { Hot = Integer.parseInt(Value); }
+				catch (NumberFormatException E) {
+					throw new IllegalArgumentException("Invalid Java engine hot run count: " + Value);
+				}
+				if(Hot < 0)
+					throw new IllegalArgumentException("Invalid Java engine hot run count: " + Value);
+			}
+		}
+		this.PoolSize     = PoolSize;
+		this.IsWarmUp     = IsWarmUp;
+		this.Limit        = new ExecutionLimit(WallTime, CPUTime);
+		this.IsCheckpoint = IsCheckpoint;
+		this.IsUnload     = IsUnload;
+		this.Generation   = Generation;
+		this.Hot          = Hot;
+		this.IsSpecified  = IsSpecified;
+	}
+
+	/** Creates a Java engine option */
+	public JavaEngineOption(int pPoolSize, boolean pIsWarmUp) {
+		this(PARAM_POOL + "=" + Math.max(0, pPoolSize) + "," + PARAM_WARMUP + "=" + pIsWarmUp);
+	}
+
+	private final int            PoolSize;
+	private final boolean        IsWarmUp;
+	private final ExecutionLimit Limit;
+	private final boolean        IsCheckpoint;
+	private final boolean        IsUnload;
+	private final int            Generation;
+	private final int            Hot;
+	private final boolean        IsSpecified;
+
+	/** Checks if any of the parameters is given (an option without one is the same as the default option) */
+	public boolean isSpecified() {
+		return this.IsSpecified;
+	}
+
+	/** Returns the number of the compiler contexts (0 means no pool) */
+	public int getPoolSize() {
+		return this.PoolSize;
+	}
+
+	/** Checks if the compiler contexts should be warmed up in the background */
+	public boolean isWarmUp() {
+		return this.IsWarmUp;
+	}
+	
+	/** Returns the limit of an evaluation of a code (see ExecutionLimit.isLimited()) */
+	public ExecutionLimit getExecutionLimit() {
+		return this.Limit;
+	}
+	
+	/** Checks if a checkpoint should be added to each loop of every code */
+	public boolean isCheckpointInjected() {
+		return this.IsCheckpoint;
+	}
+	
+	/** Checks if the generated classes should be defined in their own class loaders so they can be unloaded */
+	public boolean isClassUnloading() {
+		return this.IsUnload;
+	}
+	
+	/** Returns the number of the compilations whose classes share a class loader (when the classes can be unloaded) */
+	public int getGeneration() {
+		return this.Generation;
+	}
+	
+	/** Returns the number of the runs of a simple script that is interpreted before it is compiled (0 for never) */
+	public int getHot() {
+		return this.Hot;
+	}
+
+}
@@ -4,8 +4,6 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import net.nawaman.javacompiler.JavaCompilerObjectInputStream;
 import net.nawaman.javacompiler.JavaCompilerObjectOutputStream;
@@ -23,18 +21,11 @@ public class JavaFunction extends Function.Simple implements Serializable {
 	/**{@inheritDoc}*/ @Override
 	public Function reCreate(Scope pNewFrozenScope) {
 		try {
-			Constructor<? extends Function.Simple.Body> CFB =
-				this.Body.getClass().getConstructor(new Class<?>[] { Signature.class, String.class, Scope.class });
-			
-			return new JavaFunction(
-							this.ParamNames,
-							CFB.newInstance(this.getSignature(), this.getCode(), pNewFrozenScope),
-							this.getFVInfos());
+			Function.Simple.Body FSB = (Function.Simple.Body)JavaConstructors.NewBody(this.Body.getClass(),
+			                               this.getSignature(), this.getCode(), pNewFrozenScope);
+			return new JavaFunction(this.ParamNames, FSB, this.getFVInfos());
 		}
-		catch(NoSuchMethodException     E) {}
-		catch(InvocationTargetException E) {}
-		catch(IllegalAccessException    E) {}
-		catch(InstantiationException    E) {}
+		catch(ReflectiveOperationException E) {}
 		return null;
 	}
 
@@ -64,6 +55,10 @@ public class JavaFunction extends Function.Simple implements Serializable {
 
 	/** Custom serialization is needed. */
 	private void writeObject(ObjectOutputStream aStream) throws IOException {
+		// The byte code is saved from the JavaCompiler so the classes of an unloadable class loader are added to it
+		if((this.Body != null) && !ExecutableClassLoader.Export(this.Body.getClass()))
+			throw new IOException("Unable to export the classes of the executable to the JavaCompiler.");
+		
 		// Save the rest
 		aStream.defaultWriteObject();
 		
@@ -0,0 +1,114 @@
+package net.nawaman.script.java;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.nawaman.script.Scope;
+import net.nawaman.script.ScriptManager;
+import net.nawaman.script.java.JavaCompiledCode.JavaCode;
+
+/**
+ * A java code that is interpreted (see JavaInterpreter) until it is run often enough (the hot count of the engine) to
+ *    be worth compiling; it is then compiled in the background and the compiled code is used from then on. If the
+ *    compilation fails, the code is kept being interpreted. The engine gives the same interpreted code to all the
+ *    executables created from the same code so the runs of a code that is evaluated again from its text are counted
+ *    together.
+ *
+ * Only the code text is serialized; the code is parsed again (and counted from 0) when it is deserialized.
+ **/
+final class JavaInterpretedCode implements JavaCode, Serializable {
+
+	private static final long serialVersionUID = 5180742593864413529L;
+
+	/** The thread that compiles the hot codes */
+	static private final ExecutorService Promoter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable pRunnable) {
+			Thread Promoter = new Thread(pRunnable, "JavaInterpretedCode-Promoter");
+			Promoter.setDaemon(true);
+			return Promoter;
+		}
+	});
+
+	JavaInterpretedCode(JavaEngine pEngine, String pCode, JavaCompileOption pOption, JavaInterpreter.Program pProgram,
+			boolean pIsJavaLangOnly, int pHot) {
+		this.Engine         = pEngine;
+		this.Code           = pCode;
+		this.Option         = pOption;
+		this.Program        = pProgram;
+		this.IsJavaLangOnly = pIsJavaLangOnly;
+		this.Hot            = pHot;
+	}
+
+	private final String  Code;
+	private final boolean IsJavaLangOnly;
+	private final int     Hot;
+
+	transient private          JavaEngine              Engine;
+	transient private          JavaCompileOption       Option;
+	transient private          JavaInterpreter.Program Program;
+	transient private volatile JavaCode                Compiled    = null;
+	transient private volatile boolean                 IsPromoting = false;
+	transient private          int                     Count       = 0;	// Racy - only roughly counted
+
+	/** Returns the code */
+	String getCode() {
+		return this.Code;
+	}
+
+	/** Checks if the code is compiled (so it is no longer interpreted) */
+	boolean isCompiled() {
+		return this.Compiled != null;
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public Object run(Object $This, Scope $Scope) {
+		JavaCode Compiled = this.Compiled;
+		if(Compiled != null) return Compiled.run($This, $Scope);
+
+		if((++this.Count >= this.Hot) && !this.IsPromoting) this.promote();
+		return this.Program.run();
+	}
+
+	/** Compiles the code in the background */
+	private synchronized void promote() {
+		if(this.IsPromoting) return;
+		this.IsPromoting = true;
+
+		Promoter.execute(new Runnable() {
+			public void run() {
+				JavaInterpretedCode.this.compileNow();
+			}
+		});
+	}
+
+	/** Compiles the code and uses the compiled code from then on */
+	private void compileNow() {
+		try {
+			this.Compiled = this.Engine.compileInterpretedCode(this.Code, this.Option);
+		} catch (Throwable T) {
+			// The code stays interpreted
+		}
+	}
+
+	private void readObject(ObjectInputStream pIn) throws IOException, ClassNotFoundException {
+		pIn.defaultReadObject();
+		this.Engine  = (JavaEngine)ScriptManager.Instance.getDefaultEngineOf(JavaEngine.ShortName);
+		this.Option  = JavaCompileOption.DefaultOption;
+		this.Program = JavaInterpreter.Parse(this.Code, this.IsJavaLangOnly);
+		if(this.Program != null) return;
+
+		// Not interpretable by this version so it is compiled at once
+		this.IsPromoting = true;
+		this.compileNow();
+		if(this.Compiled == null) throw new IOException("The interpreted java code cannot be compiled: " + this.Code);
+	}
+
+	/**{@inheritDoc}*/ @Override
+	public String toString() {
+		return "JavaInterpretedCode(" + (this.isCompiled() ? "compiled" : ("runs: " + this.Count)) + ")";
+	}
+}
@@ -0,0 +1,837 @@
+package net.nawaman.script.java;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Vector;
+
+import net.nawaman.script.java.JavaRoughParser.Statement;
+
+/**
+ * An interpreter of a small subset of Java used to run a simple code before (or instead of) compiling it.
+ *
+ * The subset is a sequence of local variable declarations (`[final] T N = E;` where T is a primitive type or String)
+ *    followed by `return E;`. An expression is made of literals, the local variables, the constants of the wrapper
+ *    classes and Math (e.g., `Integer.MAX_VALUE`), the unary, binary and conditional operators and the casts to the
+ *    primitive types.
+ *
+ * Every expression is typed using the rules of the Java language (binary numeric promotion, string conversion, ...)
+ *    and evaluated with the Java operators of its type so the result (including its boxed type) is the same as the one
+ *    of the compiled code. The constant expressions are folded (and the String constants are interned) like the
+ *    compiler does. A code that is not entirely in the subset - or that the compiler may reject - is not interpreted
+ *    (Parse(...) returns null) so it is compiled and any error is reported by the compiler.
+ **/
+final class JavaInterpreter {
+
+	private JavaInterpreter() {}
+
+	/** The classes whose constants can be used (those in java.lang that are not usually shadowed) */
+	static private final HashMap<String, Class<?>> ConstantClasses = new HashMap<String, Class<?>>();
+	static {
+		for(Class<?> Cls : new Class<?>[] { Boolean.class, Byte.class, Character.class, Short.class, Integer.class,
+		                                    Long.class, Float.class, Double.class, Math.class })
+			ConstantClasses.put(Cls.getSimpleName(), Cls);
+	}
+
+	/** The reserved words that cannot be a name */
+	static private final HashSet<String> Keywords = new HashSet<String>(Arrays.asList(
+		"abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+		"default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+		"implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+		"protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+		"throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "var", "_",
+		"record", "yield", "sealed", "permits"));
+
+	// Program ---------------------------------------------------------------------------------------------------------
+
+	/** A parsed code */
+	static final class Program {
+		Program(Node[] pInits, Node pReturn, int pLocalCount) {
+			this.Inits      = pInits;
+			this.Return     = pReturn;
+			this.LocalCount = pLocalCount;
+		}
+
+		private final Node[] Inits;	// The initializer of each local variable slot (in order)
+		private final Node   Return;
+		private final int    LocalCount;
+
+		/** Runs the program */
+		Object run() {
+			Object[] Locals = (this.LocalCount == 0) ? null : new Object[this.LocalCount];
+			for(int i = 0; i < this.Inits.length; i++) Locals[i] = this.Inits[i].eval(Locals);
+			return this.Return.eval(Locals);
+		}
+	}
+
+	/**
+	 * Parses the code into a program or returns null if the code is not in the subset. The constants of the classes in
+	 *    java.lang are only used if pIsJavaLangOnly (no other class can have the same simple name).
+	 **/
+	static Program Parse(String pCode, boolean pIsJavaLangOnly) {
+		if((pCode == null) || pCode.contains("\\u")) return null;	// Unicode escapes are translated before parsing
+
+		Vector<Statement> Statements = new Vector<Statement>();
+		if(JavaRoughParser.lengthOfStatements(Statements, pCode, 0) != pCode.length()) return null;
+		Statement.cleanAllIgnoreable(Statements);
+
+		// The statements are only used to check for blocks - a literal may be split from its `;`
+		StringBuilder Text = new StringBuilder();
+		for(Statement Stm : Statements) {
+			if(Stm.SubStatements != null) return null;
+			Text.append(Stm.getText()).append('\n');
+		}
+
+		try {
+			Parser     Parser = new Parser(pIsJavaLangOnly);
+			List<Node> Inits  = new ArrayList<Node>();
+			Node       Return = null;
+			Parser.reset(Lex(Text.toString()));
+			while(!Parser.isEnd()) {
+				if(Return != null) return null;	// Unreachable (even an empty statement)
+				if(Parser.is(";")) {
+					Parser.next();
+					continue;
+				}
+
+				if(Parser.isWord("return")) {
+					Parser.next();
+					Return = Parser.parseExpression();
+
+				} else {
+					Node Init = Parser.parseDeclaration();
+					if(Init != null) Inits.add(Init);
+				}
+				Parser.expect(";");
+			}
+			if(Return == null) return null;
+			return new Program(Inits.toArray(new Node[Inits.size()]), Return, Parser.Slots);
+
+		} catch (Unsupported E) {
+			return null;
+		}
+	}
+
+	/** Thrown when a code is not in the subset */
+	static private final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = -1493751069468155231L;
+		Unsupported() { super(null, null, false, false); }
+	}
+
+	static private final Unsupported UNSUPPORTED = new Unsupported();
+
+	// Lexer -----------------------------------------------------------------------------------------------------------
+
+	static private enum TKind { Word, Number, Char, String, Symbol }
+
+	static private final class Token {
+		Token(TKind pKind, String pText, Object pValue) {
+			this.Kind  = pKind;
+			this.Text  = pText;
+			this.Value = pValue;
+		}
+		final TKind  Kind;
+		final String Text;
+		final Object Value;
+
+		boolean is(String pText) {
+			return (this.Kind == TKind.Symbol) && this.Text.equals(pText);
+		}
+	}
+
+	/** The symbols (the longer ones first) */
+	static private final String[] Symbols = {
+		">>>", "<<", ">>", "<=", ">=", "==", "!=", "&&", "||",
+		"(", ")", ";", ".", "?", ":", "+", "-", "*", "/", "%", "<", ">", "!", "~", "&", "|", "^", "="
+	};
+
+	/** Splits the text into tokens */
+	static private List<Token> Lex(String pText) {
+		List<Token> Tokens = new ArrayList<Token>();
+		int         Length = pText.length();
+		int         Pos    = 0;
+		while(Pos < Length) {
+			char C = pText.charAt(Pos);
+			if(Character.isWhitespace(C)) { Pos++; continue; }
+
+			int Len;
+			if((Len = JavaRoughParser.lengthOfLineComment(pText, Pos)) != 0) { Pos += Len; continue; }
+			if((Len = JavaRoughParser.lengthOfLongComment(pText, Pos)) != 0) { Pos += Len; continue; }
+
+			if(IsNameStart(C)) {
+				int End = Pos + 1;
+				while((End < Length) && IsNamePart(pText.charAt(End))) End++;
+				Tokens.add(new Token(TKind.Word, pText.substring(Pos, End), null));
+				Pos = End;
+
+			} else if(IsDigit(C) || ((C == '.') && (Pos + 1 < Length) && IsDigit(pText.charAt(Pos + 1)))) {
+				int End = Pos;
+				while((End < Length) && (IsNamePart(pText.charAt(End)) || (pText.charAt(End) == '.')
+				      || (((pText.charAt(End) == '+') || (pText.charAt(End) == '-'))
+				         && ((pText.charAt(End - 1) == 'e') || (pText.charAt(End - 1) == 'E'))))) End++;
+				String Text = pText.substring(Pos, End);
+				Tokens.add(new Token(TKind.Number, Text, ParseNumber(Text)));
+				Pos = End;
+
+			} else if(C == '"') {
+				if(pText.startsWith("\"\"\"", Pos)) throw UNSUPPORTED;	// Text block
+				StringBuilder SB  = new StringBuilder();
+				int           End = ParseQuoted(pText, Pos, '"', SB);
+				Tokens.add(new Token(TKind.String, pText.substring(Pos, End), SB.toString()));
+				Pos = End;
+
+			} else if(C == '\'') {
+				StringBuilder SB  = new StringBuilder();
+				int           End = ParseQuoted(pText, Pos, '\'', SB);
+				if(SB.length() != 1) throw UNSUPPORTED;
+				Tokens.add(new Token(TKind.Char, pText.substring(Pos, End), SB.charAt(0)));
+				Pos = End;
+
+			} else {
+				String Symbol = null;
+				for(String S : Symbols) {
+					if(pText.startsWith(S, Pos)) { Symbol = S; break; }
+				}
+				if(Symbol == null) throw UNSUPPORTED;
+				Tokens.add(new Token(TKind.Symbol, Symbol, null));
+				Pos += Symbol.length();
+			}
+		}
+		return Tokens;
+	}
+
+	static private boolean IsDigit    (char C) { return (C >= '0') && (C <= '9');                             }
+	static private boolean IsNameStart(char C) { return ((C >= 'a') && (C <= 'z')) || ((C >= 'A') && (C <= 'Z'))
+	                                                    || (C == '_') || (C == '$');                          }
+	static private boolean IsNamePart (char C) { return IsNameStart(C) || IsDigit(C);                         }
+
+	/** Parses a quoted literal into the builder and returns the position after it */
+	static private int ParseQuoted(String pText, int pPos, char pQuote, StringBuilder pSB) {
+		int Length = pText.length();
+		int Pos    = pPos + 1;
+		while(true) {
+			if(Pos >= Length) throw UNSUPPORTED;
+			char C = pText.charAt(Pos++);
+			if(C == pQuote) return Pos;
+			if((C == '\n') || (C == '\r')) throw UNSUPPORTED;
+			if(C != '\\') { pSB.append(C); continue; }
+
+			if(Pos >= Length) throw UNSUPPORTED;
+			C = pText.charAt(Pos++);
+			switch(C) {
+				case 'b':  pSB.append('\b'); break;
+				case 't':  pSB.append('\t'); break;
+				case 'n':  pSB.append('\n'); break;
+				case 'f':  pSB.append('\f'); break;
+				case 'r':  pSB.append('\r'); break;
+				case '"':  pSB.append('"');  break;
+				case '\'': pSB.append('\''); break;
+				case '\\': pSB.append('\\'); break;
+				default: {
+					// Octal escape: \d, \dd or \[0-3]dd
+					if((C < '0') || (C > '7')) throw UNSUPPORTED;
+					int Value = C - '0';
+					int Max   = (C <= '3') ? 2 : 1;
+					for(int i = 0; (i < Max) && (Pos < Length) && (pText.charAt(Pos) >= '0') && (pText.charAt(Pos) <= '7'); i++)
+						Value = (Value * 8) + (pText.charAt(Pos++) - '0');
+					pSB.append((char)Value);
+				}
+			}
+		}
+	}
+
+	/** Parses a number literal (only the decimal forms) */
+	static private Object ParseNumber(String pText) {
+		int     Length  = pText.length();
+		char    Last    = pText.charAt(Length - 1);
+		boolean IsFloat = (pText.indexOf('.') != -1) || (pText.indexOf('e') != -1) || (pText.indexOf('E') != -1)
+		                  || (Last == 'f') || (Last == 'F') || (Last == 'd') || (Last == 'D');
+		if(!IsFloat) {
+			boolean IsLong = (Last == 'l') || (Last == 'L');
+			String  Digits = IsLong ? pText.substring(0, Length - 1) : pText;
+			if((Digits.length() == 0) || ((Digits.length() > 1) && (Digits.charAt(0) == '0'))) throw UNSUPPORTED;
+			for(int i = 0; i < Digits.length(); i++) {
+				if(!IsDigit(Digits.charAt(i))) throw UNSUPPORTED;
+			}
+			try {
+				return IsLong ? (Object)Long.valueOf(Long.parseLong(Digits)) : (Object)Integer.valueOf(Integer.parseInt(Digits));
+			} catch (NumberFormatException E) {
+				throw UNSUPPORTED;	// Including the ones that are only valid after a minus
+			}
+		}
+
+		if(!pText.matches("(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?[fFdD]?")) throw UNSUPPORTED;
+		boolean IsFloatType = (Last == 'f') || (Last == 'F');
+		String  Digits      = ((Last == 'f') || (Last == 'F') || (Last == 'd') || (Last == 'D'))
+		                          ? pText.substring(0, Length - 1)
+		                          : pText;
+		String  Mantissa    = Digits.split("[eE]")[0];
+		boolean IsNonZero   = Mantissa.matches(".*[1-9].*");
+		if(IsFloatType) {
+			float Value = Float.parseFloat(Digits);
+			if(Float.isInfinite(Value) || ((Value == 0) && IsNonZero)) throw UNSUPPORTED;
+			return Value;
+		}
+		double Value = Double.parseDouble(Digits);
+		if(Double.isInfinite(Value) || ((Value == 0) && IsNonZero)) throw UNSUPPORTED;
+		return Value;
+	}
+
+	// Types -----------------------------------------------------------------------------------------------------------
+
+	static private enum Type {
+		Boolean, Byte, Short, Char, Int, Long, Float, Double, String, Null;
+
+		boolean isNumeric()  { return (this.ordinal() >= Byte.ordinal()) && (this.ordinal() <= Double.ordinal()); }
+		boolean isIntegral() { return (this.ordinal() >= Byte.ordinal()) && (this.ordinal() <= Long.ordinal());   }
+
+		/** The type after the unary numeric promotion */
+		Type promote() {
+			return (this.ordinal() < Int.ordinal()) ? Int : this;
+		}
+
+		/** The type after the binary numeric promotion */
+		static Type Promote(Type pType1, Type pType2) {
+			if((pType1 == Double) || (pType2 == Double)) return Double;
+			if((pType1 == Float)  || (pType2 == Float))  return Float;
+			if((pType1 == Long)   || (pType2 == Long))   return Long;
+			return Int;
+		}
+
+		/** Returns the type of the name of a primitive type or String (null if it is not one) */
+		static Type Of(String pName) {
+			if("boolean".equals(pName)) return Boolean;
+			if("byte"   .equals(pName)) return Byte;
+			if("short"  .equals(pName)) return Short;
+			if("char"   .equals(pName)) return Char;
+			if("int"    .equals(pName)) return Int;
+			if("long"   .equals(pName)) return Long;
+			if("float"  .equals(pName)) return Float;
+			if("double" .equals(pName)) return Double;
+			if("String" .equals(pName)) return String;
+			return null;
+		}
+
+		/** Returns the type of the class (null if it is not supported) */
+		static Type Of(Class<?> pClass) {
+			if(pClass == boolean.class)          return Boolean;
+			if(pClass == byte.class)             return Byte;
+			if(pClass == short.class)            return Short;
+			if(pClass == char.class)             return Char;
+			if(pClass == int.class)              return Int;
+			if(pClass == long.class)             return Long;
+			if(pClass == float.class)            return Float;
+			if(pClass == double.class)           return Double;
+			if(pClass == java.lang.String.class) return String;
+			return null;
+		}
+
+		/** Checks if a value of the type can be assigned to a variable of this type (identity or widening) */
+		boolean isAssignableFrom(Type pType) {
+			if(this == pType) return true;
+			if(pType == Null) return this == String;
+			if(!this.isNumeric() || !pType.isNumeric()) return false;
+			if(pType == Char) return this.ordinal() >= Int.ordinal();
+			if(this  == Char) return false;
+			return this.ordinal() >= pType.ordinal();
+		}
+	}
+
+	/** Converts the value (of a numeric type) to a value of the numeric type (the Java primitive conversion) */
+	static private Object Convert(Object pValue, Type pFrom, Type pTo) {
+		if(pFrom == pTo) return pValue;
+		if(pFrom == Type.Char) return Convert((int)((Character)pValue).charValue(), Type.Int, pTo);
+
+		Number N = (Number)pValue;
+		switch(pTo) {
+			case Byte:   return (pFrom == Type.Float) ? (byte)(int)N.floatValue() : ((pFrom == Type.Double) ? (byte)(int)N.doubleValue() : (byte)N.longValue());
+			case Short:  return (pFrom == Type.Float) ? (short)(int)N.floatValue() : ((pFrom == Type.Double) ? (short)(int)N.doubleValue() : (short)N.longValue());
+			case Char:   return (pFrom == Type.Float) ? (char)(int)N.floatValue() : ((pFrom == Type.Double) ? (char)(int)N.doubleValue() : (char)N.longValue());
+			case Int:    return (pFrom == Type.Float) ? (int)N.floatValue() : ((pFrom == Type.Double) ? (int)N.doubleValue() : (int)N.longValue());
+			case Long:   return (pFrom == Type.Float) ? (long)N.floatValue() : ((pFrom == Type.Double) ? (long)N.doubleValue() : N.longValue());
+			case Float:  return (pFrom == Type.Double) ? (float)N.doubleValue() : ((pFrom == Type.Long) ? (float)N.longValue() : N.floatValue());
+			case Double: return (pFrom == Type.Float) ? (double)N.floatValue() : ((pFrom == Type.Long) ? (double)N.longValue() : N.doubleValue());
+			default:     throw UNSUPPORTED;
+		}
+	}
+
+	// Nodes -----------------------------------------------------------------------------------------------------------
+
+	/** A typed expression */
+	static private abstract class Node {
+		Node(Type pType) {
+			this.Type = pType;
+		}
+		final Type Type;
+
+		abstract Object eval(Object[] pLocals);
+	}
+
+	static private final class Constant extends Node {
+		Constant(Type pType, Object pValue) {
+			super(pType);
+			this.Value = (pValue instanceof String) ? ((String)pValue).intern() : pValue;
+		}
+		final Object Value;
+
+		@Override Object eval(Object[] pLocals) { return this.Value; }
+	}
+
+	static private final class Local extends Node {
+		Local(Type pType, int pSlot) {
+			super(pType);
+			this.Slot = pSlot;
+		}
+		final int Slot;
+
+		@Override Object eval(Object[] pLocals) { return pLocals[this.Slot]; }
+	}
+
+	/** A node of a value converted to another type */
+	static private final class Conversion extends Node {
+		Conversion(Type pType, Node pOperand) {
+			super(pType);
+			this.Operand = pOperand;
+		}
+		final Node Operand;
+
+		@Override Object eval(Object[] pLocals) {
+			return Convert(this.Operand.eval(pLocals), this.Operand.Type, this.Type);
+		}
+	}
+
+	static private final class Unary extends Node {
+		Unary(Type pType, String pOperator, Node pOperand) {
+			super(pType);
+			this.Operator = pOperator;
+			this.Operand  = pOperand;
+		}
+		final String Operator;
+		final Node   Operand;
+
+		@Override Object eval(Object[] pLocals) {
+			Object V = this.Operand.eval(pLocals);
+			switch(this.Operator.charAt(0)) {
+				case '!': return !(Boolean)V;
+				case '+': return V;
+				case '-':
+					switch(this.Type) {
+						case Int:    return -(Integer)V;
+						case Long:   return -(Long)V;
+						case Float:  return -(Float)V;
+						default:     return -(Double)V;
+					}
+				default:	// ~
+					return (this.Type == Type.Int) ? (Object)(~(Integer)V) : (Object)(~(Long)V);
+			}
+		}
+	}
+
+	/** A binary operator on the operands that are already converted to the same type (except shifts) */
+	static private final class Binary extends Node {
+		Binary(Type pType, String pOperator, Node pLeft, Node pRight) {
+			super(pType);
+			this.Operator = pOperator;
+			this.Left     = pLeft;
+			this.Right    = pRight;
+		}
+		final String Operator;
+		final Node   Left;
+		final Node   Right;
+
+		@Override Object eval(Object[] pLocals) {
+			String Op = this.Operator;
+			if("&&".equals(Op)) return  (Boolean)this.Left.eval(pLocals) && (Boolean)this.Right.eval(pLocals);
+			if("||".equals(Op)) return  (Boolean)this.Left.eval(pLocals) || (Boolean)this.Right.eval(pLocals);
+
+			Object L = this.Left .eval(pLocals);
+			Object R = this.Right.eval(pLocals);
+			Type   OT = this.Left.Type;	// The type of the operation
+			if(OT == Type.Boolean) {
+				boolean A = (Boolean)L, B = (Boolean)R;
+				switch(Op) {
+					case "&":  return A &  B;
+					case "|":  return A |  B;
+					case "^":  return A ^  B;
+					case "==": return A == B;
+					default:   return A != B;
+				}
+			}
+			if(this.Type == Type.String) return String.valueOf(L).concat(String.valueOf(R));
+
+			switch(OT) {
+				case Int: {
+					int A = (Integer)L;
+					if(Op.startsWith("<<") || Op.startsWith(">>")) {
+						long S = (this.Right.Type == Type.Long) ? (Long)R : (Integer)R;
+						switch(Op) {
+							case "<<":  return A <<  S;
+							case ">>":  return A >>  S;
+							default:    return A >>> S;
+						}
+					}
+					int B = (Integer)R;
+					switch(Op) {
+						case "+":  return A +  B;
+						case "-":  return A -  B;
+						case "*":  return A *  B;
+						case "/":  return A /  B;
+						case "%":  return A %  B;
+						case "&":  return A &  B;
+						case "|":  return A |  B;
+						case "^":  return A ^  B;
+						case "<":  return A <  B;
+						case ">":  return A >  B;
+						case "<=": return A <= B;
+						case ">=": return A >= B;
+						case "==": return A == B;
+						default:   return A != B;
+					}
+				}
+				case Long: {
+					long A = (Long)L;
+					if(Op.startsWith("<<") || Op.startsWith(">>")) {
+						long S = (this.Right.Type == Type.Long) ? (Long)R : (Integer)R;
+						switch(Op) {
+							case "<<":  return A <<  S;
+							case ">>":  return A >>  S;
+							default:    return A >>> S;
+						}
+					}
+					long B = (Long)R;
+					switch(Op) {
+						case "+":  return A +  B;
+						case "-":  return A -  B;
+						case "*":  return A *  B;
+						case "/":  return A /  B;
+						case "%":  return A %  B;
+						case "&":  return A &  B;
+						case "|":  return A |  B;
+						case "^":  return A ^  B;
+						case "<":  return A <  B;
+						case ">":  return A >  B;
+						case "<=": return A <= B;
+						case ">=": return A >= B;
+						case "==": return A == B;
+						default:   return A != B;
+					}
+				}
+				case Float: {
+					float A = (Float)L, B = (Float)R;
+					switch(Op) {
+						case "+":  return A +  B;
+						case "-":  return A -  B;
+						case "*":  return A *  B;
+						case "/":  return A /  B;
+						case "%":  return A %  B;
+						case "<":  return A <  B;
+						case ">":  return A >  B;
+						case "<=": return A <= B;
+						case ">=": return A >= B;
+						case "==": return A == B;
+						default:   return A != B;
+					}
+				}
+				default: {
+					double A = (Double)L, B = (Double)R;
+					switch(Op) {
+						case "+":  return A +  B;
+						case "-":  return A -  B;
+						case "*":  return A *  B;
+						case "/":  return A /  B;
+						case "%":  return A %  B;
+						case "<":  return A <  B;
+						case ">":  return A >  B;
+						case "<=": return A <= B;
+						case ">=": return A >= B;
+						case "==": return A == B;
+						default:   return A != B;
+					}
+				}
+			}
+		}
+	}
+
+	static private final class Conditional extends Node {
+		Conditional(Type pType, Node pCondition, Node pThen, Node pElse) {
+			super(pType);
+			this.Condition = pCondition;
+			this.Then      = pThen;
+			this.Else      = pElse;
+		}
+		final Node Condition;
+		final Node Then;
+		final Node Else;
+
+		@Override Object eval(Object[] pLocals) {
+			return (Boolean)this.Condition.eval(pLocals) ? this.Then.eval(pLocals) : this.Else.eval(pLocals);
+		}
+	}
+
+	// Parser ----------------------------------------------------------------------------------------------------------
+
+	static private final class Parser {
+		Parser(boolean pIsJavaLangOnly) {
+			this.IsJavaLangOnly = pIsJavaLangOnly;
+		}
+
+		private final boolean               IsJavaLangOnly;
+		private final HashMap<String, Node> Locals = new HashMap<String, Node>();
+		private       List<Token>           Tokens;
+		private       int                   Pos;
+		int                                 Slots  = 0;
+
+		void reset(List<Token> pTokens) {
+			this.Tokens = pTokens;
+			this.Pos    = 0;
+		}
+
+		boolean isEnd()               { return this.Pos >= this.Tokens.size();                                    }
+		Token   peek()                { return this.isEnd() ? null : this.Tokens.get(this.Pos);                    }
+		Token   next()                { if(this.isEnd()) throw UNSUPPORTED; return this.Tokens.get(this.Pos++);    }
+		boolean is(String pSymbol)    { Token T = this.peek(); return (T != null) && T.is(pSymbol);                }
+		boolean isWord(String pWord)  { Token T = this.peek(); return (T != null) && (T.Kind == TKind.Word) && T.Text.equals(pWord); }
+		void    expect(String pSymbol){ if(!this.is(pSymbol)) throw UNSUPPORTED; this.Pos++;                       }
+
+		/** Parses `[final] Type Name = Expr` and returns the initializer (null for a constant variable) */
+		Node parseDeclaration() {
+			boolean IsFinal = this.isWord("final");
+			if(IsFinal) this.next();
+
+			Token TypeToken = this.next();
+			Type  VarType   = (TypeToken.Kind == TKind.Word) ? Type.Of(TypeToken.Text) : null;
+			if(VarType == null) throw UNSUPPORTED;
+
+			Token NameToken = this.next();
+			if((NameToken.Kind != TKind.Word) || Keywords.contains(NameToken.Text) || NameToken.Text.startsWith("$")
+			|| this.Locals.containsKey(NameToken.Text))
+				throw UNSUPPORTED;
+
+			this.expect("=");
+			Node Init = this.parseExpression();
+			if(!VarType.isAssignableFrom(Init.Type)) throw UNSUPPORTED;
+			if(Init.Type == Type.Null)   Init = new Constant(Type.String, null);
+			else if(Init.Type != VarType) Init = Fold(new Conversion(VarType, Init));
+
+			// A final variable initialized with a constant is a constant variable (null is not a constant)
+			if(IsFinal && (Init instanceof Constant) && (((Constant)Init).Value != null)) {
+				this.Locals.put(NameToken.Text, Init);
+				return null;
+			}
+			this.Locals.put(NameToken.Text, new Local(VarType, this.Slots++));
+			return Init;
+		}
+
+		Node parseExpression() {
+			Node Condition = this.parseBinary(0);
+			if(!this.is("?")) return Condition;
+
+			this.next();
+			Node Then = this.parseExpression();
+			this.expect(":");
+			Node Else = this.parseExpression();
+			if(Condition.Type != Type.Boolean) throw UNSUPPORTED;
+
+			Type CType;
+			if(Then.Type == Else.Type) CType = Then.Type;
+			else {
+				// Only the types whose conditional type is the binary numeric promotion
+				if(!Then.Type.isNumeric() || !Else.Type.isNumeric()
+				|| (Then.Type.ordinal() < Type.Int.ordinal()) || (Else.Type.ordinal() < Type.Int.ordinal()))
+					throw UNSUPPORTED;
+				CType = Type.Promote(Then.Type, Else.Type);
+				Then  = Widen(Then, CType);
+				Else  = Widen(Else, CType);
+			}
+			if(CType == Type.Null) throw UNSUPPORTED;
+			return Fold(new Conditional(CType, Condition, Then, Else));
+		}
+
+		/** The binary operators by precedence (lowest first) */
+		static private final String[][] Precedences = {
+			{ "||" }, { "&&" }, { "|" }, { "^" }, { "&" }, { "==", "!=" }, { "<", ">", "<=", ">=" },
+			{ "<<", ">>", ">>>" }, { "+", "-" }, { "*", "/", "%" }
+		};
+
+		Node parseBinary(int pLevel) {
+			if(pLevel == Precedences.length) return this.parseUnary();
+
+			Node Left = this.parseBinary(pLevel + 1);
+			while(true) {
+				Token  T  = this.peek();
+				String Op = null;
+				if((T != null) && (T.Kind == TKind.Symbol)) {
+					for(String O : Precedences[pLevel]) {
+						if(T.Text.equals(O)) { Op = O; break; }
+					}
+				}
+				if(Op == null) return Left;
+
+				this.next();
+				Left = Fold(NewBinary(Op, Left, this.parseBinary(pLevel + 1)));
+			}
+		}
+
+		Node parseUnary() {
+			Token T = this.peek();
+			if(T == null) throw UNSUPPORTED;
+
+			if(T.is("+") || T.is("-") || T.is("~") || T.is("!")) {
+				this.next();
+				if(T.is("-") || T.is("+")) {
+					Token N = this.peek();
+					if((N != null) && (N.is("-") || N.is("+"))) throw UNSUPPORTED;	// Looks like -- or ++
+				}
+				Node Operand = this.parseUnary();
+				if(T.is("!")) {
+					if(Operand.Type != Type.Boolean) throw UNSUPPORTED;
+					return Fold(new Unary(Type.Boolean, "!", Operand));
+				}
+				boolean IsOK = T.is("~") ? Operand.Type.isIntegral() : Operand.Type.isNumeric();
+				if(!IsOK) throw UNSUPPORTED;
+				Type UType = Operand.Type.promote();
+				return Fold(new Unary(UType, T.Text, Widen(Operand, UType)));
+			}
+
+			// Cast to a primitive type
+			if(T.is("(") && (this.Pos + 2 < this.Tokens.size()) && this.Tokens.get(this.Pos + 2).is(")")) {
+				Token TypeToken = this.Tokens.get(this.Pos + 1);
+				Type  CastType  = (TypeToken.Kind == TKind.Word) ? Type.Of(TypeToken.Text) : null;
+				if((CastType != null) && (CastType != Type.String)) {
+					this.Pos += 3;
+					Node Operand = this.parseUnary();
+					if((CastType == Type.Boolean) != (Operand.Type == Type.Boolean)) throw UNSUPPORTED;
+					if(!Operand.Type.isNumeric() && (Operand.Type != Type.Boolean)) throw UNSUPPORTED;
+					if(CastType == Operand.Type) return Operand;
+					return Fold(new Conversion(CastType, Operand));
+				}
+			}
+			return this.parsePrimary();
+		}
+
+		Node parsePrimary() {
+			Token T = this.next();
+			switch(T.Kind) {
+				case Number: {
+					Object V = T.Value;
+					if(V instanceof Integer) return new Constant(Type.Int,    V);
+					if(V instanceof Long)    return new Constant(Type.Long,   V);
+					if(V instanceof Float)   return new Constant(Type.Float,  V);
+					return                          new Constant(Type.Double, V);
+				}
+				case Char:   return new Constant(Type.Char,   T.Value);
+				case String: return new Constant(Type.String, T.Value);
+				case Word: {
+					if("true" .equals(T.Text)) return new Constant(Type.Boolean, Boolean.TRUE);
+					if("false".equals(T.Text)) return new Constant(Type.Boolean, Boolean.FALSE);
+					if("null" .equals(T.Text)) return new Constant(Type.Null,    null);
+
+					Node Local = this.Locals.get(T.Text);
+					if(Local != null) return Local;
+
+					// Class.CONSTANT
+					Class<?> Cls = this.IsJavaLangOnly ? ConstantClasses.get(T.Text) : null;
+					if((Cls == null) || !this.is(".")) throw UNSUPPORTED;
+					this.next();
+					Token FieldName = this.next();
+					if(FieldName.Kind != TKind.Word) throw UNSUPPORTED;
+					try {
+						Field F = Cls.getField(FieldName.Text);
+						int   M = F.getModifiers();
+						Type  FType = Type.Of(F.getType());
+						if(!Modifier.isStatic(M) || !Modifier.isFinal(M) || (FType == null)) throw UNSUPPORTED;
+						return new Constant(FType, F.get(null));
+					} catch (ReflectiveOperationException E) {
+						throw UNSUPPORTED;
+					}
+				}
+				default: {
+					if(!T.is("(")) throw UNSUPPORTED;
+					Node Inner = this.parseExpression();
+					this.expect(")");
+					return Inner;
+				}
+			}
+		}
+	}
+
+	/** Converts the node to the numeric type (a widening) */
+	static private Node Widen(Node pNode, Type pType) {
+		return (pNode.Type == pType) ? pNode : Fold(new Conversion(pType, pNode));
+	}
+
+	/** Creates a node of the binary operator (type checked) */
+	static private Node NewBinary(String pOp, Node pLeft, Node pRight) {
+		Type L = pLeft.Type, R = pRight.Type;
+		switch(pOp) {
+			case "&&": case "||": {
+				if((L != Type.Boolean) || (R != Type.Boolean)) throw UNSUPPORTED;
+				return new Binary(Type.Boolean, pOp, pLeft, pRight);
+			}
+			case "+": {
+				if((L == Type.String) || (R == Type.String)) {
+					if((L == Type.Null) && (R == Type.Null)) throw UNSUPPORTED;
+					return new Binary(Type.String, pOp, pLeft, pRight);
+				}
+			}
+			// Fall through
+			case "-": case "*": case "/": case "%": {
+				if(!L.isNumeric() || !R.isNumeric()) throw UNSUPPORTED;
+				Type T = Type.Promote(L, R);
+				return new Binary(T, pOp, Widen(pLeft, T), Widen(pRight, T));
+			}
+			case "<<": case ">>": case ">>>": {
+				if(!L.isIntegral() || !R.isIntegral()) throw UNSUPPORTED;
+				Type LT = L.promote();
+				return new Binary(LT, pOp, Widen(pLeft, LT), Widen(pRight, R.promote()));
+			}
+			case "<": case ">": case "<=": case ">=": {
+				if(!L.isNumeric() || !R.isNumeric()) throw UNSUPPORTED;
+				Type T = Type.Promote(L, R);
+				return new Binary(Type.Boolean, pOp, Widen(pLeft, T), Widen(pRight, T));
+			}
+			case "==": case "!=": {
+				if((L == Type.Boolean) && (R == Type.Boolean)) return new Binary(Type.Boolean, pOp, pLeft, pRight);
+				if(!L.isNumeric() || !R.isNumeric()) throw UNSUPPORTED;	// No reference comparison
+				Type T = Type.Promote(L, R);
+				return new Binary(Type.Boolean, pOp, Widen(pLeft, T), Widen(pRight, T));
+			}
+			default: {	// & | ^
+				if((L == Type.Boolean) && (R == Type.Boolean)) return new Binary(Type.Boolean, pOp, pLeft, pRight);
+				if(!L.isIntegral() || !R.isIntegral()) throw UNSUPPORTED;
+				Type T = Type.Promote(L, R);
+				return new Binary(T, pOp, Widen(pLeft, T), Widen(pRight, T));
+			}
+		}
+	}
+
+	/** Folds the node into a constant if all its operands are constants (like the compiler does) */
+	static private Node Fold(Node pNode) {
+		if(pNode.Type == Type.Null) return pNode;
+		if(pNode instanceof Conversion) {
+			if(!(((Conversion)pNode).Operand instanceof Constant)) return pNode;
+		} else if(pNode instanceof Unary) {
+			if(!(((Unary)pNode).Operand instanceof Constant)) return pNode;
+		} else if(pNode instanceof Binary) {
+			Binary B = (Binary)pNode;
+			if(!(B.Left instanceof Constant) || !(B.Right instanceof Constant)) return pNode;
+			// `null` is not a constant
+			if((((Constant)B.Left).Value == null) || (((Constant)B.Right).Value == null)) return pNode;
+		} else if(pNode instanceof Conditional) {
+			Conditional C = (Conditional)pNode;
+			if(!(C.Condition instanceof Constant) || !(C.Then instanceof Constant) || !(C.Else instanceof Constant))
+				return pNode;
+		} else return pNode;
+
+		try {
+			return new Constant(pNode.Type, pNode.eval(null));
+		} catch (ArithmeticException E) {
+			// Not a constant expression (e.g., a division by zero) so it is thrown when run
+			return pNode;
+		}
+	}
+}
@@ -4,15 +4,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import net.nawaman.javacompiler.JavaCompilerObjectInputStream;
 import net.nawaman.javacompiler.JavaCompilerObjectOutputStream;
 import net.nawaman.script.FrozenVariableInfos;
 import net.nawaman.script.Macro;
 import net.nawaman.script.Scope;
-import net.nawaman.script.Signature;
 
 /** A java macro */
 public class JavaMacro  extends Macro.Simple implements Serializable {
@@ -27,15 +24,11 @@ public class JavaMacro  extends Macro.Simple implements Serializable {
 	/**{@inheritDoc}*/ @Override
 	public Macro reCreate(Scope pNewFrozenScope) {
 		try {
-			Constructor<? extends Macro.Simple.Body> CFB = ((Macro.Simple.Body)this.Body).getClass().
-										getConstructor(new Class<?>[] { Signature.class, String.class, Scope.class });
-			Macro.Simple.Body MSB = (Macro.Simple.Body)CFB.newInstance(this.getSignature(), this.getCode(), pNewFrozenScope);
+			Macro.Simple.Body MSB = (Macro.Simple.Body)JavaConstructors.NewBody(this.Body.getClass(),
+			                            this.getSignature(), this.getCode(), pNewFrozenScope);
 			return new JavaMacro(this.ParamNames, MSB, this.getFVInfos());
 		}
-		catch(NoSuchMethodException     E) {}
-		catch(InvocationTargetException E) {}
-		catch(IllegalAccessException    E) {}
-		catch(InstantiationException    E) {}
+		catch(ReflectiveOperationException E) {}
 		return null;
 	}
 
@@ -65,6 +58,10 @@ public class JavaMacro  extends Macro.Simple implements Serializable {
 
 	/** Custom serialization is needed. */
 	private void writeObject(ObjectOutputStream aStream) throws IOException {
+		// The byte code is saved from the JavaCompiler so the classes of an unloadable class loader are added to it
+		if((this.Body != null) && !ExecutableClassLoader.Export(this.Body.getClass()))
+			throw new IOException("Unable to export the classes of the executable to the JavaCompiler.");
+		
 		// Save the rest
 		aStream.defaultWriteObject();
 		
@@ -3,13 +3,12 @@ package net.nawaman.script.java;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import net.nawaman.javacompiler.JavaCompilerObjectInputStream;
 import net.nawaman.javacompiler.JavaCompilerObjectOutputStream;
 import net.nawaman.script.CompiledCode;
 import net.nawaman.script.FrozenVariableInfos;
+import net.nawaman.script.Metrics;
 import net.nawaman.script.Scope;
 import net.nawaman.script.Script;
 import net.nawaman.script.ScriptEngine;
@@ -76,16 +75,17 @@ public class JavaScript implements Script {
 		JavaCode JC = null;
 		if((this.CCode == null) || ((JC = this.CCode.getJavaCode()) == null))
 			return new JavaScript(this.Engine, this.Code, this.FVInfos);
+		
+		// An interpreted code has no frozen variable so it can be shared
+		if(JC instanceof JavaInterpretedCode) return new JavaScript(this.Engine, this.Code, this.FVInfos, this.CCode);
 
 		try {
-			Constructor<? extends JavaCode> CJC = JC.getClass().getConstructor(Scope.class);
-			JavaCompiledCode JCC = new JavaCompiledCode((JavaCode)(CJC.newInstance(pNewFrozenScope)));
+			JavaCompiledCode JCC = new JavaCompiledCode(
+			                           JavaConstructors.NewJavaCode(JC.getClass(), pNewFrozenScope),
+			                           this.CCode.getExecutionMode());
 			return new JavaScript(this.Engine, this.Code, this.FVInfos, JCC);
 		}
-		catch(NoSuchMethodException     E) {}
-		catch(InvocationTargetException E) {}
-		catch(IllegalAccessException    E) {}
-		catch(InstantiationException    E) {}
+		catch(ReflectiveOperationException E) {}
 		return null;
 	}
 	
@@ -109,7 +109,16 @@ public class JavaScript implements Script {
 	/**{@inheritDoc}*/ @Override
 	public Object run(Scope pScope) {
 		if(pScope == null) pScope = this.getEngine().newScope();
-		return this.getEngine().eval(this.getCompiledCode(), pScope, null);
+		
+		long    Start = Metrics.StartTime();
+		boolean IsOK  = false;
+		try {
+			Object Result = this.getEngine().eval(this.getCompiledCode(), pScope, null);
+			IsOK = true;
+			return Result;
+		} finally {
+			Metrics.Executed(this, Start, IsOK);
+		}
 	}
 
 	// Serializable ----------------------------------------------------------------------------------------------------
@@ -138,6 +147,10 @@ public class JavaScript implements Script {
 
 	/** Custom serialization is needed. */
 	private void writeObject(ObjectOutputStream aStream) throws IOException {
+		// The byte code is saved from the JavaCompiler so the classes of an unloadable class loader are added to it
+		if((this.CCode != null) && !ExecutableClassLoader.Export(this.CCode.getJavaCode().getClass()))
+			throw new IOException("Unable to export the classes of the executable to the JavaCompiler.");
+		
 		// Save the rest
 		aStream.defaultWriteObject();
 		
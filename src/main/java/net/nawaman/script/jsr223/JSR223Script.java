@@ -4,6 +4,7 @@ import javax.script.Compilable;
 
 import net.nawaman.script.CompiledCode;
 import net.nawaman.script.FrozenVariableInfos;
+import net.nawaman.script.Metrics;
 import net.nawaman.script.Scope;
 import net.nawaman.script.Script;
 import net.nawaman.script.ScriptEngine;
@@ -79,10 +80,17 @@ abstract public class JSR223Script implements Script {
 	public Object run(Scope pScope) {
 		if(pScope == null) pScope = this.getEngine().newScope();
 		
-		if(!(((JSR223Engine)this.getEngine()).getTheEngine() instanceof Compilable))
-			return this.getEngine().eval(this.getCode(), pScope, null);
-		
-		return this.getEngine().eval(this.getCompiledCode(), pScope, null);
+		long    Start = Metrics.StartTime();
+		boolean IsOK  = false;
+		try {
+			Object Result = (((JSR223Engine)this.getEngine()).getTheEngine() instanceof Compilable)
+			                    ? this.getEngine().eval(this.getCompiledCode(), pScope, null)
+			                    : this.getEngine().eval(this.getCode(),         pScope, null);
+			IsOK = true;
+			return Result;
+		} finally {
+			Metrics.Executed(this, Start, IsOK);
+		}
 	}
 	
 	/** A simple JSR223 script */
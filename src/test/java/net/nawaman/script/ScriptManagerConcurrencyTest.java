@@ -0,0 +1,193 @@
+package net.nawaman.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.nawaman.script.java.JavaEngine;
+
+import org.junit.Test;
+
+/** Hammers the engine loading and the usepath registration of ScriptManager from many threads */
+public class ScriptManagerConcurrencyTest {
+
+	static final int THREADS = 16;
+	static final int ROUNDS  = 200;
+
+	/** An engine that counts its instances (so a double loading can be seen) */
+	static abstract public class CountingEngine extends ScriptEngine.Simple {
+
+		static final ConcurrentHashMap<Class<?>, AtomicInteger> Counts = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+
+		/** Returns the number of the instances of the engine class */
+		static int CountOf(Class<? extends CountingEngine> pClass) {
+			AtomicInteger Count = Counts.get(pClass);
+			return (Count == null) ? 0 : Count.get();
+		}
+
+		public CountingEngine() {
+			Counts.putIfAbsent(this.getClass(), new AtomicInteger());
+			Counts.get(this.getClass()).incrementAndGet();
+		}
+
+		/**{@inheritDoc}*/ @Override
+		public String getName() {
+			return this.getClass().getSimpleName();
+		}
+		/**{@inheritDoc}*/ @Override
+		public ExecutableInfo getReplaceExecutableInfo(ExecutableInfo EInfo) {
+			return EInfo;
+		}
+		/**{@inheritDoc}*/ @Override
+		public String getLongComments(String Comment, int Width) {
+			return "/* " + Comment + " */";
+		}
+	}
+
+	/** The engine loaded by testLoadEngineOnce() only */
+	static public class OnceEngine extends CountingEngine {
+		/**{@inheritDoc}*/ @Override
+		public String getShortName() {
+			return "Once";
+		}
+	}
+
+	/** The engine looked up by testEngineLookups() */
+	static public class StressEngine extends CountingEngine {
+		/**{@inheritDoc}*/ @Override
+		public String getShortName() {
+			return "Stress";
+		}
+	}
+
+	/** Runs the task in all the threads (started at the same time) and returns the results */
+	static <T> List<T> RunAll(final Callable<T> pTask) throws Exception {
+		ExecutorService      Executor = Executors.newFixedThreadPool(THREADS);
+		final CountDownLatch Start    = new CountDownLatch(1);
+		try {
+			List<Future<T>> Futures = new ArrayList<Future<T>>();
+			for(int i = 0; i < THREADS; i++) {
+				Futures.add(Executor.submit(new Callable<T>() {
+					public T call() throws Exception {
+						Start.await();
+						return pTask.call();
+					}
+				}));
+			}
+			Start.countDown();
+
+			List<T> Results = new ArrayList<T>();
+			for(Future<T> F : Futures) Results.add(F.get(60, TimeUnit.SECONDS));
+			return Results;
+		} finally {
+			Executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLoadEngineOnce() throws Exception {
+		List<Boolean> Loadeds = RunAll(new Callable<Boolean>() {
+			public Boolean call() {
+				return ScriptManager.Instance.loadEngine(OnceEngine.class);
+			}
+		});
+
+		int LoadedCount = 0;
+		for(Boolean IsLoaded : Loadeds) if(IsLoaded) LoadedCount++;
+		assertEquals("Loaded", 1, LoadedCount);
+		assertEquals("Instances", 1, CountingEngine.CountOf(OnceEngine.class));
+
+		ScriptEngine Default = ScriptManager.Instance.getDefaultEngineOf(OnceEngine.class.getCanonicalName());
+		assertNotNull(Default);
+		assertSame(Default, ScriptManager.Instance.getDefaultEngineOf("Once"));
+	}
+
+	@Test
+	public void testEngineLookups() throws Exception {
+		final ScriptEngine Java = ScriptManager.Instance.getDefaultEngineOf(JavaEngine.ShortName);
+		assertNotNull(Java);
+
+		List<String> Problems = RunAll(new Callable<String>() {
+			public String call() {
+				for(int i = 0; i < ROUNDS; i++) {
+					ScriptManager.Instance.loadEngine(StressEngine.class);
+					ScriptEngine Stress = ScriptManager.Instance.getDefaultEngineOf("Stress");
+
+					// The same engine from the name, the class name and the code header
+					if(Stress == null)
+						return "No default engine";
+					if(ScriptManager.Instance.newEngine("Stress", null) != Stress)
+						return "newEngine(\"Stress\") is not the default engine";
+					if(ScriptManager.Instance.newEngine(StressEngine.class.getCanonicalName(), null) != Stress)
+						return "newEngine(<class name>) is not the default engine";
+					if(ScriptManager.GetEngineFromCode("// @Stress:\nCode " + i) != Stress)
+						return "The engine of the code header is not the default engine";
+					if(ScriptManager.GetEngineFromCode("// @Java:\nreturn " + i + ";") != Java)
+						return "The engine of the Java header is not the default engine";
+					if(ScriptManager.GetEngineFromCode("No header " + i) != null)
+						return "A code without a header has an engine";
+
+					// Clearing the header cache while the others look up
+					if((i % 50) == 0) ScriptManager.Instance.clearEngineHeaderCache();
+				}
+				return null;
+			}
+		});
+
+		for(String Problem : Problems) assertEquals(null, Problem);
+		assertEquals("Instances", 1, CountingEngine.CountOf(StressEngine.class));
+	}
+
+	@Test
+	public void testUsepathRegistration() throws Exception {
+		final File Root = Files.createTempDirectory("ScriptManagerConcurrencyTest").toFile();
+		try {
+			final AtomicInteger Next = new AtomicInteger();
+			List<String> Names = RunAll(new Callable<String>() {
+				public String call() throws IOException {
+					int    I    = Next.getAndIncrement();
+					String Name = "Stress" + I;
+					File   Dir  = new File(Root, "usepath" + I);
+					Dir.mkdirs();
+					FileWriter FW = new FileWriter(new File(Dir, Name + ".ss"));
+					try     { FW.write("// @Java:\nreturn " + I + ";\n"); }
+					finally { FW.close(); }
+
+					// Registers while the others register and discover
+					ScriptManager.Usepaths.registerUsepath(Dir.getAbsolutePath());
+					ScriptManager.Usepaths.getIndex();
+					return Name;
+				}
+			});
+
+			UsepathIndex UIndex = ScriptManager.Usepaths.getIndex();
+			for(String Name : Names) {
+				File F = UIndex.getFile(Name);
+				assertNotNull("Not registered: " + Name, F);
+				assertTrue(F.getName().equals(Name + ".ss"));
+			}
+		} finally {
+			for(File Dir : Root.listFiles()) {
+				for(File F : Dir.listFiles()) F.delete();
+				Dir.delete();
+			}
+			Root.delete();
+		}
+	}
+}
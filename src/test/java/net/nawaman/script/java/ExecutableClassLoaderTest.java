@@ -0,0 +1,77 @@
+package net.nawaman.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import net.nawaman.javacompiler.JavaCompiler;
+import net.nawaman.javacompiler.JavaCompilerObjectOutputStream;
+import net.nawaman.script.Script;
+
+import org.junit.Test;
+
+/** Checks that the classes of the executables of an unloading JavaEngine are unloaded (see ExecutableClassLoader) */
+public class ExecutableClassLoaderTest {
+
+	static final int EVALS    = 300;
+	static final int CAPACITY = 8;
+
+	/** Returns an engine that defines every executable in its own class loader and always compiles */
+	static JavaEngine NewUnloadingEngine() {
+		JavaEngine Engine = new JavaEngine(null, new JavaEngineOption("unload, hot=0"));
+		Engine.getCompileCache().setCapacity(CAPACITY);
+		return Engine;
+	}
+
+	/** Collects the garbage until the number of the live loaders is at most the limit (or it takes too long) */
+	static long CollectUntil(long pLimit) throws InterruptedException {
+		long Live = ExecutableClassLoader.getLiveCount();
+		for(int i = 0; (i < 100) && (Live > pLimit); i++) {
+			System.gc();
+			Thread.sleep(20);
+			Live = ExecutableClassLoader.getLiveCount();
+		}
+		return Live;
+	}
+
+	@Test
+	public void testUniqueEvalsAreUnloaded() throws Exception {
+		long Before  = CollectUntil(0);
+		long Created = ExecutableClassLoader.getCreatedCount();
+
+		JavaEngine Engine = NewUnloadingEngine();
+		for(int i = 0; i < EVALS; i++)
+			assertEquals(i, Engine.eval("int I = " + i + "; return I;", null, null));
+
+		// Every eval has its own loader
+		assertTrue(ExecutableClassLoader.getCreatedCount() - Created >= EVALS);
+
+		// Only the ones in the compile cache are kept
+		long Live = CollectUntil(Before + CAPACITY);
+		assertTrue("Live loaders: " + Live + " (before: " + Before + ")", Live <= Before + CAPACITY);
+	}
+
+	@Test
+	public void testSerializedExecutableIsExported() throws Exception {
+		JavaEngine Engine = NewUnloadingEngine();
+		Script     S      = Engine.newScript("return 42;", null, null, null, null);
+		Class<?>   Cls    = ((JavaScript)S).CCode.getJavaCode().getClass();
+		assertTrue(Cls.getClassLoader() instanceof ExecutableClassLoader);
+		assertNull(JavaCompiler.Instance.getClassByName(Cls.getName()));
+
+		// The classes are added to the JavaCompiler so they are saved with the executable (and are never unloaded)
+		ObjectOutputStream OOS = JavaCompilerObjectOutputStream.NewJavaCompilerObjectOutputStream(new ByteArrayOutputStream());
+		OOS.writeObject(S);
+		OOS.close();
+		assertNotNull(JavaCompiler.Instance.getClassByName(Cls.getName()));
+
+		// The executable itself still uses the class of its loader
+		assertSame(Cls, ((JavaScript)S).CCode.getJavaCode().getClass());
+		assertEquals(42, S.run());
+	}
+}
@@ -0,0 +1,66 @@
+package net.nawaman.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.nawaman.script.Executable;
+import net.nawaman.script.ExecutableInfo;
+import net.nawaman.script.ProblemContainer;
+import net.nawaman.script.Script;
+
+import org.junit.Test;
+
+/** Checks the compilation of many executables together by JavaEngine.compileAll(...) */
+public class JavaCompileAllTest {
+
+	static final ExecutableInfo SCRIPT = new ExecutableInfo(null, "script", null, null);
+
+	/** Returns the requests of the scripts of the codes (with the problem container if pResult is not null) */
+	static List<JavaEngine.CompileRequest> RequestsOf(ProblemContainer pResult, String ... pCodes) {
+		List<JavaEngine.CompileRequest> Requests = new ArrayList<JavaEngine.CompileRequest>();
+		for(String Code : pCodes) Requests.add(new JavaEngine.CompileRequest(SCRIPT, Code, null, pResult));
+		return Requests;
+	}
+
+	@Test
+	public void testCompileAll() {
+		JavaEngine   Engine = new JavaEngine(null, new JavaEngineOption("hot=0"));
+		Executable[] Execs  = Engine.compileAll(RequestsOf(null, "return 1;", "return 2;"));
+		assertEquals(1, ((Script)Execs[0]).run());
+		assertEquals(2, ((Script)Execs[1]).run());
+	}
+
+	@Test
+	public void testErrorWithProblemContainer() {
+		JavaEngine       Engine = new JavaEngine(null, new JavaEngineOption("hot=0"));
+		ProblemContainer Result = new ProblemContainer();
+		Executable[]     Execs  = Engine.compileAll(RequestsOf(Result, "return 1;", "int I = \"Text\"; return I;"));
+		assertNotNull(Execs[0]);
+		assertNull(Execs[1]);
+		assertTrue(Result.hasError());
+	}
+
+	@Test
+	public void testErrorWithoutProblemContainer() {
+		JavaEngine Engine = new JavaEngine(null, new JavaEngineOption("hot=0"));
+		try {
+			Engine.compileAll(RequestsOf(null, "return 1;", "int I = \"Text\"; return I;", "return 3;"));
+			fail("No compile error");
+		} catch (JavaEngine.CompileAllException E) {
+			// The others are still compiled
+			assertEquals(1, E.getFailedIndex());
+			assertTrue(E.getMessage(), E.getMessage().contains("Compile Error!"));
+
+			Executable[] Execs = E.getExecutables();
+			assertEquals(1, ((Script)Execs[0]).run());
+			assertNull(Execs[1]);
+			assertEquals(3, ((Script)Execs[2]).run());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package net.nawaman.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.nawaman.script.CompiledCode;
+import net.nawaman.script.Problem;
+import net.nawaman.script.ProblemContainer;
+
+import org.junit.Test;
+
+/** Checks what the compile cache of JavaEngine shares between the compilations of the same code */
+public class JavaCompileCacheTest {
+
+	/** The classes to be cached */
+	static public class Immutable {
+		static final int    Constant = 1;
+		static final Object Value    = new Object();
+		int                 Field    = 0;
+	}
+	static public class Mutable {
+		static int Counter = 0;
+	}
+	static public class WithMutableMember {
+		static public class Member {
+			static int Counter = 0;
+		}
+	}
+
+	static JavaCompileCache.Key NewKey(String pCode) {
+		return JavaCompileCache.newKey("", JavaEngine.EKind.CompiledCode, null, null, pCode, null, null,
+		           JavaCompileOption.DefaultOption);
+	}
+
+	@Test
+	public void testMutableStaticsAreNotCached() {
+		JavaCompileCache Cache = new JavaCompileCache();
+
+		Cache.put(NewKey("A"), Immutable.class);
+		Cache.put(NewKey("B"), Mutable.class);
+		Cache.put(NewKey("C"), WithMutableMember.class);
+
+		assertSame(Immutable.class, Cache.get(NewKey("A")));
+		assertNull(Cache.get(NewKey("B")));
+		assertNull(Cache.get(NewKey("C")));
+		assertEquals(1, Cache.size());
+	}
+
+	@Test
+	public void testEachCompilationHasItsOwnStatics() {
+		JavaEngine Engine = new JavaEngine(null, new JavaEngineOption("hot=0"));
+		String     Code   = "static int Count = 0;\nCount++;\nreturn Count;";
+
+		CompiledCode First  = Engine.compile(Code, null, null, null, null);
+		CompiledCode Second = Engine.compile(Code, null, null, null, null);
+		assertEquals(1, Engine.eval(First,  null, null));
+		assertEquals(2, Engine.eval(First,  null, null));
+		assertEquals(1, Engine.eval(Second, null, null));
+
+		// A code without mutable statics is still taken from the cache
+		long Hits = Engine.getCompileCache().getHitCount();
+		Engine.compile("return 5;", null, null, null, null);
+		Engine.compile("return 5;", null, null, null, null);
+		assertEquals(Hits + 1, Engine.getCompileCache().getHitCount());
+	}
+
+	@Test
+	public void testWarningsAreReplayed() {
+		JavaCompileCache Cache   = new JavaCompileCache();
+		Problem          Warning = new Problem.Simple(Problem.Kind.Warning, "Test", "A", "A warning");
+
+		Cache.put(NewKey("A"), Immutable.class, new Problem[] { Warning });
+
+		ProblemContainer Result = new ProblemContainer();
+		assertSame(Immutable.class, Cache.get(NewKey("A"), Result));
+		assertEquals(1, Result.getProblemCount());
+		assertSame(Warning, Result.getProblem(0));
+		assertFalse(Result.hasError());
+
+		// The warnings of a class compiled without a problem container are not known so it must be compiled again
+		Cache.put(NewKey("B"), Immutable.class);
+		assertNull(Cache.get(NewKey("B"), new ProblemContainer()));
+		assertSame(Immutable.class, Cache.get(NewKey("B")));
+	}
+
+	@Test
+	public void testProblemsSince() {
+		ProblemContainer Result = new ProblemContainer();
+		Result.reportProblem(new Problem.Simple(Problem.Kind.Warning, "Test", "A", "Before"));
+		Problem Warning = new Problem.Simple(Problem.Kind.Warning, "Test", "A", "After");
+		Result.reportProblem(Warning);
+
+		Problem[] Problems = JavaCompileCache.getProblemsSince(Result, 1);
+		assertEquals(1, Problems.length);
+		assertSame(Warning, Problems[0]);
+		assertNull(JavaCompileCache.getProblemsSince(null, 0));
+		assertTrue(JavaCompileCache.getProblemsSince(new ProblemContainer(), 0).length == 0);
+	}
+}
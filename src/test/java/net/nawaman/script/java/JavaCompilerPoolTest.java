@@ -0,0 +1,38 @@
+package net.nawaman.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.nawaman.script.CompiledCode;
+
+import org.junit.Test;
+
+/** Checks the compilations of JavaEngine done by its compiler pool */
+public class JavaCompilerPoolTest {
+
+	/** Returns an engine with a compiler pool that always compiles */
+	static JavaEngine NewPooledEngine() {
+		return new JavaEngine(null, new JavaEngineOption("pool=2, hot=0"));
+	}
+
+	@Test
+	public void testCompile() {
+		JavaEngine   Engine = NewPooledEngine();
+		CompiledCode Code   = Engine.compile("return 6 * 7;", null, null, null, null);
+		assertEquals(42, Engine.eval(Code, null, null));
+	}
+
+	@Test
+	public void testCompileErrorWithoutProblemContainer() {
+		JavaEngine Engine = NewPooledEngine();
+		try {
+			Engine.compile("int I = \"Text\"; return I;", null, null, null, null);
+			fail("No compile error");
+		} catch (NullPointerException E) {
+			throw E;
+		} catch (RuntimeException E) {
+			assertTrue(E.getMessage(), String.valueOf(E.getMessage()).contains("Compile Error!"));
+		}
+	}
+}
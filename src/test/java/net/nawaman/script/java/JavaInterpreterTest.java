@@ -0,0 +1,93 @@
+package net.nawaman.script.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Checks that an interpreted code (see JavaInterpreter) gives the same result as the compiled one */
+public class JavaInterpreterTest {
+
+	/** The codes to be run by both tiers */
+	static final String[] CODES = {
+		// Numeric promotion
+		"return 1 + 2;",
+		"return 1 + 2L;",
+		"return 1 + 2.5;",
+		"return 1L * 3.0f;",
+		"return 7 / 2;",
+		"return 7 / 2.0;",
+		"return -7 % 3;",
+		"return (byte)1 + (short)2;",
+		// Char arithmetic
+		"return 'a' + 1;",
+		"return (char)('a' + 1);",
+		"return 'a' + 'b';",
+		// String concatenation
+		"return \"Text\" + null;",
+		"return null + \"Text\";",
+		"return \"Text\" + 'c';",
+		"return 'c' + \"Text\";",
+		"return 1 + 2 + \"Text\" + 1 + 2;",
+		"return \"Text\" + 1.5 + 'c' + 2L;",
+		// Overflow
+		"return 2147483647 + 1;",
+		"return Integer.MIN_VALUE - 1;",
+		"return Long.MIN_VALUE - 1;",
+		"return 9223372036854775807L + 1;",
+		"return 2147483647 * 2;",
+		"return 2147483647 * 2L;",
+		// Division by zero
+		"return 1 / 0;",
+		"return 1 % 0;",
+		"return 1L / 0L;",
+		"return 1L % 0L;",
+		"return 1.0 / 0;",
+		"return -1.0 / 0;",
+		"return 0.0 / 0;",
+		"return 1.0 % 0;",
+	};
+
+	/** Runs the code and returns the result or the class of the exception thrown (the cause of the wrapper ones) */
+	static Object Run(JavaEngine pEngine, String pCode) {
+		try {
+			return pEngine.eval(pCode, null, null);
+		} catch (Throwable T) {
+			while((T.getCause() != null) && !(T instanceof ArithmeticException)) T = T.getCause();
+			return T.getClass();
+		}
+	}
+
+	@Test
+	public void testInterpretedIsTheSameAsCompiled() {
+		JavaEngine Compiled    = new JavaEngine(null, new JavaEngineOption("hot=0"));
+		JavaEngine Interpreted = new JavaEngine(null, new JavaEngineOption(""));
+
+		for(String Code : CODES) {
+			assertNotNull("Not interpreted: " + Code, JavaInterpreter.Parse(Code, true));
+
+			Object Expected = Run(Compiled,    Code);
+			Object Actual   = Run(Interpreted, Code);
+			assertEquals(Code, Expected, Actual);
+			if(Expected != null)
+				assertEquals("The type of: " + Code, Expected.getClass(), Actual.getClass());
+		}
+	}
+
+	@Test
+	public void testEvaluatedAgainIsPromoted() throws InterruptedException {
+		JavaEngine Engine = new JavaEngine(null, new JavaEngineOption("hot=3"));
+		String     Code   = "return 40 + 2;";
+
+		// The executables of the same code share the interpreted code so their runs are counted together
+		JavaInterpretedCode ICode = (JavaInterpretedCode)((JavaCompiledCode)Engine.compile(Code, null, null, null, null)).getJavaCode();
+		assertSame(ICode, ((JavaCompiledCode)Engine.compile(Code, null, null, null, null)).getJavaCode());
+
+		for(int i = 0; i < 3; i++) assertEquals(42, Engine.eval(Code, null, null));
+		for(int i = 0; (i < 500) && !ICode.isCompiled(); i++) Thread.sleep(20);
+		assertTrue(ICode.isCompiled());
+		assertEquals(42, Engine.eval(Code, null, null));
+	}
+}